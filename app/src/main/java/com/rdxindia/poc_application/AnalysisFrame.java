@@ -0,0 +1,74 @@
+package com.rdxindia.poc_application;
+
+import androidx.camera.core.ImageProxy;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A YUV_420_888 analysis image offered to the {@link FrameScheduler}. One
+ * instance is rewrapped around each image on the analyzer thread.
+ */
+final class AnalysisFrame implements FrameScheduler.Frame {
+
+    private ImageProxy image;
+
+    AnalysisFrame wrap(ImageProxy image) {
+        this.image = image;
+        return this;
+    }
+
+    @Override
+    public int getWidth() {
+        return image.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return image.getHeight();
+    }
+
+    @Override
+    public int getRotationDegrees() {
+        return image.getImageInfo().getRotationDegrees();
+    }
+
+    @Override
+    public void copyNv21(byte[] out) {
+        ImageProxy.PlaneProxy[] planes = image.getPlanes();
+        toNv21(planes[0].getBuffer(), planes[0].getRowStride(),
+                planes[1].getBuffer(), planes[2].getBuffer(),
+                planes[1].getRowStride(), planes[1].getPixelStride(),
+                image.getWidth(), image.getHeight(), out);
+    }
+
+    /**
+     * Packs the three planes as NV21: the luma rows, then interleaved V and U
+     * at half resolution. Strides are honoured, so row padding never reaches
+     * the output.
+     */
+    static void toNv21(ByteBuffer y, int yRowStride, ByteBuffer u, ByteBuffer v,
+                       int uvRowStride, int uvPixelStride, int width, int height, byte[] out) {
+        ByteBuffer luma = y.duplicate();
+        if (yRowStride == width) {
+            luma.position(0);
+            luma.get(out, 0, width * height);
+        } else {
+            for (int r = 0; r < height; r++) {
+                luma.position(r * yRowStride);
+                luma.get(out, r * width, width);
+            }
+        }
+
+        int at = width * height;
+        int chromaWidth = width / 2;
+        int chromaHeight = height / 2;
+        for (int r = 0; r < chromaHeight; r++) {
+            int rowStart = r * uvRowStride;
+            for (int c = 0; c < chromaWidth; c++) {
+                int index = rowStart + c * uvPixelStride;
+                out[at++] = v.get(index);
+                out[at++] = u.get(index);
+            }
+        }
+    }
+}
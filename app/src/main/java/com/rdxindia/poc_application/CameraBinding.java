@@ -0,0 +1,93 @@
+package com.rdxindia.poc_application;
+
+import java.util.Locale;
+
+/**
+ * Decides when the camera's use cases actually need binding. Any number of
+ * callers may ask for a lens (resume, the permission result, a voice
+ * command); requests made before the camera provider is ready collapse into
+ * one bind once it is, and asking for the lens that is already bound does
+ * nothing. Main thread only.
+ */
+public final class CameraBinding {
+
+    /** No lens requested or bound. */
+    public static final int NONE = Integer.MIN_VALUE;
+
+    public interface Binder {
+        /** Binds the use cases to {@code lensFacing}; returns whether it worked. */
+        boolean bind(int lensFacing);
+    }
+
+    private final Binder binder;
+    private boolean providerReady;
+    private int requested = NONE;
+    private int bound = NONE;
+    private int bindCount;
+    private int skippedCount;
+    private int failedCount;
+
+    public CameraBinding(Binder binder) {
+        this.binder = binder;
+    }
+
+    /** Asks for {@code lensFacing}; binds now if the provider is ready and it is not bound yet. */
+    public void request(int lensFacing) {
+        requested = lensFacing;
+        apply();
+    }
+
+    public void onProviderReady() {
+        if (providerReady) return;
+        providerReady = true;
+        apply();
+    }
+
+    /** The use cases were unbound elsewhere; the next request binds again. */
+    public void invalidate() {
+        bound = NONE;
+    }
+
+    private void apply() {
+        if (!providerReady || requested == NONE) return;
+        if (requested == bound) {
+            skippedCount++;
+            return;
+        }
+        bound = NONE;
+        if (binder.bind(requested)) {
+            bound = requested;
+            bindCount++;
+        } else {
+            failedCount++;
+        }
+    }
+
+    public boolean isProviderReady() {
+        return providerReady;
+    }
+
+    /** The lens the use cases are bound to, or {@link #NONE}. */
+    public int getBound() {
+        return bound;
+    }
+
+    public int getBindCount() {
+        return bindCount;
+    }
+
+    /** Requests that found their lens already bound. */
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%d binds, %d skipped, %d failed%s",
+                bindCount, skippedCount, failedCount, providerReady ? "" : " (provider pending)");
+    }
+}
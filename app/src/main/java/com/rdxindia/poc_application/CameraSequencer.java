@@ -0,0 +1,265 @@
+package com.rdxindia.poc_application;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Runs camera actions (zoom, focus, capture, ...) as sequences of steps,
+ * each started as soon as the previous one reports that its effect is in
+ * place rather than after a fixed delay. Every step has a timeout; an
+ * optional step that fails or times out is passed over, a required one
+ * ends its sequence. Sequences run one after another in submission order,
+ * so commands spoken back to back chain up instead of interleaving.
+ *
+ * <p>Steps are started, and sequences finish, on {@code executor}.
+ */
+public final class CameraSequencer {
+
+    public interface Step {
+        /** Starts the step; {@code done} is told once when it completes, from any thread. */
+        void start(Done done) throws Exception;
+    }
+
+    public interface Done {
+        void succeeded();
+
+        void failed(Exception e);
+    }
+
+    public interface Listener {
+        void onFinished(Sequence sequence);
+    }
+
+    public enum Outcome { SUCCEEDED, FAILED, TIMED_OUT, CANCELLED }
+
+    private static final class StepSpec {
+        final String name;
+        final long timeoutNanos;
+        final boolean required;
+        final Step step;
+
+        StepSpec(String name, long timeoutNanos, boolean required, Step step) {
+            this.name = name;
+            this.timeoutNanos = timeoutNanos;
+            this.required = required;
+            this.step = step;
+        }
+    }
+
+    private final Executor executor;
+    private final ScheduledExecutorService timer;
+    private final ArrayDeque<Sequence> queue = new ArrayDeque<>();
+    // Touched only on the executor
+    private Sequence running;
+
+    public CameraSequencer(Executor executor, ScheduledExecutorService timer) {
+        this.executor = executor;
+        this.timer = timer;
+    }
+
+    public Builder sequence(String name) {
+        return new Builder(name);
+    }
+
+    /** Cancels the running sequence and every queued one. */
+    public void cancelAll() {
+        executor.execute(() -> {
+            List<Sequence> cancelled = new ArrayList<>();
+            synchronized (queue) {
+                cancelled.addAll(queue);
+                queue.clear();
+            }
+            if (running != null) running.settle(Outcome.CANCELLED, null);
+            for (Sequence sequence : cancelled) sequence.finish(Outcome.CANCELLED);
+        });
+    }
+
+    public final class Builder {
+        private final String name;
+        private final List<StepSpec> steps = new ArrayList<>();
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder then(String step, long timeout, TimeUnit unit, boolean required,
+                            Step action) {
+            steps.add(new StepSpec(step, unit.toNanos(timeout), required, action));
+            return this;
+        }
+
+        /** A step whose effect is in place when the returned future completes; a null future fails. */
+        public Builder thenFuture(String step, long timeout, TimeUnit unit, boolean required,
+                                  Supplier<? extends ListenableFuture<?>> action) {
+            return then(step, timeout, unit, required, done -> {
+                ListenableFuture<?> future = action.get();
+                if (future == null) {
+                    done.failed(new IllegalStateException(step + " not available"));
+                    return;
+                }
+                future.addListener(() -> {
+                    try {
+                        future.get();
+                        done.succeeded();
+                    } catch (ExecutionException e) {
+                        done.failed(e.getCause() instanceof Exception
+                                ? (Exception) e.getCause() : e);
+                    } catch (Exception e) {
+                        done.failed(e);
+                    }
+                }, Runnable::run);
+            });
+        }
+
+        /** Queues the sequence behind any already submitted. */
+        public Sequence submit(Listener listener) {
+            Sequence sequence = new Sequence(name, steps, listener);
+            synchronized (queue) {
+                queue.add(sequence);
+            }
+            executor.execute(CameraSequencer.this::startNext);
+            return sequence;
+        }
+    }
+
+    private void startNext() {
+        if (running != null) return;
+        synchronized (queue) {
+            running = queue.poll();
+        }
+        if (running != null) running.begin();
+    }
+
+    /** One submitted sequence and, once it has run, how each step went. */
+    public final class Sequence {
+        private final String name;
+        private final List<StepSpec> steps;
+        private final Listener listener;
+        private final StageTimer timer = new StageTimer();
+        private final Outcome[] outcomes;
+        private final Exception[] errors;
+        private int current = -1;
+        private Outcome outcome;
+        private AtomicBoolean settled;
+        private ScheduledFuture<?> timeout;
+
+        private Sequence(String name, List<StepSpec> steps, Listener listener) {
+            this.name = name;
+            this.steps = new ArrayList<>(steps);
+            this.listener = listener;
+            this.outcomes = new Outcome[steps.size()];
+            this.errors = new Exception[steps.size()];
+        }
+
+        private void begin() {
+            timer.mark("wait");
+            next();
+        }
+
+        private void next() {
+            current++;
+            if (current == steps.size()) {
+                finish(Outcome.SUCCEEDED);
+                return;
+            }
+            StepSpec spec = steps.get(current);
+            AtomicBoolean stepSettled = new AtomicBoolean();
+            settled = stepSettled;
+            timeout = CameraSequencer.this.timer.schedule(
+                    () -> executor.execute(() -> settle(stepSettled, Outcome.TIMED_OUT, null)),
+                    spec.timeoutNanos, TimeUnit.NANOSECONDS);
+            try {
+                spec.step.start(new Done() {
+                    @Override
+                    public void succeeded() {
+                        executor.execute(() -> settle(stepSettled, Outcome.SUCCEEDED, null));
+                    }
+
+                    @Override
+                    public void failed(Exception e) {
+                        executor.execute(() -> settle(stepSettled, Outcome.FAILED, e));
+                    }
+                });
+            } catch (Exception e) {
+                settle(stepSettled, Outcome.FAILED, e);
+            }
+        }
+
+        private void settle(Outcome stepOutcome, Exception error) {
+            settle(settled, stepOutcome, error);
+        }
+
+        // A step settles once; a late completion after its timeout is ignored
+        private void settle(AtomicBoolean stepSettled, Outcome stepOutcome, Exception error) {
+            if (stepSettled == null || !stepSettled.compareAndSet(false, true)) return;
+            timeout.cancel(false);
+            StepSpec spec = steps.get(current);
+            outcomes[current] = stepOutcome;
+            errors[current] = error;
+            timer.mark(stepOutcome == Outcome.SUCCEEDED
+                    ? spec.name : spec.name + "(" + stepOutcome.name().toLowerCase(Locale.US) + ")");
+            if (stepOutcome == Outcome.CANCELLED
+                    || (stepOutcome != Outcome.SUCCEEDED && spec.required)) {
+                finish(stepOutcome);
+            } else {
+                next();
+            }
+        }
+
+        private void finish(Outcome sequenceOutcome) {
+            outcome = sequenceOutcome;
+            if (running == this) running = null;
+            if (listener != null) listener.onFinished(this);
+            startNext();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /** SUCCEEDED if every required step did, else how the failing step ended. */
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        public int getStepCount() {
+            return steps.size();
+        }
+
+        public String getStepName(int index) {
+            return steps.get(index).name;
+        }
+
+        /** How step {@code index} ended, or null if it never ran. */
+        public Outcome getStepOutcome(int index) {
+            return outcomes[index];
+        }
+
+        /** What a failed step reported, if anything. */
+        public Exception getStepError(int index) {
+            return errors[index];
+        }
+
+        /** Per-step latency; the first stage is the wait behind earlier sequences. */
+        public StageTimer getTimer() {
+            return timer;
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + (outcome == null ? "pending" : outcome.name().toLowerCase(Locale.US))
+                    + ": " + timer;
+        }
+    }
+}
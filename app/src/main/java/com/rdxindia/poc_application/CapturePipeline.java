@@ -0,0 +1,222 @@
+package com.rdxindia.poc_application;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.camera.core.ImageProxy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * In-memory post-processing for a captured frame. The JPEG delivered by
+ * CameraX is stamped with the coordinate overlay by re-encoding only the
+ * blocks under the text, and written together with its EXIF block in one
+ * sequential pass. Frames the strip rewriter cannot handle fall back to a
+ * full decode and encode.
+ */
+class CapturePipeline {
+
+    private static final String TAG = "CapturePipeline";
+    private final CoordinateOverlay overlay = new CoordinateOverlay();
+    private final JpegStripOverlay stripOverlay = new JpegStripOverlay();
+    private ThumbnailCache thumbnails;
+    private int jpegQuality = CaptureProfile.BALANCED.getJpegQuality();
+    private Bitmap thumbnail;
+    // Heap copy of a direct frame for the thumbnail decoder
+    private byte[] thumbnailSource = new byte[0];
+
+    /** Makes a thumbnail of every non-degraded frame {@link #process}ed; null turns it off. */
+    CapturePipeline setThumbnailCache(@Nullable ThumbnailCache thumbnails) {
+        this.thumbnails = thumbnails;
+        return this;
+    }
+
+    /**
+     * Quality of frames that have to be encoded again; the strip overlay
+     * keeps the camera's own, which the capture profile sets.
+     */
+    CapturePipeline setJpegQuality(int jpegQuality) {
+        this.jpegQuality = jpegQuality;
+        return this;
+    }
+
+    /** The thumbnail of the last processed frame, once; null if none was made. */
+    @Nullable
+    Bitmap takeThumbnail() {
+        Bitmap taken = thumbnail;
+        thumbnail = null;
+        return taken;
+    }
+
+    /**
+     * Processes {@code image} into {@code output}. The caller still owns the
+     * ImageProxy and must close it.
+     */
+    StageTimer process(ImageProxy image, File output, @Nullable LocationFix location,
+                       long captureTimeMillis) throws IOException {
+        ByteBuffer jpeg = image.getPlanes()[0].getBuffer();
+        jpeg.rewind();
+        return process(jpeg, image.getImageInfo().getRotationDegrees(), output, location,
+                captureTimeMillis, false);
+    }
+
+    /**
+     * Processes the JPEG between {@code jpeg}'s position and limit. A
+     * {@code degraded} capture keeps its EXIF but skips the drawn overlay.
+     */
+    StageTimer process(ByteBuffer jpeg, int rotation, File output, @Nullable LocationFix location,
+                       long captureTimeMillis, boolean degraded) throws IOException {
+        StageTimer timer = new StageTimer();
+        thumbnail = null;
+        ExifWriter exif = new ExifWriter()
+                .setOrientation(ExifWriter.orientationForRotation(rotation));
+        setLocation(exif, location, captureTimeMillis);
+        if (degraded) {
+            overlay.setLines(new String[0]);
+        }
+
+        try (FileOutputStream out = new FileOutputStream(output);
+             FileChannel channel = out.getChannel()) {
+            boolean wantThumbnail = thumbnails != null && !degraded;
+            try {
+                stripOverlay.rewrite(jpeg, channel, exif, overlay, rotation, timer);
+                if (wantThumbnail && jpeg.hasArray()) {
+                    thumbnail = thumbnails.fromJpeg(jpeg.array(),
+                            jpeg.arrayOffset() + jpeg.position(), jpeg.remaining(), rotation);
+                    timer.mark("thumbnail");
+                } else if (wantThumbnail) {
+                    int length = jpeg.remaining();
+                    if (thumbnailSource.length < length) thumbnailSource = new byte[length];
+                    jpeg.duplicate().get(thumbnailSource, 0, length);
+                    thumbnail = thumbnails.fromJpeg(thumbnailSource, 0, length, rotation);
+                    timer.mark("thumbnail");
+                }
+            } catch (UnsupportedJpegException e) {
+                Log.w(TAG, "Strip overlay unavailable, re-encoding frame: " + e.getMessage());
+                channel.truncate(0);
+                channel.position(0);
+                byte[] source = new byte[jpeg.remaining()];
+                jpeg.get(source);
+                timer.mark("copy");
+                encodeFullFrame(source, rotation, exif, channel, timer, wantThumbnail);
+            }
+            // Durable before the journal commits it under its final name
+            channel.force(false);
+            timer.mark("sync");
+        }
+        return timer;
+    }
+
+    /**
+     * Writes {@code file}, a JPEG CameraX already saved, to {@code temp} with
+     * the GPS tags and the coordinate overlay added. The caller renames it
+     * over the original.
+     */
+    StageTimer stampFile(File file, File temp, @Nullable LocationFix location,
+                         long captureTimeMillis) throws IOException {
+        StageTimer timer = new StageTimer();
+        ExifWriter exif = new ExifWriter();
+        setLocation(exif, location, captureTimeMillis);
+
+        try (FileChannel source = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            MappedByteBuffer jpeg = source.map(FileChannel.MapMode.READ_ONLY, 0, source.size());
+            timer.mark("map");
+            try {
+                stripOverlay.rewrite(jpeg, target, exif, overlay,
+                        JpegStripOverlay.ROTATION_FROM_EXIF, timer);
+            } catch (UnsupportedJpegException e) {
+                Log.w(TAG, "Strip overlay unavailable, re-encoding file: " + e.getMessage());
+                target.truncate(0);
+                target.position(0);
+                byte[] bytes = new byte[jpeg.remaining()];
+                jpeg.get(bytes);
+                timer.mark("copy");
+                encodeFullFrame(bytes, 0, exif, target, timer, false);
+            }
+            target.force(false);
+            timer.mark("sync");
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        return timer;
+    }
+
+    private void setLocation(ExifWriter exif, @Nullable LocationFix location, long timeMillis) {
+        if (location == null) {
+            overlay.setLines(new String[0]);
+            return;
+        }
+        // The fix's own time and error go in too, so its age at capture is recorded
+        exif.setGpsLocation(location.getLatitude(), location.getLongitude())
+                .setGpsFix(location.getTimeMillis(), location.getAccuracyMeters());
+        overlay.setLines(overlay.buildLines(
+                location.getLatitude(), location.getLongitude(), timeMillis));
+    }
+
+    // Decodes the whole frame, draws the overlay and encodes it again
+    private void encodeFullFrame(byte[] source, int rotation, ExifWriter exif,
+                                 FileChannel channel, StageTimer timer, boolean wantThumbnail)
+            throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inMutable = true;
+        Bitmap bitmap = BitmapFactory.decodeByteArray(source, 0, source.length, options);
+        if (bitmap == null) {
+            throw new IOException("Could not decode captured JPEG");
+        }
+        timer.mark("decode");
+
+        Canvas canvas = new Canvas(bitmap);
+        overlay.draw(canvas, bitmap.getWidth(), bitmap.getHeight(), rotation);
+        timer.mark("overlay");
+
+        // The decoded pixels keep the sensor orientation; EXIF carries the rotation
+        EncodedJpeg encoded = new EncodedJpeg(source.length);
+        bitmap.compress(Bitmap.CompressFormat.JPEG, jpegQuality, encoded);
+        timer.mark("encode");
+        if (wantThumbnail) {
+            // Scaled from the pixels already decoded for the overlay
+            thumbnail = thumbnails.fromBitmap(bitmap, rotation);
+            timer.mark("thumbnail");
+        }
+        bitmap.recycle();
+
+        byte[] app1 = exif.buildApp1();
+        timer.mark("metadata");
+
+        // SOI, our APP1, then the encoder output minus its own SOI
+        ByteBuffer[] parts = {
+                ByteBuffer.wrap(encoded.buffer(), 0, 2),
+                ByteBuffer.wrap(app1),
+                ByteBuffer.wrap(encoded.buffer(), 2, encoded.size() - 2)
+        };
+        long remaining = encoded.size() + app1.length;
+        while (remaining > 0) {
+            remaining -= channel.write(parts);
+        }
+        timer.mark("write");
+    }
+
+    // Exposes the backing array so the encoded JPEG is not copied again
+    private static final class EncodedJpeg extends ByteArrayOutputStream {
+        EncodedJpeg(int initialSize) {
+            super(initialSize);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.rdxindia.poc_application;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+/**
+ * Draws the latitude / longitude / timestamp block in the bottom-left corner
+ * of a photo, either onto a full frame or, as an {@link OverlayPainter}, into
+ * the strip of pixels under it. Not thread-safe; use one instance per worker
+ * thread.
+ */
+class CoordinateOverlay implements OverlayPainter {
+
+    private static final float TEXT_SIZE = 48f;
+    private static final float MARGIN = 20f;
+    private static final float SHADOW_RADIUS = 5f;
+    private static final float SHADOW_OFFSET = 2f;
+
+    private final Paint paint = new Paint();
+    private final Paint.FontMetrics metrics = new Paint.FontMetrics();
+    private final CaptureNames names = new CaptureNames();
+    private String[] lines = new String[0];
+
+    CoordinateOverlay() {
+        paint.setColor(Color.WHITE);
+        paint.setTextSize(TEXT_SIZE);
+        paint.setAntiAlias(true);
+        paint.setShadowLayer(SHADOW_RADIUS, SHADOW_OFFSET, SHADOW_OFFSET, Color.BLACK);
+    }
+
+    /** Sets the lines painted through the {@link OverlayPainter} methods. */
+    CoordinateOverlay setLines(String[] lines) {
+        this.lines = lines;
+        return this;
+    }
+
+    String[] buildLines(double latitude, double longitude, long timeMillis) {
+        return names.overlayLines(latitude, longitude, timeMillis);
+    }
+
+    /** Draws the lines last passed to {@link #setLines}; see below. */
+    void draw(Canvas canvas, int width, int height, int rotationDegrees) {
+        draw(canvas, width, height, rotationDegrees, lines);
+    }
+
+    /**
+     * Draws the lines onto a canvas holding an image of {@code width} x
+     * {@code height} sensor pixels that is displayed rotated clockwise by
+     * {@code rotationDegrees}, so the text ends up bottom-left when viewed.
+     */
+    void draw(Canvas canvas, int width, int height, int rotationDegrees, String[] lines) {
+        int rotation = ((rotationDegrees % 360) + 360) % 360;
+        int uprightHeight = (rotation == 90 || rotation == 270) ? width : height;
+
+        canvas.save();
+        switch (rotation) {
+            case 90:
+                canvas.translate(0, height);
+                break;
+            case 180:
+                canvas.translate(width, height);
+                break;
+            case 270:
+                canvas.translate(width, 0);
+                break;
+            default:
+                break;
+        }
+        canvas.rotate(-rotation);
+
+        float lineHeight = paint.getFontSpacing();
+        float y = uprightHeight - MARGIN - (lines.length - 1) * lineHeight;
+        for (String line : lines) {
+            canvas.drawText(line, MARGIN, y, paint);
+            y += lineHeight;
+        }
+        canvas.restore();
+    }
+
+    @Override
+    public void getBounds(int uprightWidth, int uprightHeight, int[] outBounds) {
+        if (lines.length == 0) {
+            outBounds[0] = outBounds[1] = outBounds[2] = outBounds[3] = 0;
+            return;
+        }
+        float textWidth = 0;
+        for (String line : lines) {
+            textWidth = Math.max(textWidth, paint.measureText(line));
+        }
+        paint.getFontMetrics(metrics);
+        float lastBaseline = uprightHeight - MARGIN;
+        float firstBaseline = lastBaseline - (lines.length - 1) * paint.getFontSpacing();
+
+        // Leave room for the shadow and anti-aliasing on every side
+        int pad = (int) Math.ceil(SHADOW_RADIUS + SHADOW_OFFSET) + 1;
+        outBounds[0] = (int) Math.floor(MARGIN) - pad;
+        outBounds[1] = (int) Math.floor(firstBaseline + metrics.top) - pad;
+        outBounds[2] = (int) Math.ceil(MARGIN + textWidth) + pad;
+        outBounds[3] = (int) Math.ceil(lastBaseline + metrics.bottom) + pad;
+    }
+
+    @Override
+    public void paint(int[] argb, int width, int height, int left, int top,
+                      int imageWidth, int imageHeight, int rotationDegrees) {
+        Bitmap window = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        window.setPixels(argb, 0, width, 0, 0, width, height);
+        Canvas canvas = new Canvas(window);
+        canvas.translate(-left, -top);
+        draw(canvas, imageWidth, imageHeight, rotationDegrees, lines);
+        window.getPixels(argb, 0, width, 0, 0, width, height);
+        window.recycle();
+    }
+}
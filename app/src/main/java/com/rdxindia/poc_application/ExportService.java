@@ -0,0 +1,203 @@
+package com.rdxindia.poc_application;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.Service;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.os.Build;
+import android.os.IBinder;
+import android.util.Log;
+import androidx.annotation.Nullable;
+import androidx.core.app.NotificationCompat;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Uploads a day's photos as tar segments with a geotag manifest to an HTTP
+ * endpoint that takes resumable uploads (see {@link SegmentUploader}).
+ * Started from the shell, which holds the DUMP permission the service asks for:
+ *
+ * <pre>
+ * adb reverse tcp:8080 tcp:8080
+ * adb shell am start-foreground-service -n com.rdxindia.poc_application/.ExportService \
+ *     --es endpoint http://localhost:8080/upload --es day 20240305
+ * </pre>
+ *
+ * Plain HTTP is allowed only to localhost, the emulator's host and *.local
+ * names (see network_security_config.xml); other endpoints need HTTPS.
+ *
+ * The plan and progress log for the day stay in the app's files dir until
+ * the export finishes, so starting it again after a failure or a restart
+ * carries on where it stopped.
+ */
+public class ExportService extends Service {
+
+    public static final String EXTRA_ENDPOINT = "endpoint";
+    /** yyyyMMdd in local time; today when missing. */
+    public static final String EXTRA_DAY = "day";
+
+    private static final String CHANNEL_ID = "ExportServiceChannel";
+    private static final int NOTIFICATION_ID = 102;
+    // Photo bytes per segment, so a lost segment costs little to send again
+    private static final long SEGMENT_BYTES = 256L * 1024 * 1024;
+    private static final int CHUNK_BYTES = 4 * 1024 * 1024;
+    private static final int MAX_ATTEMPTS = 6;
+    private static final long RETRY_DELAY_MS = 2000;
+
+    private ExecutorService worker;
+    private NotificationManager notifications;
+    private volatile String status = "idle";
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        notifications = getSystemService(NotificationManager.class);
+        createNotificationChannel();
+        Notification notification = buildNotification("Preparing export", 0, 0);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            startForeground(NOTIFICATION_ID, notification,
+                    ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC);
+        } else {
+            startForeground(NOTIFICATION_ID, notification);
+        }
+        worker = Executors.newSingleThreadExecutor();
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        String endpoint = intent == null ? null : intent.getStringExtra(EXTRA_ENDPOINT);
+        if (endpoint == null) {
+            Log.w("Export", "No endpoint given");
+            stopSelf(startId);
+            return START_NOT_STICKY;
+        }
+        String day = intent.getStringExtra(EXTRA_DAY);
+        if (day == null) {
+            Calendar today = Calendar.getInstance();
+            day = String.format(Locale.US, "%tY%<tm%<td", today);
+        }
+        final String exportDay = day;
+        // One export at a time; a second request waits for the first
+        worker.execute(() -> {
+            export(endpoint, exportDay);
+            stopSelf(startId);
+        });
+        return START_NOT_STICKY;
+    }
+
+    private void export(String endpoint, String day) {
+        // Started over adb the process may have no activity, so the index is opened here
+        PhotoIndex index = MainActivity.openPhotoIndex(getApplicationContext());
+        if (index == null) {
+            status = "photo index unavailable";
+            Log.w("Export", status);
+            return;
+        }
+        File dir = new File(getFilesDir(), "export");
+        File planFile = new File(dir, day + ".plan");
+        File stateFile = new File(dir, day + ".state");
+        File library = MainActivity.getPhotoLibraryDir();
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+            ExportPlan plan;
+            if (planFile.exists()) {
+                plan = ExportPlan.read(planFile);
+            } else {
+                long[] range = dayRange(day);
+                List<PhotoIndex.Photo> photos = index.queryTime(range[0], range[1]);
+                // A new id per plan, so segments of a later plan never meet an earlier upload
+                plan = ExportPlan.build(String.format(Locale.US, "poc-%s-%x", day,
+                        System.currentTimeMillis()), library, photos, SEGMENT_BYTES);
+                plan.write(planFile);
+            }
+            Log.d("Export", "Exporting " + plan.getItemCount() + " photos, "
+                    + plan.getDataBytes() / 1_000_000 + "MB in " + plan.getSegments().size()
+                    + " segments to " + endpoint);
+            SegmentUploader uploader = new SegmentUploader(endpoint, CHUNK_BYTES, MAX_ATTEMPTS,
+                    RETRY_DELAY_MS);
+            CaptureExporter.Result result = new CaptureExporter(plan, library, stateFile, uploader)
+                    .run(this::onProgress);
+            status = "done: " + result + ", " + uploader;
+            Log.d("Export", status);
+            planFile.delete();
+            stateFile.delete();
+        } catch (IOException | IllegalArgumentException e) {
+            // The plan and log stay for the next attempt
+            status = "failed: " + e;
+            Log.e("Export", "Export of " + day + " failed", e);
+        }
+    }
+
+    private static long[] dayRange(String day) {
+        if (!day.matches("\\d{8}")) throw new IllegalArgumentException("Not yyyyMMdd: " + day);
+        Calendar start = Calendar.getInstance();
+        start.clear();
+        start.set(Integer.parseInt(day.substring(0, 4)), Integer.parseInt(day.substring(4, 6)) - 1,
+                Integer.parseInt(day.substring(6, 8)));
+        Calendar end = (Calendar) start.clone();
+        end.add(Calendar.DAY_OF_MONTH, 1);
+        return new long[] { start.getTimeInMillis(), end.getTimeInMillis() - 1 };
+    }
+
+    private void onProgress(int segmentsDone, int segmentCount, long bytesDone, long bytesTotal) {
+        status = String.format(Locale.US, "segment %d of %d, %d%%",
+                Math.min(segmentsDone + 1, segmentCount), segmentCount,
+                bytesTotal == 0 ? 100 : bytesDone * 100 / bytesTotal);
+        if (notifications != null) {
+            notifications.notify(NOTIFICATION_ID, buildNotification("Exporting " + status,
+                    segmentCount, segmentsDone));
+        }
+    }
+
+    private Notification buildNotification(String text, int max, int progress) {
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setContentTitle("Photo export")
+                .setContentText(text)
+                .setSmallIcon(android.R.drawable.stat_sys_upload)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .setProgress(max, progress, max == 0)
+                .setOnlyAlertOnce(true)
+                .setOngoing(true)
+                .build();
+    }
+
+    private void createNotificationChannel() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(
+                    CHANNEL_ID,
+                    "Photo Export Channel",
+                    NotificationManager.IMPORTANCE_LOW
+            );
+            channel.setDescription("Uploads of captured photos");
+            if (notifications != null) notifications.createNotificationChannel(channel);
+        }
+    }
+
+    // Readable with: adb shell dumpsys activity service .ExportService
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        writer.println("Export: " + status);
+    }
+
+    @Override
+    public void onDestroy() {
+        // Interrupts the upload between chunks; the progress log keeps what was sent
+        worker.shutdownNow();
+        super.onDestroy();
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+}
@@ -0,0 +1,88 @@
+package com.rdxindia.poc_application;
+
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+
+/**
+ * Feeds continuous fused-provider updates into a {@link LocationTracker}
+ * while started. The interval and priority are the power budget: fixes
+ * arrive no faster than the interval and batching is allowed up to one more
+ * interval.
+ */
+class FusedLocationSource {
+
+    private static final String TAG = "FusedLocationSource";
+
+    private final Context context;
+    private final FusedLocationProviderClient client;
+    private final LocationTracker tracker;
+    private final LocationRequest request;
+    private boolean started;
+
+    private final LocationCallback callback = new LocationCallback() {
+        @Override
+        public void onLocationResult(@NonNull LocationResult result) {
+            for (Location location : result.getLocations()) {
+                tracker.onFix(toFix(location));
+            }
+        }
+    };
+
+    FusedLocationSource(Context context, LocationTracker tracker, long intervalMillis, int priority) {
+        this.context = context.getApplicationContext();
+        this.client = LocationServices.getFusedLocationProviderClient(this.context);
+        this.tracker = tracker;
+        this.request = LocationRequest.create()
+                .setInterval(intervalMillis)
+                .setFastestInterval(intervalMillis / 2)
+                .setMaxWaitTime(intervalMillis * 2)
+                .setPriority(priority);
+    }
+
+    /** Starts updates if location permission is granted; returns whether it did. */
+    @SuppressLint("MissingPermission")
+    boolean start() {
+        if (started) return true;
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION)
+                != PackageManager.PERMISSION_GRANTED) {
+            return false;
+        }
+        started = true;
+        tracker.setUpdating(true);
+        // Seed with the cached fix; the tracker keeps it only if it is newer
+        client.getLastLocation().addOnSuccessListener(location -> {
+            if (location != null) tracker.onFix(toFix(location));
+        });
+        client.requestLocationUpdates(request, callback, Looper.getMainLooper());
+        Log.d(TAG, "Location updates started");
+        return true;
+    }
+
+    void stop() {
+        if (!started) return;
+        started = false;
+        client.removeLocationUpdates(callback);
+        tracker.setUpdating(false);
+        Log.d(TAG, "Location updates stopped: " + tracker);
+    }
+
+    static LocationFix toFix(Location location) {
+        return new LocationFix(location.getLatitude(), location.getLongitude(),
+                location.hasAccuracy() ? location.getAccuracy() : Float.NaN,
+                location.getElapsedRealtimeNanos(), location.getTime());
+    }
+}
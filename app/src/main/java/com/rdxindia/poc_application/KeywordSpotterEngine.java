@@ -0,0 +1,154 @@
+package com.rdxindia.poc_application;
+
+import android.media.AudioRecord;
+import android.os.Handler;
+import android.util.Log;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Commands from the on-device {@link KeywordSpotter}, without network or a
+ * system recognizer. A capture thread runs the {@link VoiceActivityDetector}
+ * and only extracts MFCCs while someone speaks, starting with the pre-roll.
+ * A spotted phrase is run through the command grammar, so "zoom 2 x"
+ * enrolled as a phrase carries its number like a recognized one.
+ * <p>
+ * {@link #enroll} records the next utterance as a template for a phrase
+ * instead of spotting.
+ */
+final class KeywordSpotterEngine implements RecognitionEngine {
+
+    // Mean cosine distance under which a template matches
+    private static final float THRESHOLD = 0.12f;
+    // Recordings kept per phrase
+    private static final int TEMPLATES_PER_PHRASE = 3;
+    private static final int ONSET_MS = 60;
+    private static final int HANGOVER_MS = 300;
+    private static final int PRE_ROLL_MS = 300;
+
+    private final Handler handler;
+    private final Listener listener;
+    private final KeywordTemplates templates;
+    // Main thread only
+    private final CommandGrammar.Matcher matcher = VoiceCommands.grammar().newMatcher();
+
+    // Owned by the capture thread once started
+    private final MfccExtractor extractor = MfccExtractor.forSampleRate(VoiceGate.SAMPLE_RATE);
+    private final KeywordSpotter spotter =
+            new KeywordSpotter(extractor.getCoefficientCount(), THRESHOLD);
+    private final VoiceActivityDetector detector = new VoiceActivityDetector(
+            VoiceGate.SAMPLE_RATE, VoiceGate.FRAME_SAMPLES, ONSET_MS, HANGOVER_MS);
+    private final PreRollBuffer preRoll =
+            new PreRollBuffer(VoiceGate.SAMPLE_RATE * PRE_ROLL_MS / 1000);
+    private final long hopNanos = extractor.getHopSamples() * 1_000_000_000L / VoiceGate.SAMPLE_RATE;
+    private final List<float[]> recording = new ArrayList<>();
+    private final MfccExtractor.Sink spot = this::spot;
+    private final MfccExtractor.Sink record = mfcc -> recording.add(mfcc.clone());
+
+    private volatile String enrollPhrase;
+    private volatile boolean running;
+    private Thread thread;
+
+    KeywordSpotterEngine(Handler handler, Listener listener, KeywordTemplates templates) {
+        this.handler = handler;
+        this.listener = listener;
+        this.templates = templates;
+        for (KeywordTemplates.Entry entry : templates.getEntries()) {
+            spotter.addTemplate(entry.getPhrase(), entry.getMfcc());
+        }
+    }
+
+    /** Records the next utterance as {@code phrase}; it must match a command. Main thread. */
+    boolean enroll(String phrase) {
+        if (matcher.match(phrase) == null) return false;
+        enrollPhrase = phrase;
+        return true;
+    }
+
+    @Override
+    public void start() {
+        AudioRecord record = VoiceGate.openMicrophone();
+        if (record == null) return;
+        running = true;
+        thread = new Thread(() -> capture(record), "KeywordSpotter");
+        thread.start();
+        Log.d("SpeechService", "Keyword spotter started with "
+                + spotter.getTemplateCount() + " templates");
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+        Log.d("SpeechService", "Keyword spotter: " + detector);
+    }
+
+    private void capture(AudioRecord microphone) {
+        short[] frame = new short[VoiceGate.FRAME_SAMPLES];
+        short[] pending = new short[preRoll.capacity()];
+        String enrolling = null;
+        try {
+            while (running) {
+                if (VoiceGate.readFully(microphone, frame) < 0) break;
+                VoiceActivityDetector.Event event = detector.process(frame, 0);
+                if (event == VoiceActivityDetector.Event.ONSET) {
+                    enrolling = enrollPhrase;
+                    extractor.reset();
+                    spotter.reset();
+                    recording.clear();
+                    extractor.process(pending, 0, preRoll.drainTo(pending),
+                            enrolling != null ? record : spot);
+                }
+                if (detector.isSpeech() || event == VoiceActivityDetector.Event.END) {
+                    extractor.process(frame, 0, frame.length, enrolling != null ? record : spot);
+                } else {
+                    preRoll.write(frame, 0, frame.length);
+                }
+                if (event == VoiceActivityDetector.Event.END && enrolling != null) {
+                    finishEnrollment(enrolling);
+                    enrolling = null;
+                }
+            }
+        } finally {
+            microphone.stop();
+            microphone.release();
+        }
+    }
+
+    private void spot(float[] mfcc) {
+        String phrase = spotter.onFrame(mfcc);
+        if (phrase == null) return;
+        long speechNanos = spotter.getLastSpanFrames() * hopNanos;
+        Log.d("SpeechService", String.format(Locale.US, "Spotted \"%s\" cost=%.3f %.0fms",
+                phrase, spotter.getLastCost(), spotter.getLastFrames() * hopNanos / 1e6));
+        handler.post(() -> dispatch(phrase, speechNanos));
+    }
+
+    private void dispatch(String phrase, long speechNanos) {
+        CommandGrammar.CommandMatch match = matcher.match(phrase);
+        if (match != null) listener.onCommand(match, false, speechNanos);
+    }
+
+    // The recording ends with the hangover, which is silence
+    private void finishEnrollment(String phrase) {
+        enrollPhrase = null;
+        int keep = recording.size() - (int) (HANGOVER_MS * 1_000_000L / hopNanos);
+        if (keep < 10) {
+            Log.d("SpeechService", "Enrollment of \"" + phrase + "\" too short, ignored");
+            return;
+        }
+        float[][] mfcc = recording.subList(0, keep).toArray(new float[0][]);
+        try {
+            templates.add(phrase, mfcc, TEMPLATES_PER_PHRASE);
+        } catch (IOException e) {
+            Log.e("SpeechService", "Saving keyword templates failed", e);
+        }
+        spotter.addTemplate(phrase, mfcc);
+        Log.d("SpeechService", "Enrolled \"" + phrase + "\", " + keep + " frames");
+    }
+}
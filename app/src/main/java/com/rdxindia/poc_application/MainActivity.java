@@ -6,70 +6,220 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.pm.PackageManager;
+import android.content.res.Configuration;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.Rect;
-import android.location.Location;
-import android.media.ExifInterface;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Environment;
-import android.os.Handler;
+import android.os.SystemClock;
 import android.util.Log;
+import android.util.Size;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.camera.core.Camera;
 import androidx.camera.core.CameraControl;
 import androidx.camera.core.CameraSelector;
+import androidx.camera.core.CameraState;
+import androidx.camera.core.FocusMeteringAction;
+import androidx.camera.core.FocusMeteringResult;
+import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.ImageCapture;
 import androidx.camera.core.ImageCaptureException;
+import androidx.camera.core.ImageProxy;
+import androidx.camera.core.MeteringPoint;
 import androidx.camera.core.Preview;
+import androidx.camera.core.SurfaceOrientedMeteringPointFactory;
+import androidx.camera.core.ZoomState;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.camera.view.PreviewView;
 import androidx.core.content.ContextCompat;
+import androidx.lifecycle.Observer;
 
-import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.LocationRequest;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import java.io.File;
+import java.io.FileDescriptor;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 
 public class MainActivity extends AppCompatActivity {
 
+    // Stamp overlay and EXIF in memory from the captured ImageProxy instead of
+    // re-opening, decoding and rewriting the file CameraX saved
+    private static final boolean IN_MEMORY_CAPTURE = true;
+    private static final int BURST_SIZE = 5;
+    private static final int MAX_BURST_SIZE = 20;
+    private static final int POST_QUEUE_CAPACITY = 8;
+    // Commands spoken while paused that are still acted on when we come back
+    private static final int COMMAND_REPLAY_LIMIT = 4;
+    private static final long COMMAND_REPLAY_MAX_AGE_NANOS = TimeUnit.SECONDS.toNanos(10);
+    // A command repeated within this is taken as the same request, e.g. a
+    // "take a photo" heard again while the first shot is still under way
+    private static final long COMMAND_COALESCE_NANOS = TimeUnit.MILLISECONDS.toNanos(1500);
+    private static final int COMMAND_QUEUE_CAPACITY = 4;
+    private static final long COMMAND_MAX_WAIT_NANOS = TimeUnit.SECONDS.toNanos(15);
+    private static final long THUMBNAIL_MEMORY_BYTES = 32L * 1024 * 1024;
+    // Direct buffers for frames in flight; a burst beyond them allocates
+    private static final int FRAME_BUFFERS = 4;
+    private static final int FRAME_BUFFER_BYTES = 8 * 1024 * 1024;
+    // Location power budget while the camera is open
+    private static final long LOCATION_INTERVAL_MS = 5000;
+    private static final int LOCATION_PRIORITY = LocationRequest.PRIORITY_HIGH_ACCURACY;
+    // A capture waits briefly for a fix younger than 30s and within 50m
+    private static final FixPolicy LOCATION_POLICY = new FixPolicy(
+            TimeUnit.SECONDS.toNanos(30), 50f, TimeUnit.MILLISECONDS.toNanos(1500));
+    // Detection gets at most half the time, on frames small enough to copy cheaply
+    private static final double DETECTION_DUTY_CYCLE = 0.5;
+    private static final Size ANALYSIS_RESOLUTION = new Size(640, 480);
+    // Camera steps report their own completion; these only bound one that never does
+    private static final long ZOOM_TIMEOUT_MS = 2000;
+    private static final long FOCUS_TIMEOUT_MS = 1500;
+    private static final long SHOT_TIMEOUT_MS = 3000;
+    private static final long PROFILE_TIMEOUT_MS = 1000;
+    // Shots go back to a heavier capture profile only after the pipeline has
+    // not asked for a lighter one for this long
+    private static final long PROFILE_UPGRADE_HOLD_MS = 5000;
+    // Voice-to-file stage latencies, for dumpsys and latency.txt
+    private static final boolean TRACE_LATENCY = true;
+    // Work that waits for the first preview frame, unless the camera is this late
+    private static final long DEFERRED_START_TIMEOUT_MS = 2000;
+    // Time to first preview frame and to capture ready, for every start in the process
+    private static final LatencyHistogram FIRST_FRAME_LATENCY = new LatencyHistogram("first frame");
+    private static final LatencyHistogram CAPTURE_READY_LATENCY =
+            new LatencyHistogram("capture ready");
+    // Near-copies of the last few minutes of shots are dropped or linked, for
+    // every activity in the process
+    private static final DuplicateDetector DUPLICATES = new DuplicateDetector(
+            new DuplicateDetector.RadiusPolicy(), 256, TimeUnit.MINUTES.toMillis(2));
+
     private PreviewView previewView;
     private TextView statusText;
     private ProcessCameraProvider cameraProvider;
+    private CameraBinding cameraBinding;
+    private StartupTimer startup;
+    private Preview preview;
     private ImageCapture imageCapture;
+    private ImageAnalysis imageAnalysis;
     private Camera camera;
+    private final Observer<CameraState> cameraStateObserver = this::onCameraState;
+    private boolean deferredStarted;
+    private final Runnable deferredStart = this::startDeferred;
+    private int lensFacing = CameraSelector.LENS_FACING_BACK;
     private ExecutorService cameraExecutor;
-    private FusedLocationProviderClient fusedLocationClient;
-    private Location lastKnownLocation;
+    private ExecutorService analysisExecutor;
+    private MlKitFrameDetector objectDetector;
+    private FrameScheduler frameScheduler;
+    private final AnalysisFrame analysisFrame = new AnalysisFrame();
+    // Centred within 10% of the frame for three detections in a row
+    private final CenterTrigger centerTrigger = new CenterTrigger(0.1f, 0.5f, 3);
+    private final LocationTracker locationTracker =
+            new LocationTracker(SystemClock::elapsedRealtimeNanos);
+    private FusedLocationSource locationSource;
+    private PostProcessor postProcessor;
+    private final AtomicInteger burstRemaining = new AtomicInteger();
+    private CaptureProfileEngine captureProfiles;
+    // What imageCapture was built with; read by the shot callbacks
+    private volatile CaptureProfile captureProfile = CaptureProfile.BALANCED;
+    private final Runnable profileReview = this::reviewCaptureProfile;
+    // Asked by the speech service before each interval shot
+    private final BooleanSupplier captureReadiness = this::isReadyForIntervalShot;
+    private final LatencyTracer tracer = LatencyTracer.getDefault();
+    private CameraSequencer cameraSequencer;
+    private ScheduledExecutorService sequenceTimer;
+    private CommandScheduler commandScheduler;
+    // Told when the shutter step of the running sequence is over
+    private final AtomicReference<CameraSequencer.Done> shutterDone = new AtomicReference<>();
+    private int burstShot;
+    // CapturePipeline keeps scratch buffers, so every worker gets its own
+    private final ThreadLocal<CapturePipeline> capturePipeline =
+            ThreadLocal.withInitial(CapturePipeline::new);
+    // Shots are named on the main thread and, during a burst, the camera executor
+    private final ThreadLocal<CaptureNames> captureNames =
+            ThreadLocal.withInitial(CaptureNames::new);
+    private final ThreadLocal<PerceptualHash> perceptualHash =
+            ThreadLocal.withInitial(PerceptualHash::new);
+
+    private CommandBus.Subscription commandSubscription;
+
+    // One journal and photo index per process, opened by the first activity;
+    // either is null if it could not be opened, and captures go on without it.
+    // Volatile: set on the camera executor, read by the post-processing
+    // workers, the export service and the preview loader
+    private static volatile CaptureStore captureStore;
+    private static volatile CaptureJournal captureJournal;
+    private static volatile PhotoIndex photoIndex;
+    private static volatile ThumbnailCache thumbnailCache;
+    private static boolean captureStorageOpened;
+    private static boolean photoIndexOpened;
+    private volatile File lastSavedFile;
+
+    // Voice commands from the in-process bus
+    private final CommandBus.Listener voiceCommandListener = event -> {
+        Log.d("MainActivity", String.format(Locale.US,
+                "Voice command received: %s via bus in %.3fms (%s)", event.getCommand(),
+                event.getLatencyNanos() / 1e6, CommandBus.getDefault()));
+        commandScheduler.submit(event.getCommand(), event.getValue(), event.getSecondValue(),
+                event.getTraceId());
+    };
+
+    // Commands come out of the scheduler here, camera ones one at a time
+    private final CommandScheduler.Dispatcher commandDispatcher =
+            new CommandScheduler.Dispatcher() {
+                @Override
+                public void dispatch(CommandScheduler.Command command, Runnable done) {
+                    onVoiceCommand(command.getName(), command.getValue(),
+                            command.getSecondValue(), command.getTraceId(), done);
+                }
 
-    // Receiver for voice commands
+                @Override
+                public void discarded(CommandScheduler.Command command,
+                                      CommandScheduler.Outcome outcome) {
+                    Log.d("MainActivity", "Voice command " + command + " "
+                            + outcome.name().toLowerCase(Locale.US) + ": " + commandScheduler);
+                }
+            };
+
+    // Receiver for voice commands when they are sent as broadcasts
     private final BroadcastReceiver voiceCommandReceiver = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, Intent intent) {
-            if ("VOICE_COMMAND".equals(intent.getAction())) {
-                String command = intent.getStringExtra("command");
+            if (VoiceCommands.ACTION.equals(intent.getAction())) {
+                String command = intent.getStringExtra(VoiceCommands.EXTRA_COMMAND);
+                int value = intent.getIntExtra(VoiceCommands.EXTRA_VALUE, CommandBus.NO_VALUE);
+                int secondValue = intent.getIntExtra(VoiceCommands.EXTRA_SECOND_VALUE,
+                        CommandBus.NO_VALUE);
+                long sentAt = intent.getLongExtra(VoiceCommands.EXTRA_SENT_AT, System.nanoTime());
+                long trace = intent.getLongExtra(VoiceCommands.EXTRA_TRACE_ID,
+                        LatencyTracer.NO_TRACE);
                 if (command != null) {
-                    Log.d("MainActivity", "Voice command received: " + command);
-                    onVoiceCommand(command);
+                    Log.d("MainActivity", String.format(Locale.US,
+                            "Voice command received: %s via broadcast in %.3fms",
+                            command, (System.nanoTime() - sentAt) / 1e6));
+                    commandScheduler.submit(command, value, secondValue, trace);
                 }
             }
         }
@@ -78,31 +228,83 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        startup = PocApplication.takeStartupTimer(SystemClock.elapsedRealtimeNanos());
+        startup.mark(StartupTimer.Milestone.ACTIVITY);
         setContentView(R.layout.activity_main);
 
         previewView = findViewById(R.id.cameraPreview);
         statusText = findViewById(R.id.statusText);
+        statusText.setOnClickListener(v -> openPreview());
+        statusText.setOnLongClickListener(v -> {
+            chooseKeywordToEnroll();
+            return true;
+        });
+
+        // The provider was warmed at process start; binding waits for it once
+        cameraBinding = new CameraBinding(this::bindUseCases);
+        ListenableFuture<ProcessCameraProvider> providerFuture =
+                PocApplication.getCameraProvider(this);
+        providerFuture.addListener(() -> {
+            try {
+                cameraProvider = providerFuture.get();
+            } catch (Exception e) {
+                Log.e("MainActivity", "Camera provider unavailable", e);
+                return;
+            }
+            startup.mark(StartupTimer.Milestone.PROVIDER);
+            cameraBinding.onProviderReady();
+        }, ContextCompat.getMainExecutor(this));
+        previewView.getPreviewStreamState().observe(this, state -> {
+            if (state == PreviewView.StreamState.STREAMING
+                    && startup.mark(StartupTimer.Milestone.FIRST_FRAME)) {
+                FIRST_FRAME_LATENCY.record(startup.getNanos(StartupTimer.Milestone.FIRST_FRAME));
+                onStartupProgress();
+                startDeferred();
+            }
+        });
 
-        // Initialize the camera
         cameraExecutor = Executors.newSingleThreadExecutor();
-        // Start Speech Recognition Service
-        Intent speechServiceIntent = new Intent(this, SpeechRecognitionService.class);
-        startService(speechServiceIntent);
-        fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
-        fetchLocation();
+        tracer.setEnabled(TRACE_LATENCY);
+        sequenceTimer = Executors.newSingleThreadScheduledExecutor();
+        cameraSequencer = new CameraSequencer(ContextCompat.getMainExecutor(this), sequenceTimer);
+        commandScheduler = new CommandScheduler(VoiceCommands::schedulingRule, commandDispatcher,
+                COMMAND_COALESCE_NANOS, COMMAND_QUEUE_CAPACITY, COMMAND_MAX_WAIT_NANOS,
+                System::nanoTime);
+        postProcessor = PostProcessor.forDevice(POST_QUEUE_CAPACITY, PostProcessor.Policy.DEGRADE)
+                .setFailureListener((job, error) -> Log.e("PhotoSave",
+                        "Post-processing job failed: " + postProcessor, error));
+        captureProfiles = new CaptureProfileEngine(new CaptureProfileEngine.LoadPolicy(),
+                captureProfile, System::nanoTime,
+                TimeUnit.MILLISECONDS.toNanos(PROFILE_UPGRADE_HOLD_MS));
+        synchronized (MainActivity.class) {
+            if (captureStore == null) {
+                File library = photoLibraryDir();
+                captureStore = new CaptureStore(library, new File(getFilesDir(), "capture-spool"),
+                        FRAME_BUFFERS, FRAME_BUFFER_BYTES, new MediaStorePublisher(this));
+            }
+        }
+        // Runs before any capture callback, which share this executor
+        cameraExecutor.execute(this::recoverCaptures);
+        // Detection only runs while auto capture is waiting for an object
+        analysisExecutor = Executors.newSingleThreadExecutor();
+        objectDetector = new MlKitFrameDetector();
+        frameScheduler = new FrameScheduler(objectDetector, this::onDetections,
+                DETECTION_DUTY_CYCLE, System::nanoTime);
+        frameScheduler.setEnabled(false);
+        locationSource = new FusedLocationSource(this, locationTracker,
+                LOCATION_INTERVAL_MS, LOCATION_PRIORITY);
+        previewView.postDelayed(deferredStart, DEFERRED_START_TIMEOUT_MS);
         requestPermissions();
     }
-    // Add location fetch method
-    private void fetchLocation() {
-        if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
-                == PackageManager.PERMISSION_GRANTED) {
-            fusedLocationClient.getLastLocation()
-                    .addOnSuccessListener(this, location -> {
-                        if (location != null) {
-                            lastKnownLocation = location;
-                        }
-                    });
-        }
+
+    // What the first frame does not need: the speech service, whose start
+    // runs on this thread, waits for the preview
+    private void startDeferred() {
+        if (deferredStarted) return;
+        deferredStarted = true;
+        previewView.removeCallbacks(deferredStart);
+        previewView.removeCallbacks(profileReview);
+        startService(new Intent(this, SpeechRecognitionService.class));
     }
 
     // Update onResume() for proper receiver registration
@@ -110,18 +312,99 @@ public class MainActivity extends AppCompatActivity {
     @Override
     protected void onResume() {
         super.onResume();
-        IntentFilter filter = new IntentFilter("VOICE_COMMAND");
-        registerReceiver(voiceCommandReceiver, filter, Context.RECEIVER_NOT_EXPORTED);
+        if (VoiceCommands.DELIVER_BY_BROADCAST) {
+            IntentFilter filter = new IntentFilter(VoiceCommands.ACTION);
+            registerReceiver(voiceCommandReceiver, filter, Context.RECEIVER_NOT_EXPORTED);
+        } else {
+            commandSubscription = CommandBus.getDefault().subscribe(voiceCommandListener,
+                    ContextCompat.getMainExecutor(this),
+                    COMMAND_REPLAY_LIMIT, COMMAND_REPLAY_MAX_AGE_NANOS);
+        }
+        PocApplication.setCaptureReadiness(captureReadiness);
 
-        if (cameraProvider == null) {
-            initializeCamera();
+        // Before the permission is granted, its callback asks instead
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA)
+                == PackageManager.PERMISSION_GRANTED) {
+            cameraBinding.request(lensFacing);
         }
+        locationSource.start();
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        unregisterReceiver(voiceCommandReceiver);
+        locationSource.stop();
+        PocApplication.clearCaptureReadiness(captureReadiness);
+        if (VoiceCommands.DELIVER_BY_BROADCAST) {
+            unregisterReceiver(voiceCommandReceiver);
+        } else if (commandSubscription != null) {
+            commandSubscription.detach();
+            commandSubscription = null;
+        }
+        writeLatencyReport();
+    }
+
+    // Readable with: adb shell dumpsys activity com.rdxindia.poc_application/.MainActivity
+    @Override
+    public void dump(@NonNull String prefix, @Nullable FileDescriptor fd,
+                     @NonNull PrintWriter writer, @Nullable String[] args) {
+        super.dump(prefix, fd, writer, args);
+        writer.println(prefix + "Latency:");
+        writer.println(latencyReport());
+    }
+
+    private String latencyReport() {
+        return tracer.dump()
+                + "post-processing: " + postProcessor + "\n"
+                + "capture profile: " + captureProfiles + "\n"
+                + "duplicates: " + DUPLICATES + "\n"
+                + "detection: " + frameScheduler + "\n"
+                + "thumbnails: " + thumbnailCache + "\n"
+                + "storage: " + captureStore + "\n"
+                + "commands: " + CommandBus.getDefault() + "\n"
+                + "command scheduling: " + commandScheduler + "\n"
+                + "startup: " + startup + ", " + cameraBinding + "\n"
+                + FIRST_FRAME_LATENCY + "\n"
+                + CAPTURE_READY_LATENCY + "\n";
+    }
+
+    // Left in the app's external files dir for adb pull
+    private void writeLatencyReport() {
+        File dir = getExternalFilesDir(null);
+        if (dir == null || !tracer.isEnabled()) return;
+        String report = latencyReport();
+        cameraExecutor.execute(() -> {
+            try (FileOutputStream out = new FileOutputStream(new File(dir, "latency.txt"))) {
+                out.write(report.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                Log.w("MainActivity", "Could not write latency report", e);
+            }
+        });
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        ThumbnailCache cache = thumbnailCache;
+        if (cache != null && level >= TRIM_MEMORY_BACKGROUND) {
+            Log.d("MainActivity", "Trimming thumbnails: " + cache);
+            cache.trimMemory();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // Frames already handed over still get written
+        postProcessor.shutdown();
+        cameraExecutor.shutdown();
+        analysisExecutor.shutdown();
+        objectDetector.close();
+        commandScheduler.clear();
+        cameraSequencer.cancelAll();
+        sequenceTimer.shutdown();
+        previewView.removeCallbacks(deferredStart);
+        previewView.removeCallbacks(profileReview);
     }
 
     // Request necessary permissions
@@ -141,203 +424,894 @@ public class MainActivity extends AppCompatActivity {
                             if (!allGranted) {
                                 Toast.makeText(this, "Permissions required!", Toast.LENGTH_LONG).show();
                             } else {
-                                initializeCamera();
+                                cameraBinding.request(lensFacing);
+                            }
+                            if (Boolean.TRUE.equals(result.get(Manifest.permission.ACCESS_FINE_LOCATION))) {
+                                locationSource.start();
                             }
                         });
         requestPermissionsLauncher.launch(permissions);
     }
 
-    // Initialize the CameraProvider
-    private void initializeCamera() {
-        ListenableFuture<ProcessCameraProvider> cameraProviderFuture = ProcessCameraProvider.getInstance(this);
-        cameraProviderFuture.addListener(() -> {
-            try {
-                cameraProvider = cameraProviderFuture.get();
+    // Builds the use cases once and binds them to the lens; CameraBinding
+    // makes sure this only runs when the lens actually changes
+    private boolean bindUseCases(int facing) {
+        if (preview == null) {
+            preview = new Preview.Builder().build();
+            preview.setSurfaceProvider(previewView.getSurfaceProvider());
+
+            imageCapture = buildImageCapture(captureProfile);
 
-                CameraSelector cameraSelector = new CameraSelector.Builder()
-                        .requireLensFacing(CameraSelector.LENS_FACING_BACK)
-                        .build();
+            imageAnalysis = new ImageAnalysis.Builder()
+                    .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                    .setOutputImageFormat(ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888)
+                    .setTargetResolution(ANALYSIS_RESOLUTION)
+                    .build();
+            imageAnalysis.setAnalyzer(analysisExecutor, image -> {
+                try {
+                    frameScheduler.offer(analysisFrame.wrap(image));
+                } finally {
+                    image.close();
+                }
+            });
+        }
 
-                Preview preview = new Preview.Builder().build();
-                preview.setSurfaceProvider(previewView.getSurfaceProvider());
+        CameraSelector cameraSelector = new CameraSelector.Builder()
+                .requireLensFacing(facing)
+                .build();
+        if (camera != null) {
+            camera.getCameraInfo().getCameraState().removeObserver(cameraStateObserver);
+        }
+        try {
+            cameraProvider.unbindAll();
+            try {
+                camera = imageAnalysis == null
+                        ? cameraProvider.bindToLifecycle(this, cameraSelector, preview, imageCapture)
+                        : cameraProvider.bindToLifecycle(this, cameraSelector,
+                                preview, imageCapture, imageAnalysis);
+            } catch (IllegalArgumentException e) {
+                // Some devices cannot stream analysis next to capture
+                Log.w("MainActivity", "Binding without object detection", e);
+                imageAnalysis = null;
+                camera = cameraProvider.bindToLifecycle(this, cameraSelector,
+                        preview, imageCapture);
+            }
+        } catch (Exception e) {
+            Log.e("MainActivity", "Camera initialization failed", e);
+            camera = null;
+            return false;
+        }
 
-                imageCapture = new ImageCapture.Builder().build();
+        startup.mark(StartupTimer.Milestone.BOUND);
+        camera.getCameraInfo().getCameraState().observe(this, cameraStateObserver);
+        Log.d("MainActivity", "Camera bound: " + cameraBinding + ", " + startup);
+        return true;
+    }
 
-                cameraProvider.unbindAll();
-                camera = cameraProvider.bindToLifecycle(this, cameraSelector, preview, imageCapture);
+    private ImageCapture buildImageCapture(CaptureProfile profile) {
+        ImageCapture.Builder builder = new ImageCapture.Builder()
+                .setCaptureMode(profile.getMode() == CaptureProfile.Mode.MAXIMIZE_QUALITY
+                        ? ImageCapture.CAPTURE_MODE_MAXIMIZE_QUALITY
+                        : ImageCapture.CAPTURE_MODE_MINIMIZE_LATENCY)
+                .setJpegQuality(profile.getJpegQuality());
+        if (profile.hasTargetResolution()) {
+            // CameraX wants the size the way the display is turned
+            boolean portrait = getResources().getConfiguration().orientation
+                    == Configuration.ORIENTATION_PORTRAIT;
+            builder.setTargetResolution(portrait
+                    ? new Size(profile.getTargetHeight(), profile.getTargetWidth())
+                    : new Size(profile.getTargetWidth(), profile.getTargetHeight()));
+        }
+        return builder.build();
+    }
 
-                Log.d("MainActivity", "Camera initialized successfully.");
-            } catch (Exception e) {
-                Log.e("MainActivity", "Camera initialization failed", e);
+    // Picks the profile for the shots about to be taken from the pipeline's
+    // load, rebinding the capture use case if it changes. Runs as the first
+    // step of a sequence so a running burst is never rebound under.
+    private CameraSequencer.Step chooseProfile(int shots) {
+        return done -> {
+            Runtime runtime = Runtime.getRuntime();
+            long used = runtime.totalMemory() - runtime.freeMemory();
+            CaptureLoad load = new CaptureLoad()
+                    .setShots(shots)
+                    .setPendingJobs(postProcessor.getQueueDepth() + postProcessor.getActiveCount(),
+                            POST_QUEUE_CAPACITY)
+                    .setHeap(runtime.maxMemory() - used, runtime.maxMemory())
+                    .setStorageBytesPerSecond(captureStore.getWriteBytesPerSecond());
+            CaptureProfileEngine.Decision decision = captureProfiles.decide(load);
+            Log.d("MainActivity", "Capture profile: " + decision);
+            CaptureProfile profile = decision.getProfile();
+            if (!profile.equals(captureProfile)) {
+                captureProfile = profile;
+                // Not built yet, the first bind picks it up
+                if (imageCapture != null) {
+                    imageCapture = buildImageCapture(profile);
+                    cameraBinding.invalidate();
+                    cameraBinding.request(lensFacing);
+                }
             }
-        }, ContextCompat.getMainExecutor(this));
+            done.succeeded();
+        };
     }
 
-    // Handle voice command
-    private void onVoiceCommand(String command) {
+    // Once the queue drains and the hold is over, a heavier profile is bound
+    // ahead of the next single shot instead of when it is asked for
+    private void scheduleProfileReview() {
+        if (postProcessor.getQueueDepth() > 0 || burstRemaining.get() > 0) return;
+        runOnUiThread(() -> {
+            previewView.removeCallbacks(profileReview);
+            previewView.postDelayed(profileReview, PROFILE_UPGRADE_HOLD_MS);
+        });
+    }
+
+    private void reviewCaptureProfile() {
+        if (isFinishing()) return;
+        cameraSequencer.sequence("capture profile")
+                .then("profile", PROFILE_TIMEOUT_MS, TimeUnit.MILLISECONDS, true, chooseProfile(1))
+                .submit(this::onSequenceFinished);
+    }
+
+    // An interval shot is skipped rather than queued behind a running
+    // sequence, a burst or a post-processing queue that is already degrading
+    private boolean isReadyForIntervalShot() {
+        return imageCapture != null && shutterDone.get() == null && burstRemaining.get() == 0
+                && postProcessor.getQueueDepth() < (POST_QUEUE_CAPACITY + 1) / 2;
+    }
+
+    private void onCameraState(CameraState state) {
+        if (state.getType() == CameraState.Type.OPEN
+                && startup.mark(StartupTimer.Milestone.CAPTURE_READY)) {
+            CAPTURE_READY_LATENCY.record(startup.getNanos(StartupTimer.Milestone.CAPTURE_READY));
+            onStartupProgress();
+        }
+    }
+
+    private void onStartupProgress() {
+        if (startup.isComplete()) Log.d("MainActivity", "Startup: " + startup);
+    }
+
+    // Handle voice command; values are the spoken numbers, or -1. A camera
+    // command runs done once its sequence is over and the next may start
+    private void onVoiceCommand(String command, int value, int secondValue, long trace,
+                                Runnable done) {
         Log.d("MainActivity", "Processing voice command: " + command);
-        boolean containsPhotoCommand = command.contains("take a photo") || command.contains("zoom");
-        boolean zoomCommand = command.contains("zoom");
+        tracer.mark(trace, LatencyTracer.Stage.DELIVERED);
+        switch (command) {
+            case VoiceCommands.TAKE_PHOTO:
+                capture(1, trace, done);
+                break;
+            case VoiceCommands.TAKE_PHOTOS:
+                capture(Math.max(1, Math.min(value, MAX_BURST_SIZE)), trace, done);
+                break;
+            case VoiceCommands.BURST:
+                capture(BURST_SIZE, trace, done);
+                break;
+            case VoiceCommands.ZOOM:
+                updateStatusText("Zooming and capturing...");
+                zoomAndCapture(value, 1, trace, done);
+                break;
+            case VoiceCommands.ZOOM_AND_TAKE_PHOTOS:
+                updateStatusText("Zooming and capturing...");
+                zoomAndCapture(value, Math.max(1, Math.min(secondValue, MAX_BURST_SIZE)), trace,
+                        done);
+                break;
+            case VoiceCommands.ZOOM_OUT:
+                cameraSequencer.sequence("zoom out")
+                        .thenFuture("zoom", ZOOM_TIMEOUT_MS, TimeUnit.MILLISECONDS, true,
+                                () -> setZoom(0.0f))
+                        .submit(sequenceListener(null, done));
+                break;
+            case VoiceCommands.FRONT_CAMERA:
+                switchCamera(CameraSelector.LENS_FACING_FRONT);
+                done.run();
+                break;
+            case VoiceCommands.BACK_CAMERA:
+                switchCamera(CameraSelector.LENS_FACING_BACK);
+                done.run();
+                break;
+            case VoiceCommands.CANCEL:
+                // The scheduler has already thrown out the queued commands
+                updateStatusText("Cancelled");
+                break;
+            case VoiceCommands.INTERVAL_CAPTURE:
+                // Timed by the speech service, which sends each shot
+                updateStatusText(String.format(Locale.US, "Photo every %ds for %d min",
+                        value, secondValue));
+                break;
+            case VoiceCommands.INTERVAL_STOP:
+                updateStatusText("Interval capture stopped");
+                break;
+            case VoiceCommands.INTERVAL_SHOT:
+                Log.d("MainActivity", "Interval shot " + value + "/" + secondValue);
+                capture(1, trace, done);
+                break;
+            case VoiceCommands.AUTO_SHOT:
+                capture(1, trace, done);
+                break;
+            case VoiceCommands.AUTO_CAPTURE_OFF:
+                centerTrigger.disarm();
+                frameScheduler.setEnabled(false);
+                updateStatusText("Auto capture off");
+                break;
+            default:
+                if (command.startsWith(VoiceCommands.AUTO_CAPTURE)) {
+                    startAutoCapture(VoiceCommands.autoCaptureLabel(command));
+                } else {
+                    updateStatusText("Unrecognized command: " + command);
+                }
+                break;
+        }
+    }
+
+    private void capture(int count, long trace, Runnable done) {
+        Shutter shutter = new Shutter(count, trace);
+        cameraSequencer.sequence(count == 1 ? "photo" : "burst of " + count)
+                .then("profile", PROFILE_TIMEOUT_MS, TimeUnit.MILLISECONDS, false,
+                        chooseProfile(count))
+                .then("capture", SHOT_TIMEOUT_MS * count, TimeUnit.MILLISECONDS, true,
+                        shutter)
+                .submit(sequenceListener(shutter, done));
+    }
+
+    private CameraSequencer.Listener sequenceListener(Shutter shutter, Runnable done) {
+        return sequence -> {
+            if (shutter != null) shutter.release();
+            onSequenceFinished(sequence);
+            done.run();
+        };
+    }
+
+    // Zoom, then focus on the centre, then shoot and zoom back out, each step
+    // starting when the camera reports the previous one done
+    private void zoomAndCapture(int ratio, int count, long trace, Runnable done) {
+        Shutter shutter = new Shutter(count, trace);
+        // Rebinding resets the zoom, so the profile comes first
+        cameraSequencer.sequence(ratio > 0 ? "zoom " + ratio + "x" : "zoom")
+                .then("profile", PROFILE_TIMEOUT_MS, TimeUnit.MILLISECONDS, false,
+                        chooseProfile(count))
+                .thenFuture("zoom", ZOOM_TIMEOUT_MS, TimeUnit.MILLISECONDS, true,
+                        () -> ratio > 0 ? setZoomRatio(ratio) : setZoom(0.5f))
+                .thenFuture("focus", FOCUS_TIMEOUT_MS, TimeUnit.MILLISECONDS, false,
+                        this::focusOnCenter)
+                .then("capture", SHOT_TIMEOUT_MS * count, TimeUnit.MILLISECONDS, false,
+                        shutter)
+                .thenFuture("zoom out", ZOOM_TIMEOUT_MS, TimeUnit.MILLISECONDS, false,
+                        () -> setZoom(0.0f))
+                .submit(sequenceListener(shutter, done));
+    }
+
+    // The capture step of one sequence: done once the last shot has been
+    // handed over, before post-processing. Released when its sequence ends, so
+    // a step that timed out stops counting as a capture in progress
+    private final class Shutter implements CameraSequencer.Step {
+        private final int count;
+        private final long trace;
+        private volatile CameraSequencer.Done step;
+
+        Shutter(int count, long trace) {
+            this.count = count;
+            this.trace = trace;
+        }
+
+        @Override
+        public void start(CameraSequencer.Done done) {
+            if (imageCapture == null) {
+                updateStatusText("Camera not ready");
+                done.failed(new IllegalStateException("ImageCapture is null"));
+                return;
+            }
+            step = done;
+            shutterDone.set(done);
+            if (count == 1) {
+                takePhoto(trace);
+            } else if (!startBurst(count, trace)) {
+                finishShutter(done, new IllegalStateException("Burst already running"));
+            }
+        }
 
-        if (zoomCommand) {
-            // Set zoom first
-            setZoom(0.5f);
-            updateStatusText("Zooming and capturing...");
+        void release() {
+            CameraSequencer.Done done = step;
+            if (done != null && shutterDone.compareAndSet(done, null)) {
+                // Timed out or cancelled with shots outstanding
+                burstRemaining.set(0);
+            }
+        }
+    }
+
+    // Only the step that took the shot is completed; a callback from a step
+    // that has been released since is ignored
+    private void finishShutter(CameraSequencer.Done step, Exception error) {
+        if (step == null || !shutterDone.compareAndSet(step, null)) return;
+        if (error == null) {
+            step.succeeded();
+        } else {
+            step.failed(error);
+        }
+    }
+
+    private void onSequenceFinished(CameraSequencer.Sequence sequence) {
+        Log.d("MainActivity", "Camera sequence " + sequence);
+        for (int i = 0; i < sequence.getStepCount(); i++) {
+            Exception error = sequence.getStepError(i);
+            if (error != null) {
+                Log.w("MainActivity", sequence.getName() + ": " + sequence.getStepName(i)
+                        + " failed", error);
+            }
+        }
+    }
 
-            // Capture after 500ms delay to ensure zoom applied
-            new Handler().postDelayed(() -> {
-                takePhoto(true); // true = reset zoom after capture
-            }, 500);
+    private ListenableFuture<FocusMeteringResult> focusOnCenter() {
+        if (camera == null) return null;
+        MeteringPoint center = new SurfaceOrientedMeteringPointFactory(1f, 1f)
+                .createPoint(0.5f, 0.5f);
+        FocusMeteringAction action = new FocusMeteringAction.Builder(center,
+                FocusMeteringAction.FLAG_AF | FocusMeteringAction.FLAG_AE)
+                .setAutoCancelDuration(5, TimeUnit.SECONDS)
+                .build();
+        return camera.getCameraControl().startFocusAndMetering(action);
+    }
+
+    private void startAutoCapture(String label) {
+        if (imageAnalysis == null) {
+            updateStatusText("Object detection not available");
+            return;
         }
-        else if (containsPhotoCommand) {
-            takePhoto(false); // Normal capture without zoom
+        centerTrigger.arm(label);
+        frameScheduler.setEnabled(true);
+        updateStatusText("Waiting for " + (label == null ? "an object" : label)
+                + " to be centered...");
+    }
+
+    // Delivered on the main thread by the detector
+    private void onDetections(List<Detection> detections) {
+        Detection centered = centerTrigger.onDetections(detections);
+        if (centered == null) return;
+        frameScheduler.setEnabled(false);
+        Log.d("MainActivity", "Auto capture on " + centered + ": " + frameScheduler);
+        // Queued like a spoken command; the scheduler lives on the main thread
+        runOnUiThread(() -> commandScheduler.submit(VoiceCommands.AUTO_SHOT,
+                CommandBus.NO_VALUE, CommandBus.NO_VALUE, LatencyTracer.NO_TRACE));
+    }
+
+    private void switchCamera(int facing) {
+        if (facing == lensFacing) return;
+        lensFacing = facing;
+        updateStatusText(facing == CameraSelector.LENS_FACING_FRONT ? "Front camera" : "Back camera");
+        cameraBinding.request(facing);
+    }
+
+    private ListenableFuture<Void> setZoomRatio(float ratio) {
+        if (camera == null) {
+            Log.e("MainActivity", "Camera not initialized, cannot set zoom.");
+            updateStatusText("Camera not ready for zoom");
+            return null;
         }
-        else {
-            updateStatusText("Unrecognized command: " + command);
+        ZoomState zoom = camera.getCameraInfo().getZoomState().getValue();
+        if (zoom != null) {
+            ratio = Math.max(zoom.getMinZoomRatio(), Math.min(ratio, zoom.getMaxZoomRatio()));
         }
+        updateStatusText(String.format(Locale.US, "Zoom set to %.1fx", ratio));
+        return camera.getCameraControl().setZoomRatio(ratio);
     }
 
-    private void setZoom(float zoomLevel) {
+    private ListenableFuture<Void> setZoom(float zoomLevel) {
         if (camera == null) {
             Log.e("MainActivity", "Camera not initialized, cannot set zoom.");
             updateStatusText("Camera not ready for zoom");
-            return;
+            return null;
         }
         try {
             CameraControl control = camera.getCameraControl();
-            control.setLinearZoom(zoomLevel); // Use parameter instead of hardcoded 0.5
+            ListenableFuture<Void> zoomed = control.setLinearZoom(zoomLevel);
             updateStatusText("Zoom set to " + (zoomLevel * 100) + "%");
+            return zoomed;
         } catch (Exception e) {
             Log.e("MainActivity", "Error setting zoom", e);
             updateStatusText("Zoom failed");
+            return null;
         }
     }
 
-    private void takePhoto(boolean resetZoom) {
+    // Shots follow each other as soon as the previous frame is handed over
+    // Only the first shot carries the command's trace
+    private boolean startBurst(int count, long trace) {
+        if (!burstRemaining.compareAndSet(0, count)) {
+            updateStatusText("Burst already running");
+            return false;
+        }
+        burstShot = 0;
+        updateStatusText("Burst of " + count + "...");
+        takePhoto(trace);
+        return true;
+    }
+
+    private void takePhoto(long trace) {
         if (imageCapture == null) {
             Log.e("MainActivity", "ImageCapture is null");
             updateStatusText("Camera not ready");
             return;
         }
 
-        String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault())
-                .format(new Date());
+        long captureTime = System.currentTimeMillis();
+        int shot = burstRemaining.get() > 0 ? ++burstShot : 0;
+        final File file = captureStore.newPhotoFile(captureNames.get().fileName(
+                captureTime, locationTracker.getLatest(), shot));
 
-        // Create filename with location
-        String locationString = "";
-        if (lastKnownLocation != null) {
-            locationString = String.format(Locale.US,
-                    "_%.5f_%.5f",
-                    lastKnownLocation.getLatitude(),
-                    lastKnownLocation.getLongitude());
+        int quality = captureProfile.getJpegQuality();
+        // The shutter step this shot belongs to, so its callbacks settle that one only
+        CameraSequencer.Done step = shutterDone.get();
+        if (IN_MEMORY_CAPTURE) {
+            takePhotoInMemory(file, captureTime, quality, trace, step);
+        } else {
+            takePhotoToFile(file, captureTime, quality, trace, step);
         }
 
-        File picturesDir = Environment.getExternalStoragePublicDirectory(
-                Environment.DIRECTORY_PICTURES);
-        File appDir = new File(picturesDir, "POC_App");
-        if (!appDir.exists()) appDir.mkdirs();
+        updateStatusText("Capturing...");
+    }
+
+    private void takePhotoInMemory(File file, long captureTime, int quality, long trace,
+                                   CameraSequencer.Done step) {
+        tracer.mark(trace, LatencyTracer.Stage.SHUTTER);
+        imageCapture.takePicture(cameraExecutor,
+                new ImageCapture.OnImageCapturedCallback() {
+                    @Override
+                    public void onCaptureSuccess(@NonNull ImageProxy image) {
+                        tracer.mark(trace, LatencyTracer.Stage.CAPTURED);
+                        // Copy out and release the camera buffer before queueing
+                        int rotation = image.getImageInfo().getRotationDegrees();
+                        ByteBuffer jpeg;
+                        try {
+                            ByteBuffer buffer = image.getPlanes()[0].getBuffer();
+                            buffer.rewind();
+                            jpeg = captureStore.acquire(buffer.remaining());
+                            jpeg.put(buffer).flip();
+                        } finally {
+                            image.close();
+                        }
+                        continueBurst(step);
+                        captureStore.pending(file, captureTime);
+                        spoolCapture(file, jpeg, rotation, captureTime,
+                                entry -> processCapture(file, jpeg, rotation, captureTime,
+                                        quality, entry, trace));
+                    }
+
+                    @Override
+                    public void onError(@NonNull ImageCaptureException e) {
+                        Log.e("MainActivity", "Capture failed: " + e.getMessage());
+                        updateStatusText("Error taking photo");
+                        // Only a burst of this step; a stale one may have been replaced
+                        if (shutterDone.get() == step) burstRemaining.set(0);
+                        finishShutter(step, e);
+                    }
+                });
+    }
+
+    private void processCapture(File file, ByteBuffer jpeg, int rotation, long captureTime,
+                                int quality, CaptureJournal.Entry entry, long trace) {
+        PostProcessor.Job job = new PostProcessor.Job() {
+            @Override
+            public void run(boolean degraded)
+                    throws IOException, InterruptedException {
+                boolean saved;
+                try {
+                    saved = process(degraded);
+                } finally {
+                    captureStore.release(jpeg);
+                }
+                if (saved) onPhotoSaved(file);
+                scheduleProfileReview();
+            }
+
+            private boolean process(boolean degraded) throws IOException, InterruptedException {
+                DuplicateDetector.Verdict verdict = checkDuplicate(file, jpeg, captureTime);
+                if (verdict != null && verdict.getAction() != DuplicateDetector.Action.KEEP) {
+                    settleDuplicate(verdict, entry, file, captureTime);
+                    return false;
+                }
+                // A backed-up queue takes whatever fix there is
+                LocationFix location = degraded
+                        ? locationTracker.getLatest()
+                        : locationTracker.awaitFix(LOCATION_POLICY);
+                logFixAge(file, location);
+                try {
+                    CapturePipeline pipeline = capturePipeline.get()
+                            .setThumbnailCache(thumbnailCache)
+                            .setJpegQuality(quality);
+                    StageTimer timer = pipeline.process(jpeg, rotation,
+                            CaptureJournal.tempFileFor(file), location,
+                            captureTime, degraded);
+                    captureProfiles.recordProcessing(timer);
+                    tracer.mark(trace, LatencyTracer.Stage.PROCESSED);
+                    commitCapture(entry, file, captureTime, location);
+                    tracer.mark(trace, LatencyTracer.Stage.COMMITTED);
+                    timer.mark("commit");
+                    storeThumbnail(pipeline, file);
+                    Log.d("PhotoSave", "In-memory pipeline: " + timer
+                            + (degraded ? " (degraded)" : ""));
+                    return true;
+                } catch (IOException e) {
+                    Log.e("PhotoSave", "Error processing image", e);
+                    DUPLICATES.forget(file.getName());
+                    rollbackCapture(entry, file);
+                    throw e;
+                } finally {
+                    Log.d("PhotoSave", "Post-processing: " + postProcessor);
+                }
+            }
+
+            @Override
+            public void onDropped() {
+                Log.w("PhotoSave", "Dropped " + file.getName()
+                        + ": " + postProcessor);
+                captureStore.release(jpeg);
+                rollbackCapture(entry, file);
+                updateStatusText("Photo dropped");
+            }
+        };
+        // Shut down with the activity, so neither callback would ever run
+        if (!postProcessor.submit(job)) job.onDropped();
+    }
+
+    /**
+     * Hashes the frame and checks it against the recent shots, or returns
+     * null to keep it if it cannot be hashed.
+     */
+    private DuplicateDetector.Verdict checkDuplicate(File file, ByteBuffer jpeg,
+                                                     long captureTime) {
+        long start = System.nanoTime();
+        long hash;
+        try {
+            hash = perceptualHash.get().pHashJpeg(jpeg);
+        } catch (IOException e) {
+            Log.w("PhotoSave", "Not hashing " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+        DuplicateDetector.Verdict verdict = DUPLICATES.check(file.getName(), hash, captureTime);
+        Log.d("PhotoSave", String.format(Locale.US, "%s hash %016x in %.1fms: %s",
+                file.getName(), hash, (System.nanoTime() - start) / 1e6, verdict));
+        return verdict;
+    }
+
+    // A dropped shot leaves nothing; a linked one leaves only its index record
+    private void settleDuplicate(DuplicateDetector.Verdict verdict, CaptureJournal.Entry entry,
+                                 File file, long captureTime) {
+        rollbackCapture(entry, file);
+        if (verdict.getAction() == DuplicateDetector.Action.DROP) {
+            updateStatusText("Same as " + verdict.getOriginal() + ", not saved");
+            return;
+        }
+        PhotoIndex index = photoIndex;
+        if (index != null) {
+            try {
+                // Another time and place for the original; queries still list it once
+                index.add(verdict.getOriginal(), captureTime, locationTracker.getLatest());
+            } catch (IOException e) {
+                Log.w("PhotoSave", "Could not link " + file.getName(), e);
+            }
+        }
+        updateStatusText("Same as " + verdict.getOriginal() + ", linked");
+    }
 
-        final File file = new File(appDir,
-                "IMG_" + timeStamp + locationString + ".jpg");
+    private void continueBurst(CameraSequencer.Done step) {
+        // A shot from a step that timed out does not start the next
+        if (shutterDone.get() != step) return;
+        if (burstRemaining.get() > 0 && burstRemaining.decrementAndGet() > 0) {
+            takePhoto(LatencyTracer.NO_TRACE);
+            return;
+        }
+        finishShutter(step, null);
+    }
 
+    private void takePhotoToFile(File file, long captureTime, int quality, long trace,
+                                 CameraSequencer.Done step) {
         ImageCapture.OutputFileOptions outputOptions =
                 new ImageCapture.OutputFileOptions.Builder(file).build();
 
+        tracer.mark(trace, LatencyTracer.Stage.SHUTTER);
         imageCapture.takePicture(outputOptions, cameraExecutor,
                 new ImageCapture.OnImageSavedCallback() {
                     @Override
                     public void onImageSaved(@NonNull ImageCapture.OutputFileResults results) {
+                        tracer.mark(trace, LatencyTracer.Stage.CAPTURED);
+                        LocationFix location;
                         try {
-                            // EXIF metadata handling
-                            if (lastKnownLocation != null) {
-                                ExifInterface exif = new ExifInterface(file.getAbsolutePath());
-                                setExifLocation(exif, lastKnownLocation);
-                                exif.saveAttributes();
+                            location = locationTracker.awaitFix(LOCATION_POLICY);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            location = locationTracker.getLatest();
+                        }
+                        logFixAge(file, location);
+                        if (location != null) {
+                            CaptureJournal.Entry entry = null;
+                            try {
+                                if (captureJournal != null) {
+                                    entry = captureJournal.begin(file, null, 0, 0,
+                                            captureTime, location);
+                                }
+                                // EXIF and overlay in one rewrite of the saved file
+                                StageTimer timer = capturePipeline.get()
+                                        .setJpegQuality(quality)
+                                        .stampFile(file, CaptureJournal.tempFileFor(file),
+                                                location, captureTime);
+                                captureProfiles.recordProcessing(timer);
+                                tracer.mark(trace, LatencyTracer.Stage.PROCESSED);
+                                commitCapture(entry, file, captureTime, location);
+                                tracer.mark(trace, LatencyTracer.Stage.COMMITTED);
+                                timer.mark("commit");
+                                Log.d("PhotoSave", "File pipeline: " + timer);
+                            } catch (IOException e) {
+                                Log.e("PhotoSave", "Error processing image", e);
+                                rollbackCapture(entry, file);
+                                // CameraX's own file is still there, just unstamped
+                                captureStore.published(file, captureTime);
                             }
-
-                            // Overlay text on image
-                            overlayCoordinatesOnImage(file);
-                        } catch (IOException e) {
-                            Log.e("PhotoSave", "Error processing image", e);
+                        } else {
+                            captureStore.published(file, captureTime);
                         }
 
-                        runOnUiThread(() -> {
-                            String msg = "Photo saved: " + file.getName();
-                            Toast.makeText(MainActivity.this, msg, Toast.LENGTH_LONG).show();
-                            updateStatusText("Photo saved!");
-                        });
-
-                        // Reset zoom if requested
-                        if (resetZoom) setZoom(0.0f);
+                        onPhotoSaved(file);
+                        continueBurst(step);
+                        scheduleProfileReview();
                     }
 
                     @Override
                     public void onError(@NonNull ImageCaptureException e) {
                         Log.e("MainActivity", "Capture failed: " + e.getMessage());
                         updateStatusText("Error taking photo");
+                        // Only a burst of this step; a stale one may have been replaced
+                        if (shutterDone.get() == step) burstRemaining.set(0);
+                        finishShutter(step, e);
                     }
                 });
+    }
 
-        updateStatusText("Capturing...");
+    private static File photoLibraryDir() {
+        File picturesDir = Environment.getExternalStoragePublicDirectory(
+                Environment.DIRECTORY_PICTURES);
+        return new File(picturesDir, "POC_App");
     }
 
-    // Helper methods
-    private void setExifLocation(ExifInterface exif, Location location) throws IOException {
-        double lat = location.getLatitude();
-        double lon = location.getLongitude();
+    // Opens the capture journal and photo index once per process and finishes
+    // the jobs the previous process left behind
+    private void recoverCaptures() {
+        List<CaptureJournal.Entry> redo;
+        synchronized (MainActivity.class) {
+            if (captureStorageOpened) return;
+            captureStorageOpened = true;
+            openPhotoIndex(this);
+            thumbnailCache = openThumbnailCache();
+            try {
+                captureJournal = CaptureJournal.open(new File(getFilesDir(), "capture.journal"));
+                redo = captureJournal.recover();
+            } catch (IOException e) {
+                Log.e("PhotoSave", "Capture journal unavailable", e);
+                return;
+            }
+        }
+
+        // Spool files whose CAPTURED record never reached the disk
+        File[] spooled = captureStore.getSpoolDir().listFiles();
+        if (spooled != null) {
+            for (File spool : spooled) {
+                boolean referenced = false;
+                for (CaptureJournal.Entry entry : redo) {
+                    referenced |= spool.equals(entry.getSpool());
+                }
+                if (!referenced) spool.delete();
+            }
+        }
+
+        Log.d("PhotoSave", "Recovering " + redo.size() + " captures: " + captureJournal);
+        for (CaptureJournal.Entry entry : redo) {
+            boolean queued = postProcessor.submit(new PostProcessor.Job() {
+                @Override
+                public void run(boolean degraded) throws IOException {
+                    try {
+                        StageTimer timer = reprocessCapture(entry);
+                        Log.d("PhotoSave", "Recovered " + entry.getOutput().getName() + ": " + timer);
+                    } catch (IOException e) {
+                        Log.e("PhotoSave", "Could not recover " + entry.getOutput().getName(), e);
+                        rollbackCapture(entry, entry.getOutput());
+                        throw e;
+                    }
+                }
 
-        exif.setAttribute(ExifInterface.TAG_GPS_LATITUDE, convertToDMS(lat));
-        exif.setAttribute(ExifInterface.TAG_GPS_LATITUDE_REF, lat >= 0 ? "N" : "S");
-        exif.setAttribute(ExifInterface.TAG_GPS_LONGITUDE, convertToDMS(lon));
-        exif.setAttribute(ExifInterface.TAG_GPS_LONGITUDE_REF, lon >= 0 ? "E" : "W");
+                @Override
+                public void onDropped() {
+                    // Left in the journal for the next start
+                }
+            });
+            if (!queued) {
+                Log.w("PhotoSave", "Left " + entry.getOutput().getName()
+                        + " for the next start: " + postProcessor);
+            }
+        }
     }
 
-    private String convertToDMS(double coordinate) {
-        coordinate = Math.abs(coordinate);
-        int degrees = (int) coordinate;
-        double minutes = (coordinate - degrees) * 60;
-        int seconds = (int) ((minutes - (int) minutes) * 60);
-        return degrees + "/1," + (int) minutes + "/1," + seconds + "/1";
+    // The index only caches what is in the library, so a missing or damaged
+    // one is rebuilt from the directory. Opened once per process, by the first
+    // activity or export that needs it
+    static synchronized PhotoIndex openPhotoIndex(Context context) {
+        if (photoIndexOpened) return photoIndex;
+        photoIndexOpened = true;
+        photoIndex = openPhotoIndex(new File(context.getFilesDir(), "photo-index"),
+                photoLibraryDir());
+        return photoIndex;
     }
 
-    private void overlayCoordinatesOnImage(File imageFile) {
-        if (lastKnownLocation == null) return;
+    private static PhotoIndex openPhotoIndex(File dir, File library) {
+        try {
+            PhotoIndex index = null;
+            try {
+                index = PhotoIndex.open(dir);
+            } catch (IOException e) {
+                Log.w("PhotoSave", "Rebuilding photo index: " + e.getMessage());
+            }
+            String[] photos = library.list();
+            if (index == null || (index.size() == 0 && photos != null && photos.length > 0)) {
+                if (index != null) index.close();
+                index = PhotoIndex.rebuild(dir, library);
+            }
+            Log.d("PhotoSave", "Photo index: " + index);
+            return index;
+        } catch (IOException e) {
+            Log.e("PhotoSave", "Photo index unavailable", e);
+            return null;
+        }
+    }
 
+    private ThumbnailCache openThumbnailCache() {
+        int memoryBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 16,
+                THUMBNAIL_MEMORY_BYTES);
         try {
-            String text = String.format(Locale.US,
-                    "Lat: %.5f\nLon: %.5f\n%s",
-                    lastKnownLocation.getLatitude(),
-                    lastKnownLocation.getLongitude(),
-                    new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.getDefault())
-                            .format(new Date()));
-
-            BitmapFactory.Options options = new BitmapFactory.Options();
-            options.inMutable = true;
-            Bitmap bitmap = BitmapFactory.decodeFile(imageFile.getAbsolutePath(), options);
-
-            Canvas canvas = new Canvas(bitmap);
-            Paint paint = new Paint();
-            paint.setColor(Color.WHITE);
-            paint.setTextSize(48);
-            paint.setAntiAlias(true);
-            paint.setShadowLayer(5f, 2f, 2f, Color.BLACK);
-
-            // Position text at bottom-left
-            Rect bounds = new Rect();
-            paint.getTextBounds(text, 0, text.length(), bounds);
-            float x = 20;
-            float y = bitmap.getHeight() - 20;
-
-            canvas.drawText(text, x, y, paint);
-
-            try (FileOutputStream out = new FileOutputStream(imageFile)) {
-                bitmap.compress(Bitmap.CompressFormat.JPEG, 95, out);
+            return new ThumbnailCache(new File(getFilesDir(), "thumbnails"), memoryBytes);
+        } catch (IOException e) {
+            Log.e("PhotoSave", "Thumbnail cache unavailable", e);
+            return null;
+        }
+    }
+
+    // The thumbnail made while processing goes in once the photo is committed
+    private void storeThumbnail(CapturePipeline pipeline, File file) {
+        Bitmap thumbnail = pipeline.takeThumbnail();
+        ThumbnailCache cache = thumbnailCache;
+        if (thumbnail != null && cache != null) {
+            cache.put(file.getName(), thumbnail);
+        }
+    }
+
+    static ThumbnailCache getThumbnailCache() {
+        return thumbnailCache;
+    }
+
+    static PhotoIndex getPhotoIndex() {
+        return photoIndex;
+    }
+
+    static File getPhotoLibraryDir() {
+        return photoLibraryDir();
+    }
+
+    private void openPreview() {
+        Intent intent = new Intent(this, PreviewActivity.class);
+        File file = lastSavedFile;
+        if (file != null) intent.putExtra(PreviewActivity.EXTRA_PHOTO, file.getPath());
+        startActivity(intent);
+    }
+
+    // The next thing said is recorded as the chosen phrase for the on-device keyword spotter
+    private void chooseKeywordToEnroll() {
+        new AlertDialog.Builder(this)
+                .setTitle("Teach a command")
+                .setItems(VoiceCommands.KEYWORD_PHRASES, (dialog, which) -> {
+                    String phrase = VoiceCommands.KEYWORD_PHRASES[which];
+                    startService(new Intent(this, SpeechRecognitionService.class)
+                            .setAction(SpeechRecognitionService.ACTION_ENROLL_KEYWORD)
+                            .putExtra(SpeechRecognitionService.EXTRA_PHRASE, phrase));
+                    Toast.makeText(this, "Say \"" + phrase + "\"", Toast.LENGTH_SHORT).show();
+                })
+                .show();
+    }
+
+    private StageTimer reprocessCapture(CaptureJournal.Entry entry) throws IOException {
+        CapturePipeline pipeline = capturePipeline.get()
+                .setThumbnailCache(thumbnailCache)
+                .setJpegQuality(CaptureProfile.BALANCED.getJpegQuality());
+        StageTimer timer;
+        if (entry.getSpool() != null) {
+            byte[] jpeg = Files.readAllBytes(entry.getSpool().toPath());
+            timer = pipeline.process(ByteBuffer.wrap(jpeg), entry.getRotation(),
+                    entry.getTempFile(), entry.getFix(), entry.getCaptureTimeMillis(), false);
+        } else {
+            timer = pipeline.stampFile(entry.getOutput(), entry.getTempFile(),
+                    entry.getFix(), entry.getCaptureTimeMillis());
+        }
+        commitCapture(entry, entry.getOutput(), entry.getCaptureTimeMillis(), entry.getFix());
+        timer.mark("commit");
+        storeThumbnail(pipeline, entry.getOutput());
+        return timer;
+    }
+
+    // Puts an in-memory frame on disk and journals it, so a process death
+    // before post-processing finishes does not lose the photo. The write is
+    // done on the store's I/O thread, which then hands over the entry.
+    private void spoolCapture(File file, ByteBuffer jpeg, int rotation, long captureTime,
+                              Consumer<CaptureJournal.Entry> then) {
+        CaptureJournal journal = captureJournal;
+        if (journal == null) {
+            then.accept(null);
+            return;
+        }
+        LocationFix fix = locationTracker.getLatest();
+        captureStore.write(captureStore.newSpoolFile(file.getName()), jpeg,
+                (spool, length, error) -> {
+                    CaptureJournal.Entry entry = null;
+                    try {
+                        if (error != null) throw error;
+                        entry = journal.begin(file, spool, length, rotation, captureTime, fix);
+                    } catch (IOException e) {
+                        Log.e("PhotoSave", "Could not journal " + file.getName(), e);
+                        spool.delete();
+                    }
+                    then.accept(entry);
+                });
+    }
+
+    private void commitCapture(CaptureJournal.Entry entry, File file, long captureTime,
+                               LocationFix location) throws IOException {
+        if (entry != null) {
+            captureJournal.commit(entry);
+        } else {
+            Files.move(CaptureJournal.tempFileFor(file).toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        captureStore.published(file, captureTime);
+
+        PhotoIndex index = photoIndex;
+        if (index != null) {
+            try {
+                index.add(file.getName(), captureTime, location);
+            } catch (IOException e) {
+                // Picked up again by the next rebuild
+                Log.w("PhotoSave", "Could not index " + file.getName(), e);
             }
+        }
+    }
+
+    private void rollbackCapture(CaptureJournal.Entry entry, File file) {
+        captureStore.discarded(file);
+        if (entry == null) {
+            CaptureJournal.tempFileFor(file).delete();
+            return;
+        }
+        try {
+            captureJournal.rollback(entry);
         } catch (IOException e) {
-            Log.e("Overlay", "Text overlay failed", e);
+            Log.e("PhotoSave", "Could not roll back " + file.getName(), e);
         }
     }
 
+    private void logFixAge(File file, LocationFix fix) {
+        if (fix == null) {
+            Log.w("PhotoSave", file.getName() + " has no location: " + locationTracker);
+            return;
+        }
+        long age = fix.ageNanos(SystemClock.elapsedRealtimeNanos());
+        Log.d("PhotoSave", String.format(Locale.US, "%s fix %s age %.1fs%s",
+                file.getName(), fix, age / 1e9,
+                LOCATION_POLICY.isAcceptable(fix, SystemClock.elapsedRealtimeNanos()) ? "" : " (stale)"));
+    }
+
+    private void onPhotoSaved(File file) {
+        lastSavedFile = file;
+        runOnUiThread(() -> {
+            String msg = "Photo saved: " + file.getName();
+            Toast.makeText(MainActivity.this, msg, Toast.LENGTH_LONG).show();
+            updateStatusText("Photo saved!");
+        });
+    }
+
     private void updateStatusText(String text) {
         runOnUiThread(() -> statusText.setText(text));
     }
@@ -0,0 +1,45 @@
+package com.rdxindia.poc_application;
+
+import android.content.Context;
+import android.media.MediaScannerConnection;
+import android.util.Log;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registers the photos of a {@link CaptureStore} with the media provider, so
+ * they show up in the gallery. A photo is only scanned once it is committed
+ * to the library, each batch in one {@link MediaScannerConnection#scanFile}
+ * call. It gets no row while pending: the JPEG is written with file APIs, so
+ * a row inserted ahead of it would point at an empty file of the provider's
+ * own, and the committed one would land next to it as a duplicate.
+ */
+final class MediaStorePublisher implements CaptureStore.Publisher {
+
+    private final Context context;
+
+    MediaStorePublisher(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    @Override
+    public void publish(List<CaptureStore.MediaUpdate> batch) {
+        List<File> files = new ArrayList<>();
+        for (CaptureStore.MediaUpdate update : batch) {
+            if (update.getChange() == CaptureStore.Change.PUBLISHED) files.add(update.getFile());
+        }
+        if (!files.isEmpty()) scanFiles(files);
+    }
+
+    private void scanFiles(List<File> files) {
+        String[] paths = new String[files.size()];
+        String[] types = new String[files.size()];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = files.get(i).getPath();
+            types[i] = "image/jpeg";
+        }
+        MediaScannerConnection.scanFile(context, paths, types, null);
+        Log.d("PhotoSave", "Scanning " + paths.length + " photos");
+    }
+}
@@ -0,0 +1,83 @@
+package com.rdxindia.poc_application;
+
+import android.graphics.Rect;
+
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.objects.DetectedObject;
+import com.google.mlkit.vision.objects.ObjectDetection;
+import com.google.mlkit.vision.objects.ObjectDetector;
+import com.google.mlkit.vision.objects.defaults.ObjectDetectorOptions;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ML Kit's on-device object detector in stream mode, which tracks objects
+ * across frames and classifies them into its coarse categories (Food, Plant,
+ * Place, Home good, Fashion good). The client, which loads the model, is
+ * made on the first frame rather than during startup.
+ */
+final class MlKitFrameDetector implements FrameScheduler.Detector, Closeable {
+
+    private ObjectDetector detector;
+    private boolean closed;
+
+    private synchronized ObjectDetector detector() {
+        if (detector == null && !closed) {
+            ObjectDetectorOptions options = new ObjectDetectorOptions.Builder()
+                    .setDetectorMode(ObjectDetectorOptions.STREAM_MODE)
+                    .enableClassification()
+                    .build();
+            detector = ObjectDetection.getClient(options);
+        }
+        return detector;
+    }
+
+    @Override
+    public void detect(byte[] nv21, int width, int height, int rotationDegrees,
+                       FrameScheduler.Completion completion) {
+        ObjectDetector detector = detector();
+        if (detector == null) {
+            completion.onSuccess(new ArrayList<>());
+            return;
+        }
+        InputImage image = InputImage.fromByteArray(nv21, width, height, rotationDegrees,
+                InputImage.IMAGE_FORMAT_NV21);
+        // Boxes come back in upright coordinates
+        boolean sideways = rotationDegrees % 180 != 0;
+        float uprightWidth = sideways ? height : width;
+        float uprightHeight = sideways ? width : height;
+        detector.process(image)
+                .addOnSuccessListener(objects -> {
+                    List<Detection> detections = new ArrayList<>(objects.size());
+                    for (DetectedObject object : objects) {
+                        detections.add(toDetection(object, uprightWidth, uprightHeight));
+                    }
+                    completion.onSuccess(detections);
+                })
+                .addOnFailureListener(completion::onFailure);
+    }
+
+    private static Detection toDetection(DetectedObject object, float width, float height) {
+        String label = null;
+        float confidence = 0;
+        for (DetectedObject.Label candidate : object.getLabels()) {
+            if (candidate.getConfidence() > confidence) {
+                label = candidate.getText();
+                confidence = candidate.getConfidence();
+            }
+        }
+        Rect box = object.getBoundingBox();
+        Integer trackingId = object.getTrackingId();
+        return new Detection(label, confidence, box.left / width, box.top / height,
+                box.right / width, box.bottom / height,
+                trackingId == null ? Detection.NO_TRACKING_ID : trackingId);
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (detector != null) detector.close();
+    }
+}
@@ -0,0 +1,71 @@
+package com.rdxindia.poc_application;
+
+import android.app.Application;
+import android.content.Context;
+import android.os.Process;
+import android.os.SystemClock;
+
+import androidx.camera.lifecycle.ProcessCameraProvider;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Starts CameraX initialization, which enumerates the cameras on its own
+ * executor, as soon as the process exists instead of when the first
+ * activity gets to it, and keeps the cold start's {@link StartupTimer}.
+ */
+public class PocApplication extends Application {
+
+    private static ListenableFuture<ProcessCameraProvider> cameraProvider;
+    private static StartupTimer coldStart;
+    private static volatile BooleanSupplier captureReadiness;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        coldStart = new StartupTimer(SystemClock::elapsedRealtimeNanos,
+                TimeUnit.MILLISECONDS.toNanos(Process.getStartElapsedRealtime()), true);
+        coldStart.mark(StartupTimer.Milestone.APPLICATION);
+        cameraProvider = ProcessCameraProvider.getInstance(this);
+    }
+
+    /** The provider warmed at process start. */
+    static ListenableFuture<ProcessCameraProvider> getCameraProvider(Context context) {
+        ListenableFuture<ProcessCameraProvider> provider = cameraProvider;
+        return provider != null ? provider : ProcessCameraProvider.getInstance(context);
+    }
+
+    /**
+     * Set by the activity holding the camera while it is in front, so work
+     * timed elsewhere (interval shots) can tell whether a shot would be
+     * taken now.
+     */
+    static synchronized void setCaptureReadiness(BooleanSupplier readiness) {
+        captureReadiness = readiness;
+    }
+
+    /** Clears {@code readiness} unless another activity has replaced it already. */
+    static synchronized void clearCaptureReadiness(BooleanSupplier readiness) {
+        if (captureReadiness == readiness) captureReadiness = null;
+    }
+
+    /** Whether the camera is in front and idle enough for another shot. Main thread only. */
+    static boolean isReadyToCapture() {
+        BooleanSupplier readiness = captureReadiness;
+        return readiness != null && readiness.getAsBoolean();
+    }
+
+    /**
+     * The cold start's timer for the first activity to ask, which continues
+     * it; everyone after that starts warm and times from {@code nowNanos}.
+     */
+    static synchronized StartupTimer takeStartupTimer(long nowNanos) {
+        StartupTimer timer = coldStart;
+        coldStart = null;
+        return timer != null ? timer
+                : new StartupTimer(SystemClock::elapsedRealtimeNanos, nowNanos, false);
+    }
+}
@@ -0,0 +1,152 @@
+package com.rdxindia.poc_application;
+
+import android.graphics.Bitmap;
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.Button;
+import android.widget.ImageView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Shows a captured photo: its thumbnail straight away, then the photo decoded
+ * at screen size. The gallery button steps back through the library, paging
+ * the next thumbnails in ahead of time.
+ */
+public class PreviewActivity extends AppCompatActivity {
+
+    /** Path of the photo to show first; the newest one if absent. */
+    static final String EXTRA_PHOTO = "photo";
+    // Thumbnails paged in ahead of the one shown
+    private static final int PREFETCH = 4;
+
+    private ImageView photoPreview;
+    private ExecutorService loader;
+    private final List<File> photos = new ArrayList<>();
+    private int position;
+    // Pinned in the thumbnail cache while it is on screen
+    private Bitmap shownThumbnail;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_preview);
+
+        photoPreview = findViewById(R.id.photoPreview);
+        ImageView backArrow = findViewById(R.id.backArrow);
+        Button galleryButton = findViewById(R.id.galleryButton);
+        backArrow.setOnClickListener(v -> finish());
+        galleryButton.setOnClickListener(v -> showOlder());
+
+        loader = Executors.newSingleThreadExecutor();
+        String requested = getIntent().getStringExtra(EXTRA_PHOTO);
+        loader.execute(() -> {
+            List<File> library = listLibrary();
+            runOnUiThread(() -> {
+                photos.addAll(library);
+                if (photos.isEmpty()) {
+                    Toast.makeText(this, "No photos yet", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                int index = requested == null ? -1 : photos.indexOf(new File(requested));
+                show(index >= 0 ? index : photos.size() - 1);
+            });
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        loader.shutdownNow();
+        photoPreview.setImageDrawable(null);
+        releaseShownThumbnail();
+    }
+
+    // Oldest first, from the photo index when it is open
+    private static List<File> listLibrary() {
+        File library = MainActivity.getPhotoLibraryDir();
+        List<File> files = new ArrayList<>();
+        PhotoIndex index = MainActivity.getPhotoIndex();
+        if (index != null) {
+            try {
+                for (PhotoIndex.Photo photo : index.queryTime(Long.MIN_VALUE, Long.MAX_VALUE)) {
+                    File file = new File(library, photo.getName());
+                    if (file.exists()) files.add(file);
+                }
+                return files;
+            } catch (IOException e) {
+                Log.w("PreviewActivity", "Photo index unreadable, listing the library", e);
+            }
+        }
+        File[] listed = library.listFiles((dir, name) -> name.endsWith(".jpg"));
+        if (listed != null) {
+            // Names start with the capture time
+            Arrays.sort(listed);
+            files.addAll(Arrays.asList(listed));
+        }
+        return files;
+    }
+
+    private void showOlder() {
+        if (photos.isEmpty()) return;
+        show(position > 0 ? position - 1 : photos.size() - 1);
+    }
+
+    private void show(int index) {
+        position = index;
+        File photo = photos.get(index);
+        ThumbnailCache thumbnails = MainActivity.getThumbnailCache();
+        Bitmap cached = thumbnails == null ? null : thumbnails.acquireCached(photo.getName());
+        if (cached != null) display(cached, true);
+
+        List<File> ahead = new ArrayList<>();
+        for (int i = 1; i <= PREFETCH && index - i >= 0; i++) ahead.add(photos.get(index - i));
+        int maxEdge = Math.max(getResources().getDisplayMetrics().widthPixels,
+                getResources().getDisplayMetrics().heightPixels);
+
+        loader.execute(() -> {
+            if (cached == null && thumbnails != null) {
+                Bitmap thumbnail = thumbnails.acquire(photo);
+                post(index, thumbnail, true);
+            }
+            Bitmap full = ThumbnailCache.decodePhoto(photo, maxEdge);
+            post(index, full, false);
+            if (thumbnails != null) {
+                for (File next : ahead) thumbnails.prefetch(next.getName());
+            }
+        });
+    }
+
+    private void post(int index, Bitmap bitmap, boolean pinned) {
+        if (bitmap == null) return;
+        runOnUiThread(() -> {
+            if (position == index && !isDestroyed()) {
+                display(bitmap, pinned);
+            } else if (pinned) {
+                MainActivity.getThumbnailCache().release(bitmap);
+            }
+        });
+    }
+
+    // The thumbnail shown before goes back to the cache once it is off screen
+    private void display(Bitmap bitmap, boolean pinned) {
+        photoPreview.setImageBitmap(bitmap);
+        releaseShownThumbnail();
+        if (pinned) shownThumbnail = bitmap;
+    }
+
+    private void releaseShownThumbnail() {
+        ThumbnailCache thumbnails = MainActivity.getThumbnailCache();
+        if (shownThumbnail != null && thumbnails != null) thumbnails.release(shownThumbnail);
+        shownThumbnail = null;
+    }
+}
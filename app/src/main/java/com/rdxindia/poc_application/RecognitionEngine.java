@@ -0,0 +1,21 @@
+package com.rdxindia.poc_application;
+
+/**
+ * A source of voice commands for {@link SpeechRecognitionService}: the
+ * system speech recognizer, or the on-device keyword spotter. Engines are
+ * started and stopped on the service's main thread and report there.
+ */
+public interface RecognitionEngine {
+
+    interface Listener {
+        /**
+         * @param early       matched before the utterance was complete
+         * @param speechNanos from the start of speech to the match
+         */
+        void onCommand(CommandGrammar.CommandMatch match, boolean early, long speechNanos);
+    }
+
+    void start();
+
+    void stop();
+}
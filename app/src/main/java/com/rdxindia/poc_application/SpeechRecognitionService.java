@@ -6,37 +6,46 @@ import android.app.NotificationManager;
 import android.app.Service;
 import android.content.Intent;
 import android.os.Build;
-import android.os.Bundle;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.PowerManager;
-import android.speech.RecognitionListener;
-import android.speech.RecognizerIntent;
-import android.speech.SpeechRecognizer;
+import android.os.SystemClock;
 import android.util.Log;
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class SpeechRecognitionService extends Service {
 
+    /** Records the next utterance as a keyword template for the phrase in {@link #EXTRA_PHRASE}. */
+    public static final String ACTION_ENROLL_KEYWORD =
+            "com.rdxindia.poc_application.ENROLL_KEYWORD";
+    public static final String EXTRA_PHRASE = "phrase";
+
     private static final String CHANNEL_ID = "SpeechServiceChannel";
     private static final int NOTIFICATION_ID = 101;
-    private SpeechRecognizer speechRecognizer;
     private final Handler handler = new Handler();
-    private boolean isDestroyed = false;
     private PowerManager.WakeLock wakeLock;
-
-    // Supported voice commands
-    private static final List<String> COMMANDS = Arrays.asList(
-            "take a photo",
-            "take photo",
-            "zoom",
-            "zoom in"
-    );
+    private KeywordTemplates keywordTemplates;
+    private RecognitionEngine engine;
+    // Interval shots are timed here so they keep going while the activity is
+    // behind another screen; a tick with nobody able to shoot is skipped
+    private ScheduledExecutorService intervalTimer;
+    private IntervalScheduler intervalScheduler;
+    private volatile IntervalScheduler.Session intervalSession;
+    private PowerManager.WakeLock intervalWakeLock;
+
+    // Spot enrolled keywords on-device instead of running the system recognizer
+    private static final boolean PREFER_KEYWORD_SPOTTER = true;
+    // Shortest interval, so one shot is through the pipeline before the next
+    private static final int MIN_INTERVAL_SECONDS = 2;
+    private static final int MAX_INTERVAL_MINUTES = 8 * 60;
 
     @Override
     public void onCreate() {
@@ -44,7 +53,40 @@ public class SpeechRecognitionService extends Service {
         acquireWakeLock();
         createNotificationChannel();
         startForeground(NOTIFICATION_ID, buildNotification());
-        startListeningCycle();
+        intervalTimer = Executors.newSingleThreadScheduledExecutor();
+        intervalScheduler = new IntervalScheduler(handler::post, intervalTimer,
+                SystemClock::elapsedRealtimeNanos);
+        keywordTemplates = KeywordTemplates.load(new File(getFilesDir(), "keywords.bin"));
+        boolean spotKeywords = PREFER_KEYWORD_SPOTTER && !keywordTemplates.isEmpty();
+        switchEngine(spotKeywords
+                ? new KeywordSpotterEngine(handler, this::onCommand, keywordTemplates)
+                : new SpeechRecognizerEngine(this, handler, this::onCommand));
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_ENROLL_KEYWORD.equals(intent.getAction())) {
+            enrollKeyword(intent.getStringExtra(EXTRA_PHRASE));
+        }
+        return super.onStartCommand(intent, flags, startId);
+    }
+
+    // Enrollment needs the spotter's microphone, so it takes over from the system recognizer
+    private void enrollKeyword(String phrase) {
+        if (phrase == null) return;
+        if (!(engine instanceof KeywordSpotterEngine)) {
+            switchEngine(new KeywordSpotterEngine(handler, this::onCommand, keywordTemplates));
+        }
+        if (!((KeywordSpotterEngine) engine).enroll(phrase)) {
+            Log.d("SpeechService", "Not a command, not enrolled: " + phrase);
+        }
+    }
+
+    private void switchEngine(RecognitionEngine next) {
+        if (engine != null) engine.stop();
+        engine = next;
+        Log.d("SpeechService", "Recognition engine: " + next.getClass().getSimpleName());
+        engine.start();
     }
 
     private void acquireWakeLock() {
@@ -56,121 +98,81 @@ public class SpeechRecognitionService extends Service {
         wakeLock.acquire(10 * 60 * 1000L); // 10 minutes
     }
 
-    private void startListeningCycle() {
-        if (isDestroyed) return;
-
-        try {
-            if (speechRecognizer != null) {
-                speechRecognizer.destroy();
-            }
-
-            speechRecognizer = SpeechRecognizer.createSpeechRecognizer(this);
-            setupRecognitionListener();
-            startListening();
-        } catch (Exception e) {
-            Log.e("SpeechService", "Init failed", e);
-            restartListening(2000);
+    private void onCommand(CommandGrammar.CommandMatch match, boolean early, long speechNanos) {
+        Log.d("SpeechService", String.format(Locale.US, "Matched %s from %s result, %.0fms after speech start",
+                match, early ? "partial" : "final", speechNanos / 1e6));
+        long trace = LatencyTracer.getDefault().begin(speechNanos);
+        int value = match.getSlotCount() > 0 ? match.getSlot(0) : CommandBus.NO_VALUE;
+        int secondValue = match.getSlotCount() > 1 ? match.getSlot(1) : CommandBus.NO_VALUE;
+        if (VoiceCommands.INTERVAL_CAPTURE.equals(match.getCommand())) {
+            startInterval(value, secondValue);
+        } else if (VoiceCommands.INTERVAL_STOP.equals(match.getCommand())
+                || VoiceCommands.CANCEL.equals(match.getCommand())) {
+            // A cancel stops the shots still to come as well as those queued
+            intervalScheduler.stop();
         }
+        // The activity still hears about it, for its status line
+        sendCommandToActivity(match.getCommand(), value, secondValue, trace);
     }
 
-    private void setupRecognitionListener() {
-        speechRecognizer.setRecognitionListener(new RecognitionListener() {
-            @Override
-            public void onReadyForSpeech(Bundle params) {
-                Log.d("SpeechService", "Listening...");
-            }
-
-            @Override
-            public void onBeginningOfSpeech() {}
-
-            @Override
-            public void onRmsChanged(float rmsdB) {}
-
-            @Override
-            public void onBufferReceived(byte[] buffer) {}
-
-            @Override
-            public void onEndOfSpeech() {
-                restartListening(100);
-            }
-
-            @Override
-            public void onError(int error) {
-                handleError(error);
-            }
-
-            @Override
-            public void onResults(Bundle results) {
-                processResults(results);
-                restartListening(100);
-            }
-
-            @Override
-            public void onPartialResults(Bundle partialResults) {}
-
-            @Override
-            public void onEvent(int eventType, Bundle params) {}
-        });
-    }
-
-    private void startListening() {
-        Intent intent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH)
-                .putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM)
-                .putExtra(RecognizerIntent.EXTRA_LANGUAGE, Locale.getDefault())
-                .putExtra(RecognizerIntent.EXTRA_PREFER_OFFLINE, true)
-                .putExtra(RecognizerIntent.EXTRA_MAX_RESULTS, 1)
-                .putExtra(RecognizerIntent.EXTRA_PARTIAL_RESULTS, true);
-
-        try {
-            speechRecognizer.startListening(intent);
-        } catch (Exception e) {
-            Log.e("SpeechService", "Listening failed", e);
+    private void startInterval(int seconds, int minutes) {
+        seconds = Math.max(MIN_INTERVAL_SECONDS, seconds);
+        minutes = Math.max(1, Math.min(minutes, MAX_INTERVAL_MINUTES));
+        int count = Math.max(1, minutes * 60 / seconds);
+        long interval = TimeUnit.SECONDS.toNanos(seconds);
+        intervalSession = intervalScheduler.start(interval, count,
+                (index, late) -> takeIntervalShot(index, count, late), this::onIntervalFinished);
+        // The timer thread must not sleep through the session
+        if (intervalWakeLock == null) {
+            PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
+            intervalWakeLock = powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK,
+                    "POCApp::IntervalWakeLock");
+            intervalWakeLock.setReferenceCounted(false);
         }
+        intervalWakeLock.acquire(TimeUnit.MINUTES.toMillis(minutes)
+                + TimeUnit.SECONDS.toMillis(2L * seconds));
+        Log.d("SpeechService", "Interval capture started: " + intervalSession);
     }
 
-    private void processResults(Bundle results) {
-        ArrayList<String> matches = results.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
-        if (matches != null && !matches.isEmpty()) {
-            String rawCommand = matches.get(0).toLowerCase();
-            String detectedCommand = matchCommand(rawCommand);
-
-            if (detectedCommand != null) {
-                sendCommandToActivity(detectedCommand);
-            }
+    // Runs on the main thread, like every other publish to the bus
+    private boolean takeIntervalShot(int index, int count, long lateNanos) {
+        if (!PocApplication.isReadyToCapture()) {
+            Log.d("SpeechService", String.format(Locale.US,
+                    "Interval shot %d/%d skipped, camera busy or away", index + 1, count));
+            return false;
         }
+        Log.d("SpeechService", String.format(Locale.US, "Interval shot %d/%d, %.1fms late",
+                index + 1, count, lateNanos / 1e6));
+        sendCommandToActivity(VoiceCommands.INTERVAL_SHOT, index + 1, count,
+                LatencyTracer.NO_TRACE);
+        return true;
     }
 
-    private String matchCommand(String input) {
-        for (String command : COMMANDS) {
-            if (input.contains(command)) {
-                return command;
-            }
+    private void onIntervalFinished(IntervalScheduler.Session session) {
+        Log.d("SpeechService", "Interval capture finished: " + session);
+        // A session replaced by a new one leaves the lock to it
+        if (intervalSession == session && intervalWakeLock.isHeld()) {
+            intervalWakeLock.release();
         }
-        return null;
     }
 
-    private void sendCommandToActivity(String command) {
-        Intent intent = new Intent("VOICE_COMMAND")
+    private void sendCommandToActivity(String command, int value, int secondValue, long trace) {
+        if (!VoiceCommands.DELIVER_BY_BROADCAST) {
+            CommandBus.getDefault().publish(command, value, secondValue, trace);
+            return;
+        }
+        Intent intent = new Intent(VoiceCommands.ACTION)
                 .setPackage(getPackageName())
-                .putExtra("command", command);
-        sendBroadcast(intent);
-    }
-
-    private void handleError(int error) {
-        switch (error) {
-            case SpeechRecognizer.ERROR_NO_MATCH:
-                restartListening(300);
-                break;
-            case SpeechRecognizer.ERROR_SPEECH_TIMEOUT:
-                restartListening(500);
-                break;
-            default:
-                restartListening(1000);
+                .putExtra(VoiceCommands.EXTRA_COMMAND, command)
+                .putExtra(VoiceCommands.EXTRA_SENT_AT, System.nanoTime())
+                .putExtra(VoiceCommands.EXTRA_TRACE_ID, trace);
+        if (value != CommandBus.NO_VALUE) {
+            intent.putExtra(VoiceCommands.EXTRA_VALUE, value);
         }
-    }
-
-    private void restartListening(int delay) {
-        handler.postDelayed(this::startListeningCycle, delay);
+        if (secondValue != CommandBus.NO_VALUE) {
+            intent.putExtra(VoiceCommands.EXTRA_SECOND_VALUE, secondValue);
+        }
+        sendBroadcast(intent);
     }
 
     private Notification buildNotification() {
@@ -196,11 +198,25 @@ public class SpeechRecognitionService extends Service {
         }
     }
 
+    // Readable with: adb shell dumpsys activity service .SpeechRecognitionService
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        IntervalScheduler.Session session = intervalSession;
+        writer.println("Interval capture: " + (session == null ? "none" : session));
+    }
+
     @Override
     public void onDestroy() {
-        isDestroyed = true;
-        if (speechRecognizer != null) {
-            speechRecognizer.destroy();
+        if (engine != null) {
+            engine.stop();
+        }
+        intervalTimer.shutdownNow();
+        IntervalScheduler.Session session = intervalSession;
+        if (session != null && !session.isFinished()) {
+            Log.d("SpeechService", "Interval capture ended with the service: " + session);
+        }
+        if (intervalWakeLock != null && intervalWakeLock.isHeld()) {
+            intervalWakeLock.release();
         }
         if (wakeLock != null && wakeLock.isHeld()) {
             wakeLock.release();
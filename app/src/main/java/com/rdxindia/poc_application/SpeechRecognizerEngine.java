@@ -0,0 +1,266 @@
+package com.rdxindia.poc_application;
+
+import android.content.Context;
+import android.content.Intent;
+import android.media.AudioFormat;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.speech.RecognitionListener;
+import android.speech.RecognizerIntent;
+import android.speech.SpeechRecognizer;
+import android.util.Log;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Commands from the system {@link SpeechRecognizer}, kept alive across
+ * utterances by a {@link RecognizerSession} and, when gated, woken by the
+ * {@link VoiceGate}. Partial results are matched as they arrive.
+ */
+final class SpeechRecognizerEngine implements RecognitionEngine {
+
+    // Recognizer alternatives to try, best first
+    private static final int MAX_RESULTS = 3;
+
+    // How long a partial match must hold before it fires without a repeat
+    private static final long STABLE_WINDOW_MS = 150;
+    // ... and when a longer command could still follow ("zoom" / "zoom out")
+    private static final long EXTENDABLE_WINDOW_MS = 400;
+
+    // Keep the recognizer idle until the voice gate hears speech
+    private static final boolean VOICE_GATE = true;
+
+    private final Context context;
+    private final Handler handler;
+    private final Listener listener;
+    private SpeechRecognizer speechRecognizer;
+    private RecognizerSession session;
+    private VoiceGate voiceGate;
+
+    // Supported voice commands, fired from partial results where possible
+    private final PartialCommandDispatcher commandDispatcher;
+    private final Runnable checkPendingCommand;
+
+    SpeechRecognizerEngine(Context context, Handler handler, Listener listener) {
+        this.context = context;
+        this.handler = handler;
+        this.listener = listener;
+        commandDispatcher = new PartialCommandDispatcher(
+                VoiceCommands.grammar(), this::onCommand,
+                TimeUnit.MILLISECONDS.toNanos(STABLE_WINDOW_MS),
+                TimeUnit.MILLISECONDS.toNanos(EXTENDABLE_WINDOW_MS));
+        checkPendingCommand = () -> commandDispatcher.onTick(SystemClock.elapsedRealtimeNanos());
+    }
+
+    @Override
+    public void start() {
+        session = new RecognizerSession(new RecognizerDriver(), new HandlerScheduler(),
+                SystemClock::elapsedRealtimeNanos, new Random());
+        if (VOICE_GATE) {
+            voiceGate = new VoiceGate(handler, session::onSpeechOnset);
+            session.setGated(true);
+        }
+        session.start();
+    }
+
+    @Override
+    public void stop() {
+        handler.removeCallbacks(checkPendingCommand);
+        if (session != null) {
+            Log.d("SpeechService", "Recognizer session: " + session);
+            session.stop();
+            session = null;
+        }
+        if (voiceGate != null) {
+            voiceGate.stop();
+            Log.d("SpeechService", "Voice gate: " + voiceGate.getDetector());
+            voiceGate = null;
+        }
+    }
+
+    private void onCommand(CommandGrammar.CommandMatch match, boolean early) {
+        listener.onCommand(match, early, commandDispatcher.getLastLatencyNanos());
+    }
+
+    // Drives the one SpeechRecognizer the session keeps across utterances
+    private final class RecognizerDriver implements RecognizerSession.Driver {
+        @Override
+        public void create() {
+            try {
+                speechRecognizer = SpeechRecognizer.createSpeechRecognizer(context);
+                setupRecognitionListener();
+            } catch (Exception e) {
+                Log.e("SpeechService", "Init failed", e);
+                speechRecognizer = null;
+            }
+        }
+
+        @Override
+        public void destroy() {
+            if (speechRecognizer != null) {
+                speechRecognizer.destroy();
+                speechRecognizer = null;
+            }
+        }
+
+        @Override
+        public void startListening() {
+            if (speechRecognizer == null || !SpeechRecognizerEngine.this.startListening()) {
+                RecognizerSession current = session;
+                handler.post(() -> current.onError(RecognizerSession.ErrorClass.FATAL));
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (speechRecognizer != null) speechRecognizer.cancel();
+        }
+
+        @Override
+        public void awaitSpeech() {
+            Log.d("SpeechService", "Waiting for speech: " + session);
+            voiceGate.arm();
+        }
+    }
+
+    private final class HandlerScheduler implements RecognizerSession.Scheduler {
+        @Override
+        public void schedule(Runnable task, long delayMillis) {
+            handler.postDelayed(task, delayMillis);
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            handler.removeCallbacks(task);
+        }
+    }
+
+    private void setupRecognitionListener() {
+        speechRecognizer.setRecognitionListener(new RecognitionListener() {
+            @Override
+            public void onReadyForSpeech(Bundle params) {
+                session.onReadyForSpeech();
+                Log.d("SpeechService", "Listening... " + session);
+            }
+
+            @Override
+            public void onBeginningOfSpeech() {
+                session.onBeginningOfSpeech();
+                commandDispatcher.beginUtterance(SystemClock.elapsedRealtimeNanos());
+            }
+
+            @Override
+            public void onRmsChanged(float rmsdB) {}
+
+            @Override
+            public void onBufferReceived(byte[] buffer) {}
+
+            @Override
+            public void onEndOfSpeech() {
+                session.onEndOfSpeech();
+            }
+
+            @Override
+            public void onError(int error) {
+                handler.removeCallbacks(checkPendingCommand);
+                session.onError(classifyError(error));
+            }
+
+            @Override
+            public void onResults(Bundle results) {
+                processResults(results);
+                session.onResults();
+            }
+
+            @Override
+            public void onPartialResults(Bundle partialResults) {
+                processPartialResults(partialResults);
+            }
+
+            @Override
+            public void onEvent(int eventType, Bundle params) {}
+        });
+    }
+
+    private boolean startListening() {
+        Intent intent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH)
+                .putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM)
+                .putExtra(RecognizerIntent.EXTRA_LANGUAGE, Locale.getDefault())
+                .putExtra(RecognizerIntent.EXTRA_PREFER_OFFLINE, true)
+                .putExtra(RecognizerIntent.EXTRA_MAX_RESULTS, MAX_RESULTS)
+                .putExtra(RecognizerIntent.EXTRA_PARTIAL_RESULTS, true);
+
+        // Feed the gate's audio, pre-roll first, instead of reopening the microphone
+        if (voiceGate != null && VoiceGate.canFeedRecognizer()) {
+            ParcelFileDescriptor audio = voiceGate.openAudioSource();
+            if (audio != null) {
+                intent.putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE, audio)
+                        .putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE_CHANNEL_COUNT, 1)
+                        .putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE_ENCODING,
+                                AudioFormat.ENCODING_PCM_16BIT)
+                        .putExtra(RecognizerIntent.EXTRA_AUDIO_SOURCE_SAMPLING_RATE,
+                                VoiceGate.SAMPLE_RATE);
+            }
+        }
+
+        try {
+            speechRecognizer.startListening(intent);
+            return true;
+        } catch (Exception e) {
+            Log.e("SpeechService", "Listening failed", e);
+            return false;
+        }
+    }
+
+    private void processPartialResults(Bundle partialResults) {
+        ArrayList<String> matches =
+                partialResults.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
+        if (matches == null || matches.isEmpty()) return;
+
+        commandDispatcher.onPartial(matches.get(0), SystemClock.elapsedRealtimeNanos());
+        // Fire a held candidate even if no further partial arrives
+        handler.removeCallbacks(checkPendingCommand);
+        if (commandDispatcher.hasPendingCandidate()) {
+            handler.postDelayed(checkPendingCommand, STABLE_WINDOW_MS);
+            handler.postDelayed(checkPendingCommand, EXTENDABLE_WINDOW_MS);
+        }
+    }
+
+    private void processResults(Bundle results) {
+        handler.removeCallbacks(checkPendingCommand);
+        ArrayList<String> matches = results.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
+        if (matches == null) return;
+
+        // The first alternative that contains a command wins, unless it already fired
+        long suppressed = commandDispatcher.getSuppressedCount();
+        commandDispatcher.onFinal(matches, SystemClock.elapsedRealtimeNanos());
+        if (commandDispatcher.getSuppressedCount() != suppressed) {
+            Log.d("SpeechService", String.format(Locale.US,
+                    "Early dispatch was %.0fms ahead of the final result (early=%d final=%d)",
+                    commandDispatcher.getLastLeadNanos() / 1e6,
+                    commandDispatcher.getEarlyCount(), commandDispatcher.getFinalCount()));
+        }
+    }
+
+    private static RecognizerSession.ErrorClass classifyError(int error) {
+        switch (error) {
+            case SpeechRecognizer.ERROR_NO_MATCH:
+            case SpeechRecognizer.ERROR_SPEECH_TIMEOUT:
+                return RecognizerSession.ErrorClass.BENIGN;
+            case SpeechRecognizer.ERROR_RECOGNIZER_BUSY:
+            case SpeechRecognizer.ERROR_TOO_MANY_REQUESTS:
+            case SpeechRecognizer.ERROR_NETWORK:
+            case SpeechRecognizer.ERROR_NETWORK_TIMEOUT:
+                return RecognizerSession.ErrorClass.TRANSIENT;
+            case SpeechRecognizer.ERROR_INSUFFICIENT_PERMISSIONS:
+                return RecognizerSession.ErrorClass.PERMISSION;
+            default:
+                // Client, audio, server, disconnects and unsupported language
+                return RecognizerSession.ErrorClass.FATAL;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package com.rdxindia.poc_application;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-tier thumbnail cache for the preview screen. Thumbnails are made while
+ * a capture is post-processed, kept as bitmaps in a byte-bounded LRU and as
+ * JPEGs in a {@link ThumbnailPack}. Bitmaps evicted from memory are reused
+ * as decode targets for the next thumbnail paged in from disk.
+ *
+ * <p>A thumbnail that is shown must be taken with {@link #acquireCached} or
+ * {@link #acquire} and handed back with {@link #release} once it is off
+ * screen; until then it is never reused, even if evicted.
+ */
+class ThumbnailCache {
+
+    private static final String TAG = "ThumbnailCache";
+    /** Longest edge of a thumbnail, in pixels. */
+    static final int THUMB_SIZE = 320;
+    private static final int THUMB_QUALITY = 80;
+    private static final int MAX_REUSABLE = 4;
+
+    private final ThumbnailPack disk;
+    private final LruCache<String, Bitmap> memory;
+    // Guarded by reusable, as are the pins
+    private final ArrayDeque<Bitmap> reusable = new ArrayDeque<>();
+    private final Map<Bitmap, Integer> pins = new IdentityHashMap<>();
+    // Evicted while pinned; reusable once the last pin goes
+    private final Set<Bitmap> evictedPinned = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final ThreadLocal<byte[]> readBuffer = ThreadLocal.withInitial(() -> new byte[64 * 1024]);
+
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong diskMisses = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final LatencyHistogram diskDecode = new LatencyHistogram("disk");
+    private final LatencyHistogram sourceDecode = new LatencyHistogram("source");
+    private final LatencyHistogram captureDecode = new LatencyHistogram("capture");
+
+    ThumbnailCache(File dir, int memoryBytes) throws IOException {
+        disk = ThumbnailPack.open(dir);
+        memory = new LruCache<String, Bitmap>(memoryBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue,
+                                        Bitmap newValue) {
+                if (evicted && oldValue.isMutable()) {
+                    synchronized (reusable) {
+                        if (pins.containsKey(oldValue)) {
+                            evictedPinned.add(oldValue);
+                        } else {
+                            offerReusable(oldValue);
+                        }
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Thumbnail of a captured JPEG. The decoder scales by 1/2, 1/4 or 1/8 in
+     * the DCT domain, so this never reconstructs the full-size frame.
+     */
+    Bitmap fromJpeg(byte[] jpeg, int offset, int length, int rotation) {
+        long start = System.nanoTime();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(jpeg, offset, length, options);
+        options.inSampleSize = sampleSize(options.outWidth, options.outHeight, THUMB_SIZE);
+        options.inJustDecodeBounds = false;
+        Bitmap sampled = BitmapFactory.decodeByteArray(jpeg, offset, length, options);
+        Bitmap thumbnail = sampled == null ? null : fit(sampled, rotation, THUMB_SIZE);
+        if (sampled != null && sampled != thumbnail) sampled.recycle();
+        captureDecode.record(System.nanoTime() - start);
+        return thumbnail;
+    }
+
+    /** Thumbnail of a frame that is already decoded. */
+    Bitmap fromBitmap(Bitmap frame, int rotation) {
+        long start = System.nanoTime();
+        Bitmap thumbnail = fit(frame, rotation, THUMB_SIZE);
+        captureDecode.record(System.nanoTime() - start);
+        return thumbnail;
+    }
+
+    // Scales down to maxEdge and turns upright; the result is mutable so it can be reused
+    private static Bitmap fit(Bitmap source, int rotation, int maxEdge) {
+        float scale = Math.min(1f, (float) maxEdge
+                / Math.max(source.getWidth(), source.getHeight()));
+        Matrix matrix = new Matrix();
+        matrix.postScale(scale, scale);
+        matrix.postRotate(rotation);
+        Bitmap thumbnail = Bitmap.createBitmap(source, 0, 0, source.getWidth(), source.getHeight(),
+                matrix, true);
+        return thumbnail.isMutable() ? thumbnail : thumbnail.copy(Bitmap.Config.ARGB_8888, true);
+    }
+
+    static int sampleSize(int width, int height, int target) {
+        int sample = 1;
+        while (Math.max(width, height) / (sample * 2) >= target) sample *= 2;
+        return sample;
+    }
+
+    /** Stores a new thumbnail in both tiers. */
+    void put(String name, Bitmap thumbnail) {
+        memory.put(name, thumbnail);
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream(32 * 1024);
+        thumbnail.compress(Bitmap.CompressFormat.JPEG, THUMB_QUALITY, jpeg);
+        try {
+            disk.put(name, jpeg.toByteArray(), 0, jpeg.size());
+            disk.compactIfWasteful();
+        } catch (IOException e) {
+            Log.w(TAG, "Could not store thumbnail " + name, e);
+        }
+    }
+
+    /** The thumbnail, pinned, if it is in memory; safe on the UI thread. */
+    Bitmap acquireCached(String name) {
+        synchronized (reusable) {
+            // Under the lock, so an eviction cannot pool it before the pin
+            Bitmap bitmap = memory.get(name);
+            if (bitmap != null) pin(bitmap);
+            return bitmap;
+        }
+    }
+
+    /** Hands back a thumbnail from {@link #acquireCached} or {@link #acquire}. */
+    void release(Bitmap bitmap) {
+        synchronized (reusable) {
+            Integer count = pins.get(bitmap);
+            if (count == null) return;
+            if (count > 1) {
+                pins.put(bitmap, count - 1);
+                return;
+            }
+            pins.remove(bitmap);
+            if (evictedPinned.remove(bitmap)) offerReusable(bitmap);
+        }
+    }
+
+    // Caller holds the reusable lock
+    private void pin(Bitmap bitmap) {
+        pins.merge(bitmap, 1, Integer::sum);
+    }
+
+    private void offerReusable(Bitmap bitmap) {
+        if (reusable.size() < MAX_REUSABLE) reusable.add(bitmap);
+    }
+
+    /** Pages the thumbnail into memory from disk, as ahead of showing it. */
+    void prefetch(String name) {
+        get(name, false);
+    }
+
+    // From memory or disk, or null. Reads the disk; keep off the UI thread
+    private Bitmap get(String name, boolean pinned) {
+        Bitmap bitmap = pinned ? acquireCached(name) : memory.get(name);
+        if (bitmap != null) return bitmap;
+
+        long start = System.nanoTime();
+        ByteBuffer data;
+        try {
+            data = disk.get(name);
+        } catch (IOException e) {
+            Log.w(TAG, "Thumbnail pack unreadable", e);
+            data = null;
+        }
+        if (data == null) {
+            diskMisses.incrementAndGet();
+            return null;
+        }
+        diskHits.incrementAndGet();
+
+        // BitmapFactory wants an array; the mapped bytes are copied once into a reused one
+        byte[] buffer = readBuffer.get();
+        if (buffer.length < data.remaining()) {
+            buffer = new byte[data.remaining()];
+            readBuffer.set(buffer);
+        }
+        int length = data.remaining();
+        data.get(buffer, 0, length);
+        bitmap = decodeReusing(buffer, length);
+        diskDecode.record(System.nanoTime() - start);
+        if (bitmap != null) add(name, bitmap, pinned);
+        return bitmap;
+    }
+
+    // Pinned before it goes in, so an eviction right away cannot pool it
+    private void add(String name, Bitmap bitmap, boolean pinned) {
+        if (pinned) {
+            synchronized (reusable) {
+                pin(bitmap);
+            }
+        }
+        memory.put(name, bitmap);
+    }
+
+    /**
+     * The thumbnail for {@code photo}, pinned, decoding the photo itself as a
+     * last resort. Reads the disk; keep off the UI thread.
+     */
+    Bitmap acquire(File photo) {
+        Bitmap bitmap = get(photo.getName(), true);
+        if (bitmap != null) return bitmap;
+
+        long start = System.nanoTime();
+        bitmap = decodePhoto(photo, THUMB_SIZE);
+        if (bitmap == null) return null;
+        sourceDecode.record(System.nanoTime() - start);
+        synchronized (reusable) {
+            pin(bitmap);
+        }
+        put(photo.getName(), bitmap);
+        return bitmap;
+    }
+
+    /** Decodes a saved photo upright with its longest edge at most {@code maxEdge}. */
+    static Bitmap decodePhoto(File photo, int maxEdge) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(photo.getPath(), options);
+        options.inSampleSize = sampleSize(options.outWidth, options.outHeight, maxEdge);
+        options.inJustDecodeBounds = false;
+        Bitmap sampled = BitmapFactory.decodeFile(photo.getPath(), options);
+        if (sampled == null) return null;
+        Bitmap bitmap = fit(sampled, exifRotation(photo), maxEdge);
+        if (sampled != bitmap) sampled.recycle();
+        return bitmap;
+    }
+
+    // Saved photos keep sensor-oriented pixels and carry the rotation in EXIF
+    private static int exifRotation(File photo) {
+        try {
+            switch (new ExifInterface(photo.getPath()).getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL)) {
+                case ExifInterface.ORIENTATION_ROTATE_90:
+                    return 90;
+                case ExifInterface.ORIENTATION_ROTATE_180:
+                    return 180;
+                case ExifInterface.ORIENTATION_ROTATE_270:
+                    return 270;
+                default:
+                    return 0;
+            }
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private Bitmap decodeReusing(byte[] jpeg, int length) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inMutable = true;
+        synchronized (reusable) {
+            options.inBitmap = reusable.poll();
+        }
+        if (options.inBitmap != null) {
+            try {
+                Bitmap bitmap = BitmapFactory.decodeByteArray(jpeg, 0, length, options);
+                if (bitmap != null) {
+                    reused.incrementAndGet();
+                    return bitmap;
+                }
+            } catch (IllegalArgumentException e) {
+                // Too small for this thumbnail; decode into a new bitmap
+            }
+            options.inBitmap = null;
+        }
+        return BitmapFactory.decodeByteArray(jpeg, 0, length, options);
+    }
+
+    void trimMemory() {
+        memory.evictAll();
+        synchronized (reusable) {
+            reusable.clear();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "memory %d/%dKB hits=%d misses=%d evictions=%d reused=%d; "
+                        + "disk %s hits=%d misses=%d; decode [%s] [%s] [%s]",
+                memory.size() / 1024, memory.maxSize() / 1024, memory.hitCount(),
+                memory.missCount(), memory.evictionCount(), reused.get(),
+                disk, diskHits.get(), diskMisses.get(), captureDecode, diskDecode, sourceDecode);
+    }
+}
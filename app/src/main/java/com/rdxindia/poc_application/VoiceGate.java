@@ -0,0 +1,243 @@
+package com.rdxindia.poc_application;
+
+import android.annotation.SuppressLint;
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.os.Build;
+import android.os.Handler;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Microphone front end of the gated {@link RecognizerSession}. A capture
+ * thread reads 16 kHz mono PCM, keeps the last {@link #PRE_ROLL_MS} in a
+ * {@link PreRollBuffer} and runs a {@link VoiceActivityDetector}; once armed,
+ * the first speech onset is posted to the listener.
+ * <p>
+ * From API 33 the recognizer can read its audio from a pipe, which
+ * {@link #openAudioSource()} fills with the pre-roll followed by live audio,
+ * so the first syllable reaches it. Older recognizers open the microphone
+ * themselves, so there the gate stops capturing at onset and lets go of it.
+ * If the microphone cannot be opened the gate reports an onset at once,
+ * so recognition degrades to ungated rather than stopping.
+ */
+final class VoiceGate {
+
+    interface Listener {
+        void onSpeechOnset();
+    }
+
+    static final int SAMPLE_RATE = 16_000;
+    static final int FRAME_SAMPLES = SAMPLE_RATE / 50; // 20 ms
+    private static final int ONSET_MS = 60;
+    private static final int HANGOVER_MS = 600;
+    private static final int PRE_ROLL_MS = 400;
+
+    private final Listener listener;
+    private final Handler handler;
+    private final VoiceActivityDetector detector =
+            new VoiceActivityDetector(SAMPLE_RATE, FRAME_SAMPLES, ONSET_MS, HANGOVER_MS);
+    private final PreRollBuffer preRoll = new PreRollBuffer(SAMPLE_RATE * PRE_ROLL_MS / 1000);
+    // Pipe to the recognizer; set on the main thread, written on the capture thread
+    private final AtomicReference<OutputStream> sink = new AtomicReference<>();
+    // Read end lent to the recognizer; it is parceled later, so kept open until the window ends
+    private ParcelFileDescriptor source;
+
+    // The capture thread that should be running; changed only while holding this gate's lock
+    private volatile Thread thread;
+    private volatile boolean armed;
+
+    VoiceGate(Handler handler, Listener listener) {
+        this.handler = handler;
+        this.listener = listener;
+    }
+
+    /** Whether the recognizer can be fed through {@link #openAudioSource()}. */
+    static boolean canFeedRecognizer() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU;
+    }
+
+    /** Starts watching for speech; the next onset is reported once. Main thread. */
+    synchronized void arm() {
+        closeSink();
+        armed = true;
+        if (thread == null) startCapture();
+    }
+
+    /**
+     * Read end of a pipe carrying the pre-roll and then live audio as 16-bit
+     * mono PCM at {@link #SAMPLE_RATE}, or null when capture is not running.
+     */
+    ParcelFileDescriptor openAudioSource() {
+        if (thread == null) return null;
+        try {
+            ParcelFileDescriptor[] pipe = ParcelFileDescriptor.createPipe();
+            closeSink();
+            sink.set(new ParcelFileDescriptor.AutoCloseOutputStream(pipe[1]));
+            source = pipe[0];
+            return source;
+        } catch (IOException e) {
+            Log.e("SpeechService", "Audio pipe failed", e);
+            return null;
+        }
+    }
+
+    synchronized void stop() {
+        armed = false;
+        closeSink();
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+        }
+    }
+
+    VoiceActivityDetector getDetector() {
+        return detector;
+    }
+
+    /** A recording 16 kHz mono microphone, or null if it cannot be opened. */
+    @SuppressLint("MissingPermission") // The service only starts once RECORD_AUDIO is granted
+    static AudioRecord openMicrophone() {
+        int minBuffer = AudioRecord.getMinBufferSize(SAMPLE_RATE, AudioFormat.CHANNEL_IN_MONO,
+                AudioFormat.ENCODING_PCM_16BIT);
+        AudioRecord record = null;
+        try {
+            record = new AudioRecord(MediaRecorder.AudioSource.VOICE_RECOGNITION, SAMPLE_RATE,
+                    AudioFormat.CHANNEL_IN_MONO, AudioFormat.ENCODING_PCM_16BIT,
+                    Math.max(minBuffer, FRAME_SAMPLES * 2 * 4));
+            if (record.getState() != AudioRecord.STATE_INITIALIZED) {
+                throw new IllegalStateException("AudioRecord not initialized");
+            }
+            record.startRecording();
+            return record;
+        } catch (RuntimeException e) {
+            Log.e("SpeechService", "Microphone unavailable", e);
+            if (record != null) record.release();
+            return null;
+        }
+    }
+
+    private void startCapture() {
+        AudioRecord record = openMicrophone();
+        if (record == null) {
+            // Listen ungated rather than not at all
+            onset();
+            return;
+        }
+        AudioRecord capture = record;
+        thread = new Thread(() -> capture(capture), "VoiceGate");
+        thread.start();
+    }
+
+    private void capture(AudioRecord record) {
+        short[] frame = new short[FRAME_SAMPLES];
+        byte[] bytes = new byte[FRAME_SAMPLES * 2];
+        short[] pending = new short[preRoll.capacity()];
+        OutputStream feeding = null;
+        detector.reset();
+        try {
+            // A stopped or replaced thread finishes its frame and leaves
+            while (thread == Thread.currentThread()) {
+                int read = readFully(record, frame);
+                if (read < 0) break;
+
+                OutputStream out = sink.get();
+                if (out != feeding) {
+                    // A new recognizer window takes the pre-roll first; a closed one hands back
+                    feeding = out;
+                    if (out == null) {
+                        detector.reset();
+                    } else if (!write(out, pending, preRoll.drainTo(pending), bytes)) {
+                        feeding = null;
+                    }
+                }
+                if (feeding != null) {
+                    if (!write(feeding, frame, FRAME_SAMPLES, bytes)) {
+                        feeding = null;
+                        detector.reset();
+                    }
+                    continue;
+                }
+
+                preRoll.write(frame, 0, FRAME_SAMPLES);
+                if (detector.process(frame, 0) == VoiceActivityDetector.Event.ONSET && armed) {
+                    armed = false;
+                    if (!canFeedRecognizer()) {
+                        // The recognizer will want the microphone
+                        finishCapture();
+                        onset();
+                        break;
+                    }
+                    onset();
+                }
+            }
+        } finally {
+            record.stop();
+            record.release();
+            finishCapture();
+        }
+    }
+
+    // Lets the next arm() start a thread, unless this one was already replaced
+    private synchronized void finishCapture() {
+        if (thread == Thread.currentThread()) thread = null;
+    }
+
+    /** Fills {@code frame}; negative on a read error. */
+    static int readFully(AudioRecord record, short[] frame) {
+        int filled = 0;
+        while (filled < frame.length) {
+            int read = record.read(frame, filled, frame.length - filled);
+            if (read < 0) {
+                Log.e("SpeechService", "AudioRecord read failed: " + read);
+                return read;
+            }
+            filled += read;
+        }
+        return filled;
+    }
+
+    // Little-endian PCM in frame-sized chunks; false once the recognizer closed its end
+    private boolean write(OutputStream out, short[] samples, int count, byte[] bytes) {
+        try {
+            for (int start = 0; start < count; start += bytes.length / 2) {
+                int n = Math.min(bytes.length / 2, count - start);
+                for (int i = 0; i < n; i++) {
+                    short s = samples[start + i];
+                    bytes[2 * i] = (byte) s;
+                    bytes[2 * i + 1] = (byte) (s >> 8);
+                }
+                out.write(bytes, 0, n * 2);
+            }
+            return true;
+        } catch (IOException e) {
+            sink.compareAndSet(out, null);
+            closeQuietly(out);
+            return false;
+        }
+    }
+
+    private void onset() {
+        handler.post(listener::onSpeechOnset);
+    }
+
+    private void closeSink() {
+        closeQuietly(sink.getAndSet(null));
+        closeQuietly(source);
+        source = null;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
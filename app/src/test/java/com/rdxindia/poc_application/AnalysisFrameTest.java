@@ -0,0 +1,38 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class AnalysisFrameTest {
+
+    @Test
+    public void packsPaddedSemiPlanarPlanesAsNv21() {
+        int width = 4;
+        int height = 2;
+        // Rows padded to 8 bytes; chroma interleaved with a pixel stride of 2
+        ByteBuffer y = ByteBuffer.wrap(new byte[]{
+                1, 2, 3, 4, 0, 0, 0, 0,
+                5, 6, 7, 8});
+        ByteBuffer uv = ByteBuffer.wrap(new byte[]{20, 10, 21, 11});
+        ByteBuffer u = uv.duplicate();
+        ByteBuffer v = ByteBuffer.wrap(new byte[]{10, 20, 11});
+
+        byte[] out = new byte[width * height * 3 / 2];
+        AnalysisFrame.toNv21(y, 8, u, v, 8, 2, width, height, out);
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 10, 20, 11, 21}, out);
+    }
+
+    @Test
+    public void packsPlanarPlanes() {
+        ByteBuffer y = ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        ByteBuffer u = ByteBuffer.wrap(new byte[]{30, 31});
+        ByteBuffer v = ByteBuffer.wrap(new byte[]{40, 41});
+
+        byte[] out = new byte[12];
+        AnalysisFrame.toNv21(y, 4, u, v, 2, 1, 4, 2, out);
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 40, 30, 41, 31}, out);
+    }
+}
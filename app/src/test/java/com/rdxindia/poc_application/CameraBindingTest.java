@@ -0,0 +1,70 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CameraBindingTest {
+
+    private static final int BACK = 1;
+    private static final int FRONT = 0;
+
+    private final List<Integer> binds = new ArrayList<>();
+    private boolean fail;
+    private final CameraBinding binding = new CameraBinding(lens -> {
+        binds.add(lens);
+        return !fail;
+    });
+
+    @Test
+    public void requestsBeforeTheProviderCollapseIntoOneBind() {
+        binding.request(BACK);
+        binding.request(FRONT);
+        binding.request(BACK);
+        assertTrue(binds.isEmpty());
+
+        binding.onProviderReady();
+        binding.onProviderReady();
+        assertEquals(List.of(BACK), binds);
+        assertEquals(BACK, binding.getBound());
+    }
+
+    @Test
+    public void theBoundLensIsNotBoundAgain() {
+        binding.onProviderReady();
+        binding.request(BACK);
+        // Resume and the permission result both ask on first launch
+        binding.request(BACK);
+        assertEquals(1, binding.getBindCount());
+        assertEquals(1, binding.getSkippedCount());
+
+        binding.request(FRONT);
+        assertEquals(List.of(BACK, FRONT), binds);
+    }
+
+    @Test
+    public void aFailedBindIsRetriedByTheNextRequest() {
+        binding.onProviderReady();
+        fail = true;
+        binding.request(BACK);
+        assertEquals(CameraBinding.NONE, binding.getBound());
+        assertEquals(1, binding.getFailedCount());
+
+        fail = false;
+        binding.request(BACK);
+        assertEquals(BACK, binding.getBound());
+        assertEquals(2, binds.size());
+    }
+
+    @Test
+    public void invalidateForcesTheNextBind() {
+        binding.onProviderReady();
+        binding.request(BACK);
+        binding.invalidate();
+        binding.request(BACK);
+        assertEquals(2, binding.getBindCount());
+    }
+}
@@ -0,0 +1,181 @@
+package com.rdxindia.poc_application;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CameraSequencerTest {
+
+    // Stands in for the main thread
+    private final ExecutorService main = Executors.newSingleThreadExecutor();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final CameraSequencer sequencer = new CameraSequencer(main, timer);
+    private final BlockingQueue<CameraSequencer.Sequence> finished = new LinkedBlockingQueue<>();
+    private final List<String> started = Collections.synchronizedList(new ArrayList<>());
+
+    @After
+    public void tearDown() {
+        main.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    /** A future completed by the test, like the ones CameraControl hands out. */
+    private static final class TestFuture extends FutureTask<Void> implements ListenableFuture<Void> {
+        private final List<Runnable> listeners = new ArrayList<>();
+
+        TestFuture() {
+            super(() -> null);
+        }
+
+        void complete() {
+            set(null);
+        }
+
+        void fail(Exception e) {
+            setException(e);
+        }
+
+        @Override
+        protected void done() {
+            List<Runnable> toRun;
+            synchronized (listeners) {
+                toRun = new ArrayList<>(listeners);
+                listeners.clear();
+            }
+            for (Runnable listener : toRun) listener.run();
+        }
+
+        @Override
+        public void addListener(Runnable listener, Executor executor) {
+            synchronized (listeners) {
+                if (!isDone()) {
+                    listeners.add(() -> executor.execute(listener));
+                    return;
+                }
+            }
+            executor.execute(listener);
+        }
+    }
+
+    private TestFuture step(String name, TestFuture future) {
+        started.add(name);
+        return future;
+    }
+
+    private CameraSequencer.Sequence awaitFinished() throws InterruptedException {
+        CameraSequencer.Sequence sequence = finished.poll(5, TimeUnit.SECONDS);
+        assertNotNull("sequence did not finish", sequence);
+        return sequence;
+    }
+
+    @Test
+    public void eachStepStartsWhenThePreviousCompletes() throws Exception {
+        TestFuture zoom = new TestFuture();
+        TestFuture focus = new TestFuture();
+        sequencer.sequence("zoom")
+                .thenFuture("zoom", 5, TimeUnit.SECONDS, true, () -> step("zoom", zoom))
+                .thenFuture("focus", 5, TimeUnit.SECONDS, true, () -> step("focus", focus))
+                .then("capture", 5, TimeUnit.SECONDS, true, done -> {
+                    started.add("capture");
+                    done.succeeded();
+                })
+                .submit(finished::add);
+
+        Thread.sleep(50);
+        assertEquals(Collections.singletonList("zoom"), started);
+        zoom.complete();
+        Thread.sleep(50);
+        assertEquals(2, started.size());
+        focus.complete();
+
+        CameraSequencer.Sequence sequence = awaitFinished();
+        assertEquals(CameraSequencer.Outcome.SUCCEEDED, sequence.getOutcome());
+        assertEquals(3, started.size());
+        // Wait stage plus one per step
+        assertEquals(4, sequence.getTimer().getStageCount());
+        assertEquals("focus", sequence.getTimer().getStage(2));
+        assertTrue(sequence.getTimer().getStageNanos(2) >= TimeUnit.MILLISECONDS.toNanos(40));
+    }
+
+    @Test
+    public void optionalStepsArePassedOverAndRequiredOnesEndTheSequence() throws Exception {
+        sequencer.sequence("optional")
+                .thenFuture("focus", 50, TimeUnit.MILLISECONDS, false, TestFuture::new)
+                .thenFuture("zoom", 1, TimeUnit.SECONDS, false, () -> null)
+                .then("capture", 1, TimeUnit.SECONDS, true, CameraSequencer.Done::succeeded)
+                .submit(finished::add);
+        CameraSequencer.Sequence sequence = awaitFinished();
+        assertEquals(CameraSequencer.Outcome.SUCCEEDED, sequence.getOutcome());
+        assertEquals(CameraSequencer.Outcome.TIMED_OUT, sequence.getStepOutcome(0));
+        assertEquals(CameraSequencer.Outcome.FAILED, sequence.getStepOutcome(1));
+        assertEquals(CameraSequencer.Outcome.SUCCEEDED, sequence.getStepOutcome(2));
+
+        TestFuture zoom = new TestFuture();
+        sequencer.sequence("required")
+                .thenFuture("zoom", 1, TimeUnit.SECONDS, true, () -> zoom)
+                .then("capture", 1, TimeUnit.SECONDS, false, done -> started.add("capture"))
+                .submit(finished::add);
+        Exception error = new IllegalStateException("camera closed");
+        zoom.fail(error);
+        sequence = awaitFinished();
+        assertEquals(CameraSequencer.Outcome.FAILED, sequence.getOutcome());
+        assertSame(error, sequence.getStepError(0));
+        assertNull(sequence.getStepOutcome(1));
+        assertTrue(started.isEmpty());
+    }
+
+    @Test
+    public void sequencesRunOneAfterAnother() throws Exception {
+        TestFuture first = new TestFuture();
+        sequencer.sequence("first")
+                .thenFuture("zoom", 5, TimeUnit.SECONDS, true, () -> step("first", first))
+                .submit(finished::add);
+        sequencer.sequence("second")
+                .then("capture", 5, TimeUnit.SECONDS, true, done -> {
+                    started.add("second");
+                    done.succeeded();
+                })
+                .submit(finished::add);
+
+        Thread.sleep(50);
+        assertEquals(Collections.singletonList("first"), started);
+        first.complete();
+        assertEquals("first", awaitFinished().getName());
+        assertEquals("second", awaitFinished().getName());
+        assertEquals(2, started.size());
+    }
+
+    @Test
+    public void cancelAllEndsRunningAndQueuedSequences() throws Exception {
+        TestFuture never = new TestFuture();
+        sequencer.sequence("running")
+                .thenFuture("zoom", 5, TimeUnit.SECONDS, true, () -> never)
+                .submit(finished::add);
+        sequencer.sequence("queued")
+                .then("capture", 5, TimeUnit.SECONDS, true, done -> started.add("queued"))
+                .submit(finished::add);
+        sequencer.cancelAll();
+
+        assertEquals(CameraSequencer.Outcome.CANCELLED, awaitFinished().getOutcome());
+        assertEquals(CameraSequencer.Outcome.CANCELLED, awaitFinished().getOutcome());
+        // Completing after the cancel changes nothing
+        never.complete();
+        assertNull(finished.poll(100, TimeUnit.MILLISECONDS));
+        assertTrue(started.isEmpty());
+    }
+}
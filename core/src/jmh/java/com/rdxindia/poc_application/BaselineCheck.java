@@ -0,0 +1,130 @@
+package com.rdxindia.poc_application;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares a JMH JSON result with the checked-in baseline and exits non-zero
+ * if a benchmark's throughput fell by more than the tolerance, or if it now
+ * allocates more per operation. A benchmark whose baseline and new
+ * confidence intervals together are wider than the tolerance may fall
+ * until they stop overlapping, so run-to-run noise alone does not fail it.
+ * Allocation mostly does not depend on the machine, so it gets only a small
+ * fixed allowance beyond its own error margins; throughput does, so refresh
+ * the baseline from a run on the machine that checks it.
+ * <p>
+ * Usage: {@code BaselineCheck <baseline.json> <results.json> [tolerance]}
+ */
+public final class BaselineCheck {
+
+    // Least allocation growth allowed, in bytes per operation
+    private static final double ALLOCATION_ALLOWANCE = 64;
+
+    private static final Pattern BENCHMARK = Pattern.compile("\"benchmark\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern PARAMS = Pattern.compile("\"params\"\\s*:\\s*\\{([^}]*)}");
+    private static final Pattern SCORE = Pattern.compile("\"score\"\\s*:\\s*\"?([-0-9.eE]+|NaN)\"?");
+    private static final Pattern SCORE_ERROR =
+            Pattern.compile("\"scoreError\"\\s*:\\s*\"?([-0-9.eE]+|NaN)\"?");
+
+    private BaselineCheck() {
+    }
+
+    /**
+     * {score, score error, allocated bytes per op, allocation error} by
+     * benchmark name and parameters, NaN where the result has none.
+     */
+    static Map<String, double[]> read(String json) {
+        Map<String, double[]> results = new LinkedHashMap<>();
+        Matcher benchmark = BENCHMARK.matcher(json);
+        int start = benchmark.find() ? benchmark.start() : -1;
+        while (start >= 0) {
+            // Class.method, without the package
+            String full = benchmark.group(1);
+            String name = full.substring(full.lastIndexOf('.', full.lastIndexOf('.') - 1) + 1);
+            int end = benchmark.find() ? benchmark.start() : json.length();
+            String entry = json.substring(start, end);
+            Matcher params = PARAMS.matcher(entry);
+            if (params.find()) name += params.group(1).replaceAll("[\\s\"]", "");
+            results.put(name, new double[] {
+                    valueAfter(entry, "\"primaryMetric\"", SCORE),
+                    valueAfter(entry, "\"primaryMetric\"", SCORE_ERROR),
+                    valueAfter(entry, "\"gc.alloc.rate.norm\"", SCORE),
+                    valueAfter(entry, "\"gc.alloc.rate.norm\"", SCORE_ERROR)
+            });
+            start = end < json.length() ? end : -1;
+        }
+        return results;
+    }
+
+    private static double valueAfter(String entry, String key, Pattern pattern) {
+        int at = entry.indexOf(key);
+        if (at < 0) return Double.NaN;
+        Matcher value = pattern.matcher(entry);
+        return value.find(at) ? Double.parseDouble(value.group(1)) : Double.NaN;
+    }
+
+    /**
+     * Fraction of the baseline score a benchmark may lose: the tolerance, or
+     * the two scores' error margins together if that is wider.
+     */
+    static double allowedDrop(double[] before, double[] now, double tolerance) {
+        double noise = (errorOf(before[1]) + errorOf(now[1])) / before[0];
+        return Math.max(tolerance, Double.isNaN(noise) ? 0 : noise);
+    }
+
+    /** Bytes per operation a benchmark may allocate beyond its baseline. */
+    static double allowedGrowth(double[] before, double[] now) {
+        return Math.max(ALLOCATION_ALLOWANCE, errorOf(before[3]) + errorOf(now[3]));
+    }
+
+    // A single measured iteration has no error estimate
+    private static double errorOf(double error) {
+        return Double.isNaN(error) ? 0 : error;
+    }
+
+    /** Returns the number of regressions, printing one line per benchmark. */
+    static int compare(Map<String, double[]> baseline, Map<String, double[]> results,
+                       double tolerance, StringBuilder report) {
+        int regressions = 0;
+        for (Map.Entry<String, double[]> result : results.entrySet()) {
+            double[] now = result.getValue();
+            double[] before = baseline.get(result.getKey());
+            if (before == null) {
+                report.append(String.format(Locale.US, "NEW  %-40s %12.1f%n",
+                        result.getKey(), now[0]));
+                continue;
+            }
+            double allowed = allowedDrop(before, now, tolerance);
+            boolean slower = now[0] < before[0] * (1 - allowed);
+            boolean heavier = now[2] > before[2] + allowedGrowth(before, now);
+            if (slower || heavier) regressions++;
+            report.append(String.format(Locale.US,
+                    "%s %-40s %12.1f %+6.1f%% (-%.0f%% allowed) %8.0f B/op (was %.0f)%n",
+                    slower || heavier ? "FAIL" : "ok  ", result.getKey(), now[0],
+                    (now[0] / before[0] - 1) * 100, allowed * 100, now[2], before[2]));
+        }
+        return regressions;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, double[]> baseline = read(new String(
+                Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8));
+        Map<String, double[]> results = read(new String(
+                Files.readAllBytes(Paths.get(args[1])), StandardCharsets.UTF_8));
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) : 0.25;
+        StringBuilder report = new StringBuilder();
+        int regressions = compare(baseline, results, tolerance, report);
+        System.out.print(report);
+        if (regressions > 0) {
+            System.err.println(regressions + " benchmarks regressed against " + args[0]);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.rdxindia.poc_application;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-shot text: the file name and overlay lines from {@link CaptureNames}
+ * against the SimpleDateFormat and String.format code they replaced, and
+ * the EXIF block with the GPS position in degrees, minutes and seconds.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CaptureTextBenchmark {
+
+    private static final LocationFix FIX =
+            new LocationFix(28.613939, 77.209021, 4.5f, 0, 1709627829_000L);
+
+    private final CaptureNames names = new CaptureNames();
+    private long time = 1709627829_000L;
+
+    @Benchmark
+    public String fileName() {
+        return names.fileName(time += 1000, FIX, 3);
+    }
+
+    @Benchmark
+    public String fileNameFormatted() {
+        time += 1000;
+        String stamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault())
+                .format(new Date(time));
+        String location = String.format(Locale.US, "_%.5f_%.5f",
+                FIX.getLatitude(), FIX.getLongitude());
+        return "IMG_" + stamp + location + "_B3" + ".jpg";
+    }
+
+    @Benchmark
+    public String[] overlayLines() {
+        return names.overlayLines(FIX.getLatitude(), FIX.getLongitude(), time += 1000);
+    }
+
+    @Benchmark
+    public byte[] exifWithGps() {
+        return new ExifWriter()
+                .setOrientation(ExifWriter.ORIENTATION_ROTATE_90)
+                .setGpsLocation(FIX.getLatitude(), FIX.getLongitude())
+                .setGpsFix(FIX.getTimeMillis(), FIX.getAccuracyMeters())
+                .buildApp1();
+    }
+}
@@ -0,0 +1,85 @@
+package com.rdxindia.poc_application;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The command grammar on recognizer-style input, against the linear scan of
+ * literal phrases it replaced, which could not read numbers or typos, and
+ * against the same scan over every phrase of the grammar that has no number.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CommandMatchBenchmark {
+
+    private static final String[] INPUTS = {
+            "take a photo", "okay take 12 pictures please", "zoom three x",
+            "switch to the reer camera", "auto capture when plant is centered",
+            "what is the weather like today", "zoom 2 x and take 3 photos", "burst"
+    };
+
+    private static final String[][] LITERALS = {
+            {VoiceCommands.TAKE_PHOTO, "take a photo", "take photo", "take a picture", "capture"},
+            {VoiceCommands.BURST, "burst"},
+            {VoiceCommands.ZOOM_OUT, "zoom out", "reset zoom"},
+            {VoiceCommands.ZOOM, "zoom in", "zoom"},
+            {VoiceCommands.FRONT_CAMERA, "front camera", "selfie"},
+            {VoiceCommands.BACK_CAMERA, "back camera", "rear camera"},
+            {VoiceCommands.AUTO_CAPTURE_OFF, "auto capture off", "stop auto capture"},
+            {VoiceCommands.AUTO_CAPTURE, "auto capture"}
+    };
+
+    private CommandGrammar.Matcher matcher;
+    private String[][] phrases;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        CommandGrammar grammar = VoiceCommands.grammar();
+        matcher = grammar.newMatcher();
+        // Longest first, so "auto capture off" is found before "auto capture"
+        List<String[]> literal = new ArrayList<>();
+        for (int p = 0; p < grammar.getPatternCount(); p++) {
+            if (grammar.getPattern(p).contains("{n}")) continue;
+            literal.add(new String[] {grammar.getCommand(p), grammar.getPattern(p)});
+        }
+        literal.sort((a, b) -> b[1].length() - a[1].length());
+        phrases = literal.toArray(new String[0][]);
+    }
+
+    @Benchmark
+    public Object grammar() {
+        return matcher.match(INPUTS[next++ & 7]);
+    }
+
+    @Benchmark
+    public Object linearScan() {
+        String text = INPUTS[next++ & 7].toLowerCase(Locale.US);
+        for (String[] command : LITERALS) {
+            for (int i = 1; i < command.length; i++) {
+                if (text.contains(command[i])) return command[0];
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Object linearScanAllPhrases() {
+        String text = INPUTS[next++ & 7].toLowerCase(Locale.US);
+        for (String[] phrase : phrases) {
+            if (text.contains(phrase[1])) return phrase[0];
+        }
+        return null;
+    }
+}
@@ -0,0 +1,146 @@
+package com.rdxindia.poc_application;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Export of one 32MB segment of sixteen photos: streaming it whole, resuming
+ * in its last photo with and without the earlier checksums from the
+ * progress log, and uploading it to a loopback server in 1MB chunks.
+ * Scores are segments per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ExportBenchmark {
+
+    private static final int PHOTOS = 16;
+    private static final int PHOTO_BYTES = 2 * 1024 * 1024;
+
+    private File library;
+    private ExportPlan.Segment plan;
+    private long[] checksums;
+    private long resumeOffset;
+    private HttpServer server;
+    private final AtomicLong received = new AtomicLong();
+    private SegmentUploader uploader;
+
+    // Counts what it is given and drops it
+    private final WritableByteChannel sink = new WritableByteChannel() {
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Setup
+    public void setUp() throws IOException {
+        library = Files.createTempDirectory("export").toFile();
+        Random random = new Random(7);
+        byte[] data = new byte[PHOTO_BYTES];
+        List<PhotoIndex.Photo> photos = new ArrayList<>();
+        for (int i = 0; i < PHOTOS; i++) {
+            random.nextBytes(data);
+            String name = String.format("IMG_20240305_1430%02d_28.61394_77.20902.jpg", i);
+            Files.write(new File(library, name).toPath(), data);
+            photos.add(new PhotoIndex.Photo(name, 1709629200_000L + i * 1000, 28.61394, 77.20902));
+        }
+        plan = ExportPlan.build("bench", library, photos, Long.MAX_VALUE).getSegments().get(0);
+        ExportSegment whole = new ExportSegment(plan, library);
+        whole.transferTo(sink);
+        checksums = new long[PHOTOS];
+        for (int i = 0; i < PHOTOS; i++) checksums[i] = whole.getChecksum(i);
+        // Half way into the last photo
+        resumeOffset = whole.length() - PHOTO_BYTES / 2 - 4096;
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        uploader = new SegmentUploader("http://127.0.0.1:" + server.getAddress().getPort(),
+                1024 * 1024, 1, 0);
+    }
+
+    // Keeps only a count; a HEAD always finds the segment empty
+    private void handle(HttpExchange exchange) throws IOException {
+        long total = received.get();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[64 * 1024];
+            for (int n; (n = in.read(buffer)) > 0; ) total += n;
+        }
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            total = 0;
+        }
+        received.set(total);
+        exchange.getResponseHeaders().set(SegmentUploader.OFFSET_HEADER, Long.toString(total));
+        exchange.sendResponseHeaders("HEAD".equals(exchange.getRequestMethod()) ? 200 : 204, -1);
+        exchange.close();
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+        File[] files = library.listFiles();
+        if (files != null) {
+            for (File file : files) file.delete();
+        }
+        library.delete();
+    }
+
+    @Benchmark
+    public long streamSegment() throws IOException {
+        return new ExportSegment(plan, library).transferTo(sink);
+    }
+
+    // After a restart with no progress log: every earlier photo is read again for the manifest
+    @Benchmark
+    public long resumeCold() throws IOException {
+        ExportSegment segment = new ExportSegment(plan, library);
+        return segment.transferTo(resumeOffset, Long.MAX_VALUE, sink);
+    }
+
+    @Benchmark
+    public long resumeSeeded() throws IOException {
+        ExportSegment segment = new ExportSegment(plan, library);
+        for (int i = 0; i < PHOTOS - 1; i++) segment.setChecksum(i, checksums[i]);
+        return segment.transferTo(resumeOffset, Long.MAX_VALUE, sink);
+    }
+
+    @Benchmark
+    public long uploadLoopback() throws IOException {
+        return uploader.upload(new ExportSegment(plan, library), null);
+    }
+}
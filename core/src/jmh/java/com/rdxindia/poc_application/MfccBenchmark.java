@@ -0,0 +1,70 @@
+package com.rdxindia.poc_application;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One second of 16 kHz audio through the MFCC front end, and the keyword
+ * spotter's per-frame cost with a full set of templates; both run on the
+ * capture thread in real time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MfccBenchmark {
+
+    private static final int SAMPLE_RATE = 16000;
+    private static final int PHRASES = 10;
+    private static final int TEMPLATES_PER_PHRASE = 3;
+    private static final int TEMPLATE_FRAMES = 60;
+
+    private final short[] second = new short[SAMPLE_RATE];
+    private final MfccExtractor extractor = MfccExtractor.forSampleRate(SAMPLE_RATE);
+    private final KeywordSpotter spotter = new KeywordSpotter(13, 0.12f);
+    private float[][] frames;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        for (int i = 0; i < second.length; i++) {
+            double voiced = Math.sin(2 * Math.PI * 180 * i / SAMPLE_RATE)
+                    + 0.5 * Math.sin(2 * Math.PI * 720 * i / SAMPLE_RATE);
+            second[i] = (short) (4000 * voiced + random.nextGaussian() * 300);
+        }
+        for (int p = 0; p < PHRASES; p++) {
+            for (int t = 0; t < TEMPLATES_PER_PHRASE; t++) {
+                spotter.addTemplate("phrase " + p, randomFrames(random, TEMPLATE_FRAMES));
+            }
+        }
+        frames = randomFrames(random, 256);
+    }
+
+    private static float[][] randomFrames(Random random, int count) {
+        float[][] out = new float[count][13];
+        for (float[] frame : out) {
+            for (int c = 0; c < frame.length; c++) frame[c] = (float) random.nextGaussian();
+        }
+        return out;
+    }
+
+    @Benchmark
+    public int mfccOneSecond(Blackhole blackhole) {
+        extractor.reset();
+        return extractor.process(second, 0, second.length, blackhole::consume);
+    }
+
+    @Benchmark
+    public Object spotterFrame() {
+        return spotter.onFrame(frames[next++ & 255]);
+    }
+}
@@ -0,0 +1,119 @@
+package com.rdxindia.poc_application;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+/**
+ * The dedup stage: hashing a 1920x1080 JPEG from its luma DC terms, and
+ * looking a hash up among a few thousand recent ones in the BK-tree against
+ * comparing with every one of them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PerceptualHashBenchmark {
+
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+    private static final int RECENT = 4096;
+
+    /** A few thousand recent hashes, in the tree and in a plain array. */
+    @State(Scope.Thread)
+    public static class Recent {
+        // The detector's drop and link radii
+        @Param({"3", "8"})
+        int radius;
+
+        final BkTree<Integer> tree = new BkTree<>();
+        final long[] hashes = new long[RECENT];
+        final long[] queries = new long[256];
+        int next;
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(5);
+            // Bursts of eight near-copies of each scene
+            for (int i = 0; i < RECENT; i++) {
+                hashes[i] = i % 8 == 0 ? random.nextLong()
+                        : hashes[i - i % 8] ^ (1L << random.nextInt(64));
+                tree.add(hashes[i], i);
+            }
+            for (int i = 0; i < queries.length; i++) {
+                // Half copies of a stored shot, half new scenes
+                queries[i] = i % 2 == 0
+                        ? hashes[random.nextInt(RECENT)] ^ (1L << random.nextInt(64))
+                        : random.nextLong();
+            }
+        }
+
+        long nextQuery() {
+            next = (next + 1) % queries.length;
+            return queries[next];
+        }
+    }
+
+    private final PerceptualHash hasher = new PerceptualHash();
+    private ByteBuffer jpeg;
+
+    @Setup
+    public void setUp() throws IOException {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(3);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int shade = (x * 255 / WIDTH + random.nextInt(24)) & 0xFF;
+                image.setRGB(x, y, shade << 16 | (y * 255 / HEIGHT) << 8 | (255 - shade));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        jpeg = ByteBuffer.allocateDirect(out.size());
+        jpeg.put(out.toByteArray()).flip();
+    }
+
+    @Benchmark
+    public long dHashJpeg() throws IOException {
+        return hasher.dHashJpeg(jpeg);
+    }
+
+    @Benchmark
+    public long pHashJpeg() throws IOException {
+        return hasher.pHashJpeg(jpeg);
+    }
+
+    @Benchmark
+    public Object treeNearest(Recent recent) {
+        return recent.tree.nearest(recent.nextQuery(), recent.radius);
+    }
+
+    // What the tree has to beat
+    @Benchmark
+    public int linearNearest(Recent recent) {
+        long query = recent.nextQuery();
+        int best = -1;
+        int bestDistance = recent.radius + 1;
+        for (int i = 0; i < RECENT; i++) {
+            int d = PerceptualHash.distance(query, recent.hashes[i]);
+            if (d < bestDistance) {
+                best = i;
+                bestDistance = d;
+            }
+        }
+        return best;
+    }
+}
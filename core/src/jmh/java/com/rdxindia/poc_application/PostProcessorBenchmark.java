@@ -0,0 +1,57 @@
+package com.rdxindia.poc_application;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hand-off cost of the capture queue: a burst of empty jobs through a
+ * {@link PostProcessor}, submit to completion.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PostProcessorBenchmark {
+
+    private static final int BURST = 20;
+
+    private PostProcessor processor;
+    private final PostProcessor.Job job = new PostProcessor.Job() {
+        @Override
+        public void run(boolean degraded) {
+        }
+
+        @Override
+        public void onDropped() {
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        // BLOCK, so every job of a burst larger than the queue still runs
+        processor = new PostProcessor(2, 8, PostProcessor.Policy.BLOCK);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        processor.shutdown();
+        processor.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public long burst() {
+        long target = processor.getSubmittedCount() + BURST;
+        for (int i = 0; i < BURST; i++) processor.submit(job);
+        while (processor.getCompletedCount() < target) Thread.onSpinWait();
+        return target;
+    }
+}
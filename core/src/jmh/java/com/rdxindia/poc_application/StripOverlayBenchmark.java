@@ -0,0 +1,93 @@
+package com.rdxindia.poc_application;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+/**
+ * The in-memory capture path: stamping the overlay into a 1920x1080 JPEG by
+ * re-encoding only the MCUs under it, with the EXIF block spliced in, to a
+ * channel that discards the bytes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class StripOverlayBenchmark {
+
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+
+    private final JpegStripOverlay overlay = new JpegStripOverlay();
+    private final ExifWriter exif = new ExifWriter()
+            .setGpsLocation(28.613939, 77.209021)
+            .setGpsFix(1709627829_000L, 4.5f);
+    private final WritableByteChannel sink = new WritableByteChannel() {
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            src.position(src.limit());
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+    // The coordinate block's size, bottom-left, painted white
+    private final OverlayPainter painter = new OverlayPainter() {
+        @Override
+        public void getBounds(int uprightWidth, int uprightHeight, int[] outBounds) {
+            outBounds[0] = 13;
+            outBounds[1] = uprightHeight - 180;
+            outBounds[2] = 420;
+            outBounds[3] = uprightHeight - 13;
+        }
+
+        @Override
+        public void paint(int[] argb, int width, int height, int left, int top,
+                          int imageWidth, int imageHeight, int rotationDegrees) {
+            for (int i = 0; i < width * height; i += 7) argb[i] = 0xFFFFFFFF;
+        }
+    };
+    private ByteBuffer jpeg;
+
+    @Setup
+    public void setUp() throws IOException {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(3);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int shade = (x * 255 / WIDTH + random.nextInt(24)) & 0xFF;
+                image.setRGB(x, y, shade << 16 | (y * 255 / HEIGHT) << 8 | (255 - shade));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        jpeg = ByteBuffer.allocateDirect(out.size());
+        jpeg.put(out.toByteArray()).flip();
+    }
+
+    @Benchmark
+    public void rewrite() throws IOException {
+        overlay.rewrite(jpeg, sink, exif, painter, 90);
+    }
+}
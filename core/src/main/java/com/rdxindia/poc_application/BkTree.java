@@ -0,0 +1,204 @@
+package com.rdxindia.poc_application;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Burkhard-Keller tree of 64-bit hashes under Hamming distance, for finding
+ * every stored hash within a few bits of a new one without comparing
+ * against all of them. Each child hangs off its parent at its distance from
+ * it, so by the triangle inequality a search within {@code radius} of a
+ * hash {@code d} bits from a node only needs the children at
+ * {@code d - radius} to {@code d + radius}. Nodes live in parallel arrays,
+ * children as a first-child/next-sibling list, so a search walks flat
+ * memory and allocates nothing but its results. Removal leaves the node in
+ * place as a tombstone until they outnumber the live entries and the tree
+ * is rebuilt. Not thread-safe.
+ *
+ * @param <V> what each hash stands for
+ */
+public final class BkTree<V> {
+
+    // Tombstones tolerated before a removal rebuilds the tree
+    private static final int MIN_REBUILD = 16;
+    private static final int NONE = -1;
+
+    public static final class Entry<V> {
+        private final long hash;
+        private final V value;
+
+        private Entry(long hash, V value) {
+            this.hash = hash;
+            this.value = value;
+        }
+
+        public long getHash() {
+            return hash;
+        }
+
+        public V getValue() {
+            return value;
+        }
+    }
+
+    private long[] hashes = new long[16];
+    private Object[] values = new Object[16];
+    private int[] firstChild = new int[16];
+    private int[] nextSibling = new int[16];
+    // Distance from each node to its parent
+    private byte[] edge = new byte[16];
+    private boolean[] removed = new boolean[16];
+    private int nodeCount;
+    private int size;
+    private int[] stack = new int[16];
+    private int lastVisited;
+
+    /** Adds {@code hash}; {@code value} must not be null. */
+    public void add(long hash, V value) {
+        if (value == null) throw new NullPointerException("value");
+        if (nodeCount == hashes.length) grow();
+        int added = nodeCount++;
+        hashes[added] = hash;
+        values[added] = value;
+        firstChild[added] = NONE;
+        nextSibling[added] = NONE;
+        removed[added] = false;
+        size++;
+        if (added == 0) return;
+
+        int node = 0;
+        while (true) {
+            int d = PerceptualHash.distance(hash, hashes[node]);
+            int child = child(node, d);
+            if (child == NONE) {
+                edge[added] = (byte) d;
+                nextSibling[added] = firstChild[node];
+                firstChild[node] = added;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    private int child(int node, int distance) {
+        for (int c = firstChild[node]; c != NONE; c = nextSibling[c]) {
+            if (edge[c] == distance) return c;
+        }
+        return NONE;
+    }
+
+    private void grow() {
+        int capacity = hashes.length * 2;
+        hashes = Arrays.copyOf(hashes, capacity);
+        values = Arrays.copyOf(values, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        nextSibling = Arrays.copyOf(nextSibling, capacity);
+        edge = Arrays.copyOf(edge, capacity);
+        removed = Arrays.copyOf(removed, capacity);
+    }
+
+    /** Removes one entry with exactly {@code hash} and an equal value. */
+    public boolean remove(long hash, V value) {
+        int node = nodeCount == 0 ? NONE : 0;
+        while (node != NONE) {
+            // Entries with the same hash chain down through distance 0
+            if (hashes[node] == hash && !removed[node] && values[node].equals(value)) {
+                removed[node] = true;
+                values[node] = null;
+                size--;
+                int tombstones = nodeCount - size;
+                if (tombstones > size && tombstones >= MIN_REBUILD) rebuild();
+                return true;
+            }
+            node = child(node, PerceptualHash.distance(hash, hashes[node]));
+        }
+        return false;
+    }
+
+    /** The entry closest to {@code hash} within {@code radius} bits, or null. */
+    public Entry<V> nearest(long hash, int radius) {
+        lastVisited = 0;
+        if (nodeCount == 0) return null;
+        int best = NONE;
+        int bestDistance = radius + 1;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            lastVisited++;
+            int d = PerceptualHash.distance(hash, hashes[node]);
+            if (d < bestDistance && !removed[node]) {
+                best = node;
+                bestDistance = d;
+                if (d == 0) break;
+            }
+            // Narrows as closer entries turn up
+            int reach = bestDistance - 1;
+            for (int c = firstChild[node]; c != NONE; c = nextSibling[c]) {
+                if (Math.abs(edge[c] - d) <= reach) top = push(top, c);
+            }
+        }
+        return best == NONE ? null : entry(best);
+    }
+
+    /** Every entry within {@code radius} bits of {@code hash}, in no particular order. */
+    public List<Entry<V>> search(long hash, int radius) {
+        lastVisited = 0;
+        List<Entry<V>> found = new ArrayList<>();
+        if (nodeCount == 0) return found;
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            lastVisited++;
+            int d = PerceptualHash.distance(hash, hashes[node]);
+            if (d <= radius && !removed[node]) found.add(entry(node));
+            for (int c = firstChild[node]; c != NONE; c = nextSibling[c]) {
+                if (Math.abs(edge[c] - d) <= radius) top = push(top, c);
+            }
+        }
+        return found;
+    }
+
+    private int push(int top, int node) {
+        if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+        stack[top] = node;
+        return top + 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry<V> entry(int node) {
+        return new Entry<>(hashes[node], (V) values[node]);
+    }
+
+    /** Live entries. */
+    public int size() {
+        return size;
+    }
+
+    /** Nodes the last search compared against, tombstones included. */
+    public int getLastVisited() {
+        return lastVisited;
+    }
+
+    public void clear() {
+        Arrays.fill(values, 0, nodeCount, null);
+        nodeCount = 0;
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void rebuild() {
+        long[] liveHashes = new long[size];
+        Object[] liveValues = new Object[size];
+        int live = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            if (removed[node]) continue;
+            liveHashes[live] = hashes[node];
+            liveValues[live++] = values[node];
+        }
+        clear();
+        for (int i = 0; i < live; i++) add(liveHashes[i], (V) liveValues[i]);
+    }
+}
@@ -0,0 +1,186 @@
+package com.rdxindia.poc_application;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs an {@link ExportPlan}: streams each segment to the server with a
+ * {@link SegmentUploader} and keeps a progress log next to the plan, so a
+ * run that is cut short picks up where it stopped. The log is appended a
+ * line at a time: {@code crc <segment> <item> <hex>} as each photo's
+ * checksum is worked out and {@code done <segment>} once the server has the
+ * whole segment. On the next run finished segments are skipped and the
+ * logged checksums are handed back to the segment, so resuming inside one
+ * does not read its earlier photos again. Interrupting the running thread
+ * stops the export between chunks.
+ */
+public final class CaptureExporter {
+
+    public interface Listener {
+        /** After each chunk; bytes count the segment stream, headers and manifests included. */
+        void onProgress(int segmentsDone, int segmentCount, long bytesDone, long bytesTotal);
+    }
+
+    public static final class Result {
+        private final int segmentCount;
+        private final int segmentsSkipped;
+        private final long bytesSent;
+        private final long bytesResumed;
+        private final long elapsedMillis;
+
+        Result(int segmentCount, int segmentsSkipped, long bytesSent, long bytesResumed,
+               long elapsedMillis) {
+            this.segmentCount = segmentCount;
+            this.segmentsSkipped = segmentsSkipped;
+            this.bytesSent = bytesSent;
+            this.bytesResumed = bytesResumed;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int getSegmentCount() {
+            return segmentCount;
+        }
+
+        /** Segments an earlier run had finished. */
+        public int getSegmentsSkipped() {
+            return segmentsSkipped;
+        }
+
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        /** Bytes of unfinished segments the server already had. */
+        public long getBytesResumed() {
+            return bytesResumed;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%d segments (%d skipped), %.1fMB sent, "
+                            + "%.1fMB resumed in %dms", segmentCount, segmentsSkipped,
+                    bytesSent / 1e6, bytesResumed / 1e6, elapsedMillis);
+        }
+    }
+
+    private final ExportPlan plan;
+    private final File library;
+    private final File stateFile;
+    private final SegmentUploader uploader;
+
+    /**
+     * @param stateFile progress log, created on the first run and kept for
+     *                  the next until the export finishes
+     */
+    public CaptureExporter(ExportPlan plan, File library, File stateFile,
+                           SegmentUploader uploader) {
+        this.plan = plan;
+        this.library = library;
+        this.stateFile = stateFile;
+        this.uploader = uploader;
+    }
+
+    public Result run(Listener listener) throws IOException {
+        long start = System.currentTimeMillis();
+        Set<String> done = new HashSet<>();
+        Map<String, Map<Integer, Long>> checksums = new HashMap<>();
+        readState(done, checksums);
+
+        List<ExportPlan.Segment> segments = plan.getSegments();
+        long sentBefore = uploader.getBytesSent();
+        int skipped = 0;
+        long resumed = 0;
+        try (Writer log = new OutputStreamWriter(new FileOutputStream(stateFile, true),
+                StandardCharsets.UTF_8)) {
+            for (int i = 0; i < segments.size(); i++) {
+                ExportPlan.Segment segment = segments.get(i);
+                if (done.contains(segment.getName())) {
+                    skipped++;
+                    continue;
+                }
+                ExportSegment stream = new ExportSegment(segment, library);
+                boolean[] logged = new boolean[segment.getItems().size()];
+                Map<Integer, Long> known = checksums.get(segment.getName());
+                if (known != null) {
+                    for (Map.Entry<Integer, Long> e : known.entrySet()) {
+                        if (e.getKey() < 0 || e.getKey() >= logged.length) continue;
+                        stream.setChecksum(e.getKey(), e.getValue());
+                        logged[e.getKey()] = true;
+                    }
+                }
+                final int segmentsDone = i;
+                resumed += uploader.upload(stream, (s, sent, length) -> {
+                    try {
+                        logChecksums(log, stream, logged);
+                    } catch (IOException e) {
+                        // Only costs a re-read on the next resume
+                    }
+                    if (listener != null) {
+                        listener.onProgress(segmentsDone, segments.size(), sent, length);
+                    }
+                });
+                logChecksums(log, stream, logged);
+                log.write("done " + segment.getName() + "\n");
+                log.flush();
+                if (listener != null) {
+                    listener.onProgress(i + 1, segments.size(), stream.length(), stream.length());
+                }
+            }
+        }
+        return new Result(segments.size(), skipped, uploader.getBytesSent() - sentBefore,
+                resumed, System.currentTimeMillis() - start);
+    }
+
+    private static void logChecksums(Writer log, ExportSegment stream, boolean[] logged)
+            throws IOException {
+        boolean wrote = false;
+        for (int item = 0; item < logged.length; item++) {
+            if (logged[item] || !stream.hasChecksum(item)) continue;
+            log.write(String.format(Locale.US, "crc %s %d %08x\n",
+                    stream.getName(), item, stream.getChecksum(item)));
+            logged[item] = true;
+            wrote = true;
+        }
+        if (wrote) log.flush();
+    }
+
+    // A line torn by process death is ignored
+    private void readState(Set<String> done, Map<String, Map<Integer, Long>> checksums)
+            throws IOException {
+        if (!stateFile.exists()) return;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(stateFile), StandardCharsets.UTF_8))) {
+            for (String line; (line = in.readLine()) != null; ) {
+                String[] f = line.split(" ");
+                try {
+                    if (f.length == 2 && f[0].equals("done")) {
+                        done.add(f[1]);
+                    } else if (f.length == 4 && f[0].equals("crc") && f[3].length() == 8) {
+                        Map<Integer, Long> segment = checksums.get(f[1]);
+                        if (segment == null) checksums.put(f[1], segment = new HashMap<>());
+                        segment.put(Integer.parseInt(f[2]), Long.parseLong(f[3], 16));
+                    }
+                } catch (NumberFormatException e) {
+                    // Torn line
+                }
+            }
+        }
+    }
+}
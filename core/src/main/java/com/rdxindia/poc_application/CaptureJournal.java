@@ -0,0 +1,450 @@
+package com.rdxindia.poc_application;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of capture jobs, so a photo interrupted by
+ * process death is finished or rolled back on the next start instead of being
+ * left half written.
+ *
+ * <p>A job is {@link Stage#CAPTURED} once the frame is on disk (the saved
+ * file, or a spool copy of an in-memory frame). Post-processing writes the
+ * result to {@link Entry#getTempFile()}; {@link #commit} then journals
+ * {@link Stage#PROCESSED}, waits until that record is durable, renames the
+ * temp file over the output and journals {@link Stage#COMMITTED}. Records are
+ * group-committed by one flusher thread, so concurrent jobs share an fsync
+ * and nothing on the shutter path waits for the disk.
+ */
+public final class CaptureJournal implements Closeable {
+
+    public enum Stage { CAPTURED, PROCESSED, COMMITTED, ROLLED_BACK }
+
+    public static final class Entry {
+        private final long id;
+        private final File output;
+        private final File spool;
+        private final long spoolLength;
+        private final int rotation;
+        private final long captureTimeMillis;
+        private final LocationFix fix;
+        private volatile Stage stage = Stage.CAPTURED;
+
+        Entry(long id, File output, File spool, long spoolLength, int rotation,
+              long captureTimeMillis, LocationFix fix) {
+            this.id = id;
+            this.output = output;
+            this.spool = spool;
+            this.spoolLength = spoolLength;
+            this.rotation = rotation;
+            this.captureTimeMillis = captureTimeMillis;
+            this.fix = fix;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public File getOutput() {
+            return output;
+        }
+
+        /** Copy of an in-memory frame, or null when CameraX saved the output itself. */
+        public File getSpool() {
+            return spool;
+        }
+
+        public int getRotation() {
+            return rotation;
+        }
+
+        public long getCaptureTimeMillis() {
+            return captureTimeMillis;
+        }
+
+        public LocationFix getFix() {
+            return fix;
+        }
+
+        public Stage getStage() {
+            return stage;
+        }
+
+        /** Where post-processing writes before the result is committed. */
+        public File getTempFile() {
+            return tempFileFor(output);
+        }
+    }
+
+    private static final int MAX_RECORD = 64 * 1024;
+
+    private final File file;
+    private final FileChannel channel;
+    private final Thread flusher;
+    private final List<Entry> unfinished;
+    private long nextId;
+
+    private final Object lock = new Object();
+    private final ByteArrayOutputStream scratch = new ByteArrayOutputStream();
+    private final DataOutputStream scratchOut = new DataOutputStream(scratch);
+    private final CRC32 crc = new CRC32();
+    private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private ByteArrayOutputStream flushing = new ByteArrayOutputStream();
+    private long appended;
+    private long durable;
+    private IOException failure;
+    private boolean closed;
+    private long syncCount;
+
+    private CaptureJournal(File file, List<Entry> unfinished, long nextId) throws IOException {
+        this.file = file;
+        this.unfinished = unfinished;
+        this.nextId = nextId;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.flusher = new Thread(this::flushLoop, "CaptureJournal");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Replays {@code file}, keeping the jobs that never reached
+     * {@link Stage#COMMITTED} or {@link Stage#ROLLED_BACK}, and compacts it
+     * down to those. A torn record at the tail is discarded.
+     */
+    public static CaptureJournal open(File file) throws IOException {
+        Map<Long, Entry> entries = new LinkedHashMap<>();
+        long maxId = 0;
+        if (file.exists()) {
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(new FileInputStream(file)))) {
+                byte[] payload = new byte[256];
+                CRC32 check = new CRC32();
+                while (true) {
+                    int length;
+                    long expected;
+                    try {
+                        length = in.readInt();
+                        expected = in.readInt() & 0xFFFFFFFFL;
+                        if (length <= 0 || length > MAX_RECORD) break;
+                        if (payload.length < length) payload = new byte[length];
+                        in.readFully(payload, 0, length);
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    check.reset();
+                    check.update(payload, 0, length);
+                    if (check.getValue() != expected) break;
+                    maxId = Math.max(maxId, apply(entries, new DataInputStream(
+                            new ByteArrayInputStream(payload, 0, length))));
+                }
+            }
+        }
+
+        List<Entry> unfinished = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.stage == Stage.CAPTURED || entry.stage == Stage.PROCESSED) {
+                unfinished.add(entry);
+            }
+        }
+        compact(file, unfinished);
+        return new CaptureJournal(file, unfinished, maxId + 1);
+    }
+
+    private static long apply(Map<Long, Entry> entries, DataInputStream in) throws IOException {
+        long id = in.readLong();
+        Stage stage = Stage.values()[in.readByte()];
+        Entry entry = entries.get(id);
+        if (stage == Stage.CAPTURED) {
+            File output = new File(in.readUTF());
+            String spool = in.readUTF();
+            long spoolLength = in.readLong();
+            int rotation = in.readInt();
+            long captureTime = in.readLong();
+            LocationFix fix = null;
+            if (in.readBoolean()) {
+                double latitude = in.readDouble();
+                double longitude = in.readDouble();
+                float accuracy = in.readFloat();
+                long fixTime = in.readLong();
+                fix = new LocationFix(latitude, longitude, accuracy, 0, fixTime);
+            }
+            entry = new Entry(id, output, spool.isEmpty() ? null : new File(spool), spoolLength,
+                    rotation, captureTime, fix);
+            entries.put(id, entry);
+        } else if (entry != null) {
+            entry.stage = stage;
+        }
+        return id;
+    }
+
+    // Rewrites the journal with only the unfinished jobs, via temp file and rename
+    private static void compact(File file, List<Entry> unfinished) throws IOException {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream scratch = new ByteArrayOutputStream();
+        DataOutputStream scratchOut = new DataOutputStream(scratch);
+        CRC32 crc = new CRC32();
+        for (Entry entry : unfinished) {
+            encode(entry, Stage.CAPTURED, scratch, scratchOut, crc, out);
+            if (entry.stage == Stage.PROCESSED) {
+                encode(entry, Stage.PROCESSED, scratch, scratchOut, crc, out);
+            }
+        }
+        try (FileChannel target = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+            while (buffer.hasRemaining()) target.write(buffer);
+            target.force(false);
+        }
+        Files.move(temp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void encode(Entry entry, Stage stage, ByteArrayOutputStream scratch,
+                               DataOutputStream scratchOut, CRC32 crc,
+                               ByteArrayOutputStream out) throws IOException {
+        scratch.reset();
+        scratchOut.writeLong(entry.id);
+        scratchOut.writeByte(stage.ordinal());
+        if (stage == Stage.CAPTURED) {
+            scratchOut.writeUTF(entry.output.getPath());
+            scratchOut.writeUTF(entry.spool == null ? "" : entry.spool.getPath());
+            scratchOut.writeLong(entry.spoolLength);
+            scratchOut.writeInt(entry.rotation);
+            scratchOut.writeLong(entry.captureTimeMillis);
+            scratchOut.writeBoolean(entry.fix != null);
+            if (entry.fix != null) {
+                scratchOut.writeDouble(entry.fix.getLatitude());
+                scratchOut.writeDouble(entry.fix.getLongitude());
+                scratchOut.writeFloat(entry.fix.getAccuracyMeters());
+                scratchOut.writeLong(entry.fix.getTimeMillis());
+            }
+        }
+        scratchOut.flush();
+        crc.reset();
+        byte[] payload = scratch.toByteArray();
+        crc.update(payload, 0, payload.length);
+        DataOutputStream frame = new DataOutputStream(out);
+        frame.writeInt(payload.length);
+        frame.writeInt((int) crc.getValue());
+        frame.write(payload);
+        frame.flush();
+    }
+
+    public static File tempFileFor(File output) {
+        return new File(output.getParentFile(), output.getName() + ".overlay.tmp");
+    }
+
+    /** Jobs found unfinished when the journal was opened. */
+    public List<Entry> getUnfinished() {
+        return unfinished;
+    }
+
+    /**
+     * Settles the unfinished jobs: a processed result still in its temp file
+     * is committed, a job whose frame is gone or truncated is rolled back and
+     * the rest are returned to be processed again and then {@link #commit}ted.
+     */
+    public List<Entry> recover() throws IOException {
+        List<Entry> redo = new ArrayList<>();
+        for (Entry entry : unfinished) {
+            File temp = entry.getTempFile();
+            if (entry.stage == Stage.PROCESSED) {
+                // The PROCESSED record is durable, so the temp file was complete
+                if (temp.exists()) {
+                    Files.move(temp.toPath(), entry.output.toPath(),
+                            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+                if (entry.output.exists()) {
+                    finish(entry);
+                } else {
+                    rollback(entry);
+                }
+                continue;
+            }
+
+            temp.delete();
+            boolean intact = entry.spool == null
+                    ? entry.output.exists()
+                    : entry.spool.length() == entry.spoolLength && entry.spoolLength > 0;
+            if (intact) {
+                redo.add(entry);
+            } else {
+                rollback(entry);
+            }
+        }
+        return redo;
+    }
+
+    /**
+     * Journals a new job; does not wait for the record to reach the disk.
+     * {@code spool} is null when the frame is already at {@code output}.
+     */
+    public Entry begin(File output, File spool, long spoolLength, int rotation,
+                       long captureTimeMillis, LocationFix fix) throws IOException {
+        Entry entry;
+        synchronized (lock) {
+            entry = new Entry(nextId++, output, spool, spoolLength, rotation,
+                    captureTimeMillis, fix);
+        }
+        append(entry, Stage.CAPTURED);
+        return entry;
+    }
+
+    /**
+     * Publishes the finished temp file as the job's output. Returns once the
+     * rename is done; the COMMITTED record itself is written asynchronously.
+     */
+    public void commit(Entry entry) throws IOException {
+        awaitDurable(append(entry, Stage.PROCESSED));
+        Files.move(entry.getTempFile().toPath(), entry.output.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        finish(entry);
+    }
+
+    /** Abandons the job, deleting its temp and spool files. */
+    public void rollback(Entry entry) throws IOException {
+        entry.getTempFile().delete();
+        if (entry.spool != null) entry.spool.delete();
+        append(entry, Stage.ROLLED_BACK);
+    }
+
+    private void finish(Entry entry) throws IOException {
+        if (entry.spool != null) entry.spool.delete();
+        append(entry, Stage.COMMITTED);
+    }
+
+    /** Appends a record and returns the sequence to pass to {@link #awaitDurable}. */
+    long append(Entry entry, Stage stage) throws IOException {
+        synchronized (lock) {
+            if (closed) throw new IOException("Journal closed");
+            if (failure != null) throw new IOException("Journal write failed", failure);
+            encode(entry, stage, scratch, scratchOut, crc, pending);
+            entry.stage = stage;
+            lock.notifyAll();
+            return ++appended;
+        }
+    }
+
+    /** Waits until every record up to {@code sequence} has been fsynced. */
+    void awaitDurable(long sequence) throws IOException {
+        synchronized (lock) {
+            while (durable < sequence) {
+                if (failure != null) throw new IOException("Journal write failed", failure);
+                if (closed && !flusher.isAlive()) throw new IOException("Journal closed");
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for journal");
+                }
+            }
+        }
+    }
+
+    /** Waits until everything appended so far is durable. */
+    public void sync() throws IOException {
+        long sequence;
+        synchronized (lock) {
+            sequence = appended;
+        }
+        awaitDurable(sequence);
+    }
+
+    private void flushLoop() {
+        while (true) {
+            ByteArrayOutputStream batch;
+            long sequence;
+            synchronized (lock) {
+                while (pending.size() == 0 && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.size() == 0) return;
+                // Everything appended while the last fsync ran goes out together
+                batch = pending;
+                pending = flushing;
+                flushing = batch;
+                sequence = appended;
+            }
+
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+                while (buffer.hasRemaining()) channel.write(buffer);
+                channel.force(false);
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+            batch.reset();
+
+            synchronized (lock) {
+                durable = sequence;
+                syncCount++;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /** Flushes what is pending and stops the flusher. */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    public long getRecordCount() {
+        synchronized (lock) {
+            return appended;
+        }
+    }
+
+    public long getSyncCount() {
+        synchronized (lock) {
+            return syncCount;
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (lock) {
+            return String.format(Locale.US, "%s records=%d syncs=%d durable=%d",
+                    file.getName(), appended, syncCount, durable);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.rdxindia.poc_application;
+
+import java.util.Locale;
+
+/**
+ * What the capture pipeline is up against when a shot is about to be taken,
+ * as seen by a {@link CaptureProfileEngine.Policy}. Filled in by the caller
+ * except for the recent processing time, which the engine adds from what it
+ * has been told about finished shots.
+ */
+public final class CaptureLoad {
+
+    private int shots = 1;
+    private int pendingJobs;
+    private int queueCapacity;
+    private long processingNanos;
+    private long freeHeapBytes;
+    private long maxHeapBytes;
+    private double storageBytesPerSecond;
+
+    /** Shots the command asked for. */
+    public CaptureLoad setShots(int shots) {
+        this.shots = shots;
+        return this;
+    }
+
+    /** Frames queued or being processed, out of what the queue holds. */
+    public CaptureLoad setPendingJobs(int pendingJobs, int queueCapacity) {
+        this.pendingJobs = pendingJobs;
+        this.queueCapacity = queueCapacity;
+        return this;
+    }
+
+    /** Typical time to process one frame lately; 0 if there is nothing to go on. */
+    public CaptureLoad setProcessingNanos(long processingNanos) {
+        this.processingNanos = processingNanos;
+        return this;
+    }
+
+    /** Heap the process can still grow into, out of its limit. */
+    public CaptureLoad setHeap(long freeHeapBytes, long maxHeapBytes) {
+        this.freeHeapBytes = freeHeapBytes;
+        this.maxHeapBytes = maxHeapBytes;
+        return this;
+    }
+
+    /** How fast the storage writes while it is writing; 0 if not measured yet. */
+    public CaptureLoad setStorageBytesPerSecond(double storageBytesPerSecond) {
+        this.storageBytesPerSecond = storageBytesPerSecond;
+        return this;
+    }
+
+    public int getShots() {
+        return shots;
+    }
+
+    public int getPendingJobs() {
+        return pendingJobs;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /** Pending jobs as a fraction of the queue, 0 if the capacity is unknown. */
+    public double getQueueFraction() {
+        return queueCapacity > 0 ? pendingJobs / (double) queueCapacity : 0;
+    }
+
+    public long getProcessingNanos() {
+        return processingNanos;
+    }
+
+    public long getFreeHeapBytes() {
+        return freeHeapBytes;
+    }
+
+    public long getMaxHeapBytes() {
+        return maxHeapBytes;
+    }
+
+    /** Free heap as a fraction of the limit, 1 if the limit is unknown. */
+    public double getFreeHeapFraction() {
+        return maxHeapBytes > 0 ? freeHeapBytes / (double) maxHeapBytes : 1;
+    }
+
+    public double getStorageBytesPerSecond() {
+        return storageBytesPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "%d shots, queue %d/%d, processing %.0fms, heap %.0f%% free of %dMB,"
+                        + " storage %.1fMB/s",
+                shots, pendingJobs, queueCapacity, processingNanos / 1e6,
+                getFreeHeapFraction() * 100, maxHeapBytes >> 20, storageBytesPerSecond / 1e6);
+    }
+}
@@ -0,0 +1,98 @@
+package com.rdxindia.poc_application;
+
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * The text a capture carries: its file name and the lines of the coordinate
+ * overlay. Digits are written straight into a reused builder instead of going
+ * through SimpleDateFormat and String.format, and are always ASCII whatever
+ * the default locale, which {@link PhotoIndex} relies on when it parses the
+ * names back. Not thread-safe; use one instance per thread.
+ */
+public final class CaptureNames {
+
+    private final Calendar calendar;
+    private final StringBuilder sb = new StringBuilder(64);
+
+    /** Times in the device's time zone, as the names have always been. */
+    public CaptureNames() {
+        this(TimeZone.getDefault());
+    }
+
+    public CaptureNames(TimeZone zone) {
+        calendar = Calendar.getInstance(zone, Locale.US);
+    }
+
+    /**
+     * {@code IMG_<yyyyMMdd_HHmmss>[_<lat>_<lon>][_B<n>].jpg}; {@code fix} may be
+     * null and a {@code burstShot} of 0 means a single shot.
+     */
+    public String fileName(long timeMillis, LocationFix fix, int burstShot) {
+        sb.setLength(0);
+        sb.append("IMG_");
+        appendDate(timeMillis, "", "_", "");
+        if (fix != null) {
+            sb.append('_');
+            appendFixed5(fix.getLatitude());
+            sb.append('_');
+            appendFixed5(fix.getLongitude());
+        }
+        if (burstShot > 0) sb.append("_B").append(burstShot);
+        return sb.append(".jpg").toString();
+    }
+
+    /** Latitude, longitude and local time, as drawn on the photo. */
+    public String[] overlayLines(double latitude, double longitude, long timeMillis) {
+        String[] lines = new String[3];
+        sb.setLength(0);
+        sb.append("Lat: ");
+        appendFixed5(latitude);
+        lines[0] = sb.toString();
+        sb.setLength(0);
+        sb.append("Lon: ");
+        appendFixed5(longitude);
+        lines[1] = sb.toString();
+        sb.setLength(0);
+        appendDate(timeMillis, "-", " ", ":");
+        lines[2] = sb.toString();
+        return lines;
+    }
+
+    private void appendDate(long timeMillis, String dateSeparator, String middle,
+                            String timeSeparator) {
+        calendar.setTimeInMillis(timeMillis);
+        appendDigits(calendar.get(Calendar.YEAR), 4);
+        sb.append(dateSeparator);
+        appendDigits(calendar.get(Calendar.MONTH) + 1, 2);
+        sb.append(dateSeparator);
+        appendDigits(calendar.get(Calendar.DAY_OF_MONTH), 2);
+        sb.append(middle);
+        appendDigits(calendar.get(Calendar.HOUR_OF_DAY), 2);
+        sb.append(timeSeparator);
+        appendDigits(calendar.get(Calendar.MINUTE), 2);
+        sb.append(timeSeparator);
+        appendDigits(calendar.get(Calendar.SECOND), 2);
+    }
+
+    private void appendDigits(int value, int width) {
+        for (int divisor = pow10(width - 1); divisor > 0; divisor /= 10) {
+            sb.append((char) ('0' + value / divisor % 10));
+        }
+    }
+
+    private static int pow10(int exponent) {
+        int result = 1;
+        for (int i = 0; i < exponent; i++) result *= 10;
+        return result;
+    }
+
+    // Like String.format(Locale.US, "%.5f", value), half up
+    private void appendFixed5(double value) {
+        if (value < 0 || (value == 0 && 1 / value < 0)) sb.append('-');
+        long scaled = Math.round(Math.abs(value) * 100_000);
+        sb.append(scaled / 100_000).append('.');
+        appendDigits((int) (scaled % 100_000), 5);
+    }
+}
@@ -0,0 +1,122 @@
+package com.rdxindia.poc_application;
+
+import java.util.Locale;
+
+/**
+ * How a shot is taken: the camera's capture mode, the resolution asked of
+ * it, and the JPEG quality of the result. Each of these is fixed when the
+ * capture use case is built, so changing profile means rebinding it.
+ */
+public final class CaptureProfile {
+
+    public enum Mode {
+        /** Shortest shutter lag, as CameraX's CAPTURE_MODE_MINIMIZE_LATENCY. */
+        MINIMIZE_LATENCY,
+        /** Best image, possibly from several frames, as CAPTURE_MODE_MAXIMIZE_QUALITY. */
+        MAXIMIZE_QUALITY
+    }
+
+    /** The best the camera does, for single shots with nothing else going on. */
+    public static final CaptureProfile QUALITY =
+            new CaptureProfile("quality", Mode.MAXIMIZE_QUALITY, 0, 0, 95);
+    /** What every shot used to get. */
+    public static final CaptureProfile BALANCED =
+            new CaptureProfile("balanced", Mode.MINIMIZE_LATENCY, 0, 0, 95);
+    /**
+     * About two megapixels in the sensor's 4:3 at a lower quality, for when
+     * the pipeline is falling behind.
+     */
+    public static final CaptureProfile FAST =
+            new CaptureProfile("fast", Mode.MINIMIZE_LATENCY, 1600, 1200, 85);
+
+    private final String name;
+    private final Mode mode;
+    private final int targetWidth;
+    private final int targetHeight;
+    private final int jpegQuality;
+
+    /**
+     * @param targetWidth  landscape resolution asked of the camera, or 0 with
+     *                     {@code targetHeight} 0 for the camera's default
+     * @param jpegQuality  1 to 100
+     */
+    public CaptureProfile(String name, Mode mode, int targetWidth, int targetHeight,
+                          int jpegQuality) {
+        if (jpegQuality < 1 || jpegQuality > 100) {
+            throw new IllegalArgumentException("JPEG quality out of range: " + jpegQuality);
+        }
+        if ((targetWidth == 0) != (targetHeight == 0) || targetWidth < 0 || targetHeight < 0) {
+            throw new IllegalArgumentException("Bad target resolution: "
+                    + targetWidth + "x" + targetHeight);
+        }
+        this.name = name;
+        this.mode = mode;
+        this.targetWidth = targetWidth;
+        this.targetHeight = targetHeight;
+        this.jpegQuality = jpegQuality;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public boolean hasTargetResolution() {
+        return targetWidth > 0;
+    }
+
+    public int getTargetWidth() {
+        return targetWidth;
+    }
+
+    public int getTargetHeight() {
+        return targetHeight;
+    }
+
+    public int getJpegQuality() {
+        return jpegQuality;
+    }
+
+    /**
+     * Whether a shot with this profile costs more to take and process than
+     * one with {@code other}: quality mode first, then pixels, then JPEG
+     * quality.
+     */
+    public boolean isHeavierThan(CaptureProfile other) {
+        if (mode != other.mode) return mode.ordinal() > other.mode.ordinal();
+        long pixels = pixels();
+        long otherPixels = other.pixels();
+        if (pixels != otherPixels) return pixels > otherPixels;
+        return jpegQuality > other.jpegQuality;
+    }
+
+    // The camera's default is its largest
+    private long pixels() {
+        return hasTargetResolution() ? (long) targetWidth * targetHeight : Long.MAX_VALUE;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CaptureProfile)) return false;
+        CaptureProfile other = (CaptureProfile) o;
+        return mode == other.mode && targetWidth == other.targetWidth
+                && targetHeight == other.targetHeight && jpegQuality == other.jpegQuality;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((mode.hashCode() * 31 + targetWidth) * 31 + targetHeight) * 31 + jpegQuality;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s (%s, %s, q%d)", name,
+                mode == Mode.MAXIMIZE_QUALITY ? "quality" : "latency",
+                hasTargetResolution() ? targetWidth + "x" + targetHeight : "full size",
+                jpegQuality);
+    }
+}
@@ -0,0 +1,258 @@
+package com.rdxindia.poc_application;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Picks the {@link CaptureProfile} for each shot from the pipeline's load.
+ * The {@link Policy} says what the load calls for; the engine moves to a
+ * lighter profile as soon as it is asked to, but only back to a heavier one
+ * once nothing lighter has been called for during the hold time, so a busy
+ * spell does not rebind the camera on every command. Thread-safe.
+ */
+public final class CaptureProfileEngine {
+
+    public interface Policy {
+        /**
+         * The profile {@code load} calls for. What the choice was based on
+         * goes in {@code reason}, for the decision log.
+         */
+        CaptureProfile choose(CaptureLoad load, StringBuilder reason);
+    }
+
+    /**
+     * Quality for a single shot with the pipeline idle, the fast profile as
+     * soon as the queue, heap, processing time or storage says it is falling
+     * behind, and balanced otherwise.
+     */
+    public static final class LoadPolicy implements Policy {
+
+        private final double busyQueueFraction;
+        private final double lowHeapFraction;
+        private final long slowProcessingNanos;
+        private final long idleProcessingNanos;
+        private final double slowStorageBytesPerSecond;
+
+        /** Half a queue, 15% of the heap, 1.5s per frame, 600ms when idle, 4MB/s. */
+        public LoadPolicy() {
+            this(0.5, 0.15, TimeUnit.MILLISECONDS.toNanos(1500),
+                    TimeUnit.MILLISECONDS.toNanos(600), 4e6);
+        }
+
+        /**
+         * @param busyQueueFraction         queue fill that calls for the fast profile
+         * @param lowHeapFraction           free heap below which it does too
+         * @param slowProcessingNanos       recent processing time that does too
+         * @param idleProcessingNanos       processing time under which quality is allowed
+         * @param slowStorageBytesPerSecond measured write speed below which smaller
+         *                                  files are asked for
+         */
+        public LoadPolicy(double busyQueueFraction, double lowHeapFraction,
+                          long slowProcessingNanos, long idleProcessingNanos,
+                          double slowStorageBytesPerSecond) {
+            this.busyQueueFraction = busyQueueFraction;
+            this.lowHeapFraction = lowHeapFraction;
+            this.slowProcessingNanos = slowProcessingNanos;
+            this.idleProcessingNanos = idleProcessingNanos;
+            this.slowStorageBytesPerSecond = slowStorageBytesPerSecond;
+        }
+
+        @Override
+        public CaptureProfile choose(CaptureLoad load, StringBuilder reason) {
+            if (load.getQueueFraction() >= busyQueueFraction) {
+                reason.append("queue busy");
+                return CaptureProfile.FAST;
+            }
+            if (load.getFreeHeapFraction() < lowHeapFraction) {
+                reason.append("heap low");
+                return CaptureProfile.FAST;
+            }
+            if (load.getProcessingNanos() >= slowProcessingNanos) {
+                reason.append("processing slow");
+                return CaptureProfile.FAST;
+            }
+            double storage = load.getStorageBytesPerSecond();
+            if (storage > 0 && storage < slowStorageBytesPerSecond) {
+                reason.append("storage slow");
+                return CaptureProfile.FAST;
+            }
+            if (load.getShots() > 1) {
+                reason.append("burst");
+                return CaptureProfile.BALANCED;
+            }
+            if (load.getPendingJobs() > 0 || load.getProcessingNanos() >= idleProcessingNanos) {
+                reason.append("pipeline working");
+                return CaptureProfile.BALANCED;
+            }
+            reason.append("idle");
+            return CaptureProfile.QUALITY;
+        }
+    }
+
+    /** One call to {@link #decide}. */
+    public static final class Decision {
+        private final CaptureProfile profile;
+        private final CaptureProfile previous;
+        private final CaptureProfile wanted;
+        private final CaptureLoad load;
+        private final String reason;
+
+        Decision(CaptureProfile profile, CaptureProfile previous, CaptureProfile wanted,
+                 CaptureLoad load, String reason) {
+            this.profile = profile;
+            this.previous = previous;
+            this.wanted = wanted;
+            this.load = load;
+            this.reason = reason;
+        }
+
+        /** The profile to use. */
+        public CaptureProfile getProfile() {
+            return profile;
+        }
+
+        public CaptureProfile getPrevious() {
+            return previous;
+        }
+
+        /** What the policy asked for, which differs from the profile while an upgrade is held. */
+        public CaptureProfile getWanted() {
+            return wanted;
+        }
+
+        public CaptureLoad getLoad() {
+            return load;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public boolean isChange() {
+            return !profile.equals(previous);
+        }
+
+        public boolean isHeld() {
+            return !profile.equals(wanted);
+        }
+
+        @Override
+        public String toString() {
+            return (isChange() ? previous.getName() + " -> " + profile
+                    : profile.getName() + " kept")
+                    + (isHeld() ? ", " + wanted.getName() + " held back" : "")
+                    + " (" + reason + "; " + load + ")";
+        }
+    }
+
+    // Weight of the newest frame in the processing time average
+    private static final double PROCESSING_WEIGHT = 0.25;
+
+    private final Policy policy;
+    private final LongSupplier clock;
+    private final long upgradeHoldNanos;
+
+    private CaptureProfile current;
+    // When the policy last asked for each profile
+    private final Map<CaptureProfile, Long> lastWanted = new LinkedHashMap<>();
+    private double processingNanos;
+    private String slowestStage = "none";
+    private final Map<String, Integer> chosen = new LinkedHashMap<>();
+    private long decisionCount;
+    private long changeCount;
+    private long heldCount;
+
+    /**
+     * @param initial          the profile the camera is bound with now
+     * @param clock            monotonic nanoseconds
+     * @param upgradeHoldNanos how long nothing lighter must be called for
+     *                         before a heavier profile is used again
+     */
+    public CaptureProfileEngine(Policy policy, CaptureProfile initial, LongSupplier clock,
+                                long upgradeHoldNanos) {
+        this.policy = policy;
+        this.current = initial;
+        this.clock = clock;
+        this.upgradeHoldNanos = upgradeHoldNanos;
+    }
+
+    /** Decides the profile for the next shot under {@code load} and makes it current. */
+    public synchronized Decision decide(CaptureLoad load) {
+        long now = clock.getAsLong();
+        if (processingNanos > 0) load.setProcessingNanos((long) processingNanos);
+        StringBuilder reason = new StringBuilder();
+        CaptureProfile wanted = policy.choose(load, reason);
+        CaptureProfile previous = current;
+
+        CaptureProfile next = wanted;
+        if (wanted.isHeavierThan(current) && wasLighterWanted(wanted, now)) {
+            next = current;
+            heldCount++;
+        }
+        lastWanted.put(wanted, now);
+
+        current = next;
+        decisionCount++;
+        if (!next.equals(previous)) changeCount++;
+        chosen.merge(next.getName(), 1, Integer::sum);
+        return new Decision(next, previous, wanted, load, reason.toString());
+    }
+
+    private boolean wasLighterWanted(CaptureProfile profile, long now) {
+        for (Map.Entry<CaptureProfile, Long> wanted : lastWanted.entrySet()) {
+            if (profile.isHeavierThan(wanted.getKey())
+                    && now - wanted.getValue() < upgradeHoldNanos) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Feeds the time a finished shot took to process into the next decisions. */
+    public synchronized void recordProcessing(StageTimer timer) {
+        long total = timer.getTotalNanos();
+        processingNanos = processingNanos == 0 ? total
+                : processingNanos + PROCESSING_WEIGHT * (total - processingNanos);
+        int slowest = -1;
+        for (int i = 0; i < timer.getStageCount(); i++) {
+            if (slowest < 0 || timer.getStageNanos(i) > timer.getStageNanos(slowest)) slowest = i;
+        }
+        if (slowest >= 0) {
+            slowestStage = String.format(Locale.US, "%s %.0fms",
+                    timer.getStage(slowest), timer.getStageNanos(slowest) / 1e6);
+        }
+    }
+
+    public synchronized CaptureProfile getCurrent() {
+        return current;
+    }
+
+    /** The processing time average, 0 before any shot was recorded. */
+    public synchronized long getProcessingNanos() {
+        return (long) processingNanos;
+    }
+
+    public synchronized long getDecisionCount() {
+        return decisionCount;
+    }
+
+    public synchronized long getChangeCount() {
+        return changeCount;
+    }
+
+    /** Decisions that kept a lighter profile than the policy asked for. */
+    public synchronized long getHeldCount() {
+        return heldCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US,
+                "%s, %d decisions %s, %d changes, %d held, processing %.0fms (last slowest %s)",
+                current, decisionCount, chosen, changeCount, heldCount, processingNanos / 1e6,
+                slowestStage);
+    }
+}
@@ -0,0 +1,347 @@
+package com.rdxindia.poc_application;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the photo library and spool directories and does their writing on one
+ * I/O thread. The directories are created once, by that thread, instead of
+ * on every shot. Frames are copied out of the camera into pooled direct
+ * buffers, which a {@link FileChannel} writes without another copy.
+ * <p>
+ * Library changes go to a {@link Publisher} in batches: a change waits up to
+ * {@link #BATCH_WINDOW_MS} for others, so a burst is registered with the
+ * media provider in one or two calls instead of one per shot.
+ */
+public final class CaptureStore implements Closeable {
+
+    /** How long a library change waits for more to batch with. */
+    public static final long BATCH_WINDOW_MS = 500;
+    /** Changes that go out without waiting out the window. */
+    public static final int MAX_BATCH = 32;
+
+    /** What happened to a photo in the library. */
+    public enum Change {
+        /** The file will appear; hide it until {@link #PUBLISHED}. */
+        PENDING,
+        /** The file is complete. */
+        PUBLISHED,
+        /** The file will not appear after all. */
+        DISCARDED
+    }
+
+    public static final class MediaUpdate {
+        private final Change change;
+        private final File file;
+        private final long captureTimeMillis;
+
+        MediaUpdate(Change change, File file, long captureTimeMillis) {
+            this.change = change;
+            this.file = file;
+            this.captureTimeMillis = captureTimeMillis;
+        }
+
+        public Change getChange() {
+            return change;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public long getCaptureTimeMillis() {
+            return captureTimeMillis;
+        }
+
+        @Override
+        public String toString() {
+            return change + " " + file.getName();
+        }
+    }
+
+    /** Makes library changes visible, e.g. to the gallery. Called on the I/O thread. */
+    public interface Publisher {
+        void publish(List<MediaUpdate> batch) throws IOException;
+    }
+
+    public interface WriteCallback {
+        /** Called on the I/O thread; {@code error} is null if the write succeeded. */
+        void onWritten(File file, long bytes, IOException error);
+    }
+
+    private final File libraryDir;
+    private final File spoolDir;
+    private final int bufferBytes;
+    private final int bufferCount;
+    private final Publisher publisher;
+    private final Thread thread;
+    private final LinkedBlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+    private final Runnable stop = () -> {};
+
+    // Filled by the I/O thread, then shared under the lock
+    private final ArrayDeque<ByteBuffer> pool = new ArrayDeque<>();
+    private int poolMisses;
+
+    // I/O thread only
+    private final List<MediaUpdate> batch = new ArrayList<>();
+    private long batchDeadline;
+
+    private volatile long bytesWritten;
+    private volatile long writeNanos;
+    private volatile long writeCount;
+    private volatile long writeFailures;
+    private volatile long batchCount;
+    private volatile long updateCount;
+    private volatile long publishFailures;
+    private volatile IOException lastPublishFailure;
+    private final LatencyHistogram writeLatency = new LatencyHistogram("spool write");
+
+    /**
+     * @param bufferCount direct buffers of {@code bufferBytes} to keep for frames
+     */
+    public CaptureStore(File libraryDir, File spoolDir, int bufferCount, int bufferBytes,
+                        Publisher publisher) {
+        this.libraryDir = libraryDir;
+        this.spoolDir = spoolDir;
+        this.bufferCount = bufferCount;
+        this.bufferBytes = bufferBytes;
+        this.publisher = publisher;
+        this.thread = new Thread(this::run, "CaptureStore");
+        thread.setDaemon(true);
+        tasks.add(this::prepare);
+        thread.start();
+    }
+
+    private void prepare() {
+        libraryDir.mkdirs();
+        spoolDir.mkdirs();
+        for (int i = 0; i < bufferCount; i++) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bufferBytes);
+            synchronized (pool) {
+                pool.add(buffer);
+            }
+        }
+    }
+
+    public File getLibraryDir() {
+        return libraryDir;
+    }
+
+    public File getSpoolDir() {
+        return spoolDir;
+    }
+
+    /** Where a photo called {@code name} goes; touches no disk. */
+    public File newPhotoFile(String name) {
+        return new File(libraryDir, name);
+    }
+
+    public File newSpoolFile(String name) {
+        return new File(spoolDir, name);
+    }
+
+    /**
+     * A cleared direct buffer of at least {@code bytes}, limited to them.
+     * Never blocks: an empty pool or an oversized frame gets a fresh buffer.
+     */
+    public ByteBuffer acquire(int bytes) {
+        ByteBuffer buffer = null;
+        synchronized (pool) {
+            if (bytes <= bufferBytes) buffer = pool.poll();
+            if (buffer == null) poolMisses++;
+        }
+        if (buffer == null) buffer = ByteBuffer.allocateDirect(bytes);
+        buffer.clear().limit(bytes);
+        return buffer;
+    }
+
+    /** Returns a buffer from {@link #acquire}; it must no longer be in use. */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != bufferBytes) return;
+        synchronized (pool) {
+            if (pool.size() < bufferCount) pool.add(buffer);
+        }
+    }
+
+    /**
+     * Writes {@code data} between its position and limit to {@code file} on
+     * the I/O thread. {@code data} is not moved and must not change until
+     * the callback.
+     */
+    public void write(File file, ByteBuffer data, WriteCallback callback) {
+        ByteBuffer source = data.duplicate();
+        tasks.add(() -> {
+            long start = System.nanoTime();
+            long length = source.remaining();
+            IOException error = null;
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (source.hasRemaining()) channel.write(source);
+            } catch (IOException e) {
+                error = e;
+            }
+            long elapsed = System.nanoTime() - start;
+            if (error == null) {
+                writeLatency.record(elapsed);
+                writeNanos += elapsed;
+                bytesWritten += length;
+                writeCount++;
+            } else {
+                writeFailures++;
+            }
+            callback.onWritten(file, length, error);
+        });
+    }
+
+    /** {@code photo} is being made and should stay hidden until {@link #published}. */
+    public void pending(File photo, long captureTimeMillis) {
+        queue(new MediaUpdate(Change.PENDING, photo, captureTimeMillis));
+    }
+
+    public void published(File photo, long captureTimeMillis) {
+        queue(new MediaUpdate(Change.PUBLISHED, photo, captureTimeMillis));
+    }
+
+    public void discarded(File photo) {
+        queue(new MediaUpdate(Change.DISCARDED, photo, 0));
+    }
+
+    private void queue(MediaUpdate update) {
+        tasks.add(() -> {
+            if (batch.isEmpty()) {
+                batchDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BATCH_WINDOW_MS);
+            }
+            batch.add(update);
+        });
+    }
+
+    /** Waits until everything queued so far has been written and published. */
+    public void flush() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        tasks.add(() -> {
+            publishBatch();
+            done.countDown();
+        });
+        done.await();
+    }
+
+    private void run() {
+        while (true) {
+            Runnable task;
+            try {
+                if (batch.isEmpty()) {
+                    task = tasks.take();
+                } else {
+                    task = tasks.poll(batchDeadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (task == stop) {
+                publishBatch();
+                return;
+            }
+            if (task != null) task.run();
+            if (!batch.isEmpty() && (task == null || batch.size() >= MAX_BATCH
+                    || System.nanoTime() - batchDeadline >= 0)) {
+                publishBatch();
+            }
+        }
+    }
+
+    private void publishBatch() {
+        if (batch.isEmpty()) return;
+        List<MediaUpdate> updates = new ArrayList<>(batch);
+        batch.clear();
+        try {
+            publisher.publish(updates);
+            batchCount++;
+            updateCount += updates.size();
+        } catch (IOException | RuntimeException e) {
+            // The files are on disk either way; only their registration is lost
+            publishFailures++;
+            lastPublishFailure = e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+    }
+
+    /** Publishes what is queued and stops the I/O thread once it has drained. */
+    @Override
+    public void close() {
+        tasks.add(stop);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public long getWriteCount() {
+        return writeCount;
+    }
+
+    public long getWriteFailureCount() {
+        return writeFailures;
+    }
+
+    /** Mean rate of the writes themselves, not counting time spent idle. */
+    public double getWriteBytesPerSecond() {
+        long nanos = writeNanos;
+        return nanos == 0 ? 0 : bytesWritten * 1e9 / nanos;
+    }
+
+    public LatencyHistogram getWriteLatency() {
+        return writeLatency;
+    }
+
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    public long getMediaUpdateCount() {
+        return updateCount;
+    }
+
+    public long getPublishFailureCount() {
+        return publishFailures;
+    }
+
+    public IOException getLastPublishFailure() {
+        return lastPublishFailure;
+    }
+
+    public int getPoolMissCount() {
+        synchronized (pool) {
+            return poolMisses;
+        }
+    }
+
+    @Override
+    public String toString() {
+        int pooled;
+        synchronized (pool) {
+            pooled = pool.size();
+        }
+        long batches = batchCount;
+        return String.format(Locale.US,
+                "%d writes %.1f MB in %.1f MB/s (%d failed), %d media batches avg %.1f"
+                        + " (%d failed), buffers %d/%d free, %d misses",
+                writeCount, bytesWritten / 1e6, getWriteBytesPerSecond() / 1e6, writeFailures,
+                batches, batches == 0 ? 0.0 : updateCount / (double) batches, publishFailures,
+                pooled, bufferCount, getPoolMissCount());
+    }
+}
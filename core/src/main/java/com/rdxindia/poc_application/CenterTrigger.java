@@ -0,0 +1,73 @@
+package com.rdxindia.poc_application;
+
+import java.util.List;
+
+/**
+ * Fires once when an object with the armed label has stayed near the centre
+ * of the frame for a few consecutive detections, so an object merely passing
+ * through the middle does not take a photo.
+ */
+public final class CenterTrigger {
+
+    private final float tolerance;
+    private final float minConfidence;
+    private final int requiredFrames;
+
+    private boolean armed;
+    private String label;
+    private int centeredFrames;
+
+    /**
+     * @param tolerance      how far the box centre may be from the frame centre,
+     *                       as a fraction of the frame
+     * @param minConfidence  lowest label confidence that counts
+     * @param requiredFrames consecutive centred detections needed to fire
+     */
+    public CenterTrigger(float tolerance, float minConfidence, int requiredFrames) {
+        this.tolerance = tolerance;
+        this.minConfidence = minConfidence;
+        this.requiredFrames = requiredFrames;
+    }
+
+    /** Waits for {@code label} (case-insensitive), or any object if null. */
+    public synchronized void arm(String label) {
+        this.label = label;
+        armed = true;
+        centeredFrames = 0;
+    }
+
+    public synchronized void disarm() {
+        armed = false;
+    }
+
+    public synchronized boolean isArmed() {
+        return armed;
+    }
+
+    public synchronized String getLabel() {
+        return label;
+    }
+
+    /** Returns the centred detection when the trigger fires, else null. Fires at most once per arm. */
+    public synchronized Detection onDetections(List<Detection> detections) {
+        if (!armed) return null;
+        Detection best = null;
+        for (Detection detection : detections) {
+            if (!matches(detection) || detection.getOffCenter() > tolerance) continue;
+            if (best == null || detection.getOffCenter() < best.getOffCenter()) best = detection;
+        }
+        if (best == null) {
+            centeredFrames = 0;
+            return null;
+        }
+        if (++centeredFrames < requiredFrames) return null;
+        armed = false;
+        return best;
+    }
+
+    private boolean matches(Detection detection) {
+        if (label == null) return true;
+        return label.equalsIgnoreCase(detection.getLabel())
+                && detection.getConfidence() >= minConfidence;
+    }
+}
@@ -0,0 +1,277 @@
+package com.rdxindia.poc_application;
+
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process bus carrying voice commands from the recognizer to whoever is
+ * listening, in place of a system broadcast.
+ * <p>
+ * Commands go into a ring written by a single producer. Each slot holds an
+ * immutable entry stamped with its sequence number and is swapped in whole,
+ * so readers never lock, never see a torn command, and a reader that was
+ * lapped notices from the sequence. Each {@link Subscription} keeps its own read position and
+ * is drained on its own executor. Commands published while nobody is
+ * attached stay in the ring and can be replayed to the next subscriber.
+ */
+public final class CommandBus {
+
+    /** Value of a command without a spoken number. */
+    public static final int NO_VALUE = -1;
+
+    public interface Listener {
+        /** {@code event} is reused after the call returns; copy what you keep. */
+        void onCommand(CommandEvent event);
+    }
+
+    /** A delivered command, as seen by one subscription. */
+    public static final class CommandEvent {
+        long sequence;
+        String command;
+        int value;
+        int secondValue;
+        long traceId;
+        long timestampNanos;
+        long latencyNanos;
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        /** Spoken number, or {@link #NO_VALUE}. */
+        public int getValue() {
+            return value;
+        }
+
+        /** Second spoken number of a compound command, or {@link #NO_VALUE}. */
+        public int getSecondValue() {
+            return secondValue;
+        }
+
+        /** The command's {@link LatencyTracer} id, or {@link LatencyTracer#NO_TRACE}. */
+        public long getTraceId() {
+            return traceId;
+        }
+
+        /** When the command was published, on the bus clock. */
+        public long getTimestampNanos() {
+            return timestampNanos;
+        }
+
+        /** Publish to delivery. */
+        public long getLatencyNanos() {
+            return latencyNanos;
+        }
+    }
+
+    // Immutable, so a reader that loads one from the ring sees all of it
+    private static final class Entry {
+        final long sequence;
+        final String command;
+        final int value;
+        final int secondValue;
+        final long traceId;
+        final long timestampNanos;
+
+        Entry(long sequence, String command, int value, int secondValue, long traceId,
+              long timestampNanos) {
+            this.sequence = sequence;
+            this.command = command;
+            this.value = value;
+            this.secondValue = secondValue;
+            this.traceId = traceId;
+            this.timestampNanos = timestampNanos;
+        }
+    }
+
+    private static final CommandBus DEFAULT = new CommandBus(64, System::nanoTime);
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final LongSupplier clock;
+    private final AtomicLong published = new AtomicLong(-1);
+    // Highest sequence handed to any subscriber, for replay of undelivered commands
+    private final AtomicLong delivered = new AtomicLong(-1);
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong missedCount = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public CommandBus(int capacity, LongSupplier clock) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        slots = new AtomicReferenceArray<>(capacity);
+        mask = capacity - 1;
+        this.clock = clock;
+    }
+
+    public static CommandBus getDefault() {
+        return DEFAULT;
+    }
+
+    public long publish(String command, int value) {
+        return publish(command, value, NO_VALUE, LatencyTracer.NO_TRACE);
+    }
+
+    /**
+     * Publishes a command. Only one thread may publish; delivery happens on
+     * the subscribers' executors.
+     */
+    public long publish(String command, int value, int secondValue, long traceId) {
+        long sequence = published.get() + 1;
+        slots.set((int) (sequence & mask), new Entry(sequence, command, value, secondValue,
+                traceId, clock.getAsLong()));
+        published.set(sequence);
+        for (Subscription subscription : subscriptions) {
+            subscription.signal();
+        }
+        return sequence;
+    }
+
+    /**
+     * Attaches {@code listener}, called on {@code executor}. Up to
+     * {@code replayLimit} commands published before now that no subscriber
+     * has seen yet, and that are at most {@code replayMaxAgeNanos} old, are
+     * delivered first.
+     */
+    public Subscription subscribe(Listener listener, Executor executor,
+                                  int replayLimit, long replayMaxAgeNanos) {
+        Subscription subscription = new Subscription(listener, executor);
+        long last = published.get();
+        long next = last + 1;
+        if (replayLimit > 0) {
+            long oldest = Math.max(Math.max(delivered.get() + 1, last - replayLimit + 1),
+                    last - slots.length() + 1);
+            long now = clock.getAsLong();
+            for (long s = Math.max(0, oldest); s <= last; s++) {
+                Entry entry = slots.get((int) (s & mask));
+                if (entry != null && entry.sequence == s
+                        && now - entry.timestampNanos <= replayMaxAgeNanos) {
+                    next = s;
+                    break;
+                }
+            }
+        }
+        subscription.next = next;
+        subscriptions.add(subscription);
+        subscription.signal();
+        return subscription;
+    }
+
+    public long getPublishedCount() {
+        return published.get() + 1;
+    }
+
+    public long getDeliveredCount() {
+        return deliveredCount.get();
+    }
+
+    /** Commands a subscriber lost because it fell a full ring behind. */
+    public long getMissedCount() {
+        return missedCount.get();
+    }
+
+    public long getAverageLatencyNanos() {
+        long count = deliveredCount.get();
+        return count == 0 ? 0 : totalLatencyNanos.get() / count;
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "published=%d delivered=%d missed=%d latency avg=%.3fms max=%.3fms",
+                getPublishedCount(), getDeliveredCount(), getMissedCount(),
+                getAverageLatencyNanos() / 1e6, getMaxLatencyNanos() / 1e6);
+    }
+
+    /** One consumer's view of the bus; detach it with the consumer's lifecycle. */
+    public final class Subscription {
+        private final Listener listener;
+        private final Executor executor;
+        private final CommandEvent event = new CommandEvent();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final Runnable drainTask = this::drain;
+        private volatile boolean attached = true;
+        private long next;
+
+        private Subscription(Listener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        public void detach() {
+            attached = false;
+            subscriptions.remove(this);
+        }
+
+        public boolean isAttached() {
+            return attached;
+        }
+
+        private void signal() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(drainTask);
+            }
+        }
+
+        private void drain() {
+            scheduled.set(false);
+            long last = published.get();
+            while (attached && next <= last) {
+                Entry entry = slots.get((int) (next & mask));
+                if (entry == null || entry.sequence != next) {
+                    // Overwritten: skip to the oldest command still in the ring
+                    long oldest = published.get() - slots.length() + 1;
+                    if (oldest > next) {
+                        missedCount.addAndGet(oldest - next);
+                        next = oldest;
+                        continue;
+                    }
+                    // Not yet visible; the producer's signal brings us back
+                    return;
+                }
+                event.sequence = next;
+                event.command = entry.command;
+                event.value = entry.value;
+                event.secondValue = entry.secondValue;
+                event.traceId = entry.traceId;
+                event.timestampNanos = entry.timestampNanos;
+                event.latencyNanos = clock.getAsLong() - entry.timestampNanos;
+                next++;
+                recordDelivery(event);
+                listener.onCommand(event);
+            }
+        }
+    }
+
+    private void recordDelivery(CommandEvent event) {
+        deliveredCount.incrementAndGet();
+        totalLatencyNanos.addAndGet(event.latencyNanos);
+        long max;
+        while (event.latencyNanos > (max = maxLatencyNanos.get())
+                && !maxLatencyNanos.compareAndSet(max, event.latencyNanos)) {
+            // retry
+        }
+        long seen;
+        while (event.sequence > (seen = delivered.get())
+                && !delivered.compareAndSet(seen, event.sequence)) {
+            // retry
+        }
+    }
+}
@@ -0,0 +1,647 @@
+package com.rdxindia.poc_application;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Voice command grammar compiled to an Aho-Corasick automaton over words.
+ * <p>
+ * Patterns are space separated words; {@code {n}} stands for a number, which
+ * may be spoken as digits ("3") or as a word ("three"). Input is split into
+ * words, digit runs are split from letters ("3x" is "3 x"), and each word is
+ * mapped to the grammar's vocabulary, allowing a bounded edit distance for
+ * words the recognizer got slightly wrong. The automaton then finds every
+ * pattern occurring in the utterance and the longest one wins.
+ * <p>
+ * A compiled grammar is immutable and can be shared; matching happens through
+ * a {@link Matcher}, which owns all scratch space and does not allocate
+ * unless an input is longer than any before it.
+ */
+public final class CommandGrammar {
+
+    /** Longest utterance, in words, that is looked at. */
+    public static final int MAX_TOKENS = 64;
+    /** Longer words are never part of the vocabulary. */
+    public static final int MAX_WORD_LENGTH = 32;
+    public static final int MAX_NUMBER = 9999;
+
+    private static final int TOKEN_NUMBER = 0;
+    private static final int TOKEN_OTHER = 1;
+    private static final int FIRST_WORD = 2;
+    private static final String NUMBER_SLOT = "{n}";
+    private static final int FUZZY_CACHE_SIZE = 64;
+    private static final char[] ASCII_LOWER = new char[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            ASCII_LOWER[c] = c;
+            ASCII_LOWER[c - 'a' + 'A'] = c;
+        }
+    }
+
+    private static final String[] NUMBER_WORDS = {
+            "zero", "one", "two", "three", "four", "five", "six", "seven", "eight", "nine",
+            "ten", "eleven", "twelve", "thirteen", "fourteen", "fifteen", "sixteen",
+            "seventeen", "eighteen", "nineteen", "twenty"
+    };
+
+    // Vocabulary: token id - FIRST_WORD indexes words
+    private final char[][] words;
+    private final int[] letterMasks;
+    // Number words and vocabulary as one DFA over their letters, run while
+    // a word is read. A state is the offset of its row in letterDelta; row 0
+    // is dead, the next one the start. Number words win
+    private final int[] knownIds;
+    private final int[] knownValues;
+    private final char[] letters;
+    // Column by ASCII character, either case; -1 for anything but a letter
+    private final int[] asciiColumns = new int[128];
+    private final int apostropheColumn;
+    private final int letterColumns;
+    private final int[] letterDelta;
+    // Known word index by state, or -1
+    private final int[] letterAccept;
+    private final int maxEdits;
+
+    // Automaton: delta[state * alphabet + token] is the next state
+    private final int alphabet;
+    private final int[] delta;
+    private final int[] output;
+    private final boolean[] hasChildren;
+    private final boolean[] numbersAhead;
+
+    private final String[] commands;
+    private final String[] patterns;
+    private final int[] patternLength;
+    private final int[][] slotOffsets;
+
+    private CommandGrammar(Builder builder) {
+        maxEdits = builder.maxEdits;
+
+        Map<String, Integer> vocabulary = new HashMap<>();
+        List<String> wordList = new ArrayList<>();
+        int patternCount = builder.patterns.size();
+        int[][] tokens = new int[patternCount][];
+        commands = new String[patternCount];
+        patterns = builder.patterns.toArray(new String[0]);
+        patternLength = new int[patternCount];
+        slotOffsets = new int[patternCount][];
+        for (int p = 0; p < patternCount; p++) {
+            String[] parts = builder.patterns.get(p).trim().split("\\s+");
+            tokens[p] = new int[parts.length];
+            int slots = 0;
+            for (int i = 0; i < parts.length; i++) {
+                if (NUMBER_SLOT.equals(parts[i])) {
+                    tokens[p][i] = TOKEN_NUMBER;
+                    slots++;
+                    continue;
+                }
+                String word = parts[i].toLowerCase(Locale.ROOT);
+                if (!isWord(word)) {
+                    throw new IllegalArgumentException("Bad word '" + parts[i] + "' in "
+                            + builder.patterns.get(p));
+                }
+                Integer id = vocabulary.get(word);
+                if (id == null) {
+                    id = FIRST_WORD + wordList.size();
+                    vocabulary.put(word, id);
+                    wordList.add(word);
+                }
+                tokens[p][i] = id;
+            }
+            commands[p] = builder.commands.get(p);
+            patternLength[p] = parts.length;
+            slotOffsets[p] = new int[slots];
+            for (int i = 0, s = 0; i < parts.length; i++) {
+                if (tokens[p][i] == TOKEN_NUMBER) slotOffsets[p][s++] = i;
+            }
+        }
+
+        words = new char[wordList.size()][];
+        letterMasks = new int[wordList.size()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = wordList.get(i).toCharArray();
+            letterMasks[i] = letterMask(words[i], words[i].length);
+        }
+        List<String> known = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>();
+        for (String number : NUMBER_WORDS) {
+            ids.add(TOKEN_NUMBER);
+            known.add(number);
+        }
+        for (int i = 0; i < words.length; i++) {
+            if (known.contains(wordList.get(i))) continue;
+            ids.add(FIRST_WORD + i);
+            known.add(wordList.get(i));
+        }
+        knownIds = new int[known.size()];
+        knownValues = new int[known.size()];
+        TreeSet<Character> letterSet = new TreeSet<>();
+        for (int i = 0; i < knownIds.length; i++) {
+            knownIds[i] = ids.get(i);
+            knownValues[i] = i < NUMBER_WORDS.length ? i : 0;
+            for (char c : known.get(i).toCharArray()) letterSet.add(c);
+        }
+        // Column 0 is any letter no known word has
+        letters = new char[letterSet.size()];
+        int column = 0;
+        for (char c : letterSet) letters[column++] = c;
+        letterColumns = letters.length + 1;
+        for (char c = 0; c < asciiColumns.length; c++) {
+            asciiColumns[c] = lowerLetter(c) == 0 ? -1 : columnOf(lowerLetter(c));
+        }
+        apostropheColumn = columnOf('\'');
+        List<int[]> letterRows = new ArrayList<>();
+        List<Integer> accept = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            letterRows.add(new int[letterColumns]);
+            accept.add(-1);
+        }
+        for (int i = 0; i < known.size(); i++) {
+            int state = 1;
+            for (char c : known.get(i).toCharArray()) {
+                int next = letterRows.get(state)[columnOf(c)];
+                if (next == 0) {
+                    next = letterRows.size();
+                    letterRows.add(new int[letterColumns]);
+                    accept.add(-1);
+                    letterRows.get(state)[columnOf(c)] = next;
+                }
+                state = next;
+            }
+            accept.set(state, i);
+        }
+        letterDelta = new int[letterRows.size() * letterColumns];
+        letterAccept = new int[letterDelta.length];
+        for (int state = 0; state < letterRows.size(); state++) {
+            int[] row = letterRows.get(state);
+            for (int c = 0; c < letterColumns; c++) {
+                letterDelta[state * letterColumns + c] = row[c] * letterColumns;
+            }
+            letterAccept[state * letterColumns] = accept.get(state);
+        }
+
+        // Trie first, then failure links folded into a dense transition table
+        alphabet = FIRST_WORD + words.length;
+        List<int[]> trie = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>();
+        trie.add(newRow(alphabet));
+        terminal.add(-1);
+        for (int p = 0; p < patternCount; p++) {
+            int state = 0;
+            for (int token : tokens[p]) {
+                int next = trie.get(state)[token];
+                if (next < 0) {
+                    next = trie.size();
+                    trie.add(newRow(alphabet));
+                    terminal.add(-1);
+                    trie.get(state)[token] = next;
+                }
+                state = next;
+            }
+            // The first pattern declared for a word sequence wins
+            if (terminal.get(state) < 0) terminal.set(state, p);
+        }
+
+        int states = trie.size();
+        delta = new int[states * alphabet];
+        output = new int[states];
+        hasChildren = new boolean[states];
+        numbersAhead = new boolean[states];
+        int[] fail = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        output[0] = -1;
+        for (int t = 0; t < alphabet; t++) {
+            int child = trie.get(0)[t];
+            if (child > 0) {
+                hasChildren[0] = true;
+                fail[child] = 0;
+                delta[t] = child;
+                queue[tail++] = child;
+            } else {
+                delta[t] = 0;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            // A state's own pattern is longer than anything on its failure chain
+            output[state] = terminal.get(state) >= 0 ? terminal.get(state) : output[fail[state]];
+            int[] row = trie.get(state);
+            for (int t = 0; t < alphabet; t++) {
+                int child = row[t];
+                if (child > 0) {
+                    hasChildren[state] = true;
+                    fail[child] = delta[fail[state] * alphabet + t];
+                    delta[state * alphabet + t] = child;
+                    queue[tail++] = child;
+                } else {
+                    delta[state * alphabet + t] = delta[fail[state] * alphabet + t];
+                }
+            }
+        }
+        // Children come after their parents in the queue, so walk it backwards
+        for (int q = tail - 1; q >= -1; q--) {
+            int state = q < 0 ? 0 : queue[q];
+            int[] row = trie.get(state);
+            for (int t = 0; t < alphabet && !numbersAhead[state]; t++) {
+                int child = row[t];
+                numbersAhead[state] = child > 0 && (t == TOKEN_NUMBER || numbersAhead[child]);
+            }
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Matcher newMatcher() {
+        return new Matcher();
+    }
+
+    public int getPatternCount() {
+        return commands.length;
+    }
+
+    /** The pattern at {@code index}, as it was added. */
+    public String getPattern(int index) {
+        return patterns[index];
+    }
+
+    public String getCommand(int index) {
+        return commands[index];
+    }
+
+    public int getVocabularySize() {
+        return words.length;
+    }
+
+    public static final class Builder {
+        private final List<String> commands = new ArrayList<>();
+        private final List<String> patterns = new ArrayList<>();
+        private int maxEdits = 1;
+
+        private Builder() {
+        }
+
+        /** Adds {@code pattern} as one way of saying {@code command}. */
+        public Builder add(String command, String... patterns) {
+            for (String pattern : patterns) {
+                this.commands.add(command);
+                this.patterns.add(pattern);
+            }
+            return this;
+        }
+
+        /**
+         * Most edits tolerated per word; words shorter than four letters
+         * always have to match exactly, and only words of eight letters or
+         * more get a second edit.
+         */
+        public Builder maxEdits(int maxEdits) {
+            this.maxEdits = maxEdits;
+            return this;
+        }
+
+        public CommandGrammar build() {
+            if (patterns.isEmpty()) throw new IllegalStateException("No patterns");
+            return new CommandGrammar(this);
+        }
+    }
+
+    /** The best command found in an utterance. Owned and reused by its {@link Matcher}. */
+    public static final class CommandMatch {
+        private final int[] slots = new int[MAX_TOKENS];
+        private String command;
+        private int pattern;
+        private int slotCount;
+        private int startToken;
+        private int endToken;
+        private int edits;
+
+        public String getCommand() {
+            return command;
+        }
+
+        /** Index of the matched pattern, in the order patterns were added. */
+        public int getPattern() {
+            return pattern;
+        }
+
+        public int getSlotCount() {
+            return slotCount;
+        }
+
+        public int getSlot(int index) {
+            return slots[index];
+        }
+
+        /** First word of the utterance that belongs to the match. */
+        public int getStartToken() {
+            return startToken;
+        }
+
+        /** One past the last matched word. */
+        public int getEndToken() {
+            return endToken;
+        }
+
+        /** Total edit distance of the fuzzily matched words. */
+        public int getEdits() {
+            return edits;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(command);
+            for (int i = 0; i < slotCount; i++) sb.append(i == 0 ? " " : ",").append(slots[i]);
+            if (edits > 0) sb.append(" ~").append(edits);
+            return sb.toString();
+        }
+    }
+
+    /** Matches utterances against the grammar. Not thread-safe. */
+    public final class Matcher {
+        private final int[] tokenIds = new int[MAX_TOKENS];
+        private final int[] tokenValues = new int[MAX_TOKENS];
+        private final int[] tokenEdits = new int[MAX_TOKENS];
+        private final char[] word = new char[MAX_WORD_LENGTH];
+        // The input, copied out in one go; grows to the longest one seen
+        private char[] text = new char[128];
+        private final int[] previousRow = new int[MAX_WORD_LENGTH + 1];
+        private final int[] currentRow = new int[MAX_WORD_LENGTH + 1];
+        private final CommandMatch result = new CommandMatch();
+        // Fuzzy lookups by word hash; each partial result repeats the words
+        // of the one before, so most unknown words have been seen already
+        private final char[][] fuzzyWords = new char[FUZZY_CACHE_SIZE][MAX_WORD_LENGTH];
+        private final int[] fuzzyLengths = new int[FUZZY_CACHE_SIZE];
+        private final int[] fuzzyIds = new int[FUZZY_CACHE_SIZE];
+        private final int[] fuzzyEdits = new int[FUZZY_CACHE_SIZE];
+        private int tokenCount;
+        private boolean extendable;
+        private boolean extendableWithNumbers;
+
+        private Matcher() {
+        }
+
+        /**
+         * Returns the longest command in {@code input}, or null. Ties go to
+         * the match with fewer edits, then to the pattern added first. The
+         * returned object is reused by the next call.
+         */
+        public CommandMatch match(CharSequence input) {
+            tokenize(input);
+            int best = -1;
+            int bestEnd = 0;
+            int bestEdits = 0;
+            int state = 0;
+            for (int i = 0; i < tokenCount; i++) {
+                state = delta[state * alphabet + tokenIds[i]];
+                int p = output[state];
+                if (p < 0) continue;
+                int length = patternLength[p];
+                int edits = 0;
+                for (int k = i - length + 1; k <= i; k++) edits += tokenEdits[k];
+                if (best < 0 || length > patternLength[best]
+                        || (length == patternLength[best] && (edits < bestEdits
+                        || (edits == bestEdits && p < best)))) {
+                    best = p;
+                    bestEnd = i + 1;
+                    bestEdits = edits;
+                }
+            }
+            extendable = state != 0 && hasChildren[state];
+            extendableWithNumbers = extendable && numbersAhead[state];
+            if (best < 0) return null;
+
+            result.command = commands[best];
+            result.pattern = best;
+            result.endToken = bestEnd;
+            result.startToken = bestEnd - patternLength[best];
+            result.edits = bestEdits;
+            result.slotCount = slotOffsets[best].length;
+            for (int s = 0; s < result.slotCount; s++) {
+                result.slots[s] = tokenValues[result.startToken + slotOffsets[best][s]];
+            }
+            return result;
+        }
+
+        /**
+         * Whether the words at the end of the last input are the start of a
+         * longer pattern, so more speech could still change the result.
+         */
+        public boolean isExtendable() {
+            return extendable;
+        }
+
+        /**
+         * Whether one of the longer patterns the last input could grow into
+         * takes a number ("zoom" before "zoom 3 x"), so the command or its
+         * numbers may still change.
+         */
+        public boolean isExtendableWithNumbers() {
+            return extendableWithNumbers;
+        }
+
+        /** Number of words the last input was split into. */
+        public int getTokenCount() {
+            return tokenCount;
+        }
+
+        private void tokenize(CharSequence input) {
+            tokenCount = 0;
+            int length = input.length();
+            if (text.length < length) text = new char[Math.max(length, 2 * text.length)];
+            char[] text = this.text;
+            if (input instanceof String) {
+                ((String) input).getChars(0, length, text, 0);
+            } else {
+                for (int i = 0; i < length; i++) text[i] = input.charAt(i);
+            }
+            int i = 0;
+            while (i < length && tokenCount < MAX_TOKENS) {
+                char c = text[i];
+                if (isDigit(c)) {
+                    int value = 0;
+                    while (i < length && isDigit(text[i])) {
+                        value = Math.min(MAX_NUMBER, value * 10 + (text[i] - '0'));
+                        i++;
+                    }
+                    addToken(TOKEN_NUMBER, value, 0);
+                } else {
+                    int column = c < asciiColumns.length ? asciiColumns[c] : letterColumn(c);
+                    if (column < 0) {
+                        i++;
+                        continue;
+                    }
+                    // The hash only spreads unknown words over the fuzzy cache
+                    int start = i;
+                    int state = letterDelta[letterColumns + column];
+                    int h = column;
+                    while (++i < length) {
+                        char ch = text[i];
+                        column = ch < asciiColumns.length ? asciiColumns[ch] : letterColumn(ch);
+                        if (column < 0) {
+                            if (!isInnerApostrophe(text, i, length)) break;
+                            column = apostropheColumn;
+                        }
+                        state = letterDelta[state + column];
+                        h = 31 * h + column;
+                    }
+                    addWord(start, i - start, letterAccept[state], h);
+                }
+            }
+        }
+
+        private void addWord(int start, int length, int known, int hash) {
+            if (length > MAX_WORD_LENGTH) {
+                addToken(TOKEN_OTHER, 0, 0);
+                return;
+            }
+            if (known >= 0) {
+                addToken(knownIds[known], knownValues[known], 0);
+                return;
+            }
+            int allowed = length >= 8 ? 2 : length >= 4 ? 1 : 0;
+            allowed = Math.min(allowed, maxEdits);
+            if (allowed == 0) {
+                addToken(TOKEN_OTHER, 0, 0);
+                return;
+            }
+            int slot = (hash ^ (hash >>> 16)) & (FUZZY_CACHE_SIZE - 1);
+            if (!isCached(slot, start, length)) {
+                // Only words the DFA did not know are needed in full
+                for (int i = 0; i < length; i++) {
+                    char lower = lowerLetter(text[start + i]);
+                    word[i] = lower != 0 ? lower : '\'';
+                }
+                fuzzyLookup(slot, length, allowed);
+            }
+            addToken(fuzzyIds[slot], 0, fuzzyEdits[slot]);
+        }
+
+        private boolean isCached(int slot, int start, int length) {
+            if (fuzzyLengths[slot] != length) return false;
+            char[] cached = fuzzyWords[slot];
+            for (int i = 0; i < length; i++) {
+                char lower = lowerLetter(text[start + i]);
+                if (cached[i] != (lower != 0 ? lower : '\'')) return false;
+            }
+            return true;
+        }
+
+        private void fuzzyLookup(int slot, int length, int allowed) {
+            int bestId = -1;
+            int bestDistance = allowed + 1;
+            int mask = letterMask(word, length);
+            for (int w = 0; w < words.length && bestDistance > 1; w++) {
+                char[] candidate = words[w];
+                if (candidate.length < 4 || Math.abs(candidate.length - length) >= bestDistance) {
+                    continue;
+                }
+                // Every letter only one side has takes an edit, which rules
+                // out most of the vocabulary without the full distance
+                if (Integer.bitCount(mask & ~letterMasks[w]) >= bestDistance
+                        || Integer.bitCount(letterMasks[w] & ~mask) >= bestDistance) {
+                    continue;
+                }
+                int d = distance(candidate, length, bestDistance - 1);
+                if (d < bestDistance) {
+                    bestDistance = d;
+                    bestId = w;
+                }
+            }
+            System.arraycopy(word, 0, fuzzyWords[slot], 0, length);
+            fuzzyLengths[slot] = length;
+            fuzzyIds[slot] = bestId >= 0 ? FIRST_WORD + bestId : TOKEN_OTHER;
+            fuzzyEdits[slot] = bestId >= 0 ? bestDistance : 0;
+        }
+
+        private void addToken(int id, int value, int edits) {
+            tokenIds[tokenCount] = id;
+            tokenValues[tokenCount] = value;
+            tokenEdits[tokenCount] = edits;
+            tokenCount++;
+        }
+
+        // Levenshtein distance between candidate and word[0..length), or limit + 1 once exceeded
+        private int distance(char[] candidate, int length, int limit) {
+            for (int j = 0; j <= length; j++) previousRow[j] = j;
+            for (int i = 1; i <= candidate.length; i++) {
+                currentRow[0] = i;
+                int rowMin = i;
+                for (int j = 1; j <= length; j++) {
+                    int cost = candidate[i - 1] == word[j - 1] ? 0 : 1;
+                    int d = Math.min(Math.min(currentRow[j - 1] + 1, previousRow[j] + 1),
+                            previousRow[j - 1] + cost);
+                    currentRow[j] = d;
+                    if (d < rowMin) rowMin = d;
+                }
+                if (rowMin > limit) return limit + 1;
+                System.arraycopy(currentRow, 0, previousRow, 0, length + 1);
+            }
+            return Math.min(previousRow[length], limit + 1);
+        }
+    }
+
+    // Column of a lower case letter in the word DFA
+    private int columnOf(char c) {
+        int i = Arrays.binarySearch(letters, c);
+        return i < 0 ? 0 : i + 1;
+    }
+
+    private int letterColumn(char c) {
+        return Character.isLetter(c) ? columnOf(Character.toLowerCase(c)) : -1;
+    }
+
+    private static int[] newRow(int size) {
+        int[] row = new int[size];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    // Which of a-z occur in chars[0..length); anything else shares the top bit
+    private static int letterMask(char[] chars, int length) {
+        int mask = 0;
+        for (int i = 0; i < length; i++) {
+            int letter = chars[i] - 'a';
+            mask |= letter >= 0 && letter < 26 ? 1 << letter : 1 << 31;
+        }
+        return mask;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    // Apostrophes between letters are part of the word ("don't")
+    private static boolean isInnerApostrophe(char[] text, int i, int length) {
+        return text[i] == '\'' && i > 0 && i + 1 < length
+                && isLetter(text[i - 1]) && isLetter(text[i + 1]);
+    }
+
+    private static boolean isLetter(char c) {
+        return lowerLetter(c) != 0;
+    }
+
+    // The letter in lower case, or 0 if c is not a letter; ASCII goes by
+    // table, and recognizers rarely return anything else
+    private static char lowerLetter(char c) {
+        if (c < ASCII_LOWER.length) return ASCII_LOWER[c];
+        return Character.isLetter(c) ? Character.toLowerCase(c) : 0;
+    }
+
+    private static boolean isWord(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (!Character.isLetter(c) && c != '\'') return false;
+        }
+        return !word.isEmpty() && word.length() <= MAX_WORD_LENGTH;
+    }
+}
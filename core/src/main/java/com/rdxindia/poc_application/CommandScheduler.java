@@ -0,0 +1,331 @@
+package com.rdxindia.poc_application;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Stands between recognized commands and the camera. A command said again
+ * within the coalescing window is dropped as a repeat. Commands that use
+ * the camera run one at a time: the next is dispatched only once the
+ * previous one reports that the camera is free, taking the highest
+ * priority first and otherwise the oldest. Others run at once, and a
+ * pre-empting one (cancel) also throws out the queued camera commands
+ * below its priority. A queued command in a replacing group (camera
+ * state, such as the lens) gives way to a newer one in the same group.
+ * A full queue drops its least urgent command, and a command that waited
+ * too long is dropped rather than run late.
+ *
+ * <p>Not thread-safe: submit and call each {@code done} on one thread, the
+ * main thread in the app.
+ */
+public final class CommandScheduler {
+
+    public static final int PRIORITY_BACKGROUND = 0;
+    public static final int PRIORITY_NORMAL = 10;
+    public static final int PRIORITY_URGENT = 20;
+
+    /** How a command is scheduled. */
+    public static final class Rule {
+        private final int priority;
+        private final boolean camera;
+        private final boolean preempts;
+        private final String group;
+
+        private Rule(int priority, boolean camera, boolean preempts, String group) {
+            this.priority = priority;
+            this.camera = camera;
+            this.preempts = preempts;
+            this.group = group;
+        }
+
+        /** Dispatched at once, whatever the camera is doing. */
+        public static Rule immediate() {
+            return new Rule(PRIORITY_URGENT, false, false, null);
+        }
+
+        /** Dispatched at once, throwing out queued camera commands below {@code priority}. */
+        public static Rule preempting(int priority) {
+            return new Rule(priority, false, true, null);
+        }
+
+        /** Waits for the camera to be free. */
+        public static Rule camera(int priority) {
+            return new Rule(priority, true, false, null);
+        }
+
+        /** A newer command in {@code group} replaces this one while it is queued. */
+        public Rule replacing(String group) {
+            return new Rule(priority, camera, preempts, group);
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public boolean usesCamera() {
+            return camera;
+        }
+    }
+
+    public interface Policy {
+        Rule ruleFor(String command);
+    }
+
+    public enum Outcome { DISPATCHED, QUEUED, COALESCED, DROPPED, PREEMPTED }
+
+    public interface Dispatcher {
+        /**
+         * Acts on {@code command}. A camera command calls {@code done} once
+         * the camera is free for the next; others may ignore it.
+         */
+        void dispatch(Command command, Runnable done);
+
+        /** {@code command} will not run, for the given reason. */
+        void discarded(Command command, Outcome outcome);
+    }
+
+    public static final class Command {
+        private final String name;
+        private final int value;
+        private final int secondValue;
+        private final long traceId;
+        private final long submittedNanos;
+        private final Rule rule;
+
+        Command(String name, int value, int secondValue, long traceId, long submittedNanos,
+                Rule rule) {
+            this.name = name;
+            this.value = value;
+            this.secondValue = secondValue;
+            this.traceId = traceId;
+            this.submittedNanos = submittedNanos;
+            this.rule = rule;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getValue() {
+            return value;
+        }
+
+        public int getSecondValue() {
+            return secondValue;
+        }
+
+        public long getTraceId() {
+            return traceId;
+        }
+
+        public long getSubmittedNanos() {
+            return submittedNanos;
+        }
+
+        public Rule getRule() {
+            return rule;
+        }
+
+        /** The name with any spoken numbers; repeats are matched on it. */
+        @Override
+        public String toString() {
+            return value == CommandBus.NO_VALUE ? name : name + " " + value
+                    + (secondValue == CommandBus.NO_VALUE ? "" : "/" + secondValue);
+        }
+    }
+
+    private final Policy policy;
+    private final Dispatcher dispatcher;
+    private final long coalesceWindowNanos;
+    private final int capacity;
+    private final long maxWaitNanos;
+    private final LongSupplier clock;
+
+    // Queued camera commands, highest priority first, then oldest first
+    private final List<Command> queue = new ArrayList<>();
+    // When each command key was last accepted, for coalescing
+    private final Map<String, Long> lastAccepted = new HashMap<>();
+    private Command running;
+
+    private long submittedCount;
+    private long dispatchedCount;
+    private long coalescedCount;
+    private long droppedCount;
+    private long preemptedCount;
+    private long maxWaitedNanos;
+
+    /**
+     * @param coalesceWindowNanos a repeat of an accepted command within this is dropped
+     * @param capacity            camera commands that may wait
+     * @param maxWaitNanos        a camera command queued longer than this is dropped
+     */
+    public CommandScheduler(Policy policy, Dispatcher dispatcher, long coalesceWindowNanos,
+                            int capacity, long maxWaitNanos, LongSupplier clock) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        this.policy = policy;
+        this.dispatcher = dispatcher;
+        this.coalesceWindowNanos = coalesceWindowNanos;
+        this.capacity = capacity;
+        this.maxWaitNanos = maxWaitNanos;
+        this.clock = clock;
+    }
+
+    /** Schedules a recognized command and says what became of it for now. */
+    public Outcome submit(String name, int value, int secondValue, long traceId) {
+        long now = clock.getAsLong();
+        submittedCount++;
+        Command command = new Command(name, value, secondValue, traceId, now,
+                policy.ruleFor(name));
+
+        String key = command.toString();
+        Long last = lastAccepted.get(key);
+        if (last != null && now - last < coalesceWindowNanos) {
+            return discard(command, Outcome.COALESCED);
+        }
+        lastAccepted.put(key, now);
+        pruneAccepted(now);
+
+        Rule rule = command.rule;
+        if (!rule.camera) {
+            if (rule.preempts) preempt(rule.priority);
+            dispatch(command);
+            return Outcome.DISPATCHED;
+        }
+        if (rule.group != null) {
+            for (Iterator<Command> it = queue.iterator(); it.hasNext(); ) {
+                Command queued = it.next();
+                if (rule.group.equals(queued.rule.group)) {
+                    it.remove();
+                    discard(queued, Outcome.COALESCED);
+                }
+            }
+        }
+        if (queue.size() == capacity) {
+            // The least urgent goes: the newest of the lowest priority, or this one
+            Command newest = queue.get(queue.size() - 1);
+            if (newest.rule.priority >= rule.priority) return discard(command, Outcome.DROPPED);
+            queue.remove(queue.size() - 1);
+            discard(newest, Outcome.DROPPED);
+        }
+        int at = queue.size();
+        while (at > 0 && queue.get(at - 1).rule.priority < rule.priority) at--;
+        queue.add(at, command);
+        runNext();
+        return queue.contains(command) ? Outcome.QUEUED : Outcome.DISPATCHED;
+    }
+
+    private void pruneAccepted(long now) {
+        if (lastAccepted.size() < 64) return;
+        lastAccepted.values().removeIf(time -> now - time >= coalesceWindowNanos);
+    }
+
+    private void preempt(int priority) {
+        for (Iterator<Command> it = queue.iterator(); it.hasNext(); ) {
+            Command queued = it.next();
+            if (queued.rule.priority < priority) {
+                it.remove();
+                discard(queued, Outcome.PREEMPTED);
+            }
+        }
+    }
+
+    private void runNext() {
+        while (running == null && !queue.isEmpty()) {
+            Command next = queue.remove(0);
+            long waited = clock.getAsLong() - next.submittedNanos;
+            if (waited > maxWaitNanos) {
+                discard(next, Outcome.DROPPED);
+                continue;
+            }
+            maxWaitedNanos = Math.max(maxWaitedNanos, waited);
+            running = next;
+            dispatch(next);
+        }
+    }
+
+    private void dispatch(Command command) {
+        dispatchedCount++;
+        dispatcher.dispatch(command, () -> finished(command));
+    }
+
+    // A repeat or late call, or one for a command not holding the camera, is ignored
+    private void finished(Command command) {
+        if (running != command) return;
+        running = null;
+        runNext();
+    }
+
+    private Outcome discard(Command command, Outcome outcome) {
+        switch (outcome) {
+            case COALESCED:
+                coalescedCount++;
+                break;
+            case PREEMPTED:
+                preemptedCount++;
+                break;
+            default:
+                droppedCount++;
+                break;
+        }
+        dispatcher.discarded(command, outcome);
+        return outcome;
+    }
+
+    /** Drops every queued command, as when the camera goes away. */
+    public void clear() {
+        List<Command> dropped = new ArrayList<>(queue);
+        queue.clear();
+        for (Command command : dropped) discard(command, Outcome.DROPPED);
+    }
+
+    /** The camera command dispatched and not yet done, or null. */
+    public Command getRunning() {
+        return running;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount;
+    }
+
+    public long getDispatchedCount() {
+        return dispatchedCount;
+    }
+
+    /** Repeats within the window, and queued commands replaced in their group. */
+    public long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /** Commands that found the queue full or waited too long. */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /** Queued commands thrown out by a pre-empting one. */
+    public long getPreemptedCount() {
+        return preemptedCount;
+    }
+
+    /** Longest a dispatched camera command waited in the queue. */
+    public long getMaxWaitedNanos() {
+        return maxWaitedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "running=%s queued=%d submitted=%d dispatched=%d coalesced=%d dropped=%d "
+                        + "preempted=%d max wait=%.1fms",
+                running, queue.size(), submittedCount, dispatchedCount, coalescedCount,
+                droppedCount, preemptedCount, maxWaitedNanos / 1e6);
+    }
+}
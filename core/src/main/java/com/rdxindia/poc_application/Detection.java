@@ -0,0 +1,82 @@
+package com.rdxindia.poc_application;
+
+import java.util.Locale;
+
+/**
+ * One object found in an analysis frame. The box is normalised to 0..1 of
+ * the upright frame, so it lines up with the preview whatever the analysis
+ * resolution or sensor rotation.
+ */
+public final class Detection {
+
+    /** Tracking id of a detector that does not track objects across frames. */
+    public static final int NO_TRACKING_ID = -1;
+
+    private final String label;
+    private final float confidence;
+    private final float left;
+    private final float top;
+    private final float right;
+    private final float bottom;
+    private final int trackingId;
+
+    /** {@code label} is null for an object the detector could not classify. */
+    public Detection(String label, float confidence, float left, float top,
+                     float right, float bottom, int trackingId) {
+        this.label = label;
+        this.confidence = confidence;
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+        this.trackingId = trackingId;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public float getConfidence() {
+        return confidence;
+    }
+
+    public float getLeft() {
+        return left;
+    }
+
+    public float getTop() {
+        return top;
+    }
+
+    public float getRight() {
+        return right;
+    }
+
+    public float getBottom() {
+        return bottom;
+    }
+
+    public int getTrackingId() {
+        return trackingId;
+    }
+
+    public float getCenterX() {
+        return (left + right) / 2;
+    }
+
+    public float getCenterY() {
+        return (top + bottom) / 2;
+    }
+
+    /** Larger of the horizontal and vertical offsets of the box centre from the frame centre. */
+    public float getOffCenter() {
+        return Math.max(Math.abs(getCenterX() - 0.5f), Math.abs(getCenterY() - 0.5f));
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s %.2f [%.2f,%.2f-%.2f,%.2f]%s",
+                label == null ? "object" : label, confidence, left, top, right, bottom,
+                trackingId == NO_TRACKING_ID ? "" : " #" + trackingId);
+    }
+}
@@ -0,0 +1,235 @@
+package com.rdxindia.poc_application;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Catches shots that are near-copies of one taken moments before, by the
+ * Hamming distance between their {@link PerceptualHash}es. The recent kept
+ * shots live in a {@link BkTree}, bounded by count and age; each new one is
+ * checked against them and the {@link Policy} decides from the distance and
+ * the time between the two whether it is kept, stored only as a link to the
+ * earlier file, or dropped. Checking and remembering a kept shot happen
+ * under one lock, so two workers finishing copies of the same scene at once
+ * cannot both keep theirs. Thread-safe.
+ */
+public final class DuplicateDetector {
+
+    public enum Action {
+        /** A new photo. */
+        KEEP,
+        /** Close enough to reuse the earlier file; only the new shot's record is kept. */
+        LINK,
+        /** The same shot again; nothing is kept. */
+        DROP
+    }
+
+    public interface Policy {
+        /** The largest distance {@link #decide} does anything but keep at. */
+        int getRadius();
+
+        /** What to do with a shot {@code distance} bits and {@code ageMillis} from an earlier one. */
+        Action decide(int distance, long ageMillis);
+    }
+
+    /** Drops the closest copies taken within a short window, links looser ones within a longer one. */
+    public static final class RadiusPolicy implements Policy {
+
+        private final int dropRadius;
+        private final long dropWindowMillis;
+        private final int linkRadius;
+        private final long linkWindowMillis;
+
+        /** 3 bits within 10s dropped, 8 bits within a minute linked. */
+        public RadiusPolicy() {
+            this(3, 10_000, 8, 60_000);
+        }
+
+        public RadiusPolicy(int dropRadius, long dropWindowMillis, int linkRadius,
+                            long linkWindowMillis) {
+            this.dropRadius = dropRadius;
+            this.dropWindowMillis = dropWindowMillis;
+            this.linkRadius = linkRadius;
+            this.linkWindowMillis = linkWindowMillis;
+        }
+
+        @Override
+        public int getRadius() {
+            return Math.max(dropRadius, linkRadius);
+        }
+
+        @Override
+        public Action decide(int distance, long ageMillis) {
+            if (distance <= dropRadius && ageMillis <= dropWindowMillis) return Action.DROP;
+            if (distance <= linkRadius && ageMillis <= linkWindowMillis) return Action.LINK;
+            return Action.KEEP;
+        }
+    }
+
+    /** The outcome of one {@link #check}. */
+    public static final class Verdict {
+        private final Action action;
+        private final long hash;
+        private final String original;
+        private final int distance;
+
+        Verdict(Action action, long hash, String original, int distance) {
+            this.action = action;
+            this.hash = hash;
+            this.original = original;
+            this.distance = distance;
+        }
+
+        public Action getAction() {
+            return action;
+        }
+
+        public long getHash() {
+            return hash;
+        }
+
+        /** The earlier shot that decided the action, or null if none was within the radius. */
+        public String getOriginal() {
+            return original;
+        }
+
+        /** Bits from the original, or -1 without one. */
+        public int getDistance() {
+            return distance;
+        }
+
+        @Override
+        public String toString() {
+            return original == null ? action + " (no match)"
+                    : action + " (" + distance + " bits from " + original + ")";
+        }
+    }
+
+    private static final class Capture {
+        final String name;
+        final long hash;
+        final long timeMillis;
+
+        Capture(String name, long hash, long timeMillis) {
+            this.name = name;
+            this.hash = hash;
+            this.timeMillis = timeMillis;
+        }
+    }
+
+    private final Policy policy;
+    private final int capacity;
+    private final long maxAgeMillis;
+    private final BkTree<Capture> tree = new BkTree<>();
+    // Kept shots, oldest first
+    private final ArrayDeque<Capture> recent = new ArrayDeque<>();
+    private long kept;
+    private long linked;
+    private long dropped;
+    private long visited;
+
+    /**
+     * @param capacity     most recent shots remembered
+     * @param maxAgeMillis how long a shot is remembered; longer than any
+     *                     window the policy looks at is wasted
+     */
+    public DuplicateDetector(Policy policy, int capacity, long maxAgeMillis) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity " + capacity);
+        this.policy = policy;
+        this.capacity = capacity;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Decides what happens to shot {@code name} with {@code hash}, taken at
+     * {@code timeMillis}, and remembers it if it is kept.
+     */
+    public synchronized Verdict check(String name, long hash, long timeMillis) {
+        expire(timeMillis);
+        Action action = Action.KEEP;
+        Capture original = null;
+        int distance = -1;
+        List<BkTree.Entry<Capture>> near = tree.search(hash, policy.getRadius());
+        visited += tree.getLastVisited();
+        for (BkTree.Entry<Capture> entry : near) {
+            Capture candidate = entry.getValue();
+            int d = PerceptualHash.distance(hash, candidate.hash);
+            // Workers can finish out of order, so the earlier shot may be the newer one
+            Action a = policy.decide(d, Math.abs(timeMillis - candidate.timeMillis));
+            if (original == null || a.ordinal() > action.ordinal()
+                    || (a == action && d < distance)) {
+                action = a;
+                original = candidate;
+                distance = d;
+            }
+        }
+
+        switch (action) {
+            case DROP:
+                dropped++;
+                break;
+            case LINK:
+                linked++;
+                break;
+            default:
+                kept++;
+                Capture capture = new Capture(name, hash, timeMillis);
+                recent.addLast(capture);
+                tree.add(hash, capture);
+                if (recent.size() > capacity) evict(recent.removeFirst());
+                break;
+        }
+        return new Verdict(action, hash, original == null ? null : original.name, distance);
+    }
+
+    /** Forgets a kept shot whose file did not make it after all. */
+    public synchronized boolean forget(String name) {
+        for (Iterator<Capture> it = recent.iterator(); it.hasNext(); ) {
+            Capture capture = it.next();
+            if (capture.name.equals(name)) {
+                it.remove();
+                evict(capture);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void evict(Capture capture) {
+        tree.remove(capture.hash, capture);
+    }
+
+    private void expire(long now) {
+        while (!recent.isEmpty() && now - recent.peekFirst().timeMillis > maxAgeMillis) {
+            evict(recent.removeFirst());
+        }
+    }
+
+    /** Shots currently remembered. */
+    public synchronized int size() {
+        return recent.size();
+    }
+
+    public synchronized long getKeptCount() {
+        return kept;
+    }
+
+    public synchronized long getLinkedCount() {
+        return linked;
+    }
+
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long checks = kept + linked + dropped;
+        return String.format(Locale.US,
+                "%d checked: %d kept, %d linked, %d dropped; %d remembered, %.1f compared per check",
+                checks, kept, linked, dropped, recent.size(),
+                checks == 0 ? 0.0 : (double) visited / checks);
+    }
+}
@@ -0,0 +1,208 @@
+package com.rdxindia.poc_application;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Huffman decoder for baseline JPEG entropy-coded data. Besides decoding
+ * blocks it can report the exact byte and bit position of the next unread
+ * bit, so callers can copy everything before it verbatim.
+ */
+final class EntropyDecoder {
+
+    private final ByteBuffer data;
+    private int pos;
+    private int bitBuffer;
+    private int bitCount;
+    private int markerPos = -1;
+
+    // Offsets of the most recently loaded bytes, -1 for zero padding past a marker
+    private final int[] loaded = new int[8];
+    private int loadedCount;
+
+    EntropyDecoder(ByteBuffer data) {
+        this.data = data;
+    }
+
+    void reset(int position) {
+        pos = position;
+        bitBuffer = 0;
+        bitCount = 0;
+        markerPos = -1;
+        loadedCount = 0;
+    }
+
+    private void fill() {
+        while (bitCount <= 24) {
+            int b;
+            int at = pos;
+            if (markerPos >= 0 || pos >= data.limit()) {
+                b = 0;
+                at = -1;
+            } else {
+                b = data.get(pos) & 0xFF;
+                if (b == 0xFF) {
+                    int next = pos + 1 < data.limit() ? data.get(pos + 1) & 0xFF : 0xD9;
+                    if (next == 0x00) {
+                        pos += 2;
+                    } else if (next == 0xFF) {
+                        pos++; // fill byte in front of a marker
+                        continue;
+                    } else {
+                        markerPos = pos;
+                        b = 0;
+                        at = -1;
+                    }
+                } else {
+                    pos++;
+                }
+            }
+            bitBuffer = (bitBuffer << 8) | b;
+            bitCount += 8;
+            loaded[loadedCount++ & 7] = at;
+        }
+    }
+
+    private int peek(int n) {
+        if (bitCount < n) fill();
+        return (bitBuffer >>> (bitCount - n)) & ((1 << n) - 1);
+    }
+
+    private void skip(int n) {
+        bitCount -= n;
+    }
+
+    int readBits(int n) {
+        if (n == 0) return 0;
+        int value = peek(n);
+        skip(n);
+        return value;
+    }
+
+    int decodeSymbol(HuffmanTable table) throws IOException {
+        int look = table.lookup[peek(HuffmanTable.LOOKAHEAD_BITS)];
+        if (look != 0) {
+            skip(look >> 8);
+            return look & 0xFF;
+        }
+        int code = peek(HuffmanTable.LOOKAHEAD_BITS);
+        skip(HuffmanTable.LOOKAHEAD_BITS);
+        int length = HuffmanTable.LOOKAHEAD_BITS;
+        while (code > table.maxCode[length]) {
+            code = (code << 1) | readBits(1);
+            length++;
+            if (length > 16) {
+                throw new IOException("Corrupt Huffman code");
+            }
+        }
+        return table.values[code + table.valueOffset[length]];
+    }
+
+    private static int extend(int value, int bits) {
+        return value < (1 << (bits - 1)) ? value - (1 << bits) + 1 : value;
+    }
+
+    /**
+     * Decodes one 8x8 block into {@code coef[offset, offset + 64)} in zigzag
+     * order. The DC coefficient is stored as an absolute value using and
+     * updating {@code predictors[component]}.
+     */
+    void decodeBlock(short[] coef, int offset, HuffmanTable dc, HuffmanTable ac,
+                     int[] predictors, int component) throws IOException {
+        for (int i = 0; i < 64; i++) coef[offset + i] = 0;
+
+        int s = decodeSymbol(dc);
+        int diff = s == 0 ? 0 : extend(readBits(s), s);
+        predictors[component] += diff;
+        coef[offset] = (short) predictors[component];
+
+        for (int k = 1; k < 64; ) {
+            int rs = decodeSymbol(ac);
+            int r = rs >> 4;
+            s = rs & 0x0F;
+            if (s == 0) {
+                if (r != 15) break; // EOB
+                k += 16;
+                continue;
+            }
+            k += r;
+            if (k > 63) {
+                throw new IOException("Coefficient index out of range");
+            }
+            coef[offset + k] = (short) extend(readBits(s), s);
+            k++;
+        }
+    }
+
+    /** Discards padding bits and consumes the RSTn marker ending an interval. */
+    void readRestartMarker() throws IOException {
+        bitBuffer = 0;
+        bitCount = 0;
+        loadedCount = 0;
+        int at = markerPos >= 0 ? markerPos : pos;
+        while (at + 1 < data.limit() && (data.get(at) & 0xFF) == 0xFF
+                && (data.get(at + 1) & 0xFF) == 0xFF) {
+            at++;
+        }
+        if (at + 1 >= data.limit() || (data.get(at) & 0xFF) != 0xFF
+                || ((data.get(at + 1) & 0xFF) & 0xF8) != 0xD0) {
+            throw new IOException("Missing restart marker at " + at);
+        }
+        pos = at + 2;
+        markerPos = -1;
+    }
+
+    /** Offset of the byte holding the next unread bit. */
+    int bitPosition() throws IOException {
+        if (bitCount == 0) {
+            return markerPos >= 0 ? markerPos : pos;
+        }
+        int back = (bitCount + 7) / 8;
+        int at = loaded[(loadedCount - back) & 7];
+        if (at < 0) {
+            throw new IOException("Entropy data ended early");
+        }
+        return at;
+    }
+
+    /** Number of bits of the byte at {@link #bitPosition()} already consumed. */
+    int consumedBitsInByte() {
+        return bitCount == 0 ? 0 : (8 - bitCount % 8) % 8;
+    }
+
+    /**
+     * Offset of the marker that follows the entropy-coded data, once the last
+     * block has been decoded.
+     */
+    int findMarker() {
+        if (markerPos >= 0) return markerPos;
+        int at = pos;
+        while (at + 1 < data.limit()) {
+            if ((data.get(at) & 0xFF) == 0xFF) {
+                int next = data.get(at + 1) & 0xFF;
+                if (next != 0x00 && next != 0xFF) return at;
+            }
+            at++;
+        }
+        return data.limit();
+    }
+
+    /** Offset right after the {@code n}-th restart marker (1-based) from {@code start}. */
+    int skipRestartIntervals(int start, int n) throws IOException {
+        int at = start;
+        int seen = 0;
+        while (at + 1 < data.limit()) {
+            if ((data.get(at) & 0xFF) == 0xFF) {
+                int next = data.get(at + 1) & 0xFF;
+                if ((next & 0xF8) == 0xD0) {
+                    if (++seen == n) return at + 2;
+                    at += 2;
+                    continue;
+                }
+                if (next != 0x00 && next != 0xFF) break;
+            }
+            at++;
+        }
+        throw new IOException("Restart marker " + n + " not found");
+    }
+}
@@ -0,0 +1,129 @@
+package com.rdxindia.poc_application;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Huffman encoder for baseline JPEG entropy-coded data, writing through a
+ * fixed output buffer to a channel. Reuses the tables of the source image, so
+ * it fails with {@link UnsupportedJpegException} if a block needs a symbol
+ * the table has no code for.
+ */
+final class EntropyEncoder {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    private WritableByteChannel out;
+    private long bitBuffer;
+    private int bitCount;
+
+    void reset(WritableByteChannel out) {
+        this.out = out;
+        buffer.clear();
+        bitBuffer = 0;
+        bitCount = 0;
+    }
+
+    void writeBits(int value, int n) throws IOException {
+        if (n == 0) return;
+        bitBuffer = (bitBuffer << n) | (value & ((1L << n) - 1));
+        bitCount += n;
+        while (bitCount >= 8) {
+            int b = (int) (bitBuffer >>> (bitCount - 8)) & 0xFF;
+            bitCount -= 8;
+            put(b);
+            if (b == 0xFF) put(0x00);
+        }
+    }
+
+    private void put(int b) throws IOException {
+        if (!buffer.hasRemaining()) flushBuffer();
+        buffer.put((byte) b);
+    }
+
+    private void writeSymbol(HuffmanTable table, int symbol) throws IOException {
+        int size = table.size[symbol];
+        if (size == 0) {
+            throw new UnsupportedJpegException(
+                    "Huffman table has no code for symbol 0x" + Integer.toHexString(symbol));
+        }
+        writeBits(table.code[symbol], size);
+    }
+
+    private static int bitLength(int magnitude) {
+        return 32 - Integer.numberOfLeadingZeros(magnitude);
+    }
+
+    /**
+     * Encodes the block at {@code coef[offset, offset + 64)} (zigzag order,
+     * absolute DC) using and updating {@code predictors[component]}.
+     */
+    void encodeBlock(short[] coef, int offset, HuffmanTable dc, HuffmanTable ac,
+                     int[] predictors, int component) throws IOException {
+        int diff = coef[offset] - predictors[component];
+        predictors[component] = coef[offset];
+        int n = bitLength(Math.abs(diff));
+        writeSymbol(dc, n);
+        writeBits(diff < 0 ? diff - 1 : diff, n);
+
+        int run = 0;
+        for (int k = 1; k < 64; k++) {
+            int v = coef[offset + k];
+            if (v == 0) {
+                run++;
+                continue;
+            }
+            while (run > 15) {
+                writeSymbol(ac, 0xF0);
+                run -= 16;
+            }
+            n = bitLength(Math.abs(v));
+            writeSymbol(ac, (run << 4) | n);
+            writeBits(v < 0 ? v - 1 : v, n);
+            run = 0;
+        }
+        if (run > 0) {
+            writeSymbol(ac, 0x00);
+        }
+    }
+
+    /** Pads the current byte with 1-bits as the spec requires before a marker. */
+    void alignToByte() throws IOException {
+        int pad = (8 - bitCount % 8) % 8;
+        if (pad > 0) {
+            writeBits((1 << pad) - 1, pad);
+        }
+    }
+
+    void writeRestartMarker(int index) throws IOException {
+        alignToByte();
+        put(0xFF);
+        put(0xD0 | (index & 7));
+    }
+
+    /** Writes {@code source[start, end)} unchanged after anything buffered. */
+    void copy(ByteBuffer source, int start, int end) throws IOException {
+        flushBuffer();
+        ByteBuffer slice = source.duplicate();
+        slice.limit(end);
+        slice.position(start);
+        while (slice.hasRemaining()) {
+            out.write(slice);
+        }
+    }
+
+    /** Writes raw bytes (a marker segment) after anything buffered. */
+    void copy(byte[] bytes) throws IOException {
+        copy(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+}
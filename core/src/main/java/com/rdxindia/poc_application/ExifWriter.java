@@ -0,0 +1,346 @@
+package com.rdxindia.poc_application;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Builds an EXIF APP1 segment (orientation + GPS fix) directly, either
+ * from scratch or by merging into the TIFF block of an existing EXIF segment,
+ * so GPS tags can be written without ExifInterface rewriting the whole JPEG.
+ */
+public class ExifWriter {
+
+    public static final int ORIENTATION_NORMAL = 1;
+    public static final int ORIENTATION_ROTATE_180 = 3;
+    public static final int ORIENTATION_ROTATE_90 = 6;
+    public static final int ORIENTATION_ROTATE_270 = 8;
+
+    static final int TAG_ORIENTATION = 0x0112;
+    static final int TAG_GPS_IFD_POINTER = 0x8825;
+    static final int TAG_GPS_VERSION_ID = 0x0000;
+    static final int TAG_GPS_LATITUDE_REF = 0x0001;
+    static final int TAG_GPS_LATITUDE = 0x0002;
+    static final int TAG_GPS_LONGITUDE_REF = 0x0003;
+    static final int TAG_GPS_LONGITUDE = 0x0004;
+    static final int TAG_GPS_TIME_STAMP = 0x0007;
+    static final int TAG_GPS_DATE_STAMP = 0x001D;
+    static final int TAG_GPS_H_POSITIONING_ERROR = 0x001F;
+
+    static final int TYPE_BYTE = 1;
+    static final int TYPE_ASCII = 2;
+    static final int TYPE_SHORT = 3;
+    static final int TYPE_LONG = 4;
+    static final int TYPE_RATIONAL = 5;
+
+    // Seconds of arc are stored as n / SECONDS_DENOMINATOR, i.e. to 1e-6"
+    // (about 0.03 mm on the ground)
+    static final long SECONDS_DENOMINATOR = 1_000_000L;
+
+    static final byte[] EXIF_HEADER = { 'E', 'x', 'i', 'f', 0, 0 };
+    static final int MAX_SEGMENT_LENGTH = 0xFFFF;
+    private static final int TIFF_HEADER_SIZE = 8;
+
+    private int orientation = -1;
+    private boolean hasLocation;
+    private double latitude;
+    private double longitude;
+    private long fixTimeMillis = -1;
+    private float accuracyMeters = Float.NaN;
+
+    public ExifWriter setOrientation(int orientation) {
+        this.orientation = orientation;
+        return this;
+    }
+
+    public ExifWriter setGpsLocation(double latitude, double longitude) {
+        this.hasLocation = true;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        return this;
+    }
+
+    /**
+     * Records when the position was measured (GPSDateStamp / GPSTimeStamp,
+     * UTC) and its horizontal error in meters (GPSHPositioningError, skipped
+     * if NaN), so the fix age can be read back against the capture time.
+     */
+    public ExifWriter setGpsFix(long fixTimeMillis, float accuracyMeters) {
+        this.fixTimeMillis = fixTimeMillis;
+        this.accuracyMeters = accuracyMeters;
+        return this;
+    }
+
+    // Maps ImageInfo.getRotationDegrees() to the EXIF orientation tag value
+    public static int orientationForRotation(int rotationDegrees) {
+        switch (((rotationDegrees % 360) + 360) % 360) {
+            case 90:
+                return ORIENTATION_ROTATE_90;
+            case 180:
+                return ORIENTATION_ROTATE_180;
+            case 270:
+                return ORIENTATION_ROTATE_270;
+            default:
+                return ORIENTATION_NORMAL;
+        }
+    }
+
+    /**
+     * Returns a complete APP1 segment, starting with the FFE1 marker, holding
+     * only the tags set on this writer.
+     */
+    public byte[] buildApp1() {
+        return buildFresh(orientation);
+    }
+
+    private byte[] buildFresh(int orientation) {
+        Ifd ifd0 = new Ifd(ByteOrder.BIG_ENDIAN);
+        if (orientation >= 0) {
+            ifd0.add(TAG_ORIENTATION, TYPE_SHORT, 1, ifd0.shortValue(orientation));
+        }
+        return assemble(null, 0, 0, ifd0, 0, ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Returns a complete APP1 segment that keeps every tag of the existing TIFF
+     * block {@code tiff[offset, offset + length)} and adds or replaces the tags
+     * set on this writer.
+     * <p>
+     * The original bytes are kept verbatim and a new IFD0 is appended after
+     * them, so every offset stored in the old block stays valid. Falls back to
+     * {@link #buildApp1()} (carrying over the orientation) when the existing
+     * block cannot be parsed or the merged segment would not fit in APP1.
+     */
+    public byte[] buildApp1(byte[] tiff, int offset, int length) {
+        ByteBuffer in = ByteBuffer.wrap(tiff, offset, length).slice();
+        int existingOrientation = -1;
+        try {
+            ByteOrder order = readByteOrder(in);
+            in.order(order);
+            int ifd0Offset = in.getInt(4);
+            int count = in.getShort(ifd0Offset) & 0xFFFF;
+
+            Ifd ifd0 = new Ifd(order);
+            for (int i = 0; i < count; i++) {
+                int entry = ifd0Offset + 2 + i * 12;
+                int tag = in.getShort(entry) & 0xFFFF;
+                if (tag == TAG_ORIENTATION) {
+                    existingOrientation = in.getShort(entry + 8) & 0xFFFF;
+                }
+                if ((tag == TAG_ORIENTATION && orientation >= 0)
+                        || (tag == TAG_GPS_IFD_POINTER && hasLocation)) {
+                    continue;
+                }
+                byte[] value = new byte[4];
+                in.position(entry + 8);
+                in.get(value);
+                ifd0.addRaw(tag, in.getShort(entry + 2) & 0xFFFF, in.getInt(entry + 4), value);
+            }
+            int nextIfd = in.getInt(ifd0Offset + 2 + count * 12);
+
+            if (orientation >= 0) {
+                ifd0.add(TAG_ORIENTATION, TYPE_SHORT, 1, ifd0.shortValue(orientation));
+            }
+            byte[] merged = assemble(tiff, offset, length, ifd0, nextIfd, order);
+            if (merged != null) {
+                return merged;
+            }
+        } catch (IndexOutOfBoundsException | BufferUnderflowException | IllegalArgumentException e) {
+            // Malformed TIFF block, rebuild from scratch
+        }
+        return buildFresh(orientation >= 0 ? orientation : existingOrientation);
+    }
+
+    // Lays out [existing TIFF][IFD0][GPS IFD]; returns null when the segment
+    // would exceed the APP1 size limit
+    private byte[] assemble(byte[] tiff, int offset, int length, Ifd ifd0, int nextIfd,
+                            ByteOrder order) {
+        Ifd gps = null;
+        if (hasLocation) {
+            gps = new Ifd(order);
+            gps.add(TAG_GPS_VERSION_ID, TYPE_BYTE, 4, new byte[] { 2, 2, 0, 0 });
+            gps.add(TAG_GPS_LATITUDE_REF, TYPE_ASCII, 2, ascii(latitude >= 0 ? "N" : "S"));
+            gps.add(TAG_GPS_LATITUDE, TYPE_RATIONAL, 3, gps.rationals(toDms(latitude)));
+            gps.add(TAG_GPS_LONGITUDE_REF, TYPE_ASCII, 2, ascii(longitude >= 0 ? "E" : "W"));
+            gps.add(TAG_GPS_LONGITUDE, TYPE_RATIONAL, 3, gps.rationals(toDms(longitude)));
+            if (fixTimeMillis >= 0) {
+                gps.add(TAG_GPS_TIME_STAMP, TYPE_RATIONAL, 3, gps.rationals(toUtcTime(fixTimeMillis)));
+                gps.add(TAG_GPS_DATE_STAMP, TYPE_ASCII, 11, ascii(toUtcDate(fixTimeMillis)));
+            }
+            if (!Float.isNaN(accuracyMeters)) {
+                gps.add(TAG_GPS_H_POSITIONING_ERROR, TYPE_RATIONAL, 1, gps.rationals(
+                        new long[] { Math.round(accuracyMeters * 100d), 100 }));
+            }
+            // Placeholder, patched once the GPS IFD offset is known
+            ifd0.add(TAG_GPS_IFD_POINTER, TYPE_LONG, 1, new byte[4]);
+        }
+
+        int ifd0Offset = tiff == null ? TIFF_HEADER_SIZE : (length + 1) & ~1;
+        int gpsOffset = ifd0Offset + ifd0.size();
+        if (gps != null) {
+            ifd0.setLong(TAG_GPS_IFD_POINTER, gpsOffset);
+        }
+        int tiffSize = gpsOffset + (gps != null ? gps.size() : 0);
+
+        int segmentLength = 2 + EXIF_HEADER.length + tiffSize;
+        if (segmentLength > MAX_SEGMENT_LENGTH) {
+            return null;
+        }
+        ByteBuffer buf = ByteBuffer.allocate(2 + segmentLength).order(ByteOrder.BIG_ENDIAN);
+        buf.put((byte) 0xFF).put((byte) 0xE1).putShort((short) segmentLength);
+        buf.put(EXIF_HEADER);
+
+        int tiffStart = buf.position();
+        if (tiff == null) {
+            buf.put((byte) 'M').put((byte) 'M');
+            buf.order(order).putShort((short) 42);
+        } else {
+            buf.put(tiff, offset, length);
+        }
+        buf.order(order).putInt(tiffStart + 4, ifd0Offset);
+        ifd0.write(buf, tiffStart, ifd0Offset, nextIfd);
+        if (gps != null) {
+            gps.write(buf, tiffStart, gpsOffset, 0);
+        }
+        return buf.array();
+    }
+
+    private static ByteOrder readByteOrder(ByteBuffer tiff) {
+        int b0 = tiff.get(0);
+        int b1 = tiff.get(1);
+        if (b0 == 'I' && b1 == 'I') return ByteOrder.LITTLE_ENDIAN;
+        if (b0 == 'M' && b1 == 'M') return ByteOrder.BIG_ENDIAN;
+        throw new IllegalArgumentException("Not a TIFF header");
+    }
+
+    /**
+     * Converts a decimal coordinate to degrees, minutes and seconds as three
+     * unsigned rationals laid out {num, den, num, den, num, den}. Seconds keep
+     * six decimal places instead of being truncated to whole seconds.
+     */
+    static long[] toDms(double coordinate) {
+        long micros = Math.round(Math.abs(coordinate) * 3600d * SECONDS_DENOMINATOR);
+        long perDegree = 3600L * SECONDS_DENOMINATOR;
+        long perMinute = 60L * SECONDS_DENOMINATOR;
+        long degrees = micros / perDegree;
+        long minutes = (micros % perDegree) / perMinute;
+        long seconds = micros % perMinute;
+        return new long[] { degrees, 1, minutes, 1, seconds, SECONDS_DENOMINATOR };
+    }
+
+    // {h, 1, m, 1, milliseconds, 1000} of the UTC time of day
+    static long[] toUtcTime(long timeMillis) {
+        long millisOfDay = Math.floorMod(timeMillis, 86_400_000L);
+        return new long[] {
+                millisOfDay / 3_600_000L, 1,
+                (millisOfDay / 60_000L) % 60, 1,
+                millisOfDay % 60_000L, 1000
+        };
+    }
+
+    static String toUtcDate(long timeMillis) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy:MM:dd", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(timeMillis));
+    }
+
+    private static byte[] ascii(String value) {
+        byte[] out = new byte[value.length() + 1];
+        for (int i = 0; i < value.length(); i++) {
+            out[i] = (byte) value.charAt(i);
+        }
+        return out;
+    }
+
+    // A single IFD; values longer than four bytes go in a data area directly
+    // after the entry table. Entries are kept sorted by tag as TIFF requires.
+    static final class Ifd {
+        private final ByteOrder order;
+        private final List<int[]> entries = new ArrayList<>();
+        private final List<byte[]> values = new ArrayList<>();
+        // Raw entries point into the original block and are never relocated
+        private final List<Boolean> raw = new ArrayList<>();
+
+        Ifd(ByteOrder order) {
+            this.order = order;
+        }
+
+        void add(int tag, int type, int count, byte[] value) {
+            insert(tag, type, count, value, false);
+        }
+
+        void addRaw(int tag, int type, int count, byte[] value) {
+            insert(tag, type, count, value, true);
+        }
+
+        private void insert(int tag, int type, int count, byte[] value, boolean isRaw) {
+            int i = 0;
+            while (i < entries.size() && entries.get(i)[0] < tag) i++;
+            entries.add(i, new int[] { tag, type, count });
+            values.add(i, value);
+            raw.add(i, isRaw);
+        }
+
+        void setLong(int tag, int value) {
+            for (int i = 0; i < entries.size(); i++) {
+                if (entries.get(i)[0] == tag) {
+                    values.set(i, ByteBuffer.allocate(4).order(order).putInt(value).array());
+                }
+            }
+        }
+
+        byte[] shortValue(int value) {
+            return ByteBuffer.allocate(4).order(order).putShort((short) value).array();
+        }
+
+        byte[] rationals(long[] values) {
+            ByteBuffer buf = ByteBuffer.allocate(values.length * 4).order(order);
+            for (long v : values) {
+                buf.putInt((int) v);
+            }
+            return buf.array();
+        }
+
+        int size() {
+            int size = 2 + entries.size() * 12 + 4;
+            for (int i = 0; i < values.size(); i++) {
+                byte[] value = values.get(i);
+                if (!raw.get(i) && value.length > 4) size += value.length + (value.length & 1);
+            }
+            return size;
+        }
+
+        void write(ByteBuffer buf, int tiffStart, int ifdOffset, int nextIfdOffset) {
+            ByteOrder previous = buf.order();
+            buf.order(order);
+            int dataOffset = ifdOffset + 2 + entries.size() * 12 + 4;
+            buf.position(tiffStart + ifdOffset);
+            buf.putShort((short) entries.size());
+            for (int i = 0; i < entries.size(); i++) {
+                int[] e = entries.get(i);
+                byte[] value = values.get(i);
+                buf.putShort((short) e[0]).putShort((short) e[1]).putInt(e[2]);
+                if (!raw.get(i) && value.length > 4) {
+                    buf.putInt(dataOffset);
+                    int mark = buf.position();
+                    buf.position(tiffStart + dataOffset);
+                    buf.put(value);
+                    buf.position(mark);
+                    dataOffset += value.length + (value.length & 1);
+                } else {
+                    buf.put(value);
+                    for (int pad = value.length; pad < 4; pad++) buf.put((byte) 0);
+                }
+            }
+            buf.putInt(nextIfdOffset);
+            buf.position(tiffStart + dataOffset);
+            buf.order(previous);
+        }
+    }
+}
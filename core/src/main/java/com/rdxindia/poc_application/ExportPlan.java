@@ -0,0 +1,334 @@
+package com.rdxindia.poc_application;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Which photos go into which archive segment of an export, fixed when the
+ * export starts so that every segment's bytes can be produced again, from
+ * any offset, after an interruption. Each item carries what the manifest
+ * says about it: capture time and position from the {@link PhotoIndex}, and
+ * the age of the fix from the GPS time stamp in the photo's EXIF. Saved
+ * next to the export's progress as tab-separated text.
+ */
+public final class ExportPlan {
+
+    private static final String MAGIC = "POC-EXPORT";
+    private static final int VERSION = 1;
+    // EXIF sits at the front; this covers it with the camera's embedded thumbnail
+    private static final int HEAD_BYTES = 64 * 1024;
+
+    public static final class Item {
+        private final String name;
+        private final long bytes;
+        private final long lastModified;
+        private final long timeMillis;
+        private final double latitude;
+        private final double longitude;
+        private final long fixAgeMillis;
+
+        Item(String name, long bytes, long lastModified, long timeMillis, double latitude,
+             double longitude, long fixAgeMillis) {
+            this.name = name;
+            this.bytes = bytes;
+            this.lastModified = lastModified;
+            this.timeMillis = timeMillis;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.fixAgeMillis = fixAgeMillis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /** The file's modification time when planned; a later one means it changed. */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        /** NaN for a photo taken without a location. */
+        public double getLatitude() {
+            return latitude;
+        }
+
+        public double getLongitude() {
+            return longitude;
+        }
+
+        public boolean hasLocation() {
+            return !Double.isNaN(latitude);
+        }
+
+        /** How old the fix was when the photo was taken, or -1 if not recorded. */
+        public long getFixAgeMillis() {
+            return fixAgeMillis;
+        }
+    }
+
+    public static final class Segment {
+        private final String name;
+        private final List<Item> items;
+
+        Segment(String name, List<Item> items) {
+            this.name = name;
+            this.items = Collections.unmodifiableList(items);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<Item> getItems() {
+            return items;
+        }
+
+        /** Photo bytes, without the archive's headers and manifest. */
+        public long getDataBytes() {
+            long total = 0;
+            for (Item item : items) total += item.bytes;
+            return total;
+        }
+    }
+
+    private final String id;
+    private final List<Segment> segments;
+
+    private ExportPlan(String id, List<Segment> segments) {
+        this.id = id;
+        this.segments = Collections.unmodifiableList(segments);
+    }
+
+    /**
+     * Plans {@code photos}, in the given order, into segments of about
+     * {@code segmentBytes} of photo data each; a photo larger than that gets
+     * a segment of its own. Photos whose file is gone from {@code library}
+     * are left out, and a name listed twice is exported once.
+     *
+     * @param id names the segments, {@code <id>-000.tar} onwards
+     */
+    public static ExportPlan build(String id, File library, List<PhotoIndex.Photo> photos,
+                                   long segmentBytes) throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        List<Item> items = new ArrayList<>();
+        long bytes = 0;
+        ByteBuffer head = ByteBuffer.allocate(HEAD_BYTES);
+        Set<String> named = new HashSet<>();
+        for (PhotoIndex.Photo photo : photos) {
+            File file = new File(library, photo.getName());
+            if (!file.isFile() || !named.add(photo.getName())) continue;
+            long fixTime = readGpsFixTime(file, head);
+            Item item = new Item(photo.getName(), file.length(), file.lastModified(),
+                    photo.getTimeMillis(), photo.getLatitude(), photo.getLongitude(),
+                    fixTime < 0 ? -1 : Math.max(0, photo.getTimeMillis() - fixTime));
+            if (!items.isEmpty() && bytes + item.bytes > segmentBytes) {
+                segments.add(new Segment(segmentName(id, segments.size()), items));
+                items = new ArrayList<>();
+                bytes = 0;
+            }
+            items.add(item);
+            bytes += item.bytes;
+        }
+        if (!items.isEmpty()) segments.add(new Segment(segmentName(id, segments.size()), items));
+        return new ExportPlan(id, segments);
+    }
+
+    private static String segmentName(String id, int index) {
+        return String.format(Locale.US, "%s-%03d.tar", id, index);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    public int getItemCount() {
+        int count = 0;
+        for (Segment segment : segments) count += segment.items.size();
+        return count;
+    }
+
+    /** Photo bytes in every segment. */
+    public long getDataBytes() {
+        long total = 0;
+        for (Segment segment : segments) total += segment.getDataBytes();
+        return total;
+    }
+
+    /** Writes the plan to {@code file} through a temp file and rename. */
+    public void write(File file) throws IOException {
+        File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (Writer out = new OutputStreamWriter(Files.newOutputStream(temp.toPath()),
+                StandardCharsets.UTF_8)) {
+            out.write(MAGIC + "\t" + VERSION + "\t" + id + "\n");
+            for (Segment segment : segments) {
+                out.write("S\t" + segment.name + "\n");
+                for (Item item : segment.items) {
+                    out.write("I\t" + item.name + "\t" + item.bytes + "\t" + item.lastModified
+                            + "\t" + item.timeMillis + "\t" + item.latitude + "\t"
+                            + item.longitude + "\t" + item.fixAgeMillis + "\n");
+                }
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static ExportPlan read(File file) throws IOException {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String[] header = split(in.readLine(), 3);
+            if (!MAGIC.equals(header[0]) || Integer.parseInt(header[1]) != VERSION) {
+                throw new IOException("Not an export plan: " + file);
+            }
+            List<Segment> segments = new ArrayList<>();
+            String segmentName = null;
+            List<Item> items = null;
+            for (String line; (line = in.readLine()) != null; ) {
+                if (line.startsWith("S\t")) {
+                    if (segmentName != null) segments.add(new Segment(segmentName, items));
+                    segmentName = line.substring(2);
+                    items = new ArrayList<>();
+                } else if (line.startsWith("I\t") && items != null) {
+                    String[] f = split(line, 8);
+                    items.add(new Item(f[1], Long.parseLong(f[2]), Long.parseLong(f[3]),
+                            Long.parseLong(f[4]), Double.parseDouble(f[5]),
+                            Double.parseDouble(f[6]), Long.parseLong(f[7])));
+                } else {
+                    throw new IOException("Bad export plan line: " + line);
+                }
+            }
+            if (segmentName != null) segments.add(new Segment(segmentName, items));
+            return new ExportPlan(header[2], segments);
+        } catch (NumberFormatException e) {
+            throw new IOException("Bad export plan: " + file, e);
+        }
+    }
+
+    private static String[] split(String line, int fields) throws IOException {
+        String[] f = line == null ? new String[0] : line.split("\t", -1);
+        if (f.length != fields) throw new IOException("Bad export plan line: " + line);
+        return f;
+    }
+
+    /**
+     * The UTC time of the fix in {@code file}'s EXIF (GPSDateStamp and
+     * GPSTimeStamp, as {@link ExifWriter#setGpsFix} writes them), or -1.
+     */
+    static long readGpsFixTime(File file, ByteBuffer head) throws IOException {
+        head.clear();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (head.hasRemaining() && channel.read(head) > 0) {
+                // Fill the head or reach the end of a small file
+            }
+        }
+        head.flip();
+        try {
+            return readGpsFixTime(head);
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            // EXIF cut off by the head or malformed; the age goes unrecorded
+            return -1;
+        }
+    }
+
+    private static long readGpsFixTime(ByteBuffer data) {
+        if (data.limit() < 4 || (data.get(0) & 0xFF) != 0xFF || (data.get(1) & 0xFF) != 0xD8) {
+            return -1;
+        }
+        int pos = 2;
+        while (pos + 4 <= data.limit() && (data.get(pos) & 0xFF) == 0xFF) {
+            int marker = data.get(pos + 1) & 0xFF;
+            if (marker == 0xDA || marker == 0xD9) break;
+            int end = pos + 2 + (data.getShort(pos + 2) & 0xFFFF);
+            if (marker == 0xE1 && isExif(data, pos + 4)) {
+                return readGpsIfd(data, pos + 4 + ExifWriter.EXIF_HEADER.length);
+            }
+            pos = end;
+        }
+        return -1;
+    }
+
+    private static boolean isExif(ByteBuffer data, int body) {
+        for (int i = 0; i < ExifWriter.EXIF_HEADER.length; i++) {
+            if (data.get(body + i) != ExifWriter.EXIF_HEADER[i]) return false;
+        }
+        return true;
+    }
+
+    private static long readGpsIfd(ByteBuffer data, int tiff) {
+        ByteBuffer in = data.duplicate();
+        in.order(data.get(tiff) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        int gps = findEntry(in, tiff + in.getInt(tiff + 4), ExifWriter.TAG_GPS_IFD_POINTER);
+        if (gps < 0) return -1;
+        int gpsIfd = tiff + in.getInt(gps + 8);
+        int date = findEntry(in, gpsIfd, ExifWriter.TAG_GPS_DATE_STAMP);
+        int time = findEntry(in, gpsIfd, ExifWriter.TAG_GPS_TIME_STAMP);
+        if (date < 0 || time < 0) return -1;
+
+        // "yyyy:MM:dd", 11 bytes with the terminator, so always at an offset
+        int chars = tiff + in.getInt(date + 8);
+        int[] ymd = new int[3];
+        int[] widths = { 4, 2, 2 };
+        for (int field = 0, at = chars; field < 3; at += widths[field] + 1, field++) {
+            for (int i = 0; i < widths[field]; i++) {
+                int digit = in.get(at + i) - '0';
+                if (digit < 0 || digit > 9) return -1;
+                ymd[field] = ymd[field] * 10 + digit;
+            }
+        }
+        int rationals = tiff + in.getInt(time + 8);
+        double millis = 0;
+        long[] unit = { 3_600_000L, 60_000L, 1_000L };
+        for (int i = 0; i < 3; i++) {
+            long numerator = in.getInt(rationals + i * 8) & 0xFFFFFFFFL;
+            long denominator = in.getInt(rationals + i * 8 + 4) & 0xFFFFFFFFL;
+            if (denominator == 0) return -1;
+            millis += (double) numerator / denominator * unit[i];
+        }
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"), Locale.US);
+        utc.clear();
+        utc.set(ymd[0], ymd[1] - 1, ymd[2]);
+        return utc.getTimeInMillis() + Math.round(millis);
+    }
+
+    // Position of the entry for tag in the IFD at ifd, or -1
+    private static int findEntry(ByteBuffer in, int ifd, int tag) {
+        int count = in.getShort(ifd) & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            int entry = ifd + 2 + i * 12;
+            if ((in.getShort(entry) & 0xFFFF) == tag) return entry;
+        }
+        return -1;
+    }
+}
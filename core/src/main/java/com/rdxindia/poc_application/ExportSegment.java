@@ -0,0 +1,302 @@
+package com.rdxindia.poc_application;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * One archive segment of an export as a byte stream: a ustar archive of the
+ * segment's photos followed by {@link #MANIFEST}, a line per photo with its
+ * capture time, position, fix age, size and CRC-32. Nothing is staged: the
+ * photos are read through one reused buffer as the bytes are asked for, and
+ * their checksums are computed on the way. Every length, the manifest's
+ * included, follows from the {@link ExportPlan}, so the stream is the same
+ * on every run and can start at any offset; the checksums of photos before
+ * that offset are either passed in with {@link #setChecksum} or read again.
+ * Not thread-safe.
+ */
+public final class ExportSegment {
+
+    public static final String MANIFEST = "manifest.tsv";
+    static final String MANIFEST_HEADER =
+            "name\ttime_ms\tlatitude\tlongitude\tfix_age_ms\tbytes\tcrc32\n";
+
+    private static final int BLOCK = 512;
+    private static final int BUFFER_BYTES = 256 * 1024;
+
+    private final ExportPlan.Segment segment;
+    private final File library;
+    private final List<ExportPlan.Item> items;
+    // Where each photo's header starts; the manifest's is last
+    private final long[] headerOffsets;
+    private final long manifestLength;
+    private final long length;
+    private final long[] checksums;
+    private final boolean[] checked;
+
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final ByteBuffer header = ByteBuffer.allocate(BLOCK);
+    private final CRC32 crc = new CRC32();
+    // Photo the running checksum belongs to, and how far into it it has got
+    private int crcItem = -1;
+    private long crcPosition;
+    private byte[] manifest;
+
+    public ExportSegment(ExportPlan.Segment segment, File library) {
+        this.segment = segment;
+        this.library = library;
+        this.items = segment.getItems();
+        headerOffsets = new long[items.size() + 1];
+        long offset = 0;
+        for (int i = 0; i < items.size(); i++) {
+            headerOffsets[i] = offset;
+            offset += BLOCK + padded(items.get(i).getBytes());
+        }
+        headerOffsets[items.size()] = offset;
+        checksums = new long[items.size()];
+        checked = new boolean[items.size()];
+        manifestLength = buildManifest().length;
+        // Two zero blocks end the archive
+        length = offset + BLOCK + padded(manifestLength) + 2 * BLOCK;
+    }
+
+    private static long padded(long bytes) {
+        return (bytes + BLOCK - 1) / BLOCK * BLOCK;
+    }
+
+    public String getName() {
+        return segment.getName();
+    }
+
+    public ExportPlan.Segment getSegment() {
+        return segment;
+    }
+
+    /** Total bytes in the stream. */
+    public long length() {
+        return length;
+    }
+
+    public boolean hasChecksum(int item) {
+        return checked[item];
+    }
+
+    /** The CRC-32 of photo {@code item}, once its bytes have been read. */
+    public long getChecksum(int item) {
+        if (!checked[item]) throw new IllegalStateException("Not read yet: " + item);
+        return checksums[item];
+    }
+
+    /** Passes in a checksum worked out by an earlier run, so a resume need not read it again. */
+    public void setChecksum(int item, long crc32) {
+        checksums[item] = crc32;
+        checked[item] = true;
+    }
+
+    /**
+     * Writes bytes {@code [offset, offset + count)} of the stream, cut at its
+     * end, to {@code out}.
+     *
+     * @return bytes written
+     * @throws IOException if a photo is missing or has changed since the plan
+     */
+    public long transferTo(long offset, long count, WritableByteChannel out) throws IOException {
+        if (offset < 0 || count < 0) throw new IllegalArgumentException(offset + "+" + count);
+        long end = offset + Math.min(count, Math.max(0, length - offset));
+        long pos = offset;
+        while (pos < end) {
+            int item = entryAt(pos);
+            long start = headerOffsets[item];
+            long within = pos - start;
+            if (within < BLOCK) {
+                writeHeader(item, (int) within, (int) Math.min(BLOCK - within, end - pos), out);
+                pos += Math.min(BLOCK - within, end - pos);
+                continue;
+            }
+            long dataBytes = item < items.size() ? items.get(item).getBytes() : manifestLength;
+            long dataPos = within - BLOCK;
+            if (dataPos < dataBytes) {
+                long n = Math.min(dataBytes - dataPos, end - pos);
+                if (item < items.size()) {
+                    writePhoto(item, dataPos, n, out);
+                } else {
+                    writeBytes(ByteBuffer.wrap(manifest(), (int) dataPos, (int) n), out);
+                }
+                pos += n;
+                continue;
+            }
+            // Padding after an entry, or the closing blocks
+            long zeros = item < items.size() ? start + BLOCK + padded(dataBytes) - pos : end - pos;
+            writeZeros(Math.min(zeros, end - pos), out);
+            pos += Math.min(zeros, end - pos);
+        }
+        return end - offset;
+    }
+
+    /** The whole stream to {@code out}. */
+    public long transferTo(WritableByteChannel out) throws IOException {
+        return transferTo(0, length, out);
+    }
+
+    // Entry whose header, data or padding holds pos; the manifest's covers the end blocks
+    private int entryAt(long pos) {
+        int i = Arrays.binarySearch(headerOffsets, pos);
+        return i >= 0 ? i : -i - 2;
+    }
+
+    private void writeHeader(int item, int from, int n, WritableByteChannel out)
+            throws IOException {
+        if (item < items.size()) {
+            ExportPlan.Item photo = items.get(item);
+            fillHeader(photo.getName(), photo.getBytes(), photo.getLastModified());
+        } else {
+            fillHeader(MANIFEST, manifestLength, manifestTime());
+        }
+        header.limit(from + n).position(from);
+        writeBytes(header, out);
+    }
+
+    private void fillHeader(String name, long size, long modifiedMillis) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > 100) throw new IOException("Name too long for tar: " + name);
+        header.clear();
+        byte[] block = header.array();
+        Arrays.fill(block, (byte) 0);
+        System.arraycopy(nameBytes, 0, block, 0, nameBytes.length);
+        octal(block, 100, 8, 0644);
+        octal(block, 108, 8, 0);
+        octal(block, 116, 8, 0);
+        octal(block, 124, 12, size);
+        octal(block, 136, 12, Math.max(0, modifiedMillis / 1000));
+        block[156] = '0';
+        ascii(block, 257, "ustar\0" + "00");
+        // The checksum is taken with its own field as spaces
+        Arrays.fill(block, 148, 156, (byte) ' ');
+        int sum = 0;
+        for (byte b : block) sum += b & 0xFF;
+        octal(block, 148, 7, sum);
+        block[155] = ' ';
+    }
+
+    // NUL-terminated, zero-padded octal in a field of width bytes
+    private static void octal(byte[] block, int at, int width, long value) {
+        for (int i = width - 2; i >= 0; i--) {
+            block[at + i] = (byte) ('0' + (value & 7));
+            value >>>= 3;
+        }
+        block[at + width - 1] = 0;
+    }
+
+    private static void ascii(byte[] block, int at, String text) {
+        for (int i = 0; i < text.length(); i++) block[at + i] = (byte) text.charAt(i);
+    }
+
+    private void writePhoto(int item, long from, long n, WritableByteChannel out)
+            throws IOException {
+        ExportPlan.Item photo = items.get(item);
+        File file = new File(library, photo.getName());
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (in.size() != photo.getBytes() || file.lastModified() != photo.getLastModified()) {
+                throw new IOException(photo.getName() + " changed since the export was planned");
+            }
+            boolean summing = !checked[item];
+            if (summing && (crcItem != item || crcPosition != from)) {
+                // Starting inside the photo: what comes before only feeds the checksum
+                crc.reset();
+                crcItem = item;
+                crcPosition = 0;
+                read(in, item, 0, from, null);
+            }
+            read(in, item, from, n, out);
+        }
+    }
+
+    // Reads n bytes of photo item from pos, summing them while its checksum needs them
+    private void read(FileChannel in, int item, long pos, long n, WritableByteChannel out)
+            throws IOException {
+        long end = pos + n;
+        while (pos < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - pos));
+            int read = in.read(buffer, pos);
+            if (read < 0) throw new IOException("Unexpected end of file");
+            buffer.flip();
+            if (!checked[item] && crcItem == item && crcPosition == pos) {
+                crc.update(buffer);
+                buffer.rewind();
+                crcPosition += read;
+                if (crcPosition == items.get(item).getBytes()) setChecksum(item, crc.getValue());
+            }
+            if (out != null) writeBytes(buffer, out);
+            pos += read;
+        }
+    }
+
+    private void writeBytes(ByteBuffer bytes, WritableByteChannel out) throws IOException {
+        while (bytes.hasRemaining()) out.write(bytes);
+    }
+
+    private void writeZeros(long n, WritableByteChannel out) throws IOException {
+        while (n > 0) {
+            buffer.clear();
+            int chunk = (int) Math.min(buffer.capacity(), n);
+            for (int i = 0; i < chunk; i++) buffer.put((byte) 0);
+            buffer.flip();
+            writeBytes(buffer, out);
+            n -= chunk;
+        }
+    }
+
+    // Needs every checksum; the ones not known yet are read for
+    private byte[] manifest() throws IOException {
+        if (manifest != null) return manifest;
+        for (int i = 0; i < items.size(); i++) {
+            if (checked[i]) continue;
+            ExportPlan.Item photo = items.get(i);
+            try (FileChannel in = FileChannel.open(new File(library, photo.getName()).toPath(),
+                    StandardOpenOption.READ)) {
+                crc.reset();
+                crcItem = i;
+                crcPosition = 0;
+                read(in, i, 0, photo.getBytes(), null);
+            }
+            setChecksum(i, crc.getValue());
+        }
+        manifest = buildManifest();
+        return manifest;
+    }
+
+    // Before the checksums are known they are zeros of the same width
+    private byte[] buildManifest() {
+        StringBuilder sb = new StringBuilder(MANIFEST_HEADER);
+        for (int i = 0; i < items.size(); i++) {
+            ExportPlan.Item photo = items.get(i);
+            sb.append(photo.getName()).append('\t').append(photo.getTimeMillis()).append('\t');
+            if (photo.hasLocation()) {
+                sb.append(String.format(Locale.US, "%.5f\t%.5f\t",
+                        photo.getLatitude(), photo.getLongitude()));
+            } else {
+                sb.append("\t\t");
+            }
+            if (photo.getFixAgeMillis() >= 0) sb.append(photo.getFixAgeMillis());
+            sb.append('\t').append(photo.getBytes()).append('\t')
+                    .append(String.format(Locale.US, "%08x", checked[i] ? checksums[i] : 0))
+                    .append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private long manifestTime() {
+        long latest = 0;
+        for (ExportPlan.Item photo : items) latest = Math.max(latest, photo.getLastModified());
+        return latest;
+    }
+}
@@ -0,0 +1,42 @@
+package com.rdxindia.poc_application;
+
+/**
+ * Decides whether a location fix is good enough to tag a photo with, and how
+ * long a capture may wait for a better one before going ahead with what it
+ * has.
+ */
+public final class FixPolicy {
+
+    private final long maxAgeNanos;
+    private final float maxAccuracyMeters;
+    private final long maxWaitNanos;
+
+    /**
+     * @param maxAgeNanos       oldest acceptable fix
+     * @param maxAccuracyMeters largest acceptable horizontal error; fixes
+     *                          without an accuracy are accepted on age alone
+     * @param maxWaitNanos      longest a capture waits for an acceptable fix
+     */
+    public FixPolicy(long maxAgeNanos, float maxAccuracyMeters, long maxWaitNanos) {
+        this.maxAgeNanos = maxAgeNanos;
+        this.maxAccuracyMeters = maxAccuracyMeters;
+        this.maxWaitNanos = maxWaitNanos;
+    }
+
+    public boolean isAcceptable(LocationFix fix, long nowElapsedNanos) {
+        if (fix == null || fix.ageNanos(nowElapsedNanos) > maxAgeNanos) return false;
+        return !fix.hasAccuracy() || fix.getAccuracyMeters() <= maxAccuracyMeters;
+    }
+
+    public long getMaxAgeNanos() {
+        return maxAgeNanos;
+    }
+
+    public float getMaxAccuracyMeters() {
+        return maxAccuracyMeters;
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos;
+    }
+}
@@ -0,0 +1,218 @@
+package com.rdxindia.poc_application;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides which analysis frames reach the object detector. At most one
+ * frame is being detected at a time; frames arriving meanwhile are dropped
+ * without being copied, so the camera never waits on the detector. After each
+ * detection the next frame is held off long enough that the detector uses no
+ * more than {@code maxDutyCycle} of the time, measured from its own recent
+ * latency, which leaves the cores to capture encoding on slow devices.
+ *
+ * <p>Accepted frames are copied into NV21 buffers that are recycled once the
+ * detector is done with them, so steady-state analysis does not allocate.
+ */
+public final class FrameScheduler {
+
+    /** A camera frame offered for detection; only valid during {@link #offer}. */
+    public interface Frame {
+        int getWidth();
+
+        int getHeight();
+
+        /** Clockwise rotation that turns the frame upright. */
+        int getRotationDegrees();
+
+        /** Writes the frame as NV21 into {@code out}, which holds at least width * height * 3 / 2 bytes. */
+        void copyNv21(byte[] out);
+    }
+
+    /** Finds objects in a frame; independent of the library doing the work. */
+    public interface Detector {
+        /**
+         * Starts detection on {@code nv21}, which stays untouched until
+         * {@code completion} is called, exactly once, from any thread.
+         */
+        void detect(byte[] nv21, int width, int height, int rotationDegrees,
+                    Completion completion);
+    }
+
+    public interface Completion {
+        void onSuccess(List<Detection> detections);
+
+        void onFailure(Exception e);
+    }
+
+    public interface Listener {
+        /** Called on the thread that completed the detection. */
+        void onDetections(List<Detection> detections);
+    }
+
+    // One buffer in flight and one ready for the next frame
+    private static final int MAX_POOLED = 2;
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    private final Detector detector;
+    private final Listener listener;
+    private final double maxDutyCycle;
+    private final LongSupplier clock;
+
+    private final AtomicBoolean inFlight = new AtomicBoolean();
+    private final ArrayDeque<byte[]> pool = new ArrayDeque<>();
+    private volatile boolean enabled = true;
+    private volatile long nextFrameNanos = Long.MIN_VALUE;
+    // Smoothed detector latency; written only by the single detection in flight
+    private volatile long averageLatencyNanos;
+
+    private final AtomicLong offered = new AtomicLong();
+    private final AtomicLong detected = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong droppedBusy = new AtomicLong();
+    private final AtomicLong droppedThrottled = new AtomicLong();
+    private final AtomicLong allocations = new AtomicLong();
+    private final LatencyHistogram latency = new LatencyHistogram("detect");
+
+    public FrameScheduler(Detector detector, Listener listener, double maxDutyCycle,
+                          LongSupplier clock) {
+        if (maxDutyCycle <= 0 || maxDutyCycle > 1) {
+            throw new IllegalArgumentException("maxDutyCycle must be in (0, 1]");
+        }
+        this.detector = detector;
+        this.listener = listener;
+        this.maxDutyCycle = maxDutyCycle;
+        this.clock = clock;
+    }
+
+    /** While disabled every frame is turned away without being counted. */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Hands {@code frame} to the detector if it is idle and the throttle
+     * allows it. Returns whether the frame was taken; either way the caller
+     * can release the frame as soon as this returns.
+     */
+    public boolean offer(Frame frame) {
+        if (!enabled) return false;
+        offered.incrementAndGet();
+        if (!inFlight.compareAndSet(false, true)) {
+            droppedBusy.incrementAndGet();
+            return false;
+        }
+        // Read after taking the slot, so the last detection's throttle is seen
+        long now = clock.getAsLong();
+        if (now < nextFrameNanos) {
+            inFlight.set(false);
+            droppedThrottled.incrementAndGet();
+            return false;
+        }
+
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        byte[] buffer = acquire(width * height * 3 / 2);
+        try {
+            frame.copyNv21(buffer);
+        } catch (RuntimeException e) {
+            release(buffer);
+            inFlight.set(false);
+            throw e;
+        }
+        detector.detect(buffer, width, height, frame.getRotationDegrees(),
+                new Completion() {
+                    @Override
+                    public void onSuccess(List<Detection> detections) {
+                        finish(buffer, now);
+                        detected.incrementAndGet();
+                        listener.onDetections(detections == null
+                                ? Collections.emptyList() : detections);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        finish(buffer, now);
+                        failed.incrementAndGet();
+                    }
+                });
+        return true;
+    }
+
+    private void finish(byte[] buffer, long startNanos) {
+        long elapsed = clock.getAsLong() - startNanos;
+        latency.record(elapsed);
+        long average = averageLatencyNanos;
+        average = average == 0 ? elapsed
+                : (long) (average + LATENCY_WEIGHT * (elapsed - average));
+        averageLatencyNanos = average;
+        nextFrameNanos = startNanos + (long) (average / maxDutyCycle);
+        release(buffer);
+        inFlight.set(false);
+    }
+
+    private byte[] acquire(int size) {
+        synchronized (pool) {
+            byte[] buffer;
+            while ((buffer = pool.poll()) != null) {
+                // Buffers of an earlier resolution are let go
+                if (buffer.length == size) return buffer;
+            }
+        }
+        allocations.incrementAndGet();
+        return new byte[size];
+    }
+
+    private void release(byte[] buffer) {
+        synchronized (pool) {
+            if (pool.size() < MAX_POOLED) pool.add(buffer);
+        }
+    }
+
+    public long getOfferedCount() {
+        return offered.get();
+    }
+
+    public long getDetectedCount() {
+        return detected.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    /** Frames turned away because a detection was still running. */
+    public long getDroppedBusyCount() {
+        return droppedBusy.get();
+    }
+
+    /** Frames turned away to keep the detector within its duty cycle. */
+    public long getDroppedThrottledCount() {
+        return droppedThrottled.get();
+    }
+
+    public long getBufferAllocations() {
+        return allocations.get();
+    }
+
+    public long getAverageLatencyNanos() {
+        return averageLatencyNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "offered=%d detected=%d failed=%d busy=%d throttled=%d buffers=%d avg=%.1fms %s",
+                offered.get(), detected.get(), failed.get(), droppedBusy.get(),
+                droppedThrottled.get(), allocations.get(), averageLatencyNanos / 1e6, latency);
+    }
+}
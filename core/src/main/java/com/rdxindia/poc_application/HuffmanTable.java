@@ -0,0 +1,53 @@
+package com.rdxindia.poc_application;
+
+/**
+ * A JPEG Huffman table from a DHT segment, with both the decoding tables
+ * (8-bit lookahead plus max-code fallback) and the encoding code/size maps.
+ */
+final class HuffmanTable {
+
+    static final int LOOKAHEAD_BITS = 8;
+
+    // Decoding
+    final int[] lookup = new int[1 << LOOKAHEAD_BITS]; // (length << 8) | symbol, 0 = slow path
+    final int[] maxCode = new int[18];
+    final int[] valueOffset = new int[17];
+    final int[] values;
+
+    // Encoding, indexed by symbol; size 0 means the symbol has no code
+    final int[] code = new int[256];
+    final int[] size = new int[256];
+
+    HuffmanTable(int[] counts, int[] values) {
+        this.values = values;
+
+        int[] codes = new int[values.length];
+        int[] lengths = new int[values.length];
+        int k = 0;
+        int next = 0;
+        for (int len = 1; len <= 16; len++) {
+            valueOffset[len] = k - next;
+            for (int i = 0; i < counts[len - 1]; i++) {
+                codes[k] = next++;
+                lengths[k] = len;
+                k++;
+            }
+            maxCode[len] = counts[len - 1] > 0 ? next - 1 : -1;
+            next <<= 1;
+        }
+        maxCode[17] = Integer.MAX_VALUE;
+
+        for (int i = 0; i < values.length; i++) {
+            int symbol = values[i];
+            code[symbol] = codes[i];
+            size[symbol] = lengths[i];
+            if (lengths[i] <= LOOKAHEAD_BITS) {
+                int shift = LOOKAHEAD_BITS - lengths[i];
+                int base = codes[i] << shift;
+                for (int fill = 0; fill < (1 << shift); fill++) {
+                    lookup[base + fill] = (lengths[i] << 8) | symbol;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.rdxindia.poc_application;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Takes a shot every interval for a fixed number of shots ("a photo every
+ * 10 seconds for 30 minutes"). Shot {@code k} is due at start + k * interval
+ * on the monotonic clock and every timer is armed for the next due time, so
+ * late ticks do not push the ones after them back. A tick that finds several
+ * due times already passed takes one shot for all of them and counts the
+ * rest as missed; a tick the {@link Task} turns down because the pipeline is
+ * still busy is skipped, not queued. One session runs at a time; ticks run
+ * on the executor.
+ */
+public final class IntervalScheduler {
+
+    public interface Task {
+        /**
+         * Takes shot {@code index} (from 0), {@code lateNanos} after it was
+         * due. Returns false if it had to skip the shot because the camera
+         * or the pipeline was busy.
+         */
+        boolean onTick(int index, long lateNanos);
+    }
+
+    public interface Listener {
+        /** The session ran all its shots or was stopped. */
+        void onFinished(Session session);
+    }
+
+    private final Executor executor;
+    private final ScheduledExecutorService timer;
+    private final LongSupplier clock;
+    // Touched only on the executor
+    private Session running;
+
+    /**
+     * @param executor runs the ticks, the task and the listener
+     * @param timer    only waits for due times
+     * @param clock    monotonic nanoseconds that the due times are kept on
+     */
+    public IntervalScheduler(Executor executor, ScheduledExecutorService timer,
+                             LongSupplier clock) {
+        this.executor = executor;
+        this.timer = timer;
+        this.clock = clock;
+    }
+
+    /**
+     * Starts {@code count} shots {@code intervalNanos} apart, the first one
+     * now, stopping any session already running.
+     */
+    public Session start(long intervalNanos, int count, Task task, Listener listener) {
+        if (intervalNanos <= 0 || count < 1) {
+            throw new IllegalArgumentException("Bad interval " + intervalNanos + "ns x" + count);
+        }
+        Session session = new Session(intervalNanos, count, task, listener);
+        executor.execute(() -> {
+            if (running != null) running.finish(true);
+            running = session;
+            session.begin();
+        });
+        return session;
+    }
+
+    /** Stops the running session, if any. */
+    public void stop() {
+        executor.execute(() -> {
+            if (running != null) running.finish(true);
+        });
+    }
+
+    public final class Session {
+        private final long intervalNanos;
+        private final int count;
+        private final Task task;
+        private final Listener listener;
+        private final LatencyHistogram lateness = new LatencyHistogram("interval lateness");
+        private long startNanos;
+        private int next;
+        private ScheduledFuture<?> pending;
+        private volatile boolean finished;
+        private volatile boolean stopped;
+        private volatile int taken;
+        private volatile int busy;
+        private volatile int missed;
+
+        private Session(long intervalNanos, int count, Task task, Listener listener) {
+            this.intervalNanos = intervalNanos;
+            this.count = count;
+            this.task = task;
+            this.listener = listener;
+        }
+
+        private void begin() {
+            startNanos = clock.getAsLong();
+            arm();
+        }
+
+        private void arm() {
+            long delay = Math.max(0, startNanos + next * intervalNanos - clock.getAsLong());
+            pending = timer.schedule(() -> executor.execute(this::tick),
+                    delay, TimeUnit.NANOSECONDS);
+        }
+
+        private void tick() {
+            if (finished) return;
+            long now = clock.getAsLong();
+            // Every due time already passed collapses into this one shot
+            int due = (int) Math.min(count - 1, (now - startNanos) / intervalNanos);
+            if (due > next) {
+                missed += due - next;
+                next = due;
+            }
+            long late = now - (startNanos + next * intervalNanos);
+            lateness.record(late);
+            if (task.onTick(next, late)) {
+                taken++;
+            } else {
+                busy++;
+            }
+            next++;
+            if (next >= count) {
+                finish(false);
+            } else {
+                arm();
+            }
+        }
+
+        private void finish(boolean stop) {
+            if (finished) return;
+            finished = true;
+            stopped = stop;
+            if (pending != null) pending.cancel(false);
+            if (running == this) running = null;
+            if (listener != null) listener.onFinished(this);
+        }
+
+        public long getIntervalNanos() {
+            return intervalNanos;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public boolean isFinished() {
+            return finished;
+        }
+
+        /** Finished because it was stopped or replaced, not because it ran out. */
+        public boolean isStopped() {
+            return stopped;
+        }
+
+        public int getTakenCount() {
+            return taken;
+        }
+
+        /** Ticks the task turned down. */
+        public int getBusyCount() {
+            return busy;
+        }
+
+        /** Due times that passed before a tick could run, collapsed into a later one. */
+        public int getMissedCount() {
+            return missed;
+        }
+
+        /** How late each tick ran after its due time. */
+        public LatencyHistogram getLateness() {
+            return lateness;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "every %.1fs x%d%s: %d taken, %d busy, %d missed, late p50=%.1fms"
+                            + " p99=%.1fms max=%.1fms",
+                    intervalNanos / 1e9, count,
+                    finished ? (stopped ? " (stopped)" : " (done)") : "",
+                    taken, busy, missed, lateness.getPercentileNanos(0.5) / 1e6,
+                    lateness.getPercentileNanos(0.99) / 1e6, lateness.getMaxNanos() / 1e6);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.rdxindia.poc_application;
+
+/**
+ * Straightforward separable 8x8 DCT used to reconstruct and re-encode the few
+ * blocks under an overlay. Holds scratch space, so use one instance per thread.
+ */
+final class JpegDct {
+
+    // COS[x * 8 + u] = C(u) / 2 * cos((2x + 1) * u * pi / 16)
+    private static final float[] COS = new float[64];
+
+    static {
+        for (int x = 0; x < 8; x++) {
+            for (int u = 0; u < 8; u++) {
+                double c = u == 0 ? Math.sqrt(0.5) : 1.0;
+                COS[x * 8 + u] = (float) (c / 2 * Math.cos((2 * x + 1) * u * Math.PI / 16));
+            }
+        }
+    }
+
+    private final float[] block = new float[64];
+    private final float[] temp = new float[64];
+
+    /**
+     * Dequantizes the zigzag-ordered coefficients at {@code coef[offset]} and
+     * writes the 8x8 samples to {@code out} starting at {@code outOffset}.
+     */
+    void inverse(short[] coef, int offset, int[] quant, byte[] out, int outOffset, int stride) {
+        for (int k = 0; k < 64; k++) {
+            block[JpegHeader.ZIGZAG[k]] = coef[offset + k] * quant[k];
+        }
+        // Rows: temp[v][x] = sum_u F[v][u] * COS[x][u]
+        for (int v = 0; v < 8; v++) {
+            for (int x = 0; x < 8; x++) {
+                float sum = 0;
+                for (int u = 0; u < 8; u++) sum += block[v * 8 + u] * COS[x * 8 + u];
+                temp[v * 8 + x] = sum;
+            }
+        }
+        // Columns: f[y][x] = sum_v temp[v][x] * COS[y][v]
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                float sum = 0;
+                for (int v = 0; v < 8; v++) sum += temp[v * 8 + x] * COS[y * 8 + v];
+                int sample = Math.round(sum + 128);
+                out[outOffset + y * stride + x] = (byte) (sample < 0 ? 0 : Math.min(sample, 255));
+            }
+        }
+    }
+
+    /**
+     * Transforms the 8x8 samples at {@code in[inOffset]} and stores quantized
+     * coefficients in zigzag order at {@code coef[offset]}.
+     */
+    void forward(byte[] in, int inOffset, int stride, int[] quant, short[] coef, int offset) {
+        for (int y = 0; y < 8; y++) {
+            for (int u = 0; u < 8; u++) {
+                float sum = 0;
+                for (int x = 0; x < 8; x++) {
+                    sum += ((in[inOffset + y * stride + x] & 0xFF) - 128) * COS[x * 8 + u];
+                }
+                temp[y * 8 + u] = sum;
+            }
+        }
+        for (int v = 0; v < 8; v++) {
+            for (int u = 0; u < 8; u++) {
+                float sum = 0;
+                for (int y = 0; y < 8; y++) sum += temp[y * 8 + u] * COS[y * 8 + v];
+                block[v * 8 + u] = sum;
+            }
+        }
+        for (int k = 0; k < 64; k++) {
+            coef[offset + k] = (short) Math.round(block[JpegHeader.ZIGZAG[k]] / quant[k]);
+        }
+    }
+
+    static int toArgb(int y, int cb, int cr) {
+        float c = cr - 128f;
+        float b = cb - 128f;
+        int r = clamp(Math.round(y + 1.402f * c));
+        int g = clamp(Math.round(y - 0.344136f * b - 0.714136f * c));
+        int bl = clamp(Math.round(y + 1.772f * b));
+        return 0xFF000000 | (r << 16) | (g << 8) | bl;
+    }
+
+    static int luma(int argb) {
+        int r = (argb >> 16) & 0xFF;
+        int g = (argb >> 8) & 0xFF;
+        int b = argb & 0xFF;
+        return clamp(Math.round(0.299f * r + 0.587f * g + 0.114f * b));
+    }
+
+    static int chromaBlue(int argb) {
+        int r = (argb >> 16) & 0xFF;
+        int g = (argb >> 8) & 0xFF;
+        int b = argb & 0xFF;
+        return clamp(Math.round(-0.168736f * r - 0.331264f * g + 0.5f * b + 128));
+    }
+
+    static int chromaRed(int argb) {
+        int r = (argb >> 16) & 0xFF;
+        int g = (argb >> 8) & 0xFF;
+        int b = argb & 0xFF;
+        return clamp(Math.round(0.5f * r - 0.418688f * g - 0.081312f * b + 128));
+    }
+
+    private static int clamp(int v) {
+        return v < 0 ? 0 : Math.min(v, 255);
+    }
+}
@@ -0,0 +1,134 @@
+package com.rdxindia.poc_application;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes EXIF tags into an existing JPEG file without re-encoding it. Only the
+ * marker segments in front of the image are read into memory; the compressed
+ * data is moved with {@link FileChannel#transferTo} so it never passes through
+ * the Java heap.
+ */
+public final class JpegExifSplicer {
+
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int MARKER_SOS = 0xDA;
+
+    private JpegExifSplicer() {
+    }
+
+    /**
+     * Replaces {@code jpeg} with a copy carrying the tags from {@code exif}. The
+     * copy is written next to the original and renamed over it, so the file is
+     * never observed half-written.
+     */
+    public static void splice(File jpeg, ExifWriter exif) throws IOException {
+        File temp = new File(jpeg.getParentFile(), jpeg.getName() + ".exif.tmp");
+        try (FileChannel source = FileChannel.open(jpeg.toPath(), StandardOpenOption.READ);
+             FileChannel target = FileChannel.open(temp.toPath(), StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            splice(source, target, exif);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        Files.move(temp.toPath(), jpeg.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Copies the JPEG in {@code source} to {@code target}, merging the tags into
+     * its EXIF APP1 segment, or inserting a new APP1 directly after SOI when the
+     * image has none.
+     */
+    public static void splice(FileChannel source, FileChannel target, ExifWriter exif)
+            throws IOException {
+        long size = source.size();
+        ByteBuffer header = ByteBuffer.allocate(4);
+        readFully(source, header, 0);
+        if ((header.get(0) & 0xFF) != 0xFF || (header.get(1) & 0xFF) != MARKER_SOI) {
+            throw new IOException("Not a JPEG file");
+        }
+
+        // Find an existing EXIF APP1 among the segments in front of the scan
+        long app1Start = -1;
+        long app1End = -1;
+        byte[] tiff = null;
+        long position = 2;
+        while (position + 4 <= size) {
+            header.clear();
+            readFully(source, header, position);
+            int marker = header.get(1) & 0xFF;
+            if ((header.get(0) & 0xFF) != 0xFF || marker == MARKER_SOS) {
+                break;
+            }
+            int length = header.getShort(2) & 0xFFFF;
+            if (marker == MARKER_APP1 && length >= 2 + ExifWriter.EXIF_HEADER.length) {
+                ByteBuffer payload = ByteBuffer.allocate(length - 2);
+                readFully(source, payload, position + 4);
+                if (hasExifHeader(payload.array())) {
+                    app1Start = position;
+                    app1End = position + 2 + length;
+                    tiff = payload.array();
+                    break;
+                }
+            }
+            position += 2 + length;
+        }
+
+        byte[] app1;
+        if (tiff != null) {
+            int tiffOffset = ExifWriter.EXIF_HEADER.length;
+            app1 = exif.buildApp1(tiff, tiffOffset, tiff.length - tiffOffset);
+        } else {
+            app1Start = 2;
+            app1End = 2;
+            app1 = exif.buildApp1();
+        }
+
+        target.position(0);
+        transferFully(source, 0, app1Start, target);
+        ByteBuffer segment = ByteBuffer.wrap(app1);
+        while (segment.hasRemaining()) {
+            target.write(segment);
+        }
+        transferFully(source, app1End, size - app1End, target);
+        target.truncate(target.position());
+    }
+
+    private static boolean hasExifHeader(byte[] payload) {
+        for (int i = 0; i < ExifWriter.EXIF_HEADER.length; i++) {
+            if (payload[i] != ExifWriter.EXIF_HEADER[i]) return false;
+        }
+        return true;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of JPEG");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static void transferFully(FileChannel source, long position, long count,
+                                      FileChannel target) throws IOException {
+        while (count > 0) {
+            long moved = source.transferTo(position, count, target);
+            if (moved <= 0) {
+                throw new IOException("Short transfer at offset " + position);
+            }
+            position += moved;
+            count -= moved;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.rdxindia.poc_application;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The marker segments of a baseline JPEG up to and including the first SOS:
+ * frame geometry, quantization and Huffman tables, restart interval and the
+ * location of the EXIF APP1 segment. Offsets are relative to the buffer the
+ * header was parsed from.
+ */
+final class JpegHeader {
+
+    static final int[] ZIGZAG = {
+            0, 1, 8, 16, 9, 2, 3, 10,
+            17, 24, 32, 25, 18, 11, 4, 5,
+            12, 19, 26, 33, 40, 48, 41, 34,
+            27, 20, 13, 6, 7, 14, 21, 28,
+            35, 42, 49, 56, 57, 50, 43, 36,
+            29, 22, 15, 23, 30, 37, 44, 51,
+            58, 59, 52, 45, 38, 31, 39, 46,
+            53, 60, 61, 54, 47, 55, 62, 63
+    };
+
+    int width;
+    int height;
+    int componentCount;
+    final int[] componentId = new int[3];
+    final int[] hSampling = new int[3];
+    final int[] vSampling = new int[3];
+    final int[] quantIndex = new int[3];
+    int hMax;
+    int vMax;
+
+    // Quantization tables in zigzag order
+    final int[][] quant = new int[4][];
+    final HuffmanTable[] dcTables = new HuffmanTable[4];
+    final HuffmanTable[] acTables = new HuffmanTable[4];
+    int restartInterval;
+
+    // Per frame component, the tables selected by the scan
+    final int[] dcTable = new int[3];
+    final int[] acTable = new int[3];
+
+    // MCU geometry
+    int mcuWidth;
+    int mcuHeight;
+    int mcusPerRow;
+    int mcuRows;
+    int blocksPerMcu;
+    int[] blockComponent; // component of each block inside an MCU
+    int[] blockX;         // block column inside the component's part of the MCU
+    int[] blockY;
+
+    // EXIF APP1 segment [app1Start, app1End), -1 when absent
+    int app1Start = -1;
+    int app1End = -1;
+    int orientation = ExifWriter.ORIENTATION_NORMAL;
+
+    // First byte of entropy-coded data
+    int scanStart;
+
+    private JpegHeader() {
+    }
+
+    /** Parses {@code data} (positioned at SOI, absolute offsets from 0). */
+    static JpegHeader read(ByteBuffer data) throws IOException {
+        JpegHeader header = new JpegHeader();
+        header.parseSegments(data);
+        return header;
+    }
+
+    private void parseSegments(ByteBuffer data) throws IOException {
+        int limit = data.limit();
+        if (limit < 4 || (data.get(0) & 0xFF) != 0xFF || (data.get(1) & 0xFF) != 0xD8) {
+            throw new IOException("Not a JPEG stream");
+        }
+        boolean haveFrame = false;
+        int pos = 2;
+        while (pos + 4 <= limit) {
+            if ((data.get(pos) & 0xFF) != 0xFF) {
+                throw new IOException("Expected marker at " + pos);
+            }
+            int marker = data.get(pos + 1) & 0xFF;
+            if (marker == 0xFF) {
+                pos++; // fill byte
+                continue;
+            }
+            int length = data.getShort(pos + 2) & 0xFFFF;
+            int body = pos + 4;
+            int end = pos + 2 + length;
+            if (end > limit) {
+                throw new IOException("Truncated segment at " + pos);
+            }
+            switch (marker) {
+                case 0xC0:
+                case 0xC1:
+                    parseFrame(data, body);
+                    haveFrame = true;
+                    break;
+                case 0xC2: case 0xC3: case 0xC5: case 0xC6: case 0xC7:
+                case 0xC9: case 0xCA: case 0xCB: case 0xCD: case 0xCE: case 0xCF:
+                    throw new UnsupportedJpegException(
+                            "Only baseline Huffman JPEG is supported (SOF" + (marker - 0xC0) + ")");
+                case 0xC4:
+                    parseHuffman(data, body, end);
+                    break;
+                case 0xDB:
+                    parseQuant(data, body, end);
+                    break;
+                case 0xDD:
+                    restartInterval = data.getShort(body) & 0xFFFF;
+                    break;
+                case 0xE1:
+                    if (app1Start < 0 && isExif(data, body, end)) {
+                        app1Start = pos;
+                        app1End = end;
+                        orientation = readOrientation(data, body + 6, end);
+                    }
+                    break;
+                case 0xDA:
+                    if (!haveFrame) {
+                        throw new IOException("SOS before SOF");
+                    }
+                    parseScan(data, body);
+                    scanStart = end;
+                    return;
+                default:
+                    break;
+            }
+            pos = end;
+        }
+        throw new IOException("No scan found");
+    }
+
+    private void parseFrame(ByteBuffer data, int body) throws IOException {
+        int precision = data.get(body) & 0xFF;
+        height = data.getShort(body + 1) & 0xFFFF;
+        width = data.getShort(body + 3) & 0xFFFF;
+        componentCount = data.get(body + 5) & 0xFF;
+        if (precision != 8) {
+            throw new UnsupportedJpegException(precision + "-bit samples are not supported");
+        }
+        if (componentCount != 1 && componentCount != 3) {
+            throw new UnsupportedJpegException(componentCount + " components are not supported");
+        }
+        if (width == 0 || height == 0) {
+            throw new UnsupportedJpegException("DNL-defined height is not supported");
+        }
+        hMax = 1;
+        vMax = 1;
+        for (int c = 0; c < componentCount; c++) {
+            int at = body + 6 + c * 3;
+            componentId[c] = data.get(at) & 0xFF;
+            int sampling = data.get(at + 1) & 0xFF;
+            hSampling[c] = sampling >> 4;
+            vSampling[c] = sampling & 0x0F;
+            quantIndex[c] = data.get(at + 2) & 0x03;
+            hMax = Math.max(hMax, hSampling[c]);
+            vMax = Math.max(vMax, vSampling[c]);
+        }
+        if (componentCount == 1) {
+            // A single-component scan is never interleaved: one block per MCU
+            hSampling[0] = 1;
+            vSampling[0] = 1;
+            hMax = 1;
+            vMax = 1;
+        }
+
+        mcuWidth = 8 * hMax;
+        mcuHeight = 8 * vMax;
+        mcusPerRow = (width + mcuWidth - 1) / mcuWidth;
+        mcuRows = (height + mcuHeight - 1) / mcuHeight;
+        blocksPerMcu = 0;
+        for (int c = 0; c < componentCount; c++) {
+            blocksPerMcu += hSampling[c] * vSampling[c];
+        }
+        if (blocksPerMcu > 10) {
+            throw new IOException("Invalid sampling factors");
+        }
+        blockComponent = new int[blocksPerMcu];
+        blockX = new int[blocksPerMcu];
+        blockY = new int[blocksPerMcu];
+        int b = 0;
+        for (int c = 0; c < componentCount; c++) {
+            for (int y = 0; y < vSampling[c]; y++) {
+                for (int x = 0; x < hSampling[c]; x++) {
+                    blockComponent[b] = c;
+                    blockX[b] = x;
+                    blockY[b] = y;
+                    b++;
+                }
+            }
+        }
+    }
+
+    private void parseHuffman(ByteBuffer data, int pos, int end) {
+        while (pos < end) {
+            int info = data.get(pos) & 0xFF;
+            int[] counts = new int[16];
+            int total = 0;
+            for (int i = 0; i < 16; i++) {
+                counts[i] = data.get(pos + 1 + i) & 0xFF;
+                total += counts[i];
+            }
+            int[] values = new int[total];
+            for (int i = 0; i < total; i++) {
+                values[i] = data.get(pos + 17 + i) & 0xFF;
+            }
+            HuffmanTable table = new HuffmanTable(counts, values);
+            if ((info >> 4) == 0) {
+                dcTables[info & 0x03] = table;
+            } else {
+                acTables[info & 0x03] = table;
+            }
+            pos += 17 + total;
+        }
+    }
+
+    private void parseQuant(ByteBuffer data, int pos, int end) {
+        while (pos < end) {
+            int info = data.get(pos) & 0xFF;
+            boolean sixteenBit = (info >> 4) != 0;
+            int[] table = new int[64];
+            for (int i = 0; i < 64; i++) {
+                table[i] = sixteenBit
+                        ? data.getShort(pos + 1 + i * 2) & 0xFFFF
+                        : data.get(pos + 1 + i) & 0xFF;
+            }
+            quant[info & 0x03] = table;
+            pos += 1 + (sixteenBit ? 128 : 64);
+        }
+    }
+
+    private void parseScan(ByteBuffer data, int body) throws IOException {
+        int count = data.get(body) & 0xFF;
+        if (count != componentCount) {
+            throw new UnsupportedJpegException("Multi-scan baseline JPEG is not supported");
+        }
+        for (int i = 0; i < count; i++) {
+            int id = data.get(body + 1 + i * 2) & 0xFF;
+            int tables = data.get(body + 2 + i * 2) & 0xFF;
+            int c = componentIndex(id);
+            if (c != i) {
+                throw new UnsupportedJpegException("Scan component order differs from frame");
+            }
+            dcTable[c] = tables >> 4;
+            acTable[c] = tables & 0x0F;
+            if (dcTables[dcTable[c] & 3] == null || acTables[acTable[c] & 3] == null
+                    || quant[quantIndex[c]] == null) {
+                throw new IOException("Missing table for component " + id);
+            }
+        }
+    }
+
+    private int componentIndex(int id) throws IOException {
+        for (int c = 0; c < componentCount; c++) {
+            if (componentId[c] == id) return c;
+        }
+        throw new IOException("Unknown component " + id);
+    }
+
+    private static boolean isExif(ByteBuffer data, int body, int end) {
+        if (end - body < 6 + 8) return false;
+        for (int i = 0; i < ExifWriter.EXIF_HEADER.length; i++) {
+            if (data.get(body + i) != ExifWriter.EXIF_HEADER[i]) return false;
+        }
+        return true;
+    }
+
+    private static int readOrientation(ByteBuffer data, int tiff, int end) {
+        ByteBuffer in = data.duplicate();
+        in.order(data.get(tiff) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        try {
+            int ifd0 = tiff + in.getInt(tiff + 4);
+            int count = in.getShort(ifd0) & 0xFFFF;
+            for (int i = 0; i < count; i++) {
+                int entry = ifd0 + 2 + i * 12;
+                if (entry + 12 > end) break;
+                if ((in.getShort(entry) & 0xFFFF) == ExifWriter.TAG_ORIENTATION) {
+                    return in.getShort(entry + 8) & 0xFFFF;
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // Unreadable IFD0, treat as upright
+        }
+        return ExifWriter.ORIENTATION_NORMAL;
+    }
+
+    // Rotation, clockwise, that the EXIF orientation asks viewers to apply
+    int rotationDegrees() {
+        switch (orientation) {
+            case ExifWriter.ORIENTATION_ROTATE_90:
+                return 90;
+            case ExifWriter.ORIENTATION_ROTATE_180:
+                return 180;
+            case ExifWriter.ORIENTATION_ROTATE_270:
+                return 270;
+            default:
+                return 0;
+        }
+    }
+}
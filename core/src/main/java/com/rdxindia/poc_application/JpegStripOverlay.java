@@ -0,0 +1,370 @@
+package com.rdxindia.poc_application;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Stamps an overlay onto a baseline JPEG by re-encoding only the MCUs under
+ * it. Entropy-coded data in front of the overlay rows is copied byte for
+ * byte; MCUs the painter did not change keep their original coefficients;
+ * data after the overlay is copied verbatim from the next restart marker on,
+ * or re-emitted coefficient for coefficient when the image has none. Memory
+ * use is proportional to the overlay area, not the frame.
+ * <p>
+ * Keeps scratch buffers between calls; use one instance per worker thread.
+ */
+public final class JpegStripOverlay {
+
+    /** Pass as rotation to use the orientation stored in the image's EXIF. */
+    public static final int ROTATION_FROM_EXIF = -1;
+
+    private final EntropyEncoder encoder = new EntropyEncoder();
+    private final JpegDct dct = new JpegDct();
+    private final int[] bounds = new int[4];
+    private final int[] decodePredictors = new int[3];
+    private final int[] encodePredictors = new int[3];
+    private final int[] savedPredictors = new int[3];
+    private final short[] scratch = new short[10 * 64];
+    private StageTimer timer;
+
+    /**
+     * Writes {@code jpeg} (from its position to its limit) to {@code out} with
+     * the overlay from {@code painter} applied. When {@code exif} is non-null
+     * its tags are merged into the EXIF segment on the way.
+     *
+     * @throws UnsupportedJpegException if the image is not a baseline JPEG this
+     *                                  class can rewrite; nothing usable has
+     *                                  been written to {@code out} in that case
+     */
+    public void rewrite(ByteBuffer jpeg, WritableByteChannel out, ExifWriter exif,
+                        OverlayPainter painter, int rotationDegrees) throws IOException {
+        rewrite(jpeg, out, exif, painter, rotationDegrees, null);
+    }
+
+    /** As above, marking the scan, paint and encode stages on {@code timer} if non-null. */
+    public void rewrite(ByteBuffer jpeg, WritableByteChannel out, ExifWriter exif,
+                        OverlayPainter painter, int rotationDegrees, StageTimer timer)
+            throws IOException {
+        this.timer = timer;
+        ByteBuffer data = jpeg.slice().order(ByteOrder.BIG_ENDIAN);
+        JpegHeader header = JpegHeader.read(data);
+        for (int c = 0; c < header.componentCount; c++) {
+            if (header.hMax % header.hSampling[c] != 0 || header.vMax % header.vSampling[c] != 0) {
+                throw new UnsupportedJpegException("Non-integral chroma subsampling");
+            }
+        }
+        int rotation = rotationDegrees == ROTATION_FROM_EXIF
+                ? header.rotationDegrees() : OverlayLayout.normalizeRotation(rotationDegrees);
+
+        encoder.reset(out);
+        writeHeader(data, header, exif);
+
+        painter.getBounds(OverlayLayout.uprightWidth(header.width, header.height, rotation),
+                OverlayLayout.uprightHeight(header.width, header.height, rotation), bounds);
+        OverlayLayout.toSensor(bounds, header.width, header.height, rotation);
+        int left = Math.max(0, bounds[0]);
+        int top = Math.max(0, bounds[1]);
+        int right = Math.min(header.width, bounds[2]);
+        int bottom = Math.min(header.height, bounds[3]);
+        if (left >= right || top >= bottom) {
+            encoder.copy(data, header.scanStart, data.limit());
+            encoder.flushBuffer();
+            mark("copy");
+            return;
+        }
+
+        Region region = new Region(header,
+                left / header.mcuWidth, top / header.mcuHeight,
+                (right + header.mcuWidth - 1) / header.mcuWidth,
+                (bottom + header.mcuHeight - 1) / header.mcuHeight);
+        rewriteScan(data, header, region, painter, rotation);
+        encoder.flushBuffer();
+        mark("encode");
+    }
+
+    private void mark(String stage) {
+        if (timer != null) timer.mark(stage);
+    }
+
+    // Copies the marker segments in front of the scan, merging EXIF if asked
+    private void writeHeader(ByteBuffer data, JpegHeader header, ExifWriter exif)
+            throws IOException {
+        if (exif == null) {
+            encoder.copy(data, 0, header.scanStart);
+            return;
+        }
+        if (header.app1Start >= 0) {
+            int tiffStart = header.app1Start + 4 + ExifWriter.EXIF_HEADER.length;
+            byte[] tiff = new byte[header.app1End - tiffStart];
+            ByteBuffer source = data.duplicate();
+            source.position(tiffStart);
+            source.get(tiff);
+            encoder.copy(data, 0, header.app1Start);
+            encoder.copy(exif.buildApp1(tiff, 0, tiff.length));
+            encoder.copy(data, header.app1End, header.scanStart);
+        } else {
+            encoder.copy(data, 0, 2);
+            encoder.copy(exif.buildApp1());
+            encoder.copy(data, 2, header.scanStart);
+        }
+    }
+
+    private void rewriteScan(ByteBuffer data, JpegHeader header, Region region,
+                             OverlayPainter painter, int rotation) throws IOException {
+        int restartInterval = header.restartInterval;
+        int totalMcus = header.mcusPerRow * header.mcuRows;
+        int firstMcu = region.row0 * header.mcusPerRow;
+        int stripEnd = region.row1 * header.mcusPerRow;
+        EntropyDecoder decoder = new EntropyDecoder(data);
+        Arrays.fill(decodePredictors, 0);
+
+        // Jump over whole restart intervals without decoding them
+        int mcu = 0;
+        int start = header.scanStart;
+        if (restartInterval > 0 && firstMcu >= restartInterval) {
+            int intervals = firstMcu / restartInterval;
+            start = decoder.skipRestartIntervals(header.scanStart, intervals);
+            mcu = intervals * restartInterval;
+        }
+        int resumedAt = mcu;
+        decoder.reset(start);
+
+        // Decode up to the first overlay row only to find where it starts
+        while (true) {
+            if (restartInterval > 0 && mcu > resumedAt && mcu % restartInterval == 0) {
+                decoder.readRestartMarker();
+                Arrays.fill(decodePredictors, 0);
+            }
+            if (mcu == firstMcu) break;
+            decodeMcu(decoder, header, scratch, 0);
+            mcu++;
+        }
+        int cut = decoder.bitPosition();
+        int consumed = decoder.consumedBitsInByte();
+        System.arraycopy(decodePredictors, 0, savedPredictors, 0, 3);
+
+        // First pass over the overlay rows: keep coefficients under the overlay
+        for (; mcu < stripEnd; mcu++) {
+            if (mcu > firstMcu && restartInterval > 0 && mcu % restartInterval == 0) {
+                decoder.readRestartMarker();
+                Arrays.fill(decodePredictors, 0);
+            }
+            int col = mcu % header.mcusPerRow;
+            int row = mcu / header.mcusPerRow;
+            if (region.contains(col, row)) {
+                decodeMcu(decoder, header, region.coef, region.coefOffset(col, row));
+            } else {
+                decodeMcu(decoder, header, scratch, 0);
+            }
+        }
+
+        mark("scan");
+        boolean painted = region.paint(painter, dct, rotation);
+        mark("paint");
+        if (!painted) {
+            encoder.copy(data, header.scanStart, data.limit());
+            return;
+        }
+
+        // Everything in front of the overlay rows goes out untouched
+        encoder.copy(data, header.scanStart, cut);
+        if (consumed > 0) {
+            encoder.writeBits((data.get(cut) & 0xFF) >> (8 - consumed), consumed);
+        }
+
+        // Second pass: re-emit from the overlay rows on, substituting changed MCUs
+        decoder.reset(cut);
+        decoder.readBits(consumed);
+        System.arraycopy(savedPredictors, 0, decodePredictors, 0, 3);
+        System.arraycopy(savedPredictors, 0, encodePredictors, 0, 3);
+        for (mcu = firstMcu; mcu < totalMcus; mcu++) {
+            if (mcu > firstMcu && restartInterval > 0 && mcu % restartInterval == 0) {
+                if (mcu >= stripEnd) {
+                    // Same MCU numbering from here on: copy the rest verbatim
+                    encoder.alignToByte();
+                    encoder.copy(data, decoder.findMarker(), data.limit());
+                    return;
+                }
+                decoder.readRestartMarker();
+                Arrays.fill(decodePredictors, 0);
+                encoder.writeRestartMarker(mcu / restartInterval - 1);
+                Arrays.fill(encodePredictors, 0);
+            }
+            decodeMcu(decoder, header, scratch, 0);
+            int col = mcu % header.mcusPerRow;
+            int row = mcu / header.mcusPerRow;
+            if (mcu < stripEnd && region.isDirty(col, row)) {
+                encodeMcu(header, region.coef, region.coefOffset(col, row));
+            } else {
+                encodeMcu(header, scratch, 0);
+            }
+        }
+        encoder.alignToByte();
+        encoder.copy(data, decoder.findMarker(), data.limit());
+    }
+
+    private void decodeMcu(EntropyDecoder decoder, JpegHeader header, short[] coef, int offset)
+            throws IOException {
+        for (int b = 0; b < header.blocksPerMcu; b++) {
+            int c = header.blockComponent[b];
+            decoder.decodeBlock(coef, offset + b * 64, header.dcTables[header.dcTable[c]],
+                    header.acTables[header.acTable[c]], decodePredictors, c);
+        }
+    }
+
+    private void encodeMcu(JpegHeader header, short[] coef, int offset) throws IOException {
+        for (int b = 0; b < header.blocksPerMcu; b++) {
+            int c = header.blockComponent[b];
+            encoder.encodeBlock(coef, offset + b * 64, header.dcTables[header.dcTable[c]],
+                    header.acTables[header.acTable[c]], encodePredictors, c);
+        }
+    }
+
+    // The MCU-aligned rectangle [col0, col1) x [row0, row1) under the overlay
+    private static final class Region {
+        final JpegHeader header;
+        final int col0;
+        final int row0;
+        final int col1;
+        final int row1;
+        final int cols;
+        final short[] coef;
+        final boolean[] dirty;
+
+        Region(JpegHeader header, int col0, int row0, int col1, int row1) {
+            this.header = header;
+            this.col0 = col0;
+            this.row0 = row0;
+            this.col1 = col1;
+            this.row1 = row1;
+            this.cols = col1 - col0;
+            int mcus = cols * (row1 - row0);
+            coef = new short[mcus * header.blocksPerMcu * 64];
+            dirty = new boolean[mcus];
+        }
+
+        boolean contains(int col, int row) {
+            return col >= col0 && col < col1 && row >= row0 && row < row1;
+        }
+
+        boolean isDirty(int col, int row) {
+            return contains(col, row) && dirty[(row - row0) * cols + (col - col0)];
+        }
+
+        int coefOffset(int col, int row) {
+            return ((row - row0) * cols + (col - col0)) * header.blocksPerMcu * 64;
+        }
+
+        /**
+         * Reconstructs the region, lets the painter draw on it and re-encodes
+         * the MCUs it changed. Returns false when nothing changed.
+         */
+        boolean paint(OverlayPainter painter, JpegDct dct, int rotation) {
+            JpegHeader h = header;
+            int width = cols * h.mcuWidth;
+            int height = (row1 - row0) * h.mcuHeight;
+            byte[][] planes = new byte[h.componentCount][];
+            int[] stride = new int[h.componentCount];
+            for (int c = 0; c < h.componentCount; c++) {
+                stride[c] = cols * h.hSampling[c] * 8;
+                planes[c] = new byte[stride[c] * (row1 - row0) * h.vSampling[c] * 8];
+            }
+
+            for (int row = row0; row < row1; row++) {
+                for (int col = col0; col < col1; col++) {
+                    int offset = coefOffset(col, row);
+                    for (int b = 0; b < h.blocksPerMcu; b++) {
+                        int c = h.blockComponent[b];
+                        dct.inverse(coef, offset + b * 64, h.quant[h.quantIndex[c]],
+                                planes[c], planeOffset(c, col, row, b, stride[c]), stride[c]);
+                    }
+                }
+            }
+
+            int[] argb = new int[width * height];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int luma = sample(planes, stride, 0, x, y);
+                    argb[y * width + x] = h.componentCount == 1
+                            ? JpegDct.toArgb(luma, 128, 128)
+                            : JpegDct.toArgb(luma, sample(planes, stride, 1, x, y),
+                            sample(planes, stride, 2, x, y));
+                }
+            }
+            int[] original = argb.clone();
+            painter.paint(argb, width, height, col0 * h.mcuWidth, row0 * h.mcuHeight,
+                    h.width, h.height, rotation);
+
+            boolean any = false;
+            for (int row = row0; row < row1; row++) {
+                for (int col = col0; col < col1; col++) {
+                    int x0 = (col - col0) * h.mcuWidth;
+                    int y0 = (row - row0) * h.mcuHeight;
+                    if (!changed(argb, original, width, x0, y0)) continue;
+                    any = true;
+                    dirty[(row - row0) * cols + (col - col0)] = true;
+                    store(argb, width, planes, stride, x0, y0);
+                    int offset = coefOffset(col, row);
+                    for (int b = 0; b < h.blocksPerMcu; b++) {
+                        int c = h.blockComponent[b];
+                        dct.forward(planes[c], planeOffset(c, col, row, b, stride[c]), stride[c],
+                                h.quant[h.quantIndex[c]], coef, offset + b * 64);
+                    }
+                }
+            }
+            return any;
+        }
+
+        private int planeOffset(int c, int col, int row, int block, int stride) {
+            JpegHeader h = header;
+            int x = ((col - col0) * h.hSampling[c] + h.blockX[block]) * 8;
+            int y = ((row - row0) * h.vSampling[c] + h.blockY[block]) * 8;
+            return y * stride + x;
+        }
+
+        private int sample(byte[][] planes, int[] stride, int c, int x, int y) {
+            int sx = x * header.hSampling[c] / header.hMax;
+            int sy = y * header.vSampling[c] / header.vMax;
+            return planes[c][sy * stride[c] + sx] & 0xFF;
+        }
+
+        private boolean changed(int[] argb, int[] original, int width, int x0, int y0) {
+            for (int y = y0; y < y0 + header.mcuHeight; y++) {
+                for (int x = x0; x < x0 + header.mcuWidth; x++) {
+                    if (argb[y * width + x] != original[y * width + x]) return true;
+                }
+            }
+            return false;
+        }
+
+        // Converts one MCU of ARGB back into (subsampled) component planes
+        private void store(int[] argb, int width, byte[][] planes, int[] stride, int x0, int y0) {
+            JpegHeader h = header;
+            for (int c = 0; c < h.componentCount; c++) {
+                int fx = h.hMax / h.hSampling[c];
+                int fy = h.vMax / h.vSampling[c];
+                int samplesWide = h.hSampling[c] * 8;
+                int samplesHigh = h.vSampling[c] * 8;
+                int px0 = x0 / fx;
+                int py0 = y0 / fy;
+                for (int sy = 0; sy < samplesHigh; sy++) {
+                    for (int sx = 0; sx < samplesWide; sx++) {
+                        int sum = 0;
+                        for (int dy = 0; dy < fy; dy++) {
+                            for (int dx = 0; dx < fx; dx++) {
+                                int pixel = argb[(y0 + sy * fy + dy) * width + x0 + sx * fx + dx];
+                                sum += c == 0 ? JpegDct.luma(pixel)
+                                        : c == 1 ? JpegDct.chromaBlue(pixel) : JpegDct.chromaRed(pixel);
+                            }
+                        }
+                        int n = fx * fy;
+                        planes[c][(py0 + sy) * stride[c] + px0 + sx] = (byte) ((sum + n / 2) / n);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.rdxindia.poc_application;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Spots enrolled phrases in a stream of MFCC frames by subsequence dynamic
+ * time warping against recorded templates. Each template keeps one column of
+ * warping costs that every input frame advances in place, so a phrase may
+ * start at any frame and be spoken at half to twice the template's pace.
+ * Frames are compared by cosine distance without c0, which leaves loudness
+ * out of the match.
+ * <p>
+ * The best template under the threshold becomes the candidate and fires
+ * once no template improves on it for a few frames. A phrase that a longer
+ * one starts with ("zoom" of "zoom out") also waits while the longer one is
+ * still matching, as {@link PartialCommandDispatcher} does for text. Setup allocates;
+ * {@link #onFrame} does not. Not thread-safe.
+ */
+public final class KeywordSpotter {
+
+    /** Frames without improvement before a candidate fires. */
+    public static final int CONFIRM_FRAMES = 5;
+    /** Longest a candidate waits for a longer phrase that is still matching. */
+    public static final int MAX_EXTENSION_WAIT_FRAMES = 60;
+    // How far apart a phrase and its extension may start
+    private static final int START_SLACK_FRAMES = 10;
+
+    private static final class Template {
+        final String phrase;
+        // Unit vectors, c0 dropped
+        final float[][] frames;
+        final float[] cost;
+        final long[] start;
+        // Templates whose phrase starts with this one's
+        final List<Template> extensions = new ArrayList<>();
+
+        Template(String phrase, float[][] frames) {
+            this.phrase = phrase;
+            this.frames = frames;
+            this.cost = new float[frames.length];
+            this.start = new long[frames.length];
+        }
+    }
+
+    private final int dims;
+    private final float threshold;
+    private final List<Template> templates = new ArrayList<>();
+    private final float[] input;
+
+    private long frame = -1;
+    private Template candidate;
+    private float candidateCost;
+    private long candidateStart;
+    private int sinceImproved;
+
+    private String lastPhrase;
+    private float lastCost;
+    private int lastFrames;
+    private int lastSpanFrames;
+
+    /**
+     * @param coefficients length of the MFCC vectors fed in
+     * @param threshold    highest mean cosine distance that still matches
+     */
+    public KeywordSpotter(int coefficients, float threshold) {
+        this.dims = coefficients - 1;
+        this.threshold = threshold;
+        this.input = new float[dims];
+    }
+
+    /** Adds a recording of {@code phrase}; several per phrase make spotting more robust. */
+    public void addTemplate(String phrase, float[][] mfcc) {
+        if (mfcc.length < 2) throw new IllegalArgumentException("template too short");
+        float[][] frames = new float[mfcc.length][dims];
+        for (int i = 0; i < mfcc.length; i++) normalize(mfcc[i], frames[i]);
+        templates.add(new Template(phrase, frames));
+        for (Template t : templates) {
+            t.extensions.clear();
+            for (Template other : templates) {
+                if (other.phrase.startsWith(t.phrase + " ")) t.extensions.add(other);
+            }
+        }
+        reset();
+    }
+
+    public int getTemplateCount() {
+        return templates.size();
+    }
+
+    /** Forgets the frames seen so far, e.g. between utterances. */
+    public void reset() {
+        candidate = null;
+        for (Template t : templates) {
+            for (int j = 0; j < t.cost.length; j++) t.cost[j] = Float.POSITIVE_INFINITY;
+        }
+    }
+
+    /** Feeds one frame; returns the phrase spotted at this frame, or null. */
+    public String onFrame(float[] mfcc) {
+        frame++;
+        normalize(mfcc, input);
+        for (Template t : templates) {
+            advance(t);
+            int last = t.frames.length - 1;
+            if (t.cost[last] == Float.POSITIVE_INFINITY) continue;
+            long length = frame - t.start[last] + 1;
+            if (length > 2L * t.frames.length) continue;
+            float cost = t.cost[last] / length;
+            if (cost <= threshold && (candidate == null || cost < candidateCost)) {
+                candidate = t;
+                candidateCost = cost;
+                candidateStart = t.start[last];
+                sinceImproved = -1;
+            }
+        }
+        if (candidate == null) return null;
+        sinceImproved++;
+        if (sinceImproved < CONFIRM_FRAMES) return null;
+        if (sinceImproved < MAX_EXTENSION_WAIT_FRAMES && isExtending(candidate)) return null;
+
+        lastPhrase = candidate.phrase;
+        lastCost = candidateCost;
+        lastFrames = (int) (frame - sinceImproved - candidateStart + 1);
+        lastSpanFrames = (int) (frame - candidateStart + 1);
+        // The same words must not fire twice
+        reset();
+        return lastPhrase;
+    }
+
+    // Whether a longer phrase that began with the candidate's words still matches so far
+    private boolean isExtending(Template t) {
+        for (Template longer : t.extensions) {
+            for (int j = t.frames.length / 2; j < longer.frames.length; j++) {
+                float cost = longer.cost[j];
+                if (cost == Float.POSITIVE_INFINITY
+                        || Math.abs(longer.start[j] - candidateStart) > START_SLACK_FRAMES) {
+                    continue;
+                }
+                if (cost / (frame - longer.start[j] + 1) <= threshold) return true;
+            }
+        }
+        return false;
+    }
+
+    // One input frame moves every cell on by one; steps come from j, j - 1 or j - 2
+    private void advance(Template t) {
+        float[] cost = t.cost;
+        long[] start = t.start;
+        for (int j = cost.length - 1; j >= 0; j--) {
+            float d = distance(t.frames[j]);
+            float best = Float.POSITIVE_INFINITY;
+            float bestCost = 0;
+            long bestStart = 0;
+            for (int k = Math.max(0, j - 2); k <= j; k++) {
+                if (cost[k] == Float.POSITIVE_INFINITY) continue;
+                float total = cost[k] + d;
+                float mean = total / (frame - start[k] + 1);
+                if (mean < best) {
+                    best = mean;
+                    bestCost = total;
+                    bestStart = start[k];
+                }
+            }
+            if (j == 0 && d < best) {
+                // Starting afresh here beats any path so far
+                bestCost = d;
+                bestStart = frame;
+                best = d;
+            }
+            if (best == Float.POSITIVE_INFINITY) continue;
+            cost[j] = bestCost;
+            start[j] = bestStart;
+        }
+    }
+
+    private float distance(float[] template) {
+        float dot = 0;
+        for (int i = 0; i < dims; i++) dot += template[i] * input[i];
+        return 1 - dot;
+    }
+
+    private void normalize(float[] mfcc, float[] out) {
+        float norm = 0;
+        for (int i = 0; i < dims; i++) {
+            out[i] = mfcc[i + 1];
+            norm += out[i] * out[i];
+        }
+        float scale = norm > 0 ? (float) (1 / Math.sqrt(norm)) : 0;
+        for (int i = 0; i < dims; i++) out[i] *= scale;
+    }
+
+    public String getLastPhrase() {
+        return lastPhrase;
+    }
+
+    /** Mean cosine distance of the last spotted phrase. */
+    public float getLastCost() {
+        return lastCost;
+    }
+
+    /** Length of the last spotted phrase in frames. */
+    public int getLastFrames() {
+        return lastFrames;
+    }
+
+    /** Frames from the start of the last spotted phrase to the frame it fired at. */
+    public int getLastSpanFrames() {
+        return lastSpanFrames;
+    }
+}
@@ -0,0 +1,107 @@
+package com.rdxindia.poc_application;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Enrolled keyword recordings, kept as MFCC frames in one small file that
+ * is rewritten whole through a temporary file on every change.
+ */
+public final class KeywordTemplates {
+
+    private static final int MAGIC = 0x4b575331; // "KWS1"
+
+    public static final class Entry {
+        private final String phrase;
+        private final float[][] mfcc;
+
+        public Entry(String phrase, float[][] mfcc) {
+            this.phrase = phrase;
+            this.mfcc = mfcc;
+        }
+
+        public String getPhrase() {
+            return phrase;
+        }
+
+        public float[][] getMfcc() {
+            return mfcc;
+        }
+    }
+
+    private final File file;
+    private final List<Entry> entries = new ArrayList<>();
+
+    private KeywordTemplates(File file) {
+        this.file = file;
+    }
+
+    /** Loads {@code file}; a missing or unreadable file yields no templates. */
+    public static KeywordTemplates load(File file) {
+        KeywordTemplates templates = new KeywordTemplates(file);
+        if (!file.exists()) return templates;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) throw new IOException("not a template file");
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String phrase = in.readUTF();
+                int frames = in.readInt();
+                int coefficients = in.readInt();
+                float[][] mfcc = new float[frames][coefficients];
+                for (float[] frame : mfcc) {
+                    for (int c = 0; c < coefficients; c++) frame[c] = in.readFloat();
+                }
+                templates.entries.add(new Entry(phrase, mfcc));
+            }
+        } catch (IOException e) {
+            templates.entries.clear();
+        }
+        return templates;
+    }
+
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /** Adds a recording, keeping at most {@code perPhrase} per phrase (oldest dropped), and saves. */
+    public void add(String phrase, float[][] mfcc, int perPhrase) throws IOException {
+        int kept = 0;
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            if (entries.get(i).phrase.equals(phrase) && ++kept >= perPhrase) entries.remove(i);
+        }
+        entries.add(new Entry(phrase, mfcc));
+        save();
+    }
+
+    private void save() throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeUTF(entry.phrase);
+                out.writeInt(entry.mfcc.length);
+                out.writeInt(entry.mfcc.length == 0 ? 0 : entry.mfcc[0].length);
+                for (float[] frame : entry.mfcc) {
+                    for (float c : frame) out.writeFloat(c);
+                }
+            }
+        }
+        if (!tmp.renameTo(file)) throw new IOException("could not replace " + file);
+    }
+}
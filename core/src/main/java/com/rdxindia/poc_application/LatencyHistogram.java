@@ -0,0 +1,113 @@
+package com.rdxindia.poc_application;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations in nanoseconds. Buckets are log-linear,
+ * as in HdrHistogram: each power of two is split into 16 equal sub-buckets,
+ * so a bucket is at most 1/16 of its values wide, and a percentile is
+ * interpolated within its bucket. Safe to record from any thread.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // Values below 2 * SUB_BUCKETS get a bucket each; then 16 per octave up to 2^63
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucket(nanos));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+        long current;
+        while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) {
+            // Lost a race with a larger value; retry against it
+        }
+    }
+
+    static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) nanos;
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) ((nanos >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long lowerEdge(int bucket) {
+        int shift = (bucket >>> SUB_BITS) - 1;
+        if (shift < 0) return bucket;
+        return (long) (SUB_BUCKETS + (bucket & (SUB_BUCKETS - 1))) << shift;
+    }
+
+    static long width(int bucket) {
+        return bucket < 2 * SUB_BUCKETS ? 1 : 1L << ((bucket >>> SUB_BITS) - 1);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    public double getMeanNanos() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * The {@code quantile} (0..1) value, interpolated as if the values in its
+     * bucket were spread evenly, and never above the maximum; 0 when nothing
+     * has been recorded.
+     */
+    public long getPercentileNanos(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(quantile * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (seen + snapshot[i] >= rank) {
+                double within = (rank - seen - 0.5) / snapshot[i];
+                long value = lowerEdge(i) + (long) (within * width(i));
+                return Math.min(value, getMaxNanos());
+            }
+            seen += snapshot[i];
+        }
+        return getMaxNanos();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s n=%d mean=%.2fms p50=%.2fms p99=%.2fms max=%.2fms",
+                name, getCount(), getMeanNanos() / 1e6, getPercentileNanos(0.5) / 1e6,
+                getPercentileNanos(0.99) / 1e6, getMaxNanos() / 1e6);
+    }
+}
@@ -0,0 +1,167 @@
+package com.rdxindia.poc_application;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Follows voice commands from recognition to the final JPEG. A traced
+ * command gets an id and a row of timestamps, one per {@link Stage}, in a
+ * preallocated ring; the time from the previous stamped stage goes into a
+ * {@link LatencyHistogram} per stage. Recording neither locks nor allocates,
+ * and while tracing is disabled no trace is started, so every later call
+ * returns at its first check.
+ *
+ * <p>A stage is stamped once per trace: later shots of a burst do not
+ * overwrite the first. A trace lapped by newer ones is simply dropped.
+ */
+public final class LatencyTracer {
+
+    /** Id of a command that is not being traced. */
+    public static final long NO_TRACE = -1;
+
+    public enum Stage {
+        /** A recognition result matched a command; timed from the start of speech. */
+        MATCHED,
+        /** The command reached the activity. */
+        DELIVERED,
+        /** takePicture was called, after any zoom and focus steps. */
+        SHUTTER,
+        /** The camera handed the frame, or the saved file, over. */
+        CAPTURED,
+        /** Overlay and EXIF are done. */
+        PROCESSED,
+        /** The final JPEG is in place. */
+        COMMITTED
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final LatencyTracer DEFAULT = new LatencyTracer(64, System::nanoTime);
+
+    private final LongSupplier clock;
+    private final int mask;
+    private final AtomicLongArray ids;
+    // STAGES.length stamps per slot; 0 until stamped
+    private final AtomicLongArray stamps;
+    private final AtomicLongArray speechNanos;
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicLong lapped = new AtomicLong();
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+    private final LatencyHistogram total = new LatencyHistogram("total");
+    private volatile boolean enabled = true;
+
+    public LatencyTracer(int capacity, LongSupplier clock) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        this.clock = clock;
+        mask = capacity - 1;
+        ids = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) ids.set(i, NO_TRACE);
+        stamps = new AtomicLongArray(capacity * STAGES.length);
+        speechNanos = new AtomicLongArray(capacity);
+        for (Stage stage : STAGES) {
+            histograms[stage.ordinal()] = new LatencyHistogram(stage.name().toLowerCase(Locale.US));
+        }
+    }
+
+    public static LatencyTracer getDefault() {
+        return DEFAULT;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts a trace at {@link Stage#MATCHED}, {@code speechNanos} after the
+     * user started speaking. Returns its id, or {@link #NO_TRACE} when disabled.
+     */
+    public long begin(long speechNanos) {
+        if (!enabled) return NO_TRACE;
+        long id = nextId.getAndIncrement();
+        int slot = (int) (id & mask);
+        ids.set(slot, NO_TRACE);
+        int base = slot * STAGES.length;
+        for (int i = 1; i < STAGES.length; i++) stamps.set(base + i, 0);
+        this.speechNanos.set(slot, speechNanos);
+        stamps.set(base, now());
+        ids.set(slot, id);
+        histograms[Stage.MATCHED.ordinal()].record(speechNanos);
+        return id;
+    }
+
+    /** Stamps {@code stage} of {@code trace} unless it already was. */
+    public void mark(long trace, Stage stage) {
+        if (trace < 0) return;
+        int slot = (int) (trace & mask);
+        if (ids.get(slot) != trace) {
+            lapped.incrementAndGet();
+            return;
+        }
+        int base = slot * STAGES.length;
+        long now = now();
+        if (!stamps.compareAndSet(base + stage.ordinal(), 0, now)) return;
+        for (int i = stage.ordinal() - 1; i >= 0; i--) {
+            long previous = stamps.get(base + i);
+            if (previous != 0) {
+                histograms[stage.ordinal()].record(now - previous);
+                break;
+            }
+        }
+        if (stage == Stage.COMMITTED) {
+            total.record(speechNanos.get(slot) + now - stamps.get(base));
+        }
+    }
+
+    // 0 marks an unstamped stage
+    private long now() {
+        long now = clock.getAsLong();
+        return now == 0 ? 1 : now;
+    }
+
+    /** Time from the previous stamped stage into {@code stage}; MATCHED is timed from speech. */
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    /** Start of speech to the committed JPEG. */
+    public LatencyHistogram getTotal() {
+        return total;
+    }
+
+    /** Marks dropped because their trace had been overwritten. */
+    public long getLappedCount() {
+        return lapped.get();
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) histogram.reset();
+        total.reset();
+        lapped.set(0);
+    }
+
+    /** Percentile table of every stage, one line each. */
+    public String dump() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.US,
+                "%-10s %6s %9s %9s %9s %9s%n", "stage", "n", "p50 ms", "p95 ms", "p99 ms",
+                "max ms"));
+        for (LatencyHistogram histogram : histograms) appendRow(sb, histogram);
+        appendRow(sb, total);
+        sb.append(String.format(Locale.US, "traces=%d lapped=%d enabled=%b%n",
+                nextId.get(), lapped.get(), enabled));
+        return sb.toString();
+    }
+
+    private static void appendRow(StringBuilder sb, LatencyHistogram histogram) {
+        sb.append(String.format(Locale.US, "%-10s %6d %9.1f %9.1f %9.1f %9.1f%n",
+                histogram.getName(), histogram.getCount(),
+                histogram.getPercentileNanos(0.5) / 1e6, histogram.getPercentileNanos(0.95) / 1e6,
+                histogram.getPercentileNanos(0.99) / 1e6, histogram.getMaxNanos() / 1e6));
+    }
+}
@@ -0,0 +1,60 @@
+package com.rdxindia.poc_application;
+
+import java.util.Locale;
+
+/**
+ * Immutable snapshot of one position fix. {@code elapsedNanos} is on the
+ * elapsed-realtime clock so ages can be computed across sleep; {@code
+ * timeMillis} is the UTC time the fix was measured.
+ */
+public final class LocationFix {
+
+    private final double latitude;
+    private final double longitude;
+    private final float accuracyMeters;
+    private final long elapsedNanos;
+    private final long timeMillis;
+
+    /** {@code accuracyMeters} is NaN when unknown. */
+    public LocationFix(double latitude, double longitude, float accuracyMeters,
+                       long elapsedNanos, long timeMillis) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.accuracyMeters = accuracyMeters;
+        this.elapsedNanos = elapsedNanos;
+        this.timeMillis = timeMillis;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public float getAccuracyMeters() {
+        return accuracyMeters;
+    }
+
+    public boolean hasAccuracy() {
+        return !Float.isNaN(accuracyMeters);
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public long ageNanos(long nowElapsedNanos) {
+        return nowElapsedNanos - elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%.5f,%.5f acc=%.0fm", latitude, longitude, accuracyMeters);
+    }
+}
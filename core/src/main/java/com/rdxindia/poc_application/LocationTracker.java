@@ -0,0 +1,131 @@
+package com.rdxindia.poc_application;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds the most recent {@link LocationFix}, published through an atomic
+ * reference so capture threads always read a complete, current snapshot
+ * without locking. A capture that finds the fix too old or too coarse can
+ * wait a bounded time for the next update.
+ */
+public final class LocationTracker {
+
+    private final AtomicReference<LocationFix> latest = new AtomicReference<>();
+    private final LongSupplier clock;
+    private final Object monitor = new Object();
+    private volatile int waiters;
+    private volatile boolean updating;
+
+    private final AtomicLong fixCount = new AtomicLong();
+    private final AtomicLong waitCount = new AtomicLong();
+    private final AtomicLong waitTimeoutCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    /** {@code clock} must be the elapsed-realtime clock fixes are stamped with. */
+    public LocationTracker(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /** Publishes {@code fix} unless a newer one is already there. */
+    public void onFix(LocationFix fix) {
+        while (true) {
+            LocationFix current = latest.get();
+            if (current != null && fix.getElapsedNanos() <= current.getElapsedNanos()) return;
+            if (latest.compareAndSet(current, fix)) break;
+        }
+        fixCount.incrementAndGet();
+        if (waiters > 0) {
+            synchronized (monitor) {
+                monitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Whether fixes are currently being delivered; while they are not,
+     * nobody waits for one.
+     */
+    public void setUpdating(boolean updating) {
+        this.updating = updating;
+        if (!updating && waiters > 0) {
+            synchronized (monitor) {
+                monitor.notifyAll();
+            }
+        }
+    }
+
+    public boolean isUpdating() {
+        return updating;
+    }
+
+    /** The latest fix, or null if there has never been one. */
+    public LocationFix getLatest() {
+        return latest.get();
+    }
+
+    /**
+     * Returns the latest fix once {@code policy} accepts it, waiting up to
+     * the policy's maximum for a new one if needed. After that the latest
+     * fix is returned anyway, possibly stale or null; the caller records its
+     * age.
+     */
+    public LocationFix awaitFix(FixPolicy policy) throws InterruptedException {
+        long start = clock.getAsLong();
+        LocationFix fix = latest.get();
+        if (policy.isAcceptable(fix, start) || policy.getMaxWaitNanos() <= 0 || !updating) {
+            return fix;
+        }
+
+        waitCount.incrementAndGet();
+        long deadline = start + policy.getMaxWaitNanos();
+        synchronized (monitor) {
+            waiters++;
+            try {
+                while (true) {
+                    fix = latest.get();
+                    long now = clock.getAsLong();
+                    if (policy.isAcceptable(fix, now)) break;
+                    long remaining = deadline - now;
+                    if (remaining <= 0 || !updating) {
+                        waitTimeoutCount.incrementAndGet();
+                        break;
+                    }
+                    monitor.wait(remaining / 1_000_000L, (int) (remaining % 1_000_000L));
+                }
+            } finally {
+                waiters--;
+            }
+        }
+        totalWaitNanos.addAndGet(clock.getAsLong() - start);
+        return fix;
+    }
+
+    public long getFixCount() {
+        return fixCount.get();
+    }
+
+    /** Captures that had to wait for a fix. */
+    public long getWaitCount() {
+        return waitCount.get();
+    }
+
+    /** Waits that ended without an acceptable fix. */
+    public long getWaitTimeoutCount() {
+        return waitTimeoutCount.get();
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos.get();
+    }
+
+    @Override
+    public String toString() {
+        LocationFix fix = latest.get();
+        return String.format(Locale.US, "fix=%s age=%.1fs fixes=%d waits=%d timeouts=%d waited=%.0fms",
+                fix, fix == null ? Double.NaN : fix.ageNanos(clock.getAsLong()) / 1e9,
+                getFixCount(), getWaitCount(), getWaitTimeoutCount(), getTotalWaitNanos() / 1e6);
+    }
+}
@@ -0,0 +1,210 @@
+package com.rdxindia.poc_application;
+
+import java.util.Arrays;
+
+/**
+ * Streaming MFCC front end for 16-bit PCM: pre-emphasis, Hamming window,
+ * radix-2 FFT, triangular mel filterbank, log and DCT-II. Samples may
+ * arrive in chunks of any size; one feature vector is emitted per hop.
+ * Every table and buffer is allocated up front, so {@link #process} does
+ * not allocate and the vector handed to the {@link Sink} is reused.
+ * Not thread-safe.
+ */
+public final class MfccExtractor {
+
+    public interface Sink {
+        /** One frame of coefficients; only valid during the call. */
+        void onFrame(float[] mfcc);
+    }
+
+    private static final float PRE_EMPHASIS = 0.97f;
+    private static final float LOW_HZ = 20;
+    private static final float LOG_FLOOR = 1e-10f;
+
+    private final int frameSamples;
+    private final int hopSamples;
+    private final int fftSize;
+    private final int bands;
+
+    private final float[] window;
+    private final float[] buffer;
+    private final float[] re;
+    private final float[] im;
+    private final float[] cos;
+    private final float[] sin;
+    private final int[] bitReverse;
+    private final int[] bandStart;
+    private final float[][] bandWeights;
+    private final float[] logEnergies;
+    private final float[][] dct;
+    private final float[] out;
+
+    private int filled;
+    private float lastSample;
+    private long frames;
+
+    /** 25 ms frames every 10 ms, 26 mel bands, 13 coefficients. */
+    public static MfccExtractor forSampleRate(int sampleRate) {
+        return new MfccExtractor(sampleRate, sampleRate / 40, sampleRate / 100, 26, 13);
+    }
+
+    public MfccExtractor(int sampleRate, int frameSamples, int hopSamples, int bands,
+                         int coefficients) {
+        this.frameSamples = frameSamples;
+        this.hopSamples = hopSamples;
+        this.bands = bands;
+        this.fftSize = Integer.highestOneBit(frameSamples - 1) << 1;
+
+        window = new float[frameSamples];
+        for (int i = 0; i < frameSamples; i++) {
+            window[i] = (float) (0.54 - 0.46 * Math.cos(2 * Math.PI * i / (frameSamples - 1)));
+        }
+        buffer = new float[frameSamples];
+        re = new float[fftSize];
+        im = new float[fftSize];
+        cos = new float[fftSize / 2];
+        sin = new float[fftSize / 2];
+        for (int k = 0; k < fftSize / 2; k++) {
+            cos[k] = (float) Math.cos(2 * Math.PI * k / fftSize);
+            sin[k] = (float) Math.sin(2 * Math.PI * k / fftSize);
+        }
+        bitReverse = new int[fftSize];
+        int bits = Integer.numberOfTrailingZeros(fftSize);
+        for (int i = 0; i < fftSize; i++) {
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+
+        // Band b rises from edge b to edge b + 1 and falls to edge b + 2, evenly spaced in mel
+        double lowMel = mel(LOW_HZ);
+        double highMel = mel(sampleRate / 2.0);
+        double[] edges = new double[bands + 2];
+        for (int i = 0; i < edges.length; i++) {
+            double hz = 700 * (Math.pow(10, (lowMel + (highMel - lowMel) * i / (bands + 1)) / 2595) - 1);
+            edges[i] = hz * fftSize / sampleRate;
+        }
+        bandStart = new int[bands];
+        bandWeights = new float[bands][];
+        for (int b = 0; b < bands; b++) {
+            int start = (int) Math.ceil(edges[b]);
+            int end = Math.min((int) Math.floor(edges[b + 2]), fftSize / 2);
+            bandStart[b] = start;
+            bandWeights[b] = new float[Math.max(0, end - start + 1)];
+            for (int k = start; k <= end; k++) {
+                double w = k <= edges[b + 1]
+                        ? (k - edges[b]) / (edges[b + 1] - edges[b])
+                        : (edges[b + 2] - k) / (edges[b + 2] - edges[b + 1]);
+                bandWeights[b][k - start] = (float) Math.max(0, w);
+            }
+        }
+        logEnergies = new float[bands];
+        dct = new float[coefficients][bands];
+        for (int c = 0; c < coefficients; c++) {
+            for (int b = 0; b < bands; b++) {
+                dct[c][b] = (float) Math.cos(Math.PI * c * (b + 0.5) / bands);
+            }
+        }
+        out = new float[coefficients];
+    }
+
+    private static double mel(double hz) {
+        return 2595 * Math.log10(1 + hz / 700);
+    }
+
+    public int getCoefficientCount() {
+        return out.length;
+    }
+
+    public int getHopSamples() {
+        return hopSamples;
+    }
+
+    /** Frames emitted since construction or {@link #reset()}. */
+    public long getFrameCount() {
+        return frames;
+    }
+
+    /** Feeds samples, calling {@code sink} for every completed frame; returns how many. */
+    public int process(short[] pcm, int offset, int length, Sink sink) {
+        int emitted = 0;
+        for (int i = offset; i < offset + length; i++) {
+            float sample = pcm[i] / 32768f;
+            buffer[filled++] = sample - PRE_EMPHASIS * lastSample;
+            lastSample = sample;
+            if (filled == frameSamples) {
+                computeFrame();
+                frames++;
+                emitted++;
+                sink.onFrame(out);
+                System.arraycopy(buffer, hopSamples, buffer, 0, frameSamples - hopSamples);
+                filled -= hopSamples;
+            }
+        }
+        return emitted;
+    }
+
+    /** Drops buffered samples, e.g. between utterances. */
+    public void reset() {
+        filled = 0;
+        lastSample = 0;
+        frames = 0;
+    }
+
+    private void computeFrame() {
+        for (int i = 0; i < frameSamples; i++) re[i] = buffer[i] * window[i];
+        Arrays.fill(re, frameSamples, fftSize, 0f);
+        Arrays.fill(im, 0f);
+        fft();
+
+        for (int b = 0; b < bands; b++) {
+            float[] weights = bandWeights[b];
+            int start = bandStart[b];
+            float energy = 0;
+            for (int k = 0; k < weights.length; k++) {
+                float r = re[start + k];
+                float m = im[start + k];
+                energy += weights[k] * (r * r + m * m);
+            }
+            logEnergies[b] = (float) Math.log(Math.max(energy, LOG_FLOOR));
+        }
+        for (int c = 0; c < out.length; c++) {
+            float[] row = dct[c];
+            float sum = 0;
+            for (int b = 0; b < bands; b++) sum += row[b] * logEnergies[b];
+            out[c] = sum;
+        }
+    }
+
+    // In-place iterative radix-2, twiddles exp(-2 pi i k / n)
+    private void fft() {
+        int n = fftSize;
+        for (int i = 0; i < n; i++) {
+            int j = bitReverse[i];
+            if (j > i) {
+                float t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+        for (int size = 2; size <= n; size <<= 1) {
+            int half = size >> 1;
+            int step = n / size;
+            for (int i = 0; i < n; i += size) {
+                for (int k = 0; k < half; k++) {
+                    float c = cos[k * step];
+                    float s = sin[k * step];
+                    int a = i + k;
+                    int b = a + half;
+                    float tr = re[b] * c + im[b] * s;
+                    float ti = im[b] * c - re[b] * s;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.rdxindia.poc_application;
+
+/**
+ * Geometry shared by the overlay renderers: converting between the upright
+ * (as displayed) frame of a photo and its sensor-oriented pixel grid.
+ */
+public final class OverlayLayout {
+
+    private OverlayLayout() {
+    }
+
+    public static int normalizeRotation(int rotationDegrees) {
+        return ((rotationDegrees % 360) + 360) % 360;
+    }
+
+    public static int uprightWidth(int width, int height, int rotationDegrees) {
+        int r = normalizeRotation(rotationDegrees);
+        return (r == 90 || r == 270) ? height : width;
+    }
+
+    public static int uprightHeight(int width, int height, int rotationDegrees) {
+        int r = normalizeRotation(rotationDegrees);
+        return (r == 90 || r == 270) ? width : height;
+    }
+
+    /**
+     * Converts {left, top, right, bottom} in {@code rect} from upright
+     * coordinates to sensor coordinates of a {@code width} x {@code height}
+     * image displayed rotated clockwise by {@code rotationDegrees}.
+     */
+    public static void toSensor(int[] rect, int width, int height, int rotationDegrees) {
+        int l = rect[0];
+        int t = rect[1];
+        int r = rect[2];
+        int b = rect[3];
+        switch (normalizeRotation(rotationDegrees)) {
+            case 90:
+                // upright (x, y) -> sensor (y, height - x)
+                rect[0] = t;
+                rect[1] = height - r;
+                rect[2] = b;
+                rect[3] = height - l;
+                break;
+            case 180:
+                rect[0] = width - r;
+                rect[1] = height - b;
+                rect[2] = width - l;
+                rect[3] = height - t;
+                break;
+            case 270:
+                // upright (x, y) -> sensor (width - y, x)
+                rect[0] = width - b;
+                rect[1] = l;
+                rect[2] = width - t;
+                rect[3] = r;
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.rdxindia.poc_application;
+
+/**
+ * Draws an overlay into a window of pixels cut out of a larger photo, so the
+ * photo never has to be decoded in full.
+ */
+public interface OverlayPainter {
+
+    /**
+     * Writes {left, top, right, bottom} of everything {@link #paint} may
+     * touch into {@code outBounds}, in the coordinates of the photo as it is
+     * displayed ({@code uprightWidth} x {@code uprightHeight}).
+     */
+    void getBounds(int uprightWidth, int uprightHeight, int[] outBounds);
+
+    /**
+     * Paints into {@code argb}, a {@code width} x {@code height} window of
+     * the photo in sensor orientation whose top-left pixel is at
+     * ({@code left}, {@code top}). The full photo is {@code imageWidth} x
+     * {@code imageHeight} and is displayed rotated clockwise by
+     * {@code rotationDegrees}.
+     */
+    void paint(int[] argb, int width, int height, int left, int top,
+               int imageWidth, int imageHeight, int rotationDegrees);
+}
@@ -0,0 +1,220 @@
+package com.rdxindia.poc_application;
+
+import java.util.List;
+
+/**
+ * Fires voice commands from partial recognition results instead of waiting
+ * for end-of-speech. A command found in a partial hypothesis is dispatched
+ * once it is stable: seen in two consecutive partials, or unchanged for a
+ * short window. Fuzzy matches are left for the final result, and so are
+ * matches that could still grow into a command taking a number ("zoom"
+ * before "zoom 3x", "zoom 3x" before "zoom 3x and take 2 photos"), since
+ * firing early would take one photo now and another once the number is
+ * heard. A match that could grow into a longer command without numbers
+ * ("auto capture" before "auto capture off") has to stay unchanged for a
+ * longer window.
+ * <p>
+ * Each command fires at most once per utterance with the same spoken
+ * numbers, whatever its phrasing; the final result is checked against what
+ * already fired so the camera does not trigger twice.
+ * Not thread-safe; call everything from one thread.
+ */
+public final class PartialCommandDispatcher {
+
+    public interface Listener {
+        /**
+         * Called when a command is dispatched. {@code match} is only valid
+         * during the call.
+         */
+        void onCommand(CommandGrammar.CommandMatch match, boolean early);
+    }
+
+    private static final int MAX_FIRED = 8;
+    private static final int STABLE_PARTIALS = 2;
+
+    private final CommandGrammar.Matcher matcher;
+    private final Listener listener;
+    private final long windowNanos;
+    private final long extendableWindowNanos;
+
+    // Candidate from the latest partial, if any
+    private CommandGrammar.CommandMatch candidate;
+    private final int[] candidateSlots = new int[CommandGrammar.MAX_TOKENS];
+    private int candidatePattern = -1;
+    private int candidateSlotCount;
+    private int candidateSeen;
+    private long candidateSince;
+    private boolean candidateExtendable;
+
+    // Commands already fired in this utterance
+    private final String[] firedCommand = new String[MAX_FIRED];
+    private final int[][] firedSlots = new int[MAX_FIRED][CommandGrammar.MAX_TOKENS];
+    private final int[] firedSlotCount = new int[MAX_FIRED];
+    private final long[] firedAt = new long[MAX_FIRED];
+    private int firedCount;
+
+    private long utteranceStart = -1;
+    private long earlyCount;
+    private long finalCount;
+    private long suppressedCount;
+    private long lastLatencyNanos;
+    private long lastLeadNanos;
+
+    public PartialCommandDispatcher(CommandGrammar grammar, Listener listener,
+                                    long windowNanos, long extendableWindowNanos) {
+        this.matcher = grammar.newMatcher();
+        this.listener = listener;
+        this.windowNanos = windowNanos;
+        this.extendableWindowNanos = extendableWindowNanos;
+    }
+
+    /** Starts a new utterance, forgetting what fired in the previous one. */
+    public void beginUtterance(long nowNanos) {
+        utteranceStart = nowNanos;
+        firedCount = 0;
+        clearCandidate();
+    }
+
+    public void onPartial(CharSequence hypothesis, long nowNanos) {
+        if (utteranceStart < 0) utteranceStart = nowNanos;
+        CommandGrammar.CommandMatch match = matcher.match(hypothesis);
+        if (match == null || match.getEdits() > 0 || matcher.isExtendableWithNumbers()
+                || hasFired(match)) {
+            clearCandidate();
+            return;
+        }
+        if (sameAsCandidate(match)) {
+            candidateSeen++;
+        } else {
+            candidatePattern = match.getPattern();
+            candidateSlotCount = match.getSlotCount();
+            for (int i = 0; i < match.getSlotCount(); i++) candidateSlots[i] = match.getSlot(i);
+            candidateSeen = 1;
+            candidateSince = nowNanos;
+        }
+        candidate = match;
+        candidateExtendable = matcher.isExtendable();
+        evaluate(nowNanos);
+    }
+
+    /** Re-checks the pending candidate; call when no partial arrived for a while. */
+    public void onTick(long nowNanos) {
+        evaluate(nowNanos);
+    }
+
+    /**
+     * Handles the final result and ends the utterance. The first alternative
+     * containing a command is used; it is dropped if it already fired early.
+     */
+    public void onFinal(List<? extends CharSequence> alternatives, long nowNanos) {
+        if (utteranceStart < 0) utteranceStart = nowNanos;
+        for (CharSequence alternative : alternatives) {
+            CommandGrammar.CommandMatch match = matcher.match(alternative);
+            if (match == null) continue;
+            int fired = indexOfFired(match);
+            if (fired >= 0) {
+                suppressedCount++;
+                lastLeadNanos = nowNanos - firedAt[fired];
+            } else {
+                finalCount++;
+                fire(match, false, nowNanos);
+            }
+            break;
+        }
+        utteranceStart = -1;
+        firedCount = 0;
+        clearCandidate();
+    }
+
+    /** Whether a candidate is waiting for its stability window to pass. */
+    public boolean hasPendingCandidate() {
+        return candidate != null;
+    }
+
+    public long getEarlyCount() {
+        return earlyCount;
+    }
+
+    public long getFinalCount() {
+        return finalCount;
+    }
+
+    /** Final results dropped because the same command already fired early. */
+    public long getSuppressedCount() {
+        return suppressedCount;
+    }
+
+    /** Utterance start to dispatch for the most recent command. */
+    public long getLastLatencyNanos() {
+        return lastLatencyNanos;
+    }
+
+    /** How long before its final result the most recent early command fired. */
+    public long getLastLeadNanos() {
+        return lastLeadNanos;
+    }
+
+    private void evaluate(long nowNanos) {
+        if (candidate == null) return;
+        long stableFor = nowNanos - candidateSince;
+        boolean stable = candidateExtendable
+                ? stableFor >= extendableWindowNanos
+                : candidateSeen >= STABLE_PARTIALS || stableFor >= windowNanos;
+        if (!stable) return;
+        earlyCount++;
+        fire(candidate, true, nowNanos);
+        clearCandidate();
+    }
+
+    private void fire(CommandGrammar.CommandMatch match, boolean early, long nowNanos) {
+        if (firedCount < MAX_FIRED) {
+            firedCommand[firedCount] = match.getCommand();
+            firedSlotCount[firedCount] = match.getSlotCount();
+            for (int i = 0; i < match.getSlotCount(); i++) {
+                firedSlots[firedCount][i] = match.getSlot(i);
+            }
+            firedAt[firedCount] = nowNanos;
+            firedCount++;
+        }
+        lastLatencyNanos = nowNanos - utteranceStart;
+        listener.onCommand(match, early);
+    }
+
+    private boolean sameAsCandidate(CommandGrammar.CommandMatch match) {
+        if (candidate == null || match.getPattern() != candidatePattern
+                || match.getSlotCount() != candidateSlotCount) {
+            return false;
+        }
+        for (int i = 0; i < candidateSlotCount; i++) {
+            if (match.getSlot(i) != candidateSlots[i]) return false;
+        }
+        return true;
+    }
+
+    private boolean hasFired(CommandGrammar.CommandMatch match) {
+        return indexOfFired(match) >= 0;
+    }
+
+    // A repeat is the same command with the same numbers, or with only some of them
+    private int indexOfFired(CommandGrammar.CommandMatch match) {
+        for (int i = 0; i < firedCount; i++) {
+            if (firedCommand[i].equals(match.getCommand()) && slotsCoveredBy(match, i)) return i;
+        }
+        return -1;
+    }
+
+    private boolean slotsCoveredBy(CommandGrammar.CommandMatch match, int fired) {
+        if (match.getSlotCount() > firedSlotCount[fired]) return false;
+        for (int i = 0; i < match.getSlotCount(); i++) {
+            if (match.getSlot(i) != firedSlots[fired][i]) return false;
+        }
+        return true;
+    }
+
+    private void clearCandidate() {
+        candidate = null;
+        candidatePattern = -1;
+        candidateSlotCount = 0;
+        candidateSeen = 0;
+    }
+}
@@ -0,0 +1,174 @@
+package com.rdxindia.poc_application;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * 64-bit perceptual hashes of a photo, for telling near-identical shots
+ * apart from different ones: the Hamming distance between the hashes of two
+ * frames of the same scene stays small through sensor noise and
+ * recompression. Straight from a baseline JPEG only the DC coefficient of
+ * each luma block is kept, which is the block's mean brightness, so the
+ * image is seen at 1/8 scale without an inverse DCT or any pixels. Not
+ * thread-safe; keep one per thread.
+ */
+public final class PerceptualHash {
+
+    private static final int SIDE = 8;
+    private static final int DCT_SIDE = 32;
+    // cos((2x + 1) u pi / 64) for the 8 lowest frequencies u of a 32-point DCT
+    private static final double[] DCT_COS = new double[SIDE * DCT_SIDE];
+
+    static {
+        for (int u = 0; u < SIDE; u++) {
+            for (int x = 0; x < DCT_SIDE; x++) {
+                DCT_COS[u * DCT_SIDE + x] = Math.cos((2 * x + 1) * u * Math.PI / (2 * DCT_SIDE));
+            }
+        }
+    }
+
+    private final short[] block = new short[64];
+    private final int[] predictors = new int[3];
+    private final double[] cells = new double[DCT_SIDE * DCT_SIDE];
+    private final double[] rows = new double[DCT_SIDE * SIDE];
+    private final double[] coefficients = new double[SIDE * SIDE];
+    private final double[] sorted = new double[SIDE * SIDE];
+    private int[] luma = new int[0];
+    private int lumaWidth;
+    private int lumaHeight;
+
+    /** Hamming distance between two hashes, 0 to 64. */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * The {@link #dHash} of {@code jpeg} (from its position to its limit),
+     * from its luma DC coefficients.
+     *
+     * @throws UnsupportedJpegException if the image is not a baseline JPEG
+     */
+    public long dHashJpeg(ByteBuffer jpeg) throws IOException {
+        decodeLumaDc(jpeg);
+        return dHash(luma, lumaWidth, lumaHeight);
+    }
+
+    /** As {@link #dHashJpeg}, with the {@link #pHash}. */
+    public long pHashJpeg(ByteBuffer jpeg) throws IOException {
+        decodeLumaDc(jpeg);
+        return pHash(luma, lumaWidth, lumaHeight);
+    }
+
+    /**
+     * Difference hash: {@code luma} (row-major, {@code width} per row)
+     * averaged down to 9x8 cells, one bit per horizontally adjacent pair that
+     * gets brighter to the right. Cheap, but flat areas such as sky leave
+     * those bits to the sensor noise.
+     */
+    public long dHash(int[] luma, int width, int height) {
+        long hash = 0;
+        for (int row = 0; row < SIDE; row++) {
+            double left = cellMean(luma, width, height, 0, row, SIDE + 1, SIDE);
+            for (int col = 0; col < SIDE; col++) {
+                double right = cellMean(luma, width, height, col + 1, row, SIDE + 1, SIDE);
+                if (left < right) hash |= 1L << (row * SIDE + col);
+                left = right;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * DCT hash: {@code luma} averaged down to 32x32 cells, one bit per
+     * coefficient of the 8x8 lowest frequencies that is above their median.
+     * More work than the {@link #dHash}, but only the image's broad layout
+     * decides the bits, so noise and small shifts barely move it.
+     */
+    public long pHash(int[] luma, int width, int height) {
+        for (int row = 0; row < DCT_SIDE; row++) {
+            for (int col = 0; col < DCT_SIDE; col++) {
+                cells[row * DCT_SIDE + col] =
+                        cellMean(luma, width, height, col, row, DCT_SIDE, DCT_SIDE);
+            }
+        }
+        // Rows first, keeping only the frequencies the hash looks at
+        for (int y = 0; y < DCT_SIDE; y++) {
+            for (int u = 0; u < SIDE; u++) {
+                double sum = 0;
+                for (int x = 0; x < DCT_SIDE; x++) {
+                    sum += cells[y * DCT_SIDE + x] * DCT_COS[u * DCT_SIDE + x];
+                }
+                rows[y * SIDE + u] = sum;
+            }
+        }
+        for (int v = 0; v < SIDE; v++) {
+            for (int u = 0; u < SIDE; u++) {
+                double sum = 0;
+                for (int y = 0; y < DCT_SIDE; y++) {
+                    sum += rows[y * SIDE + u] * DCT_COS[v * DCT_SIDE + y];
+                }
+                coefficients[v * SIDE + u] = sum;
+            }
+        }
+        // The DC term is the overall brightness and would dwarf the median
+        System.arraycopy(coefficients, 1, sorted, 0, SIDE * SIDE - 1);
+        Arrays.sort(sorted, 0, SIDE * SIDE - 1);
+        double median = sorted[(SIDE * SIDE - 1) / 2];
+        long hash = 0;
+        for (int i = 1; i < SIDE * SIDE; i++) {
+            if (coefficients[i] > median) hash |= 1L << i;
+        }
+        return hash;
+    }
+
+    // Mean of cell (col, row) of the image split into cols x rows cells
+    private static double cellMean(int[] luma, int width, int height, int col, int row,
+                                   int cols, int rows) {
+        int x0 = col * width / cols;
+        int x1 = Math.max(x0 + 1, (col + 1) * width / cols);
+        int y0 = row * height / rows;
+        int y1 = Math.max(y0 + 1, (row + 1) * height / rows);
+        long sum = 0;
+        for (int y = y0; y < y1; y++) {
+            int offset = y * width;
+            for (int x = x0; x < x1; x++) sum += luma[offset + x];
+        }
+        return (double) sum / ((x1 - x0) * (y1 - y0));
+    }
+
+    // Fills luma with one value per 8x8 luma block, the padding blocks included
+    private void decodeLumaDc(ByteBuffer jpeg) throws IOException {
+        ByteBuffer data = jpeg.slice().order(ByteOrder.BIG_ENDIAN);
+        JpegHeader header = JpegHeader.read(data);
+        int hSampling = header.hSampling[0];
+        int vSampling = header.vSampling[0];
+        lumaWidth = header.mcusPerRow * hSampling;
+        lumaHeight = header.mcuRows * vSampling;
+        if (luma.length < lumaWidth * lumaHeight) luma = new int[lumaWidth * lumaHeight];
+
+        EntropyDecoder decoder = new EntropyDecoder(data);
+        decoder.reset(header.scanStart);
+        Arrays.fill(predictors, 0);
+        int restartInterval = header.restartInterval;
+        int totalMcus = header.mcusPerRow * header.mcuRows;
+        for (int mcu = 0; mcu < totalMcus; mcu++) {
+            if (restartInterval > 0 && mcu > 0 && mcu % restartInterval == 0) {
+                decoder.readRestartMarker();
+                Arrays.fill(predictors, 0);
+            }
+            int x = mcu % header.mcusPerRow * hSampling;
+            int y = mcu / header.mcusPerRow * vSampling;
+            for (int b = 0; b < header.blocksPerMcu; b++) {
+                int c = header.blockComponent[b];
+                // The AC terms still have to be decoded to find the next block
+                decoder.decodeBlock(block, 0, header.dcTables[header.dcTable[c]],
+                        header.acTables[header.acTable[c]], predictors, c);
+                if (c == 0) {
+                    luma[(y + header.blockY[b]) * lumaWidth + x + header.blockX[b]] = block[0];
+                }
+            }
+        }
+    }
+}
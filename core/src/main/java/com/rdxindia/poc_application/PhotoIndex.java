@@ -0,0 +1,469 @@
+package com.rdxindia.poc_application;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Persistent index of the photo library, keyed by geohash and capture time,
+ * for area and time-range queries without listing the directory.
+ *
+ * <p>{@code photos.idx} holds fixed 32-byte records behind a small header:
+ * a sorted run followed by an unsorted tail of recent additions, which is
+ * merged into the run once it grows past {@link #MAX_TAIL}. Record keys are
+ * 62-bit geohashes (31 bits of longitude and latitude, interleaved with
+ * longitude first, so any geohash string is a key prefix). An area query
+ * covers the box with at most {@link #MAX_CELLS} geohash cells and binary
+ * searches each key range in the memory-mapped run. File names are kept in
+ * {@code photos.names}. Everything here can be rebuilt from the directory.
+ */
+public final class PhotoIndex implements Closeable {
+
+    public static final class Photo {
+        private final String name;
+        private final long timeMillis;
+        private final double latitude;
+        private final double longitude;
+
+        Photo(String name, long timeMillis, double latitude, double longitude) {
+            this.name = name;
+            this.timeMillis = timeMillis;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getTimeMillis() {
+            return timeMillis;
+        }
+
+        /** NaN for a photo taken without a location. */
+        public double getLatitude() {
+            return latitude;
+        }
+
+        public double getLongitude() {
+            return longitude;
+        }
+
+        public boolean hasLocation() {
+            return !Double.isNaN(latitude);
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    static final int MAX_TAIL = 1024;
+    static final int MAX_CELLS = 16;
+
+    private static final int MAGIC = 0x50494458; // "PIDX"
+    private static final int VERSION = 1;
+    private static final int HEADER = 16;
+    private static final int RECORD = 32;
+    private static final long NO_LOCATION = Long.MAX_VALUE;
+    private static final double EARTH_RADIUS_METERS = 6_371_008.8;
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+    // IMG_<yyyyMMdd_HHmmss>[_<lat>_<lon>][_B<n>].jpg, as built by CaptureNames
+    private static final Pattern NAME = Pattern.compile(
+            "IMG_(\\d{8}_\\d{6})(?:_(-?\\d+\\.\\d+)_(-?\\d+\\.\\d+))?(?:_B\\d+)?\\.jpg");
+
+    private final File dir;
+    private FileChannel records;
+    private FileChannel names;
+    private MappedByteBuffer recordMap;
+    private MappedByteBuffer nameMap;
+    private int count;
+    private int sorted;
+    private long namesSize;
+    private boolean remap = true;
+    private final ByteBuffer scratch = ByteBuffer.allocate(RECORD);
+    private long lastQueryNanos;
+
+    private PhotoIndex(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Opens the index in {@code dir}, creating an empty one if there is none.
+     * Throws if the files are not a valid index; {@link #rebuild} replaces
+     * them.
+     */
+    public static PhotoIndex open(File dir) throws IOException {
+        PhotoIndex index = new PhotoIndex(dir);
+        index.openFiles();
+        return index;
+    }
+
+    /** Opens {@code dir} and refills it from the photos in {@code library}. */
+    public static PhotoIndex rebuild(File dir, File library) throws IOException {
+        dir.mkdirs();
+        Files.deleteIfExists(new File(dir, "photos.idx").toPath());
+        Files.deleteIfExists(new File(dir, "photos.names").toPath());
+        PhotoIndex index = open(dir);
+        File[] files = library.listFiles();
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US);
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                Matcher m = NAME.matcher(name);
+                if (!m.matches()) continue;
+                long time;
+                try {
+                    time = format.parse(m.group(1)).getTime();
+                } catch (ParseException e) {
+                    time = file.lastModified();
+                }
+                double latitude = m.group(2) == null ? Double.NaN : Double.parseDouble(m.group(2));
+                double longitude = m.group(3) == null ? Double.NaN : Double.parseDouble(m.group(3));
+                index.append(name, time, latitude, longitude);
+            }
+        }
+        index.merge();
+        return index;
+    }
+
+    private void openFiles() throws IOException {
+        dir.mkdirs();
+        records = FileChannel.open(new File(dir, "photos.idx").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        names = FileChannel.open(new File(dir, "photos.names").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        namesSize = names.size();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        if (records.size() < HEADER) {
+            header.putInt(MAGIC).putInt(VERSION).putInt(0).putInt(0).flip();
+            records.truncate(0);
+            records.write(header, 0);
+            names.truncate(0);
+            namesSize = 0;
+        } else {
+            records.read(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                close();
+                throw new IOException("Not a photo index: " + dir);
+            }
+            sorted = header.getInt();
+        }
+        // A torn record from an interrupted append is dropped
+        count = (int) ((records.size() - HEADER) / RECORD);
+        records.truncate(HEADER + (long) count * RECORD);
+        if (sorted > count) sorted = count;
+        remap = true;
+    }
+
+    /**
+     * Adds a committed photo. {@code fix} may be null. Adding a name again
+     * records another time and place for the same photo, as for a shot linked
+     * to it as a duplicate; queries still list each photo once.
+     */
+    public synchronized void add(String name, long timeMillis, LocationFix fix) throws IOException {
+        append(name, timeMillis,
+                fix == null ? Double.NaN : fix.getLatitude(),
+                fix == null ? Double.NaN : fix.getLongitude());
+        if (count - sorted > MAX_TAIL) merge();
+    }
+
+    private void append(String name, long timeMillis, double latitude, double longitude)
+            throws IOException {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer nameBuffer = ByteBuffer.wrap(bytes);
+        while (nameBuffer.hasRemaining()) {
+            names.write(nameBuffer, namesSize + nameBuffer.position());
+        }
+
+        boolean located = !Double.isNaN(latitude) && !Double.isNaN(longitude);
+        scratch.clear();
+        scratch.putLong(located ? key(latitude, longitude) : NO_LOCATION)
+                .putLong(timeMillis)
+                .putInt(located ? (int) Math.round(latitude * 1e7) : 0)
+                .putInt(located ? (int) Math.round(longitude * 1e7) : 0)
+                .putInt((int) namesSize)
+                .putShort((short) bytes.length)
+                .putShort((short) 0)
+                .flip();
+        long offset = HEADER + (long) count * RECORD;
+        while (scratch.hasRemaining()) {
+            records.write(scratch, offset + scratch.position());
+        }
+        namesSize += bytes.length;
+        count++;
+        remap = true;
+    }
+
+    // Sorts the whole file by (geohash, time) into a new file and swaps it in
+    private void merge() throws IOException {
+        map();
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) order[i] = i;
+        MappedByteBuffer map = recordMap;
+        Arrays.sort(order, Comparator
+                .<Integer>comparingLong(i -> map.getLong(HEADER + i * RECORD))
+                .thenComparingLong(i -> map.getLong(HEADER + i * RECORD + 8)));
+
+        ByteBuffer out = ByteBuffer.allocate(HEADER + count * RECORD);
+        out.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(0);
+        ByteBuffer record = map.duplicate();
+        for (int i : order) {
+            record.limit(HEADER + (i + 1) * RECORD).position(HEADER + i * RECORD);
+            out.put(record);
+        }
+        out.flip();
+
+        File file = new File(dir, "photos.idx");
+        File temp = new File(dir, "photos.idx.tmp");
+        try (FileChannel target = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (out.hasRemaining()) target.write(out);
+            target.force(false);
+        }
+        records.close();
+        Files.move(temp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        records = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        sorted = count;
+        remap = true;
+    }
+
+    private void map() throws IOException {
+        if (!remap) return;
+        recordMap = records.map(FileChannel.MapMode.READ_ONLY, 0, records.size());
+        nameMap = names.map(FileChannel.MapMode.READ_ONLY, 0, namesSize);
+        remap = false;
+    }
+
+    /** Photos inside the box and time range, oldest first. Times are inclusive. */
+    public synchronized List<Photo> queryBox(double south, double west, double north, double east,
+                                             long fromMillis, long toMillis) throws IOException {
+        long start = System.nanoTime();
+        List<Photo> out = new ArrayList<>();
+        scanBox(south, west, north, east, fromMillis, toMillis, out);
+        return finish(out, start);
+    }
+
+    /** Photos within {@code radiusMeters} of a point and inside the time range. */
+    public synchronized List<Photo> queryRadius(double latitude, double longitude,
+                                                double radiusMeters, long fromMillis,
+                                                long toMillis) throws IOException {
+        long start = System.nanoTime();
+        double dLat = Math.toDegrees(radiusMeters / EARTH_RADIUS_METERS);
+        double cos = Math.max(Math.cos(Math.toRadians(latitude)), 1e-6);
+        double dLon = Math.min(180, dLat / cos);
+        List<Photo> box = new ArrayList<>();
+        scanBox(latitude - dLat, longitude - dLon, latitude + dLat, longitude + dLon,
+                fromMillis, toMillis, box);
+        List<Photo> out = new ArrayList<>(box.size());
+        for (Photo photo : box) {
+            if (distanceMeters(latitude, longitude, photo.latitude, photo.longitude) <= radiusMeters) {
+                out.add(photo);
+            }
+        }
+        return finish(out, start);
+    }
+
+    private void scanBox(double south, double west, double north, double east,
+                         long fromMillis, long toMillis, List<Photo> out) throws IOException {
+        map();
+        long[] ranges = cover(south, west, north, east);
+        for (int r = 0; r < ranges.length; r += 2) {
+            int i = lowerBound(ranges[r]);
+            for (; i < sorted && keyAt(i) < ranges[r + 1]; i++) {
+                collect(i, south, west, north, east, fromMillis, toMillis, out);
+            }
+        }
+        for (int i = sorted; i < count; i++) {
+            if (keyAt(i) != NO_LOCATION) {
+                collect(i, south, west, north, east, fromMillis, toMillis, out);
+            }
+        }
+    }
+
+    /** All photos in the time range, with or without a location. */
+    public synchronized List<Photo> queryTime(long fromMillis, long toMillis) throws IOException {
+        long start = System.nanoTime();
+        map();
+        List<Photo> out = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            long time = recordMap.getLong(HEADER + i * RECORD + 8);
+            if (time >= fromMillis && time <= toMillis) out.add(photoAt(i));
+        }
+        return finish(out, start);
+    }
+
+    // Oldest first, each name once at its earliest record in the query
+    private List<Photo> finish(List<Photo> out, long start) {
+        out.sort(Comparator.comparingLong(Photo::getTimeMillis));
+        Set<String> seen = new HashSet<>();
+        out.removeIf(photo -> !seen.add(photo.getName()));
+        lastQueryNanos = System.nanoTime() - start;
+        return out;
+    }
+
+    private void collect(int i, double south, double west, double north, double east,
+                         long fromMillis, long toMillis, List<Photo> out) {
+        int base = HEADER + i * RECORD;
+        long time = recordMap.getLong(base + 8);
+        if (time < fromMillis || time > toMillis) return;
+        double latitude = recordMap.getInt(base + 16) / 1e7;
+        double longitude = recordMap.getInt(base + 20) / 1e7;
+        if (latitude < south || latitude > north || longitude < west || longitude > east) return;
+        out.add(photoAt(i));
+    }
+
+    private Photo photoAt(int i) {
+        int base = HEADER + i * RECORD;
+        boolean located = recordMap.getLong(base) != NO_LOCATION;
+        byte[] name = new byte[recordMap.getShort(base + 28) & 0xFFFF];
+        int offset = recordMap.getInt(base + 24);
+        for (int b = 0; b < name.length; b++) name[b] = nameMap.get(offset + b);
+        return new Photo(new String(name, StandardCharsets.UTF_8),
+                recordMap.getLong(base + 8),
+                located ? recordMap.getInt(base + 16) / 1e7 : Double.NaN,
+                located ? recordMap.getInt(base + 20) / 1e7 : Double.NaN);
+    }
+
+    private long keyAt(int i) {
+        return recordMap.getLong(HEADER + i * RECORD);
+    }
+
+    // First sorted record whose key is at least {@code key}
+    private int lowerBound(long key) {
+        int lo = 0;
+        int hi = sorted;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keyAt(mid) < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Key ranges [start, end) of the coarsest-fitting geohash cells covering
+     * the box, merged where adjacent. Boxes crossing the antimeridian are
+     * clamped to it.
+     */
+    static long[] cover(double south, double west, double north, double east) {
+        int latLo = quantize(south, 90);
+        int latHi = quantize(north, 90);
+        int lonLo = quantize(west, 180);
+        int lonHi = quantize(east, 180);
+        int shift = 0;
+        while (shift < 31 && ((long) (lonHi >>> shift) - (lonLo >>> shift) + 1)
+                * ((long) (latHi >>> shift) - (latLo >>> shift) + 1) > MAX_CELLS) {
+            shift++;
+        }
+
+        List<long[]> ranges = new ArrayList<>();
+        for (int lon = lonLo >>> shift; lon <= lonHi >>> shift; lon++) {
+            for (int lat = latLo >>> shift; lat <= latHi >>> shift; lat++) {
+                long prefix = interleave(lon, lat);
+                ranges.add(new long[] { prefix << (2 * shift), (prefix + 1) << (2 * shift) });
+            }
+        }
+        ranges.sort(Comparator.comparingLong(range -> range[0]));
+
+        long[] merged = new long[ranges.size() * 2];
+        int n = 0;
+        for (long[] range : ranges) {
+            if (n > 0 && merged[n - 1] == range[0]) {
+                merged[n - 1] = range[1];
+            } else {
+                merged[n++] = range[0];
+                merged[n++] = range[1];
+            }
+        }
+        return Arrays.copyOf(merged, n);
+    }
+
+    static long key(double latitude, double longitude) {
+        return interleave(quantize(longitude, 180), quantize(latitude, 90));
+    }
+
+    /** Standard base-32 geohash of the point, up to 12 characters. */
+    static String geohash(double latitude, double longitude, int length) {
+        long key = key(latitude, longitude);
+        char[] out = new char[length];
+        for (int i = 0; i < length; i++) {
+            out[i] = BASE32.charAt((int) (key >>> (62 - 5 * (i + 1))) & 31);
+        }
+        return new String(out);
+    }
+
+    // Maps [-range, range] onto 31 bits
+    private static int quantize(double value, double range) {
+        double cell = (value + range) / (2 * range) * (1L << 31);
+        return (int) Math.max(0, Math.min((1L << 31) - 1, Math.floor(cell)));
+    }
+
+    // Longitude bits on the odd positions, as in a geohash
+    private static long interleave(long lon, long lat) {
+        return spread(lon) << 1 | spread(lat);
+    }
+
+    private static long spread(long x) {
+        x &= 0x7FFFFFFFL;
+        x = (x | x << 16) & 0x0000FFFF0000FFFFL;
+        x = (x | x << 8) & 0x00FF00FF00FF00FFL;
+        x = (x | x << 4) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | x << 2) & 0x3333333333333333L;
+        x = (x | x << 1) & 0x5555555555555555L;
+        return x;
+    }
+
+    static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    public synchronized long getLastQueryNanos() {
+        return lastQueryNanos;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (records != null) records.close();
+        if (names != null) names.close();
+        recordMap = null;
+        nameMap = null;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "%d photos (%d sorted), last query %.2fms",
+                count, sorted, lastQueryNanos / 1e6);
+    }
+}
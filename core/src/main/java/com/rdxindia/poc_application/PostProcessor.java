@@ -0,0 +1,277 @@
+package com.rdxindia.poc_application;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the heavy part of each capture (overlay, EXIF, write) on a small pool
+ * of worker threads fed from a bounded queue, so the shutter path only has to
+ * hand a frame over. What happens when the queue is full is decided by the
+ * {@link Policy}. A job that throws, even an {@link Error}, is counted and
+ * reported to the {@link FailureListener}; the worker goes on to the next.
+ */
+public final class PostProcessor {
+
+    public enum Policy {
+        /** The submitting thread waits for a free slot. */
+        BLOCK,
+        /** The oldest queued job is discarded to make room. */
+        DROP_OLDEST,
+        /**
+         * Jobs queued while the queue is at least half full run in degraded
+         * mode; a full queue drops its oldest job like {@link #DROP_OLDEST},
+         * so the submitting thread never waits.
+         */
+        DEGRADE
+    }
+
+    public interface Job {
+        /** Does the work; {@code degraded} asks for the cheapest acceptable result. */
+        void run(boolean degraded) throws Exception;
+
+        /** Called instead of {@link #run} when the job is dropped from the queue. */
+        void onDropped();
+    }
+
+    public interface FailureListener {
+        /** Called on the worker thread when {@code job} throws {@code error}. */
+        void onFailure(Job job, Throwable error);
+    }
+
+    private static final class Entry {
+        final Job job;
+        final long submitNanos;
+        final boolean degraded;
+
+        Entry(Job job, long submitNanos, boolean degraded) {
+            this.job = job;
+            this.submitNanos = submitNanos;
+            this.degraded = degraded;
+        }
+    }
+
+    private final BlockingQueue<Entry> queue;
+    private final int capacity;
+    private final Policy policy;
+    private final Thread[] workers;
+    private volatile boolean shutdown;
+    private volatile FailureListener failureListener;
+    private volatile Throwable lastFailure;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong degraded = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private final AtomicLong lastLatencyNanos = new AtomicLong();
+
+    public PostProcessor(int workerCount, int capacity, Policy policy) {
+        if (workerCount < 1 || capacity < 1) {
+            throw new IllegalArgumentException("workerCount and capacity must be positive");
+        }
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.policy = policy;
+        this.workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Thread(this::drain, "PostProcessor-" + i);
+            workers[i].start();
+        }
+    }
+
+    /** One worker per core, with a queue a couple of bursts deep. */
+    public static PostProcessor forDevice(int capacity, Policy policy) {
+        return new PostProcessor(Runtime.getRuntime().availableProcessors(), capacity, policy);
+    }
+
+    public PostProcessor setFailureListener(FailureListener failureListener) {
+        this.failureListener = failureListener;
+        return this;
+    }
+
+    /**
+     * Queues {@code job}. Returns false if the processor has been shut down
+     * or the calling thread was interrupted while waiting for space.
+     */
+    public boolean submit(Job job) {
+        if (shutdown) return false;
+        long now = System.nanoTime();
+        try {
+            switch (policy) {
+                case DROP_OLDEST:
+                    offerDroppingOldest(new Entry(job, now, false));
+                    break;
+                case DEGRADE:
+                    boolean degrade = queue.size() >= (capacity + 1) / 2;
+                    if (degrade) degraded.incrementAndGet();
+                    offerDroppingOldest(new Entry(job, now, degrade));
+                    break;
+                default:
+                    queue.put(new Entry(job, now, false));
+                    break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        submitted.incrementAndGet();
+        updateMax(maxQueueDepth, queue.size());
+        return true;
+    }
+
+    private void offerDroppingOldest(Entry entry) {
+        while (!queue.offer(entry)) {
+            Entry oldest = queue.poll();
+            if (oldest != null) {
+                dropped.incrementAndGet();
+                oldest.job.onDropped();
+            }
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Entry entry;
+            try {
+                entry = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (entry == null) {
+                if (shutdown) return;
+                continue;
+            }
+            active.incrementAndGet();
+            try {
+                entry.job.run(entry.degraded);
+                completed.incrementAndGet();
+            } catch (Throwable e) {
+                // An Error too: one bad frame must not take the worker with it
+                failed.incrementAndGet();
+                lastFailure = e;
+                reportFailure(entry.job, e);
+            } finally {
+                active.decrementAndGet();
+            }
+            long latency = System.nanoTime() - entry.submitNanos;
+            lastLatencyNanos.set(latency);
+            totalLatencyNanos.addAndGet(latency);
+            updateMax(maxLatencyNanos, latency);
+        }
+    }
+
+    private void reportFailure(Job job, Throwable error) {
+        FailureListener listener = failureListener;
+        if (listener == null) return;
+        try {
+            listener.onFailure(job, error);
+        } catch (RuntimeException e) {
+            // Reporting must not stop the worker either
+        }
+    }
+
+    /** Stops accepting jobs; queued jobs still run. */
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    /** Waits until every queued job has finished, or the timeout expires. */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread worker : workers) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return false;
+            TimeUnit.NANOSECONDS.timedJoin(worker, remaining);
+            if (worker.isAlive()) return false;
+        }
+        return true;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth.get();
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getDegradedCount() {
+        return degraded.get();
+    }
+
+    /** What the most recent failed job threw, or null. */
+    public Throwable getLastFailure() {
+        return lastFailure;
+    }
+
+    /** Submit-to-finish time of the most recently finished job. */
+    public long getLastLatencyNanos() {
+        return lastLatencyNanos.get();
+    }
+
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos.get();
+    }
+
+    public long getAverageLatencyNanos() {
+        long finished = completed.get() + failed.get();
+        return finished == 0 ? 0 : totalLatencyNanos.get() / finished;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "queue=%d/%d max=%d active=%d done=%d failed=%d dropped=%d degraded=%d"
+                        + " latency last=%.1fms avg=%.1fms max=%.1fms",
+                getQueueDepth(), capacity, getMaxQueueDepth(), getActiveCount(),
+                getCompletedCount(), getFailedCount(), getDroppedCount(), getDegradedCount(),
+                getLastLatencyNanos() / 1e6, getAverageLatencyNanos() / 1e6,
+                getMaxLatencyNanos() / 1e6);
+    }
+
+    private static void updateMax(AtomicInteger max, int value) {
+        int current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+}
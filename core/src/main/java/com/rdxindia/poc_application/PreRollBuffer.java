@@ -0,0 +1,57 @@
+package com.rdxindia.poc_application;
+
+/**
+ * The most recent audio, kept in a fixed ring of samples so that speech
+ * that started before the onset was detected can still be handed to the
+ * recognizer. Not thread-safe.
+ */
+public final class PreRollBuffer {
+
+    private final short[] ring;
+    private int head;
+    private int size;
+
+    public PreRollBuffer(int capacitySamples) {
+        ring = new short[capacitySamples];
+    }
+
+    public void write(short[] samples, int offset, int length) {
+        if (length >= ring.length) {
+            // Only the tail fits
+            System.arraycopy(samples, offset + length - ring.length, ring, 0, ring.length);
+            head = 0;
+            size = ring.length;
+            return;
+        }
+        int first = Math.min(length, ring.length - head);
+        System.arraycopy(samples, offset, ring, head, first);
+        System.arraycopy(samples, offset + first, ring, 0, length - first);
+        head = (head + length) % ring.length;
+        size = Math.min(ring.length, size + length);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return ring.length;
+    }
+
+    /** Copies the buffered samples, oldest first, into {@code out} and empties the buffer. */
+    public int drainTo(short[] out) {
+        int count = Math.min(size, out.length);
+        int start = (head - size + ring.length) % ring.length;
+        // Skip the oldest samples that do not fit
+        start = (start + size - count) % ring.length;
+        int first = Math.min(count, ring.length - start);
+        System.arraycopy(ring, start, out, 0, first);
+        System.arraycopy(ring, 0, out, first, count - first);
+        size = 0;
+        return count;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
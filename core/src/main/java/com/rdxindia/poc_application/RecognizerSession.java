@@ -0,0 +1,376 @@
+package com.rdxindia.poc_application;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+/**
+ * Lifecycle of the speech recognizer across utterances. One recognizer is
+ * reused for every listening window and only recreated after a fatal error
+ * or when it never becomes ready. Restarts go through a single pending slot,
+ * so at most one is ever scheduled, and their delay backs off per error
+ * class with jitter.
+ * <p>
+ * When {@link #setGated gated}, a due restart does not listen: the session
+ * parks in {@link State#WAITING_FOR_SPEECH} with the recognizer idle until
+ * a voice activity gate reports {@link #onSpeechOnset()}.
+ * <p>
+ * The recognizer itself is reached through a {@link Driver}, timers through
+ * a {@link Scheduler}; all methods must be called on the scheduler's thread.
+ */
+public final class RecognizerSession {
+
+    public enum State {
+        /** No recognizer exists. */
+        IDLE,
+        /** startListening was called; waiting for ready-for-speech. */
+        STARTING,
+        LISTENING,
+        IN_SPEECH,
+        /** End of speech seen; waiting for results or an error. */
+        PROCESSING,
+        RESTART_PENDING,
+        /** Gated; the recognizer is idle until speech onset. */
+        WAITING_FOR_SPEECH,
+        STOPPED
+    }
+
+    public enum ErrorClass {
+        /** Nothing was said or understood; listen again right away. */
+        BENIGN(50, 50),
+        /** Recognizer busy or rate limited; same recognizer, growing delay. */
+        TRANSIENT(250, 8_000),
+        /** Client, audio or service failure; recreate the recognizer. */
+        FATAL(500, 30_000),
+        /** Missing permission; retry rarely until it is granted. */
+        PERMISSION(10_000, 120_000);
+
+        final long baseMillis;
+        final long maxMillis;
+
+        ErrorClass(long baseMillis, long maxMillis) {
+            this.baseMillis = baseMillis;
+            this.maxMillis = maxMillis;
+        }
+    }
+
+    public interface Driver {
+        void create();
+
+        void destroy();
+
+        void startListening();
+
+        void cancel();
+
+        /** The recognizer went idle; report {@link #onSpeechOnset()} when someone talks. */
+        void awaitSpeech();
+    }
+
+    public interface Scheduler {
+        void schedule(Runnable task, long delayMillis);
+
+        void cancel(Runnable task);
+    }
+
+    /** Recognizers that are not ready after this long are recreated. */
+    public static final long READY_TIMEOUT_MILLIS = 5_000;
+    /** Delay before listening again after a result. */
+    public static final long RESULT_RESTART_MILLIS = 0;
+
+    private final Driver driver;
+    private final Scheduler scheduler;
+    private final LongSupplier nanoClock;
+    private final Random random;
+
+    private final Runnable restartTask = this::restartNow;
+    private final Runnable readyTimeoutTask = this::onReadyTimeout;
+    private final int[] consecutiveErrors = new int[ErrorClass.values().length];
+
+    private State state = State.IDLE;
+    private boolean created;
+    private boolean recreatePending;
+    private boolean gated;
+
+    private long sessionStartNanos = -1;
+    private long listenCalledNanos;
+    private long windowEndNanos = -1;
+    private long restartCount;
+    private long recreateCount;
+    private long onsetCount;
+    private long waitStartNanos = -1;
+    private long totalWaitNanos;
+    private final long[] errorCounts = new long[ErrorClass.values().length];
+    private long lastTimeToReadyNanos;
+    private long totalTimeToReadyNanos;
+    private long maxTimeToReadyNanos;
+    private long readyCount;
+    private long lastDeadTimeNanos;
+    private long totalDeadTimeNanos;
+    private long deadTimeCount;
+
+    public RecognizerSession(Driver driver, Scheduler scheduler, LongSupplier nanoClock,
+                             Random random) {
+        this.driver = driver;
+        this.scheduler = scheduler;
+        this.nanoClock = nanoClock;
+        this.random = random;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Restarts wait for {@link #onSpeechOnset()} while gated. Turning the gate
+     * off while waiting listens right away.
+     */
+    public void setGated(boolean gated) {
+        this.gated = gated;
+        if (!gated && state == State.WAITING_FOR_SPEECH) onSpeechOnset();
+    }
+
+    public boolean isGated() {
+        return gated;
+    }
+
+    /** Creates the recognizer and starts the first listening window, or waits for speech. */
+    public void start() {
+        if (state != State.IDLE && state != State.STOPPED) return;
+        sessionStartNanos = nanoClock.getAsLong();
+        state = State.IDLE;
+        if (gated) {
+            driver.create();
+            created = true;
+            awaitSpeech();
+        } else {
+            listen(true);
+        }
+    }
+
+    /** Cancels pending work and destroys the recognizer. */
+    public void stop() {
+        scheduler.cancel(restartTask);
+        scheduler.cancel(readyTimeoutTask);
+        if (created) {
+            driver.destroy();
+            created = false;
+        }
+        if (state == State.WAITING_FOR_SPEECH) endWait();
+        state = State.STOPPED;
+    }
+
+    public void onReadyForSpeech() {
+        if (state != State.STARTING) return;
+        scheduler.cancel(readyTimeoutTask);
+        long now = nanoClock.getAsLong();
+        lastTimeToReadyNanos = now - listenCalledNanos;
+        totalTimeToReadyNanos += lastTimeToReadyNanos;
+        maxTimeToReadyNanos = Math.max(maxTimeToReadyNanos, lastTimeToReadyNanos);
+        readyCount++;
+        if (windowEndNanos >= 0) {
+            lastDeadTimeNanos = now - windowEndNanos;
+            totalDeadTimeNanos += lastDeadTimeNanos;
+            deadTimeCount++;
+        }
+        state = State.LISTENING;
+    }
+
+    public void onBeginningOfSpeech() {
+        if (state == State.LISTENING || state == State.STARTING) state = State.IN_SPEECH;
+    }
+
+    /** End of speech only moves on; the restart waits for results or an error. */
+    public void onEndOfSpeech() {
+        if (state == State.IN_SPEECH || state == State.LISTENING) state = State.PROCESSING;
+    }
+
+    public void onResults() {
+        if (!isActive()) return;
+        endWindow();
+        Arrays.fill(consecutiveErrors, 0);
+        requestRestart(RESULT_RESTART_MILLIS, false);
+    }
+
+    public void onError(ErrorClass errorClass) {
+        boolean recreate = errorClass == ErrorClass.FATAL || errorClass == ErrorClass.PERMISSION;
+        if (state == State.RESTART_PENDING) {
+            // Late error from the window that already ended; never schedule a second restart
+            errorCounts[errorClass.ordinal()]++;
+            recreatePending |= recreate;
+            return;
+        }
+        if (!isActive()) return;
+        endWindow();
+        errorCounts[errorClass.ordinal()]++;
+        int attempt = consecutiveErrors[errorClass.ordinal()]++;
+        if (errorClass != ErrorClass.BENIGN) {
+            // Another class of failure means the earlier streak is over
+            for (ErrorClass other : ErrorClass.values()) {
+                if (other != errorClass) consecutiveErrors[other.ordinal()] = 0;
+            }
+        }
+        if (errorClass == ErrorClass.TRANSIENT && created) {
+            driver.cancel();
+        }
+        requestRestart(backoffMillis(errorClass, attempt), recreate);
+    }
+
+    /**
+     * Delay for the {@code attempt}-th consecutive error of a class: the base
+     * doubled per attempt up to the class maximum, with the upper half
+     * randomized so clients that failed together do not retry together.
+     */
+    long backoffMillis(ErrorClass errorClass, int attempt) {
+        long delay = errorClass.baseMillis << Math.min(attempt, 20);
+        delay = Math.min(delay, errorClass.maxMillis);
+        long half = delay / 2;
+        return half + (half > 0 ? (long) (random.nextDouble() * (delay - half + 1)) : 0);
+    }
+
+    private boolean isActive() {
+        return state == State.STARTING || state == State.LISTENING
+                || state == State.IN_SPEECH || state == State.PROCESSING;
+    }
+
+    private void endWindow() {
+        scheduler.cancel(readyTimeoutTask);
+        windowEndNanos = nanoClock.getAsLong();
+    }
+
+    // The single pending restart absorbs later requests; a recreate is never downgraded
+    private void requestRestart(long delayMillis, boolean recreate) {
+        recreatePending |= recreate;
+        scheduler.cancel(restartTask);
+        state = State.RESTART_PENDING;
+        scheduler.schedule(restartTask, delayMillis);
+    }
+
+    private void restartNow() {
+        if (state != State.RESTART_PENDING) return;
+        if (gated) {
+            awaitSpeech();
+            return;
+        }
+        restartCount++;
+        boolean recreate = recreatePending;
+        recreatePending = false;
+        listen(recreate);
+    }
+
+    private void awaitSpeech() {
+        state = State.WAITING_FOR_SPEECH;
+        waitStartNanos = nanoClock.getAsLong();
+        driver.awaitSpeech();
+    }
+
+    private void endWait() {
+        totalWaitNanos += nanoClock.getAsLong() - waitStartNanos;
+        waitStartNanos = -1;
+    }
+
+    /**
+     * Speech started while the recognizer was idle. Dead time is then counted
+     * from the onset, since nothing was lost before it.
+     */
+    public void onSpeechOnset() {
+        if (state != State.WAITING_FOR_SPEECH) return;
+        endWait();
+        onsetCount++;
+        restartCount++;
+        windowEndNanos = nanoClock.getAsLong();
+        boolean recreate = recreatePending;
+        recreatePending = false;
+        listen(recreate);
+    }
+
+    private void listen(boolean recreate) {
+        if (recreate || !created) {
+            if (created) {
+                driver.destroy();
+                recreateCount++;
+            }
+            driver.create();
+            created = true;
+        }
+        state = State.STARTING;
+        listenCalledNanos = nanoClock.getAsLong();
+        scheduler.schedule(readyTimeoutTask, READY_TIMEOUT_MILLIS);
+        driver.startListening();
+    }
+
+    private void onReadyTimeout() {
+        if (state != State.STARTING) return;
+        endWindow();
+        errorCounts[ErrorClass.FATAL.ordinal()]++;
+        requestRestart(0, true);
+    }
+
+    public long getRestartCount() {
+        return restartCount;
+    }
+
+    public long getRecreateCount() {
+        return recreateCount;
+    }
+
+    public long getOnsetCount() {
+        return onsetCount;
+    }
+
+    /** Share of the session spent waiting for speech with the recognizer idle. */
+    public double getIdleRatio() {
+        if (sessionStartNanos < 0) return 0;
+        long now = nanoClock.getAsLong();
+        long elapsed = now - sessionStartNanos;
+        long waited = totalWaitNanos + (waitStartNanos >= 0 ? now - waitStartNanos : 0);
+        return elapsed <= 0 ? 0 : (double) waited / elapsed;
+    }
+
+    public long getErrorCount(ErrorClass errorClass) {
+        return errorCounts[errorClass.ordinal()];
+    }
+
+    /** Restarts per minute since {@link #start()}. */
+    public double getRestartsPerMinute() {
+        if (sessionStartNanos < 0) return 0;
+        long elapsed = nanoClock.getAsLong() - sessionStartNanos;
+        return elapsed <= 0 ? 0 : restartCount * 60e9 / elapsed;
+    }
+
+    /** startListening to ready-for-speech of the latest window. */
+    public long getLastTimeToReadyNanos() {
+        return lastTimeToReadyNanos;
+    }
+
+    public long getAverageTimeToReadyNanos() {
+        return readyCount == 0 ? 0 : totalTimeToReadyNanos / readyCount;
+    }
+
+    public long getMaxTimeToReadyNanos() {
+        return maxTimeToReadyNanos;
+    }
+
+    /** Time nobody was listening between the end of one window and the next ready. */
+    public long getLastDeadTimeNanos() {
+        return lastDeadTimeNanos;
+    }
+
+    public long getAverageDeadTimeNanos() {
+        return deadTimeCount == 0 ? 0 : totalDeadTimeNanos / deadTimeCount;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "%s restarts=%d (%.1f/min) recreated=%d errors=%d/%d/%d/%d"
+                        + " ready last=%.0fms avg=%.0fms max=%.0fms dead last=%.0fms avg=%.0fms"
+                        + " onsets=%d idle=%.0f%%",
+                state, restartCount, getRestartsPerMinute(), recreateCount,
+                errorCounts[0], errorCounts[1], errorCounts[2], errorCounts[3],
+                lastTimeToReadyNanos / 1e6, getAverageTimeToReadyNanos() / 1e6,
+                maxTimeToReadyNanos / 1e6, lastDeadTimeNanos / 1e6,
+                getAverageDeadTimeNanos() / 1e6, onsetCount, getIdleRatio() * 100);
+    }
+}
@@ -0,0 +1,217 @@
+package com.rdxindia.poc_application;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.util.Locale;
+
+/**
+ * Uploads {@link ExportSegment}s in chunks to an HTTP endpoint that keeps
+ * what it has received, so an interrupted upload goes on from the last byte
+ * the server has rather than from the start. The protocol, per segment at
+ * {@code <endpoint>/<segment name>}:
+ * <ul>
+ * <li>{@code HEAD} answers 200 with {@code Upload-Offset}, the bytes
+ * already stored, or 404 for none.</li>
+ * <li>{@code PUT} with {@code Content-Range: bytes <first>-<last>/<total>}
+ * appends the chunk and answers with the new {@code Upload-Offset}: 204
+ * while more is expected, 200 or 201 once the segment is whole. A 409 means
+ * the chunk did not start at the server's offset, which it gives in
+ * {@code Upload-Offset}.</li>
+ * </ul>
+ * A chunk that fails, or that the server answers without moving its
+ * offset forward, is retried from whatever offset the server then reports,
+ * a few times with a growing pause. Thread interruption stops an
+ * upload between chunks.
+ */
+public final class SegmentUploader {
+
+    public static final String OFFSET_HEADER = "Upload-Offset";
+
+    public interface Progress {
+        /** {@code sent} of {@code length} bytes of {@code segment} are on the server. */
+        void onProgress(ExportSegment segment, long sent, long length);
+    }
+
+    private final String endpoint;
+    private final int chunkBytes;
+    private final int maxAttempts;
+    private final long retryDelayMillis;
+    private int timeoutMillis = 30_000;
+
+    private long bytesSent;
+    private long bytesSkipped;
+    private long chunkCount;
+    private long retryCount;
+    private long sendNanos;
+
+    /**
+     * @param endpoint         base URL the segment names are appended to
+     * @param chunkBytes       bytes per PUT
+     * @param maxAttempts      tries per chunk before the upload fails
+     * @param retryDelayMillis pause before the first retry, doubled for each one after
+     */
+    public SegmentUploader(String endpoint, int chunkBytes, int maxAttempts,
+                           long retryDelayMillis) {
+        if (chunkBytes < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException(chunkBytes + " bytes, " + maxAttempts + " tries");
+        }
+        this.endpoint = endpoint.endsWith("/") ? endpoint : endpoint + "/";
+        this.chunkBytes = chunkBytes;
+        this.maxAttempts = maxAttempts;
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    /** Connect and read timeout for every request. */
+    public SegmentUploader setTimeoutMillis(int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        return this;
+    }
+
+    /**
+     * Sends whatever of {@code segment} the server does not have yet.
+     *
+     * @return bytes the server already had when the upload started
+     */
+    public long upload(ExportSegment segment, Progress progress) throws IOException {
+        URL url = new URL(endpoint + segment.getName());
+        long length = segment.length();
+        long offset = queryOffset(url);
+        long resumedAt = offset;
+        bytesSkipped += Math.min(offset, length);
+        int failures = 0;
+        while (offset < length) {
+            if (Thread.interrupted()) throw new InterruptedIOException("Upload interrupted");
+            long count = Math.min(chunkBytes, length - offset);
+            long stored;
+            try {
+                long start = System.nanoTime();
+                stored = putChunk(url, segment, offset, count, length);
+                sendNanos += System.nanoTime() - start;
+            } catch (IOException e) {
+                if (e instanceof InterruptedIOException || ++failures >= maxAttempts) throw e;
+                retryCount++;
+                pause(retryDelayMillis << (failures - 1));
+                offset = queryOffset(url);
+                if (progress != null) progress.onProgress(segment, offset, length);
+                continue;
+            }
+            if (stored > offset) {
+                bytesSent += Math.min(stored, offset + count) - offset;
+                chunkCount++;
+                failures = 0;
+            } else if (++failures >= maxAttempts) {
+                // A server that answers without taking the chunk would otherwise hold us forever
+                throw new IOException(String.format(Locale.US,
+                        "PUT %s: no progress past byte %d in %d tries", url, offset, failures));
+            } else {
+                retryCount++;
+                pause(retryDelayMillis << (failures - 1));
+            }
+            offset = stored;
+            if (progress != null) progress.onProgress(segment, offset, length);
+        }
+        return resumedAt;
+    }
+
+    private long queryOffset(URL url) throws IOException {
+        HttpURLConnection connection = open(url, "HEAD");
+        try {
+            int code = connection.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_FOUND) return 0;
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HEAD " + url + ": HTTP " + code);
+            }
+            return offsetOf(connection, url);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    // Sends bytes [offset, offset + count) and returns the server's new offset
+    private long putChunk(URL url, ExportSegment segment, long offset, long count, long length)
+            throws IOException {
+        HttpURLConnection connection = open(url, "PUT");
+        try {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(count);
+            connection.setRequestProperty("Content-Type", "application/x-tar");
+            connection.setRequestProperty("Content-Range", String.format(Locale.US,
+                    "bytes %d-%d/%d", offset, offset + count - 1, length));
+            try (OutputStream body = connection.getOutputStream()) {
+                segment.transferTo(offset, count, Channels.newChannel(body));
+            }
+            int code = connection.getResponseCode();
+            switch (code) {
+                case HttpURLConnection.HTTP_OK:
+                case HttpURLConnection.HTTP_CREATED:
+                case HttpURLConnection.HTTP_NO_CONTENT:
+                case HttpURLConnection.HTTP_CONFLICT:
+                    return offsetOf(connection, url);
+                default:
+                    throw new IOException("PUT " + url + ": HTTP " + code);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private HttpURLConnection open(URL url, String method) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        connection.setUseCaches(false);
+        return connection;
+    }
+
+    private static long offsetOf(HttpURLConnection connection, URL url) throws IOException {
+        String value = connection.getHeaderField(OFFSET_HEADER);
+        try {
+            long offset = value == null ? -1 : Long.parseLong(value.trim());
+            if (offset >= 0) return offset;
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IOException(url + " sent no usable " + OFFSET_HEADER + ": " + value);
+    }
+
+    private static void pause(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Upload interrupted");
+        }
+    }
+
+    /** Bytes the server acknowledged, over every upload. */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /** Bytes not sent because the server had them from an earlier run. */
+    public long getBytesSkipped() {
+        return bytesSkipped;
+    }
+
+    public long getRetryCount() {
+        return retryCount;
+    }
+
+    /** Acknowledged bytes per second of time spent in PUTs. */
+    public double getThroughput() {
+        return sendNanos == 0 ? 0 : bytesSent * 1e9 / sendNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "%.1fMB sent in %d chunks at %.1fMB/s, %.1fMB resumed, %d retries",
+                bytesSent / 1e6, chunkCount, getThroughput() / 1e6, bytesSkipped / 1e6,
+                retryCount);
+    }
+}
@@ -0,0 +1,62 @@
+package com.rdxindia.poc_application;
+
+import java.util.Locale;
+
+/**
+ * Measures how long each consecutive stage of a single capture takes.
+ * Call {@link #mark(String)} at the end of every stage; the time since the
+ * previous mark (or construction) is attributed to that stage.
+ */
+public class StageTimer {
+
+    private static final int MAX_STAGES = 16;
+
+    private final String[] stages = new String[MAX_STAGES];
+    private final long[] durationsNanos = new long[MAX_STAGES];
+    private final long startNanos;
+    private long lastNanos;
+    private int count;
+
+    public StageTimer() {
+        startNanos = System.nanoTime();
+        lastNanos = startNanos;
+    }
+
+    public void mark(String stage) {
+        long now = System.nanoTime();
+        if (count < MAX_STAGES) {
+            stages[count] = stage;
+            durationsNanos[count] = now - lastNanos;
+            count++;
+        }
+        lastNanos = now;
+    }
+
+    public int getStageCount() {
+        return count;
+    }
+
+    public String getStage(int index) {
+        return stages[index];
+    }
+
+    public long getStageNanos(int index) {
+        return durationsNanos[index];
+    }
+
+    public long getTotalNanos() {
+        return lastNanos - startNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(stages[i]).append('=')
+                    .append(String.format(Locale.US, "%.1fms", durationsNanos[i] / 1e6))
+                    .append(' ');
+        }
+        sb.append(String.format(Locale.US, "total=%.1fms", getTotalNanos() / 1e6));
+        return sb.toString();
+    }
+}
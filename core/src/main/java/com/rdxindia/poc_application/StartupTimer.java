@@ -0,0 +1,84 @@
+package com.rdxindia.poc_application;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+/**
+ * Times one start of the camera screen, from the process start for a cold
+ * start or from the activity's creation for a warm one. Each
+ * {@link Milestone} is stamped the first time it is reached; later marks
+ * are ignored, so a rebind or a second preview does not move them.
+ */
+public final class StartupTimer {
+
+    public enum Milestone {
+        /** Application.onCreate ran. */
+        APPLICATION,
+        /** The activity was created. */
+        ACTIVITY,
+        /** The camera provider finished initializing. */
+        PROVIDER,
+        /** The use cases were bound. */
+        BOUND,
+        /** The camera is open, so a capture can be taken. */
+        CAPTURE_READY,
+        /** The preview showed its first frame. */
+        FIRST_FRAME
+    }
+
+    private static final Milestone[] MILESTONES = Milestone.values();
+
+    private final LongSupplier clock;
+    private final long originNanos;
+    private final boolean cold;
+    private final long[] stamps = new long[MILESTONES.length];
+
+    /**
+     * @param originNanos on {@code clock}'s time base, when the start began
+     * @param cold        whether the process started for it
+     */
+    public StartupTimer(LongSupplier clock, long originNanos, boolean cold) {
+        this.clock = clock;
+        this.originNanos = originNanos;
+        this.cold = cold;
+        Arrays.fill(stamps, -1);
+    }
+
+    /** Stamps {@code milestone} unless already reached; returns whether it was stamped. */
+    public boolean mark(Milestone milestone) {
+        if (stamps[milestone.ordinal()] >= 0) return false;
+        stamps[milestone.ordinal()] = Math.max(0, clock.getAsLong() - originNanos);
+        return true;
+    }
+
+    public boolean isCold() {
+        return cold;
+    }
+
+    public boolean reached(Milestone milestone) {
+        return stamps[milestone.ordinal()] >= 0;
+    }
+
+    /** Time from the origin to {@code milestone}, or -1 if not reached yet. */
+    public long getNanos(Milestone milestone) {
+        return stamps[milestone.ordinal()];
+    }
+
+    /** Whether the preview is showing and a capture can be taken. */
+    public boolean isComplete() {
+        return reached(Milestone.CAPTURE_READY) && reached(Milestone.FIRST_FRAME);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(cold ? "cold" : "warm");
+        for (Milestone milestone : MILESTONES) {
+            long nanos = stamps[milestone.ordinal()];
+            if (nanos < 0) continue;
+            sb.append(String.format(Locale.US, " %s=%.0fms",
+                    milestone.name().toLowerCase(Locale.US), nanos / 1e6));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,232 @@
+package com.rdxindia.poc_application;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * On-disk tier of the thumbnail cache: encoded thumbnails packed back to back
+ * in {@code thumbs.pack}, located through the fixed-size offset records in
+ * {@code thumbs.idx}. Reads are slices of a memory mapping of the pack, so
+ * paging a screenful of thumbnails in costs no system calls and no copies.
+ *
+ * <p>A pack entry is the name's length and UTF-8 bytes followed by the
+ * data's length and bytes. An index record (hash of the name, entry offset,
+ * entry length) is written after its entry, so a torn append is simply not
+ * indexed. Replaced entries stay in the pack until {@link #compact}.
+ */
+public final class ThumbnailPack implements Closeable {
+
+    private static final int RECORD = 24;
+
+    private final File dir;
+    private FileChannel pack;
+    private FileChannel index;
+    private MappedByteBuffer map;
+    private long packSize;
+    private int records;
+    private long liveBytes;
+    // Name hash -> entry offset; collisions are resolved by the name in the entry
+    private final Map<Long, Long> offsets = new HashMap<>();
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD);
+
+    private ThumbnailPack(File dir) {
+        this.dir = dir;
+    }
+
+    public static ThumbnailPack open(File dir) throws IOException {
+        ThumbnailPack thumbs = new ThumbnailPack(dir);
+        thumbs.openFiles();
+        return thumbs;
+    }
+
+    private void openFiles() throws IOException {
+        dir.mkdirs();
+        pack = FileChannel.open(new File(dir, "thumbs.pack").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = FileChannel.open(new File(dir, "thumbs.idx").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        packSize = pack.size();
+        offsets.clear();
+        liveBytes = 0;
+
+        int count = (int) (index.size() / RECORD);
+        ByteBuffer all = ByteBuffer.allocate(count * RECORD);
+        while (all.hasRemaining() && index.read(all, all.position()) > 0) {
+            // Keep reading until the whole index is in
+        }
+        all.flip();
+        Map<Long, Integer> lengths = new HashMap<>();
+        long end = 0;
+        records = 0;
+        for (int i = 0; i < count; i++) {
+            long hash = all.getLong();
+            long offset = all.getLong();
+            int length = all.getInt();
+            all.getInt();
+            if (offset + length > packSize) break;
+            records++;
+            Long previous = offsets.put(hash, offset);
+            Integer previousLength = lengths.put(hash, length);
+            if (previous != null) liveBytes -= previousLength;
+            liveBytes += length;
+            end = Math.max(end, offset + length);
+        }
+        // Drop a torn tail from either file
+        index.truncate((long) records * RECORD);
+        pack.truncate(end);
+        packSize = end;
+        map = null;
+    }
+
+    /** Stores {@code data} under {@code name}, replacing any earlier entry. */
+    public synchronized void put(String name, byte[] data, int offset, int length)
+            throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int entryLength = 2 + nameBytes.length + 4 + length;
+        ByteBuffer entry = ByteBuffer.allocate(entryLength);
+        entry.putShort((short) nameBytes.length).put(nameBytes)
+                .putInt(length).put(data, offset, length).flip();
+        long entryOffset = packSize;
+        while (entry.hasRemaining()) {
+            pack.write(entry, entryOffset + entry.position());
+        }
+
+        long hash = hash(name);
+        record.clear();
+        record.putLong(hash).putLong(entryOffset).putInt(entryLength).putInt(0).flip();
+        while (record.hasRemaining()) {
+            index.write(record, (long) records * RECORD + record.position());
+        }
+        records++;
+        packSize += entryLength;
+
+        Long previous = offsets.put(hash, entryOffset);
+        if (previous != null) liveBytes -= entryLengthAt(previous);
+        liveBytes += entryLength;
+    }
+
+    /** Read-only view of the data stored under {@code name}, or null. */
+    public synchronized ByteBuffer get(String name) throws IOException {
+        Long offset = offsets.get(hash(name));
+        if (offset == null) return null;
+        ByteBuffer mapped = mapped();
+        int at = (int) (long) offset;
+        int nameLength = mapped.getShort(at) & 0xFFFF;
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int dataAt = at + 2 + nameLength + 4;
+        if (nameLength != nameBytes.length || dataAt > mapped.capacity()) return null;
+        for (int i = 0; i < nameLength; i++) {
+            if (mapped.get(at + 2 + i) != nameBytes[i]) return null;
+        }
+        int length = mapped.getInt(dataAt - 4);
+        if (length < 0 || dataAt + (long) length > mapped.capacity()) return null;
+        ByteBuffer slice = mapped.duplicate();
+        slice.limit(dataAt + length).position(dataAt);
+        return slice.slice();
+    }
+
+    public synchronized boolean contains(String name) throws IOException {
+        return get(name) != null;
+    }
+
+    private int entryLengthAt(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(2);
+        pack.read(header, offset);
+        int nameLength = header.getShort(0) & 0xFFFF;
+        ByteBuffer length = ByteBuffer.allocate(4);
+        pack.read(length, offset + 2 + nameLength);
+        return 2 + nameLength + 4 + length.getInt(0);
+    }
+
+    private ByteBuffer mapped() throws IOException {
+        if (map == null || map.capacity() < packSize) {
+            map = pack.map(FileChannel.MapMode.READ_ONLY, 0, packSize);
+        }
+        return map;
+    }
+
+    /** Rewrites the pack with only the current entries once most of it is dead. */
+    public synchronized boolean compactIfWasteful() throws IOException {
+        if (packSize < 64 * 1024 || liveBytes * 2 > packSize) return false;
+        compact();
+        return true;
+    }
+
+    public synchronized void compact() throws IOException {
+        ByteBuffer mapped = mapped();
+        File packTemp = new File(dir, "thumbs.pack.tmp");
+        File indexTemp = new File(dir, "thumbs.idx.tmp");
+        try (FileChannel newPack = FileChannel.open(packTemp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             FileChannel newIndex = FileChannel.open(indexTemp.toPath(), StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long position = 0;
+            for (Map.Entry<Long, Long> e : offsets.entrySet()) {
+                int at = (int) (long) e.getValue();
+                int length = entryLengthAt(at);
+                ByteBuffer entry = mapped.duplicate();
+                entry.limit(at + length).position(at);
+                while (entry.hasRemaining()) newPack.write(entry);
+                record.clear();
+                record.putLong(e.getKey()).putLong(position).putInt(length).putInt(0).flip();
+                while (record.hasRemaining()) newIndex.write(record);
+                position += length;
+            }
+            newPack.force(false);
+            newIndex.force(false);
+        }
+        close();
+        // The pack goes first: an old index over a new pack fails the name checks
+        Files.move(packTemp.toPath(), new File(dir, "thumbs.pack").toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Files.move(indexTemp.toPath(), new File(dir, "thumbs.idx").toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        openFiles();
+    }
+
+    // 64-bit FNV-1a
+    static long hash(String name) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            h ^= name.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    public synchronized int size() {
+        return offsets.size();
+    }
+
+    public synchronized long getFileBytes() {
+        return packSize;
+    }
+
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        map = null;
+        if (pack != null) pack.close();
+        if (index != null) index.close();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "%d thumbnails, %.1f/%.1f KB live",
+                offsets.size(), liveBytes / 1024.0, packSize / 1024.0);
+    }
+}
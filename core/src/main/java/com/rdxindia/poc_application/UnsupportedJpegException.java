@@ -0,0 +1,17 @@
+package com.rdxindia.poc_application;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a JPEG uses a feature the streaming rewriters do not handle
+ * (progressive coding, 12-bit samples, CMYK, ...). Callers fall back to a
+ * full decode in that case.
+ */
+public class UnsupportedJpegException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UnsupportedJpegException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,159 @@
+package com.rdxindia.poc_application;
+
+import java.util.Locale;
+
+/**
+ * Cheap speech detector for 16-bit PCM, one fixed-size frame at a time.
+ * A frame counts as speech when its energy is well above the tracked noise
+ * floor and its zero-crossing rate is not that of hiss; a run of such
+ * frames is an onset, and a long enough run without them ends the speech.
+ * <p>
+ * The noise floor follows quiet frames down quickly and creeps up slowly,
+ * also during speech, so a fan or engine that starts up is absorbed as
+ * background within a few seconds instead of holding the gate open.
+ * Not thread-safe; feed it from the audio thread.
+ */
+public final class VoiceActivityDetector {
+
+    public enum Event { NONE, ONSET, END }
+
+    // Energy over the floor that starts speech, and that keeps it going
+    private static final double ONSET_MARGIN_DB = 9;
+    private static final double HOLD_MARGIN_DB = 5;
+    // Loud enough to count whatever the zero-crossing rate
+    private static final double STRONG_MARGIN_DB = 20;
+    private static final double MAX_ZERO_CROSSING_RATE = 0.35;
+    // Below this nothing is speech, however quiet the room
+    private static final double MIN_SPEECH_DB = -55;
+    private static final double MIN_FLOOR_DB = -80;
+    private static final double FLOOR_FALL = 0.3;
+    private static final double FLOOR_RISE = 0.02;
+    private static final double FLOOR_RISE_IN_SPEECH = 0.002;
+
+    private final int frameSamples;
+    private final int onsetFrames;
+    private final int hangoverFrames;
+
+    private boolean speech;
+    private int run;
+    private double noiseFloorDb = Double.NaN;
+    private double lastEnergyDb;
+    private double lastZeroCrossingRate;
+    private long frames;
+    private long speechFrames;
+    private long onsets;
+
+    /**
+     * @param onsetMillis    voiced time needed before speech is reported
+     * @param hangoverMillis quiet time needed before speech is over
+     */
+    public VoiceActivityDetector(int sampleRate, int frameSamples, int onsetMillis,
+                                 int hangoverMillis) {
+        this.frameSamples = frameSamples;
+        int frameMillis = Math.max(1, frameSamples * 1000 / sampleRate);
+        this.onsetFrames = Math.max(1, onsetMillis / frameMillis);
+        this.hangoverFrames = Math.max(1, hangoverMillis / frameMillis);
+    }
+
+    public int getFrameSamples() {
+        return frameSamples;
+    }
+
+    /** Classifies one frame of {@link #getFrameSamples()} samples. */
+    public Event process(short[] samples, int offset) {
+        long sumSquares = 0;
+        int crossings = 0;
+        int previous = samples[offset];
+        for (int i = offset; i < offset + frameSamples; i++) {
+            int s = samples[i];
+            sumSquares += (long) s * s;
+            if ((s ^ previous) < 0) crossings++;
+            previous = s;
+        }
+        double meanSquare = sumSquares / (double) frameSamples / (32768.0 * 32768.0);
+        double energyDb = 10 * Math.log10(meanSquare + 1e-10);
+        double zcr = crossings / (double) frameSamples;
+        lastEnergyDb = energyDb;
+        lastZeroCrossingRate = zcr;
+        frames++;
+
+        if (Double.isNaN(noiseFloorDb)) noiseFloorDb = Math.max(energyDb, MIN_FLOOR_DB);
+        double above = energyDb - noiseFloorDb;
+        boolean voiced = energyDb >= MIN_SPEECH_DB
+                && (above >= STRONG_MARGIN_DB
+                || (above >= (speech ? HOLD_MARGIN_DB : ONSET_MARGIN_DB)
+                && zcr <= MAX_ZERO_CROSSING_RATE));
+        trackFloor(energyDb, voiced);
+
+        Event event = Event.NONE;
+        if (!speech) {
+            run = voiced ? run + 1 : 0;
+            if (run >= onsetFrames) {
+                speech = true;
+                run = 0;
+                onsets++;
+                event = Event.ONSET;
+            }
+        } else {
+            run = voiced ? 0 : run + 1;
+            if (run >= hangoverFrames) {
+                speech = false;
+                run = 0;
+                event = Event.END;
+            }
+        }
+        if (speech) speechFrames++;
+        return event;
+    }
+
+    private void trackFloor(double energyDb, boolean voiced) {
+        double delta = energyDb - noiseFloorDb;
+        if (delta < 0) {
+            noiseFloorDb += FLOOR_FALL * delta;
+        } else {
+            noiseFloorDb += (voiced || speech ? FLOOR_RISE_IN_SPEECH : FLOOR_RISE) * delta;
+        }
+        noiseFloorDb = Math.max(noiseFloorDb, MIN_FLOOR_DB);
+    }
+
+    /** Ends any speech in progress, e.g. when the recognizer took over. Keeps the floor. */
+    public void reset() {
+        speech = false;
+        run = 0;
+    }
+
+    public boolean isSpeech() {
+        return speech;
+    }
+
+    public double getNoiseFloorDb() {
+        return noiseFloorDb;
+    }
+
+    public double getLastEnergyDb() {
+        return lastEnergyDb;
+    }
+
+    public double getLastZeroCrossingRate() {
+        return lastZeroCrossingRate;
+    }
+
+    public long getFrameCount() {
+        return frames;
+    }
+
+    public long getOnsetCount() {
+        return onsets;
+    }
+
+    /** Share of frames spent in speech; what is left of the recognizer's duty cycle. */
+    public double getSpeechRatio() {
+        return frames == 0 ? 0 : (double) speechFrames / frames;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "floor=%.1fdB onsets=%d speech=%.1f%% of %d frames",
+                noiseFloorDb, onsets, getSpeechRatio() * 100, frames);
+    }
+}
@@ -0,0 +1,161 @@
+package com.rdxindia.poc_application;
+
+/**
+ * The voice commands understood by the app and the phrases that trigger
+ * them. Commands are delivered over the in-process {@link CommandBus}; the
+ * VOICE_COMMAND broadcast is kept only to compare delivery latency, with the
+ * command name in the "command" extra and spoken numbers in "value" and
+ * "secondValue".
+ */
+public final class VoiceCommands {
+
+    /** Send commands as a system broadcast instead of over the bus. */
+    public static final boolean DELIVER_BY_BROADCAST = false;
+
+    public static final String ACTION = "VOICE_COMMAND";
+    public static final String EXTRA_COMMAND = "command";
+    public static final String EXTRA_VALUE = "value";
+    public static final String EXTRA_SECOND_VALUE = "secondValue";
+    /** System.nanoTime() when the broadcast was sent. */
+    public static final String EXTRA_SENT_AT = "sentAt";
+    /** {@link LatencyTracer} id of the command. */
+    public static final String EXTRA_TRACE_ID = "traceId";
+
+    public static final String TAKE_PHOTO = "take a photo";
+    public static final String TAKE_PHOTOS = "take photos";
+    public static final String BURST = "burst";
+    public static final String ZOOM = "zoom";
+    public static final String ZOOM_OUT = "zoom out";
+    /** Zooms to the first number, then takes the second number of photos. */
+    public static final String ZOOM_AND_TAKE_PHOTOS = "zoom and take photos";
+    public static final String FRONT_CAMERA = "front camera";
+    public static final String BACK_CAMERA = "back camera";
+    /**
+     * Takes a photo once an object is centred. The command may carry one of
+     * {@link #OBJECT_LABELS} after a space, naming the object to wait for.
+     */
+    public static final String AUTO_CAPTURE = "auto capture";
+    public static final String AUTO_CAPTURE_OFF = "auto capture off";
+    /**
+     * A photo every first-number seconds for second-number minutes, timed
+     * by the speech service, which sends an {@link #INTERVAL_SHOT} for each.
+     */
+    public static final String INTERVAL_CAPTURE = "interval capture";
+    public static final String INTERVAL_STOP = "stop interval";
+    /** Sent by the service, not spoken: shot number (from 1) and shot count. */
+    public static final String INTERVAL_SHOT = "interval shot";
+    /** Sent by the app, not spoken: a shot auto capture triggered on a detection. */
+    public static final String AUTO_SHOT = "auto shot";
+    /** Throws out the camera commands still waiting; the one under way finishes. */
+    public static final String CANCEL = "cancel";
+
+    /** Object categories the detector names. */
+    public static final String[] OBJECT_LABELS = {
+            "food", "plant", "place", "home good", "fashion good"
+    };
+
+    /** Phrases offered for keyword spotter enrollment; each matches the grammar. */
+    public static final String[] KEYWORD_PHRASES = {
+            "take a photo", "take 3 photos", "burst", "zoom", "zoom 2 x", "zoom out",
+            "front camera", "back camera", "auto capture", "auto capture off", "stop interval",
+            "cancel that"
+    };
+
+    private VoiceCommands() {
+    }
+
+    public static CommandGrammar grammar() {
+        CommandGrammar.Builder builder = CommandGrammar.builder()
+                .add(TAKE_PHOTO,
+                        "take a photo", "take photo", "take a picture", "take picture",
+                        "capture", "snap")
+                .add(TAKE_PHOTOS,
+                        "take {n} photos", "take {n} pictures", "take {n} shots")
+                .add(BURST, "burst", "burst mode")
+                .add(ZOOM,
+                        "zoom", "zoom in",
+                        "zoom {n} x", "zoom {n} times", "zoom to {n} x", "zoom in {n} x")
+                .add(ZOOM_OUT, "zoom out", "reset zoom")
+                .add(ZOOM_AND_TAKE_PHOTOS,
+                        "zoom {n} x and take {n} photos", "zoom {n} x and take {n} pictures",
+                        "zoom {n} times and take {n} photos", "zoom to {n} x and take {n} photos",
+                        "zoom in {n} x and take {n} photos")
+                .add(FRONT_CAMERA,
+                        "front camera", "switch to front camera", "use front camera", "selfie")
+                .add(BACK_CAMERA,
+                        "back camera", "rear camera", "switch to back camera",
+                        "switch to rear camera", "use back camera")
+                .add(AUTO_CAPTURE,
+                        "auto capture", "capture when centered", "capture when centred",
+                        "capture when object is centered")
+                .add(AUTO_CAPTURE_OFF,
+                        "auto capture off", "stop auto capture", "cancel auto capture")
+                // Not "take a photo every ...", which would hold back every
+                // early "take a photo"; the longest match still finds this
+                .add(INTERVAL_CAPTURE,
+                        "photo every {n} seconds for {n} minutes",
+                        "picture every {n} seconds for {n} minutes",
+                        "time lapse every {n} seconds for {n} minutes")
+                .add(INTERVAL_STOP,
+                        "stop interval", "stop the interval", "stop interval capture",
+                        "stop the interval capture", "stop time lapse", "stop the time lapse",
+                        "cancel time lapse")
+                // Not a bare "stop" or "cancel", which would fire on the
+                // first word of "stop interval" or "cancel auto capture"
+                .add(CANCEL,
+                        "cancel that", "never mind", "stop capture", "stop capturing",
+                        "cancel capture", "cancel photos");
+        for (String label : OBJECT_LABELS) {
+            builder.add(AUTO_CAPTURE + " " + label,
+                    "auto capture " + label, "capture when " + label + " is centered",
+                    "capture when " + label + " is centred", "capture the " + label);
+        }
+        return builder.build();
+    }
+
+    /**
+     * How {@link CommandScheduler} treats {@code command}: captures and zoom
+     * wait for the camera, interval shots behind them; the lens is camera
+     * state, where only the latest request matters; cancel runs at once and
+     * throws out what is queued, stopping an interval its waiting shots; the
+     * rest only arm or report and run at once.
+     */
+    public static CommandScheduler.Rule schedulingRule(String command) {
+        switch (command) {
+            case TAKE_PHOTO:
+            case TAKE_PHOTOS:
+            case BURST:
+            case ZOOM:
+            case ZOOM_AND_TAKE_PHOTOS:
+                return CommandScheduler.Rule.camera(CommandScheduler.PRIORITY_NORMAL);
+            case ZOOM_OUT:
+                return CommandScheduler.Rule.camera(CommandScheduler.PRIORITY_NORMAL)
+                        .replacing("zoom");
+            case FRONT_CAMERA:
+            case BACK_CAMERA:
+                return CommandScheduler.Rule.camera(CommandScheduler.PRIORITY_NORMAL)
+                        .replacing("lens");
+            case INTERVAL_SHOT:
+                // A late shot is only worth taking once
+                return CommandScheduler.Rule.camera(CommandScheduler.PRIORITY_BACKGROUND)
+                        .replacing("interval");
+            case AUTO_SHOT:
+                // Behind spoken commands, and a cancel takes it too
+                return CommandScheduler.Rule.camera(CommandScheduler.PRIORITY_BACKGROUND)
+                        .replacing("auto");
+            case CANCEL:
+                return CommandScheduler.Rule.preempting(CommandScheduler.PRIORITY_URGENT);
+            case INTERVAL_STOP:
+                // Takes the waiting interval shots with it, not the spoken captures
+                return CommandScheduler.Rule.preempting(CommandScheduler.PRIORITY_NORMAL);
+            default:
+                return CommandScheduler.Rule.immediate();
+        }
+    }
+
+    /** The object an {@link #AUTO_CAPTURE} command waits for, or null for any object. */
+    public static String autoCaptureLabel(String command) {
+        return command.length() > AUTO_CAPTURE.length()
+                ? command.substring(AUTO_CAPTURE.length() + 1) : null;
+    }
+}
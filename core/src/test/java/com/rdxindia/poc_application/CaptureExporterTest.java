@@ -0,0 +1,183 @@
+package com.rdxindia.poc_application;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/** Exports against {@link LocalUploadServer}, with dropped connections and restarts. */
+public class CaptureExporterTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private LocalUploadServer server;
+    private File library;
+    private File state;
+    private ExportPlan plan;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new LocalUploadServer();
+        library = temp.newFolder("library");
+        state = new File(temp.getRoot(), "export.state");
+        List<PhotoIndex.Photo> photos = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            photos.add(ExportSegmentTest.photo(library, "IMG_" + i + ".jpg", 20_000 + i * 999,
+                    T0 + i * 1000, 18.5, 73.8));
+        }
+        // Three photos to a segment
+        plan = ExportPlan.build("day", library, photos, 75_000);
+        assertEquals(2, plan.getSegments().size());
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    private SegmentUploader uploader() {
+        return new SegmentUploader(server.getEndpoint(), 16 * 1024, 3, 1);
+    }
+
+    private void assertServerHasEverySegment() throws IOException {
+        for (ExportPlan.Segment segment : plan.getSegments()) {
+            assertArrayEquals(segment.getName(),
+                    ExportSegmentTest.stream(new ExportSegment(segment, library)),
+                    server.get(segment.getName()));
+        }
+    }
+
+    @Test
+    public void uploadsEverySegmentInChunks() throws IOException {
+        List<long[]> progress = new ArrayList<>();
+        CaptureExporter.Result result = new CaptureExporter(plan, library, state, uploader())
+                .run((done, count, bytes, total) -> progress.add(new long[] { done, bytes }));
+
+        assertServerHasEverySegment();
+        assertEquals(2, result.getSegmentCount());
+        assertEquals(0, result.getSegmentsSkipped());
+        assertEquals(0, result.getBytesResumed());
+        long total = 0;
+        for (ExportPlan.Segment segment : plan.getSegments()) {
+            total += new ExportSegment(segment, library).length();
+        }
+        assertEquals(total, result.getBytesSent());
+        assertTrue(server.getPutCount() > 2);
+        assertEquals(2, progress.get(progress.size() - 1)[0]);
+    }
+
+    @Test
+    public void droppedChunkIsRetriedFromTheServersOffset() throws IOException {
+        server.failAfter(5000);
+        SegmentUploader uploader = uploader();
+        new CaptureExporter(plan, library, state, uploader).run(null);
+
+        assertServerHasEverySegment();
+        assertEquals(1, uploader.getRetryCount());
+    }
+
+    @Test
+    public void restartSkipsFinishedSegmentsAndResumesInsideTheNext() throws IOException {
+        ExportPlan.Segment first = plan.getSegments().get(0);
+        ExportPlan.Segment second = plan.getSegments().get(1);
+        // As if an earlier run had finished the first segment and got partway into the second
+        new CaptureExporter(plan, library, state, uploader()).run(null);
+        byte[] secondBytes = server.get(second.getName());
+        int resumeAt = 30_000;
+        server.preload(second.getName(), secondBytes, resumeAt);
+        Files.write(state.toPath(), ("done " + first.getName() + "\n").getBytes());
+
+        CaptureExporter.Result result = new CaptureExporter(plan, library, state, uploader())
+                .run(null);
+
+        assertServerHasEverySegment();
+        assertEquals(1, result.getSegmentsSkipped());
+        assertEquals(resumeAt, result.getBytesResumed());
+        assertEquals(secondBytes.length - resumeAt, result.getBytesSent());
+        String log = new String(Files.readAllBytes(state.toPath()));
+        assertTrue(log, log.contains("done " + second.getName()));
+        assertTrue(log, log.contains("crc " + second.getName() + " 2 "));
+    }
+
+    @Test
+    public void loggedChecksumsSpareTheResume() throws IOException {
+        new CaptureExporter(plan, library, state, uploader()).run(null);
+        ExportPlan.Segment second = plan.getSegments().get(1);
+        byte[] secondBytes = server.get(second.getName());
+
+        // Drop the done record and the upload's tail, then delete the photos
+        // already sent: only the logged checksums can fill in the manifest
+        List<String> kept = new ArrayList<>();
+        for (String line : Files.readAllLines(state.toPath())) {
+            if (!line.equals("done " + second.getName())) kept.add(line);
+        }
+        Files.write(state.toPath(), kept);
+        // Inside the manifest, which follows the photos
+        server.preload(second.getName(), secondBytes, secondBytes.length - 1500);
+        for (ExportPlan.Item item : second.getItems()) {
+            assertTrue(new File(library, item.getName()).delete());
+        }
+
+        CaptureExporter.Result result = new CaptureExporter(plan, library, state, uploader())
+                .run(null);
+        assertArrayEquals(secondBytes, server.get(second.getName()));
+        assertEquals(1, result.getSegmentsSkipped());
+    }
+
+    @Test
+    public void outOfStepChunkAdoptsTheServersOffset() throws IOException {
+        ExportPlan.Segment segment = plan.getSegments().get(0);
+        ExportSegment stream = new ExportSegment(segment, library);
+        byte[] whole = ExportSegmentTest.stream(stream);
+        SegmentUploader uploader = new SegmentUploader(server.getEndpoint(), 16 * 1024, 3, 1);
+        List<Long> offsets = new ArrayList<>();
+        uploader.upload(stream, (s, sent, length) -> {
+            offsets.add(sent);
+            // Another client gets further after the first chunk
+            if (offsets.size() == 1) server.preload(segment.getName(), whole, 40_000);
+        });
+
+        assertArrayEquals(whole, server.get(segment.getName()));
+        assertEquals(1, server.getConflictCount());
+        assertTrue(offsets.contains(40_000L));
+    }
+
+    @Test
+    public void serverThatTakesNothingCountsAsFailedAttempts() throws IOException {
+        server.stall();
+        SegmentUploader uploader = new SegmentUploader(server.getEndpoint(), 16 * 1024, 3, 1);
+        try {
+            uploader.upload(new ExportSegment(plan.getSegments().get(0), library), null);
+            fail("Upload went on against a server that stored nothing");
+        } catch (IOException expected) {
+            // No progress in three tries
+        }
+        assertEquals(3, server.getPutCount());
+        assertEquals(2, uploader.getRetryCount());
+    }
+
+    @Test
+    public void failsAfterTheLastAttempt() throws IOException {
+        SegmentUploader uploader = new SegmentUploader(
+                server.getEndpoint().replace("/upload", "/missing"), 16 * 1024, 2, 1);
+        server.close();
+        try {
+            uploader.upload(new ExportSegment(plan.getSegments().get(0), library), null);
+            fail("Uploaded to a closed server");
+        } catch (IOException expected) {
+            // Connection refused
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class CaptureJournalTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File journalFile() {
+        return new File(folder.getRoot(), "capture.journal");
+    }
+
+    private File write(String name, int length) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        Files.write(file.toPath(), new byte[length]);
+        return file;
+    }
+
+    @Test
+    public void committedJobsAreNotReplayed() throws IOException {
+        File spool = write("a.spool", 100);
+        LocationFix fix = new LocationFix(18.52, 73.85, 12f, 0, 1_700_000_000_000L);
+        try (CaptureJournal journal = CaptureJournal.open(journalFile())) {
+            CaptureJournal.Entry done = journal.begin(new File(folder.getRoot(), "a.jpg"),
+                    spool, 100, 90, 1234L, fix);
+            write("a.jpg.overlay.tmp", 10);
+            journal.commit(done);
+            journal.begin(new File(folder.getRoot(), "b.jpg"), null, 0, 0, 5678L, null);
+            journal.sync();
+        }
+        assertTrue(new File(folder.getRoot(), "a.jpg").exists());
+        assertFalse(spool.exists());
+
+        try (CaptureJournal journal = CaptureJournal.open(journalFile())) {
+            List<CaptureJournal.Entry> unfinished = journal.getUnfinished();
+            assertEquals(1, unfinished.size());
+            assertEquals("b.jpg", unfinished.get(0).getOutput().getName());
+            assertEquals(5678L, unfinished.get(0).getCaptureTimeMillis());
+            assertNull(unfinished.get(0).getFix());
+
+            // New ids do not collide with replayed ones
+            CaptureJournal.Entry next = journal.begin(new File("c.jpg"), null, 0, 0, 0, null);
+            assertTrue(next.getId() > unfinished.get(0).getId());
+        }
+    }
+
+    @Test
+    public void replayKeepsTheCapturedParameters() throws IOException {
+        LocationFix fix = new LocationFix(-33.86, 151.21, 7.5f, 0, 1_700_000_000_000L);
+        try (CaptureJournal journal = CaptureJournal.open(journalFile())) {
+            journal.begin(new File(folder.getRoot(), "a.jpg"), write("a.spool", 100), 100,
+                    270, 42L, fix);
+            journal.sync();
+        }
+        try (CaptureJournal journal = CaptureJournal.open(journalFile())) {
+            CaptureJournal.Entry entry = journal.getUnfinished().get(0);
+            assertEquals(270, entry.getRotation());
+            assertEquals("a.spool", entry.getSpool().getName());
+            assertEquals(-33.86, entry.getFix().getLatitude(), 0);
+            assertEquals(151.21, entry.getFix().getLongitude(), 0);
+            assertEquals(7.5f, entry.getFix().getAccuracyMeters(), 0);
+            assertEquals(1_700_000_000_000L, entry.getFix().getTimeMillis());
+        }
+    }
+
+    @Test
+    public void recoverRedoesIntactFramesAndRollsBackTruncatedOnes() throws IOException {
+        File intact = write("intact.spool", 100);
+        File truncated = write("truncated.spool", 40);
+        try (CaptureJournal journal = CaptureJournal.open(journalFile())) {
+            journal.begin(new File(folder.getRoot(), "intact.jpg"), intact, 100, 0, 0, null);
+            journal.begin(new File(folder.getRoot(), "truncated.jpg"), truncated, 100, 0, 0, null);
+            journal.sync();
+        }
+        // Half-written output from the interrupted run
+        File staleTemp = write("intact.jpg.overlay.tmp", 10);
+
+        try (CaptureJournal journal = CaptureJournal.open(journalFile())) {
+            List<CaptureJournal.Entry> redo = journal.recover();
+            assertEquals(1, redo.size());
+            assertEquals(intact, redo.get(0).getSpool());
+            assertFalse(staleTemp.exists());
+            assertFalse(truncated.exists());
+
+            write("intact.jpg.overlay.tmp", 10);
+            journal.commit(redo.get(0));
+            journal.sync();
+        }
+        try (CaptureJournal journal = CaptureJournal.open(journalFile())) {
+            assertTrue(journal.getUnfinished().isEmpty());
+        }
+        assertTrue(new File(folder.getRoot(), "intact.jpg").exists());
+        assertFalse(intact.exists());
+    }
+
+    @Test
+    public void processedJobIsCommittedFromItsTempFile() throws IOException {
+        File output = write("saved.jpg", 100);
+        try (CaptureJournal journal = CaptureJournal.open(journalFile())) {
+            CaptureJournal.Entry entry = journal.begin(output, null, 0, 0, 0, null);
+            write("saved.jpg.overlay.tmp", 150);
+            // Dies between the durable PROCESSED record and the rename
+            journal.awaitDurable(journal.append(entry, CaptureJournal.Stage.PROCESSED));
+        }
+        try (CaptureJournal journal = CaptureJournal.open(journalFile())) {
+            assertEquals(CaptureJournal.Stage.PROCESSED, journal.getUnfinished().get(0).getStage());
+            assertTrue(journal.recover().isEmpty());
+            journal.sync();
+        }
+        assertEquals(150, output.length());
+        assertFalse(new File(folder.getRoot(), "saved.jpg.overlay.tmp").exists());
+    }
+
+    @Test
+    public void tornTailRecordIsDiscarded() throws IOException {
+        try (CaptureJournal journal = CaptureJournal.open(journalFile())) {
+            journal.begin(new File(folder.getRoot(), "a.jpg"), null, 0, 0, 0, null);
+            journal.sync();
+        }
+        try (FileOutputStream out = new FileOutputStream(journalFile(), true)) {
+            out.write(new byte[] { 0, 0, 0, 40, 1, 2, 3, 4, 5, 6 });
+        }
+        try (CaptureJournal journal = CaptureJournal.open(journalFile())) {
+            assertEquals(1, journal.getUnfinished().size());
+            journal.begin(new File(folder.getRoot(), "b.jpg"), null, 0, 0, 0, null);
+            journal.sync();
+        }
+        try (CaptureJournal journal = CaptureJournal.open(journalFile())) {
+            assertEquals(2, journal.getUnfinished().size());
+        }
+    }
+
+    @Test
+    public void concurrentCommitsShareSyncs() throws Exception {
+        int jobs = 64;
+        ExecutorService workers = Executors.newFixedThreadPool(8);
+        try (CaptureJournal journal = CaptureJournal.open(journalFile())) {
+            List<Future<?>> done = new ArrayList<>();
+            for (int i = 0; i < jobs; i++) {
+                File output = new File(folder.getRoot(), "img" + i + ".jpg");
+                done.add(workers.submit(() -> {
+                    CaptureJournal.Entry entry = journal.begin(output, null, 0, 0, 0, null);
+                    Files.write(entry.getTempFile().toPath(), new byte[16]);
+                    journal.commit(entry);
+                    return null;
+                }));
+            }
+            for (Future<?> future : done) future.get();
+            journal.sync();
+            assertEquals(jobs * 3, journal.getRecordCount());
+            assertTrue(journal.toString(), journal.getSyncCount() < journal.getRecordCount());
+        } finally {
+            workers.shutdown();
+        }
+        try (CaptureJournal journal = CaptureJournal.open(journalFile())) {
+            assertTrue(journal.getUnfinished().isEmpty());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class CaptureNamesTest {
+
+    private static final TimeZone ZONE = TimeZone.getTimeZone("Asia/Kolkata");
+    // 2024-03-05 14:07:09 in Kolkata
+    private static final long TIME = 1709627829_000L;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final CaptureNames names = new CaptureNames(ZONE);
+
+    private static LocationFix fix(double latitude, double longitude) {
+        return new LocationFix(latitude, longitude, 5f, 0, TIME);
+    }
+
+    @Test
+    public void fileNamesCarryTimeLocationAndBurstShot() {
+        assertEquals("IMG_20240305_140709.jpg", names.fileName(TIME, null, 0));
+        assertEquals("IMG_20240305_140709_28.61394_-77.20902_B3.jpg",
+                names.fileName(TIME, fix(28.613939, -77.209021), 3));
+    }
+
+    @Test
+    public void overlayLinesMatchTheFormatters() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        format.setTimeZone(ZONE);
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            double latitude = (random.nextDouble() - 0.5) * 180;
+            double longitude = (random.nextDouble() - 0.5) * 360;
+            long time = TIME + random.nextInt() * 1000L;
+            String[] lines = names.overlayLines(latitude, longitude, time);
+            assertEquals(String.format(Locale.US, "Lat: %.5f", latitude), lines[0]);
+            assertEquals(String.format(Locale.US, "Lon: %.5f", longitude), lines[1]);
+            assertEquals(format.format(new Date(time)), lines[2]);
+        }
+        assertEquals("Lat: -0.00000", names.overlayLines(-0.000001, 0, TIME)[0]);
+        assertEquals("Lon: 0.00000", names.overlayLines(0, 0, TIME)[1]);
+    }
+
+    @Test
+    public void namesParseBackIntoTheIndex() throws Exception {
+        File library = folder.newFolder("library");
+        // The index parses names in the device's zone
+        String name = new CaptureNames().fileName(TIME, fix(28.61394, 77.20902), 2);
+        assertTrue(new File(library, name).createNewFile());
+        try (PhotoIndex index = PhotoIndex.rebuild(folder.newFolder("index"), library)) {
+            PhotoIndex.Photo photo = index.queryTime(TIME, TIME).get(0);
+            assertEquals(name, photo.getName());
+            assertEquals(28.61394, photo.getLatitude(), 1e-6);
+        }
+    }
+}
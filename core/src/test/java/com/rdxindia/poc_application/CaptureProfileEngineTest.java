@@ -0,0 +1,144 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CaptureProfileEngineTest {
+
+    private static final long HOLD = TimeUnit.SECONDS.toNanos(5);
+    private static final long MB = 1 << 20;
+
+    private long now = TimeUnit.SECONDS.toNanos(100);
+    private final CaptureProfileEngine engine = new CaptureProfileEngine(
+            new CaptureProfileEngine.LoadPolicy(), CaptureProfile.BALANCED, () -> now, HOLD);
+
+    private static CaptureLoad idle() {
+        return new CaptureLoad()
+                .setShots(1)
+                .setPendingJobs(0, 8)
+                .setHeap(200 * MB, 256 * MB)
+                .setStorageBytesPerSecond(50e6);
+    }
+
+    private static StageTimer timerOf(long nanos) throws InterruptedException {
+        StageTimer timer = new StageTimer();
+        TimeUnit.NANOSECONDS.sleep(nanos);
+        timer.mark("encode");
+        return timer;
+    }
+
+    @Test
+    public void policyFollowsTheLoad() {
+        CaptureProfileEngine.LoadPolicy policy = new CaptureProfileEngine.LoadPolicy();
+        StringBuilder reason = new StringBuilder();
+        assertEquals(CaptureProfile.QUALITY, policy.choose(idle(), reason));
+        assertEquals("idle", reason.toString());
+        assertEquals(CaptureProfile.BALANCED, policy.choose(idle().setShots(5), new StringBuilder()));
+        assertEquals(CaptureProfile.BALANCED,
+                policy.choose(idle().setPendingJobs(1, 8), new StringBuilder()));
+        assertEquals(CaptureProfile.FAST,
+                policy.choose(idle().setPendingJobs(4, 8), new StringBuilder()));
+        assertEquals(CaptureProfile.FAST,
+                policy.choose(idle().setHeap(20 * MB, 256 * MB), new StringBuilder()));
+        assertEquals(CaptureProfile.FAST, policy.choose(idle().setProcessingNanos(
+                TimeUnit.SECONDS.toNanos(2)), new StringBuilder()));
+        reason.setLength(0);
+        assertEquals(CaptureProfile.FAST,
+                policy.choose(idle().setStorageBytesPerSecond(1e6), reason));
+        assertEquals("storage slow", reason.toString());
+        // Storage that has not written anything yet is not slow
+        assertEquals(CaptureProfile.QUALITY,
+                policy.choose(idle().setStorageBytesPerSecond(0), new StringBuilder()));
+    }
+
+    @Test
+    public void downgradesAtOnceAndUpgradesAfterTheHold() {
+        CaptureProfileEngine.Decision first = engine.decide(idle());
+        assertEquals(CaptureProfile.QUALITY, first.getProfile());
+        assertTrue(first.isChange());
+
+        CaptureProfileEngine.Decision busy = engine.decide(idle().setPendingJobs(6, 8));
+        assertEquals(CaptureProfile.FAST, busy.getProfile());
+        assertEquals(CaptureProfile.QUALITY, busy.getPrevious());
+
+        now += HOLD / 2;
+        CaptureProfileEngine.Decision held = engine.decide(idle());
+        assertEquals(CaptureProfile.FAST, held.getProfile());
+        assertEquals(CaptureProfile.QUALITY, held.getWanted());
+        assertTrue(held.isHeld());
+        assertFalse(held.isChange());
+
+        now += HOLD;
+        assertEquals(CaptureProfile.QUALITY, engine.decide(idle()).getProfile());
+        assertEquals(4, engine.getDecisionCount());
+        assertEquals(3, engine.getChangeCount());
+        assertEquals(1, engine.getHeldCount());
+    }
+
+    @Test
+    public void busySpellsExtendTheHold() {
+        engine.decide(idle().setPendingJobs(6, 8));
+        now += HOLD / 2;
+        assertEquals(CaptureProfile.FAST, engine.decide(idle().setPendingJobs(5, 8)).getProfile());
+        now += HOLD / 2 + 1;
+        // Still within the hold of the second busy decision
+        assertEquals(CaptureProfile.FAST, engine.decide(idle()).getProfile());
+        // A burst may go back to balanced once fast has not been asked for in a while
+        now += HOLD / 2;
+        assertEquals(CaptureProfile.BALANCED, engine.decide(idle().setShots(3)).getProfile());
+        now += 1;
+        // but quality waits for the burst's balanced request to age too
+        assertEquals(CaptureProfile.BALANCED, engine.decide(idle()).getProfile());
+        now += HOLD;
+        assertEquals(CaptureProfile.QUALITY, engine.decide(idle()).getProfile());
+    }
+
+    @Test
+    public void recordedProcessingTimeReachesThePolicy() throws Exception {
+        CaptureProfileEngine slow = new CaptureProfileEngine(
+                new CaptureProfileEngine.LoadPolicy(0.5, 0.15, TimeUnit.MILLISECONDS.toNanos(20),
+                        TimeUnit.MILLISECONDS.toNanos(5), 4e6),
+                CaptureProfile.BALANCED, () -> now, HOLD);
+        slow.recordProcessing(timerOf(TimeUnit.MILLISECONDS.toNanos(30)));
+        assertTrue(slow.getProcessingNanos() >= TimeUnit.MILLISECONDS.toNanos(30));
+
+        CaptureProfileEngine.Decision decision = slow.decide(idle());
+        assertEquals(CaptureProfile.FAST, decision.getProfile());
+        assertEquals("processing slow", decision.getReason());
+        assertEquals(slow.getProcessingNanos(), decision.getLoad().getProcessingNanos());
+        assertTrue(slow.toString(), slow.toString().contains("last slowest encode"));
+    }
+
+    @Test
+    public void customPoliciesDecide() {
+        CaptureProfile night = new CaptureProfile("night", CaptureProfile.Mode.MAXIMIZE_QUALITY,
+                0, 0, 100);
+        CaptureProfileEngine custom = new CaptureProfileEngine((load, reason) -> {
+            reason.append("always night");
+            return night;
+        }, CaptureProfile.BALANCED, () -> now, HOLD);
+        CaptureProfileEngine.Decision decision = custom.decide(idle());
+        assertSame(night, decision.getProfile());
+        assertTrue(decision.toString(), decision.toString().startsWith("balanced -> night"));
+    }
+
+    @Test
+    public void profilesOrderByCost() {
+        assertTrue(CaptureProfile.QUALITY.isHeavierThan(CaptureProfile.BALANCED));
+        assertTrue(CaptureProfile.BALANCED.isHeavierThan(CaptureProfile.FAST));
+        assertFalse(CaptureProfile.FAST.isHeavierThan(CaptureProfile.FAST));
+        CaptureProfile lowQuality = new CaptureProfile("low", CaptureProfile.Mode.MINIMIZE_LATENCY,
+                1600, 1200, 70);
+        assertTrue(CaptureProfile.FAST.isHeavierThan(lowQuality));
+        assertEquals(CaptureProfile.FAST, new CaptureProfile("copy",
+                CaptureProfile.Mode.MINIMIZE_LATENCY, 1600, 1200, 85));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsHalfAResolution() {
+        new CaptureProfile("bad", CaptureProfile.Mode.MINIMIZE_LATENCY, 1920, 0, 90);
+    }
+}
@@ -0,0 +1,163 @@
+package com.rdxindia.poc_application;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class CaptureStoreTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<List<CaptureStore.MediaUpdate>> batches = new ArrayList<>();
+    private CaptureStore store;
+
+    private CaptureStore open(int buffers, int bufferBytes) {
+        store = new CaptureStore(new File(folder.getRoot(), "Pictures/POC_App"),
+                new File(folder.getRoot(), "spool"), buffers, bufferBytes, batch -> {
+                    synchronized (batches) {
+                        batches.add(batch);
+                    }
+                });
+        return store;
+    }
+
+    @After
+    public void closeStore() {
+        if (store != null) store.close();
+    }
+
+    @Test
+    public void writesFramesFromPooledBuffersIntoDirectoriesItCreated() throws Exception {
+        open(1, 1024);
+        store.flush();
+        assertTrue(store.getLibraryDir().isDirectory());
+        assertTrue(store.getSpoolDir().isDirectory());
+
+        byte[] frame = new byte[700];
+        for (int i = 0; i < frame.length; i++) frame[i] = (byte) (i * 31);
+        ByteBuffer buffer = store.acquire(frame.length);
+        assertTrue(buffer.isDirect());
+        buffer.put(frame).flip();
+
+        File spool = store.newSpoolFile("IMG_1.jpg");
+        CountDownLatch written = new CountDownLatch(1);
+        AtomicReference<String> result = new AtomicReference<>();
+        store.write(spool, buffer, (file, bytes, error) -> {
+            result.set(Thread.currentThread().getName() + " " + bytes + " " + error);
+            written.countDown();
+        });
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        assertEquals("CaptureStore 700 null", result.get());
+        assertArrayEquals(frame, Files.readAllBytes(spool.toPath()));
+        // The caller's view of the frame is untouched
+        assertEquals(0, buffer.position());
+        assertEquals(700, buffer.limit());
+
+        store.release(buffer);
+        assertSame(buffer, store.acquire(100));
+        assertEquals(0, store.getPoolMissCount());
+        assertEquals(1, store.getWriteCount());
+        assertEquals(700, store.getBytesWritten());
+        assertTrue(store.getWriteBytesPerSecond() > 0);
+    }
+
+    @Test
+    public void emptyPoolAndOversizedFramesGetFreshBuffers() throws Exception {
+        open(1, 64);
+        store.flush();
+        ByteBuffer pooled = store.acquire(64);
+        ByteBuffer extra = store.acquire(10);
+        ByteBuffer big = store.acquire(65);
+        assertNotSame(pooled, extra);
+        assertEquals(65, big.remaining());
+        assertEquals(2, store.getPoolMissCount());
+
+        // Only buffers of the pool's size go back into it
+        store.release(big);
+        store.release(extra);
+        assertNotSame(big, store.acquire(64));
+    }
+
+    @Test
+    public void writeFailureReachesTheCallback() throws Exception {
+        open(1, 64);
+        CountDownLatch failed = new CountDownLatch(1);
+        AtomicReference<IOException> result = new AtomicReference<>();
+        store.write(new File(folder.getRoot(), "missing/dir/x.jpg"), ByteBuffer.allocate(8),
+                (file, bytes, error) -> {
+                    result.set(error);
+                    failed.countDown();
+                });
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        assertNotNull(result.get());
+        assertEquals(1, store.getWriteFailureCount());
+    }
+
+    @Test
+    public void changesWithinTheWindowArePublishedTogether() throws Exception {
+        open(1, 64);
+        File[] burst = new File[5];
+        for (int i = 0; i < burst.length; i++) {
+            burst[i] = store.newPhotoFile("IMG_B" + i + ".jpg");
+            store.pending(burst[i], 1000 + i);
+        }
+        Thread.sleep(20);
+        for (int i = 0; i < burst.length - 1; i++) store.published(burst[i], 1000 + i);
+        store.discarded(burst[4]);
+        store.flush();
+
+        synchronized (batches) {
+            assertEquals(1, batches.size());
+            List<CaptureStore.MediaUpdate> batch = batches.get(0);
+            assertEquals(10, batch.size());
+            assertEquals(CaptureStore.Change.PENDING, batch.get(0).getChange());
+            assertEquals(1000, batch.get(0).getCaptureTimeMillis());
+            assertEquals(CaptureStore.Change.PUBLISHED, batch.get(5).getChange());
+            assertEquals(burst[4], batch.get(9).getFile());
+            assertEquals(CaptureStore.Change.DISCARDED, batch.get(9).getChange());
+        }
+        assertEquals(1, store.getBatchCount());
+        assertEquals(10, store.getMediaUpdateCount());
+    }
+
+    @Test
+    public void aQuietWindowPublishesWithoutAFlush() throws Exception {
+        open(1, 64);
+        store.published(store.newPhotoFile("IMG_1.jpg"), 1);
+        long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(CaptureStore.BATCH_WINDOW_MS * 10);
+        while (store.getBatchCount() == 0 && System.nanoTime() < deadline) Thread.sleep(10);
+        assertEquals(1, store.getBatchCount());
+    }
+
+    @Test
+    public void publisherFailureIsCountedAndTheStoreGoesOn() throws Exception {
+        store = new CaptureStore(folder.newFolder("lib"), folder.newFolder("spool"), 1, 64,
+                batch -> {
+                    throw new IOException("provider gone");
+                });
+        store.published(store.newPhotoFile("IMG_1.jpg"), 1);
+        store.flush();
+        assertEquals(1, store.getPublishFailureCount());
+        assertEquals("provider gone", store.getLastPublishFailure().getMessage());
+
+        CountDownLatch written = new CountDownLatch(1);
+        store.write(store.newSpoolFile("IMG_2.jpg"), ByteBuffer.allocate(4),
+                (file, bytes, error) -> written.countDown());
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+    }
+}
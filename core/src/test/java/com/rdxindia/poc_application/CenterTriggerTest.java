@@ -0,0 +1,50 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CenterTriggerTest {
+
+    private static List<Detection> at(String label, float centerX, float centerY) {
+        return Collections.singletonList(new Detection(label, 0.8f,
+                centerX - 0.1f, centerY - 0.1f, centerX + 0.1f, centerY + 0.1f, 1));
+    }
+
+    @Test
+    public void firesOnceAfterConsecutiveCenteredFrames() {
+        CenterTrigger trigger = new CenterTrigger(0.1f, 0.5f, 3);
+        trigger.arm("food");
+        assertNull(trigger.onDetections(at("Food", 0.52f, 0.48f)));
+        assertNull(trigger.onDetections(at("Food", 0.5f, 0.5f)));
+        Detection fired = trigger.onDetections(at("Food", 0.45f, 0.55f));
+        assertNotNull(fired);
+        assertFalse(trigger.isArmed());
+        assertNull(trigger.onDetections(at("Food", 0.5f, 0.5f)));
+    }
+
+    @Test
+    public void offCenterOrOtherObjectsResetTheCount() {
+        CenterTrigger trigger = new CenterTrigger(0.1f, 0.5f, 2);
+        trigger.arm("plant");
+        assertNull(trigger.onDetections(at("Plant", 0.5f, 0.5f)));
+        assertNull(trigger.onDetections(at("Plant", 0.8f, 0.5f)));
+        assertNull(trigger.onDetections(at("Food", 0.5f, 0.5f)));
+        assertNull(trigger.onDetections(at("Plant", 0.5f, 0.5f)));
+        assertNotNull(trigger.onDetections(Arrays.asList(
+                new Detection("Plant", 0.3f, 0.4f, 0.4f, 0.6f, 0.6f, 2),
+                at("Plant", 0.5f, 0.5f).get(0))));
+    }
+
+    @Test
+    public void anyObjectWhenNoLabelIsGiven() {
+        CenterTrigger trigger = new CenterTrigger(0.1f, 0.5f, 1);
+        assertNull(trigger.onDetections(at(null, 0.5f, 0.5f)));
+        trigger.arm(null);
+        assertNotNull(trigger.onDetections(at(null, 0.5f, 0.5f)));
+    }
+}
@@ -0,0 +1,123 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class CommandBusTest {
+
+    private final AtomicLong now = new AtomicLong();
+    private final CommandBus bus = new CommandBus(8, now::get);
+    private final List<Runnable> queued = new ArrayList<>();
+
+    @Test
+    public void deliversToEveryAttachedSubscriberWithLatency() {
+        List<String> first = new ArrayList<>();
+        List<String> second = new ArrayList<>();
+        bus.subscribe(e -> first.add(e.getCommand() + ":" + e.getValue()), Runnable::run, 0, 0);
+        bus.subscribe(e -> second.add(e.getCommand() + "@" + e.getLatencyNanos()), queued::add, 0, 0);
+
+        now.set(100);
+        bus.publish("zoom", 3);
+        now.set(130);
+        bus.publish("take a photo", CommandBus.NO_VALUE);
+        assertEquals(List.of("zoom:3", "take a photo:-1"), first);
+
+        // One pending drain per subscriber, however many commands arrived
+        assertEquals(1, queued.size());
+        now.set(150);
+        queued.remove(0).run();
+        assertEquals(List.of("zoom@50", "take a photo@20"), second);
+        assertEquals(4, bus.getDeliveredCount());
+        assertEquals(50, bus.getMaxLatencyNanos());
+    }
+
+    @Test
+    public void compoundCommandsCarryASecondValue() {
+        List<String> got = new ArrayList<>();
+        bus.subscribe(e -> got.add(e.getCommand() + ":" + e.getValue() + "," + e.getSecondValue()),
+                Runnable::run, 0, 0);
+        bus.publish("zoom and take photos", 2, 3, LatencyTracer.NO_TRACE);
+        bus.publish("zoom", 4);
+        assertEquals(List.of("zoom and take photos:2,3", "zoom:4,-1"), got);
+    }
+
+    @Test
+    public void detachedSubscriberStopsReceiving() {
+        List<String> got = new ArrayList<>();
+        CommandBus.Subscription subscription = bus.subscribe(e -> got.add(e.getCommand()), queued::add, 0, 0);
+        bus.publish("burst", CommandBus.NO_VALUE);
+        subscription.detach();
+        queued.forEach(Runnable::run);
+        bus.publish("zoom", CommandBus.NO_VALUE);
+        assertTrue(got.isEmpty());
+        assertFalse(subscription.isAttached());
+    }
+
+    @Test
+    public void replaysRecentUndeliveredCommandsToTheNextSubscriber() {
+        List<String> got = new ArrayList<>();
+        CommandBus.Subscription subscription = bus.subscribe(e -> got.add(e.getCommand()), Runnable::run, 4, 1000);
+        bus.publish("delivered", CommandBus.NO_VALUE);
+        subscription.detach();
+
+        now.set(100);
+        bus.publish("too old", CommandBus.NO_VALUE);
+        now.set(2000);
+        bus.publish("a", CommandBus.NO_VALUE);
+        bus.publish("b", CommandBus.NO_VALUE);
+        now.set(2500);
+
+        got.clear();
+        bus.subscribe(e -> got.add(e.getCommand()), Runnable::run, 4, 1000);
+        assertEquals(List.of("a", "b"), got);
+
+        // Already delivered, so a second subscriber gets nothing replayed
+        List<String> other = new ArrayList<>();
+        bus.subscribe(e -> other.add(e.getCommand()), Runnable::run, 4, 1000);
+        assertTrue(other.isEmpty());
+    }
+
+    @Test
+    public void lappedSubscriberSkipsToOldestCommandStillInTheRing() {
+        List<Integer> got = new ArrayList<>();
+        bus.subscribe(e -> got.add(e.getValue()), queued::add, 0, 0);
+        for (int i = 0; i < 20; i++) bus.publish("n", i);
+        queued.remove(0).run();
+        assertEquals(List.of(12, 13, 14, 15, 16, 17, 18, 19), got);
+        assertEquals(12, bus.getMissedCount());
+    }
+
+    @Test
+    public void concurrentConsumersSeeOrderedUntornCommands() throws InterruptedException {
+        CommandBus shared = new CommandBus(1024, System::nanoTime);
+        String[] names = { "zero", "one", "two", "three" };
+        int count = 200_000;
+        ExecutorService[] consumers = { Executors.newSingleThreadExecutor(), Executors.newSingleThreadExecutor() };
+        long[] lastSeen = { -1, -1 };
+        long[] errors = new long[2];
+        for (int c = 0; c < consumers.length; c++) {
+            int index = c;
+            shared.subscribe(e -> {
+                if (e.getSequence() <= lastSeen[index]) errors[index]++;
+                if (!names[e.getValue() & 3].equals(e.getCommand())) errors[index]++;
+                lastSeen[index] = e.getSequence();
+            }, consumers[c], 0, 0);
+        }
+        for (int i = 0; i < count; i++) shared.publish(names[i & 3], i);
+        for (ExecutorService consumer : consumers) {
+            consumer.shutdown();
+            assertTrue(consumer.awaitTermination(10, TimeUnit.SECONDS));
+        }
+        assertEquals(0, errors[0] + errors[1]);
+        assertEquals(count - 1, lastSeen[0]);
+        assertEquals(count - 1, lastSeen[1]);
+    }
+}
@@ -0,0 +1,168 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.*;
+
+public class CommandGrammarTest {
+
+    private final CommandGrammar.Matcher matcher = VoiceCommands.grammar().newMatcher();
+
+    @Test
+    public void longestPatternWinsRegardlessOfOrder() {
+        assertCommand(VoiceCommands.ZOOM_OUT, "please zoom out a bit");
+        assertCommand(VoiceCommands.ZOOM, "zoom");
+        assertCommand(VoiceCommands.FRONT_CAMERA, "OK switch to front camera now");
+        assertCommand(VoiceCommands.TAKE_PHOTO, "can you take a photo with the back camera");
+    }
+
+    @Test
+    public void compoundCommandCarriesBothNumbers() {
+        CommandGrammar.CommandMatch match =
+                assertCommand(VoiceCommands.ZOOM_AND_TAKE_PHOTOS, "zoom 2x and take 3 photos");
+        assertEquals(2, match.getSlotCount());
+        assertEquals(2, match.getSlot(0));
+        assertEquals(3, match.getSlot(1));
+    }
+
+    @Test
+    public void autoCaptureCarriesTheObject() {
+        CommandGrammar.CommandMatch match =
+                assertCommand(VoiceCommands.AUTO_CAPTURE + " food", "capture when food is centered");
+        assertEquals("food", VoiceCommands.autoCaptureLabel(match.getCommand()));
+        assertNull(VoiceCommands.autoCaptureLabel(
+                assertCommand(VoiceCommands.AUTO_CAPTURE, "auto capture").getCommand()));
+        assertCommand(VoiceCommands.AUTO_CAPTURE_OFF, "stop auto capture");
+    }
+
+    @Test
+    public void intervalCaptureCarriesPeriodAndDuration() {
+        CommandGrammar.CommandMatch match = assertCommand(VoiceCommands.INTERVAL_CAPTURE,
+                "take a photo every ten seconds for 30 minutes");
+        assertEquals(10, match.getSlot(0));
+        assertEquals(30, match.getSlot(1));
+        assertCommand(VoiceCommands.INTERVAL_CAPTURE, "time-lapse every 5 seconds for 2 minutes");
+        // The single shot it starts with waits for the rest of the sentence
+        assertCommand(VoiceCommands.TAKE_PHOTO, "take a photo every 10");
+        assertTrue(matcher.isExtendable());
+        assertCommand(VoiceCommands.INTERVAL_STOP, "please stop the interval capture");
+    }
+
+    @Test
+    public void cancelNeedsMoreThanOneWord() {
+        assertCommand(VoiceCommands.CANCEL, "cancel that");
+        assertCommand(VoiceCommands.CANCEL, "oh never mind");
+        assertCommand(VoiceCommands.CANCEL, "stop capturing");
+        // Still the auto capture and interval commands, not a cancel
+        assertCommand(VoiceCommands.AUTO_CAPTURE_OFF, "stop auto capture");
+        assertCommand(VoiceCommands.INTERVAL_STOP, "stop interval capture");
+    }
+
+    @Test
+    public void extractsNumbersSpokenAsDigitsOrWords() {
+        CommandGrammar.CommandMatch match = assertCommand(VoiceCommands.ZOOM, "Zoom 3x");
+        assertEquals(1, match.getSlotCount());
+        assertEquals(3, match.getSlot(0));
+
+        match = assertCommand(VoiceCommands.TAKE_PHOTOS, "take five photos");
+        assertEquals(5, match.getSlot(0));
+
+        match = assertCommand(VoiceCommands.TAKE_PHOTOS, "take 12 pictures, thanks");
+        assertEquals(12, match.getSlot(0));
+        assertEquals(0, match.getStartToken());
+        assertEquals(3, match.getEndToken());
+    }
+
+    @Test
+    public void toleratesSmallMisrecognitions() {
+        CommandGrammar.CommandMatch match = assertCommand(VoiceCommands.TAKE_PHOTOS, "take two photoes");
+        assertEquals(1, match.getEdits());
+        assertCommand(VoiceCommands.BACK_CAMERA, "switch to the reer camera");
+        assertCommand(VoiceCommands.FRONT_CAMERA, "frunt camera");
+        // Short words have to be exact
+        assertNull(matcher.match("tape a foe"));
+    }
+
+    @Test
+    public void repeatedMisrecognitionMatchesTheSameEveryTime() {
+        for (int i = 0; i < 3; i++) {
+            CommandGrammar.CommandMatch match =
+                    assertCommand(VoiceCommands.BACK_CAMERA, "Switch to the REER camera");
+            assertEquals(1, match.getEdits());
+            assertNull(matcher.match("the weather today"));
+        }
+    }
+
+    @Test
+    public void exactMatchBeatsFuzzyMatchOfSameLength() {
+        CommandGrammar grammar = CommandGrammar.builder()
+                .add("fuzzy", "take photos")
+                .add("exact", "make photos")
+                .build();
+        CommandGrammar.CommandMatch match = grammar.newMatcher().match("make photos");
+        assertEquals("exact", match.getCommand());
+        assertEquals(0, match.getEdits());
+    }
+
+    @Test
+    public void reportsWhetherInputCouldStillGrow() {
+        assertNull(matcher.match("switch to"));
+        assertTrue(matcher.isExtendable());
+        assertNotNull(matcher.match("zoom"));
+        assertTrue(matcher.isExtendable());
+        assertTrue(matcher.isExtendableWithNumbers());
+        assertNotNull(matcher.match("auto capture"));
+        assertTrue(matcher.isExtendable());
+        assertFalse(matcher.isExtendableWithNumbers());
+        assertNotNull(matcher.match("zoom out"));
+        assertFalse(matcher.isExtendable());
+        assertFalse(matcher.isExtendableWithNumbers());
+        assertNull(matcher.match("hello there"));
+        assertFalse(matcher.isExtendable());
+    }
+
+    @Test
+    public void keepsTheOldCommandsWorking() {
+        for (String phrase : new String[] { "take a photo", "take photo", "zoom", "zoom in", "burst" }) {
+            assertNotNull(phrase, matcher.match("hey " + phrase));
+        }
+        assertNull(matcher.match(""));
+        assertNull(matcher.match("what a nice day"));
+    }
+
+    @Test
+    public void everyKeywordPhraseIsACommand() {
+        for (String phrase : VoiceCommands.KEYWORD_PHRASES) {
+            CommandGrammar.CommandMatch match = matcher.match(phrase);
+            assertNotNull(phrase, match);
+            assertEquals(phrase, 0, match.getEdits());
+        }
+    }
+
+    @Test
+    public void matchingDoesNotAllocate() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return;
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+        String[] inputs = {
+                "switch to the reer camera please", "take 12 pictures", "zoom three x", "nothing here"
+        };
+        for (int i = 0; i < 20_000; i++) matcher.match(inputs[i & 3]);
+
+        long id = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(id);
+        for (int i = 0; i < 10_000; i++) matcher.match(inputs[i & 3]);
+        long allocated = bean.getThreadAllocatedBytes(id) - before;
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private CommandGrammar.CommandMatch assertCommand(String expected, String input) {
+        CommandGrammar.CommandMatch match = matcher.match(input);
+        assertNotNull(input, match);
+        assertEquals(input, expected, match.getCommand());
+        return match;
+    }
+}
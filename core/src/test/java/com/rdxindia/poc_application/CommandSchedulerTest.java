@@ -0,0 +1,212 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CommandSchedulerTest {
+
+    private static final long WINDOW = TimeUnit.MILLISECONDS.toNanos(1500);
+    private static final long MAX_WAIT = TimeUnit.SECONDS.toNanos(15);
+    private static final int NONE = CommandBus.NO_VALUE;
+
+    private long now;
+    private final List<String> dispatched = new ArrayList<>();
+    private final List<String> discarded = new ArrayList<>();
+    private final List<Runnable> pending = new ArrayList<>();
+    private CommandScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = scheduler(4);
+    }
+
+    private CommandScheduler scheduler(int capacity) {
+        return new CommandScheduler(VoiceCommands::schedulingRule,
+                new CommandScheduler.Dispatcher() {
+                    @Override
+                    public void dispatch(CommandScheduler.Command command, Runnable done) {
+                        dispatched.add(command.toString());
+                        pending.add(done);
+                    }
+
+                    @Override
+                    public void discarded(CommandScheduler.Command command,
+                                          CommandScheduler.Outcome outcome) {
+                        discarded.add(command + " " + outcome);
+                    }
+                }, WINDOW, capacity, MAX_WAIT, () -> now);
+    }
+
+    private CommandScheduler.Outcome submit(String command) {
+        return submit(command, NONE);
+    }
+
+    private CommandScheduler.Outcome submit(String command, int value) {
+        return scheduler.submit(command, value, NONE, 0);
+    }
+
+    // The camera command running now reports that it is done
+    private void finish() {
+        pending.get(pending.size() - 1).run();
+    }
+
+    private void advance(long millis) {
+        now += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Test
+    public void repeatWithinTheWindowIsCoalesced() {
+        assertEquals(CommandScheduler.Outcome.DISPATCHED, submit(VoiceCommands.TAKE_PHOTO));
+        advance(800);
+        assertEquals(CommandScheduler.Outcome.COALESCED, submit(VoiceCommands.TAKE_PHOTO));
+        // A different count is a different request
+        assertEquals(CommandScheduler.Outcome.QUEUED, submit(VoiceCommands.TAKE_PHOTOS, 3));
+        advance(1000);
+        finish();
+        finish();
+        assertEquals(CommandScheduler.Outcome.DISPATCHED, submit(VoiceCommands.TAKE_PHOTO));
+
+        assertEquals(Arrays.asList("take a photo", "take photos 3", "take a photo"), dispatched);
+        assertEquals(1, scheduler.getCoalescedCount());
+        assertEquals(4, scheduler.getSubmittedCount());
+    }
+
+    @Test
+    public void cameraCommandsRunOneAtATime() {
+        submit(VoiceCommands.TAKE_PHOTO);
+        submit(VoiceCommands.BURST);
+        submit(VoiceCommands.ZOOM, 2);
+        assertEquals(Arrays.asList("take a photo"), dispatched);
+        assertEquals(2, scheduler.getQueueDepth());
+
+        // Others do not wait for the camera
+        assertEquals(CommandScheduler.Outcome.DISPATCHED, submit(VoiceCommands.INTERVAL_STOP));
+        assertEquals(2, dispatched.size());
+
+        advance(2000);
+        pending.get(0).run();
+        assertEquals("burst", dispatched.get(2));
+        // Run again, or for a command that does not hold the camera, done changes nothing
+        pending.get(0).run();
+        pending.get(1).run();
+        assertEquals(3, dispatched.size());
+        finish();
+        assertEquals("zoom 2", dispatched.get(3));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(2000), scheduler.getMaxWaitedNanos());
+    }
+
+    @Test
+    public void intervalShotsWaitBehindSpokenCommands() {
+        submit(VoiceCommands.TAKE_PHOTO);
+        scheduler.submit(VoiceCommands.INTERVAL_SHOT, 1, 10, 0);
+        submit(VoiceCommands.BURST);
+        finish();
+        assertEquals("burst", dispatched.get(1));
+        finish();
+        assertEquals("interval shot 1/10", dispatched.get(2));
+    }
+
+    @Test
+    public void autoShotWaitsBehindSpokenCommandsAndIsCancelled() {
+        submit(VoiceCommands.TAKE_PHOTO);
+        submit(VoiceCommands.AUTO_SHOT);
+        submit(VoiceCommands.BURST);
+        finish();
+        assertEquals("burst", dispatched.get(1));
+        submit(VoiceCommands.CANCEL);
+        assertEquals(Arrays.asList("auto shot PREEMPTED"), discarded);
+    }
+
+    @Test
+    public void newerIntervalShotReplacesAQueuedOne() {
+        submit(VoiceCommands.TAKE_PHOTO);
+        scheduler.submit(VoiceCommands.INTERVAL_SHOT, 1, 10, 0);
+        scheduler.submit(VoiceCommands.INTERVAL_SHOT, 2, 10, 0);
+        assertEquals(Arrays.asList("interval shot 1/10 COALESCED"), discarded);
+        finish();
+        assertEquals("interval shot 2/10", dispatched.get(1));
+    }
+
+    @Test
+    public void cancelThrowsOutQueuedCommandsButNotTheRunningOne() {
+        submit(VoiceCommands.TAKE_PHOTO);
+        submit(VoiceCommands.BURST);
+        submit(VoiceCommands.ZOOM_OUT);
+        assertEquals(CommandScheduler.Outcome.DISPATCHED, submit(VoiceCommands.CANCEL));
+
+        assertEquals(Arrays.asList("take a photo", "cancel"), dispatched);
+        assertEquals(Arrays.asList("burst PREEMPTED", "zoom out PREEMPTED"), discarded);
+        assertEquals(2, scheduler.getPreemptedCount());
+        assertEquals(0, scheduler.getQueueDepth());
+        assertEquals("take a photo", scheduler.getRunning().toString());
+
+        pending.get(0).run();
+        assertNull(scheduler.getRunning());
+    }
+
+    @Test
+    public void stoppingIntervalCaptureThrowsOutQueuedShotsOnly() {
+        submit(VoiceCommands.TAKE_PHOTO);
+        scheduler.submit(VoiceCommands.INTERVAL_SHOT, 1, 10, 0);
+        submit(VoiceCommands.BURST);
+        submit(VoiceCommands.INTERVAL_STOP);
+
+        assertEquals(Arrays.asList("interval shot 1/10 PREEMPTED"), discarded);
+        assertEquals(1, scheduler.getQueueDepth());
+    }
+
+    @Test
+    public void laterLensSwitchReplacesAQueuedOne() {
+        submit(VoiceCommands.TAKE_PHOTO);
+        submit(VoiceCommands.FRONT_CAMERA);
+        submit(VoiceCommands.BACK_CAMERA);
+        assertEquals(Arrays.asList("front camera COALESCED"), discarded);
+        finish();
+        assertEquals("back camera", dispatched.get(1));
+    }
+
+    @Test
+    public void fullQueueDropsTheLeastUrgent() {
+        scheduler = scheduler(2);
+        submit(VoiceCommands.TAKE_PHOTO);
+        submit(VoiceCommands.BURST);
+        scheduler.submit(VoiceCommands.INTERVAL_SHOT, 1, 10, 0);
+        // The interval shot goes to make room for a spoken command
+        assertEquals(CommandScheduler.Outcome.QUEUED, submit(VoiceCommands.ZOOM, 2));
+        assertEquals(Arrays.asList("interval shot 1/10 DROPPED"), discarded);
+        // Nothing queued is less urgent, so the newcomer goes
+        assertEquals(CommandScheduler.Outcome.DROPPED, submit(VoiceCommands.ZOOM_OUT));
+        assertEquals(2, scheduler.getDroppedCount());
+        assertEquals(2, scheduler.getQueueDepth());
+    }
+
+    @Test
+    public void commandThatWaitedTooLongIsDropped() {
+        submit(VoiceCommands.TAKE_PHOTO);
+        submit(VoiceCommands.BURST);
+        advance(TimeUnit.NANOSECONDS.toMillis(MAX_WAIT) + 1);
+        submit(VoiceCommands.ZOOM, 2);
+        finish();
+
+        assertEquals(Arrays.asList("burst DROPPED"), discarded);
+        assertEquals(Arrays.asList("take a photo", "zoom 2"), dispatched);
+    }
+
+    @Test
+    public void clearDropsEveryQueuedCommand() {
+        submit(VoiceCommands.TAKE_PHOTO);
+        submit(VoiceCommands.BURST);
+        submit(VoiceCommands.ZOOM, 3);
+        scheduler.clear();
+        assertEquals(Arrays.asList("burst DROPPED", "zoom 3 DROPPED"), discarded);
+        finish();
+        assertEquals(1, dispatched.size());
+    }
+}
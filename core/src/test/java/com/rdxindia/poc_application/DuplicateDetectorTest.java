@@ -0,0 +1,148 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DuplicateDetectorTest {
+
+    private static final long SCENE = 0x5A5A_F0F0_3C3C_0FF0L;
+
+    private final DuplicateDetector detector =
+            new DuplicateDetector(new DuplicateDetector.RadiusPolicy(), 64, 120_000);
+
+    // hash with the lowest n bits flipped
+    private static long flip(long hash, int n) {
+        return hash ^ ((1L << n) - 1);
+    }
+
+    @Test
+    public void burstCopiesAreDroppedAndLooseOnesLinked() {
+        assertEquals(DuplicateDetector.Action.KEEP,
+                detector.check("a.jpg", SCENE, 1_000).getAction());
+
+        DuplicateDetector.Verdict copy = detector.check("b.jpg", flip(SCENE, 2), 1_500);
+        assertEquals(DuplicateDetector.Action.DROP, copy.getAction());
+        assertEquals("a.jpg", copy.getOriginal());
+        assertEquals(2, copy.getDistance());
+
+        // Past the drop window, the same scene only links to the first file
+        DuplicateDetector.Verdict later = detector.check("c.jpg", flip(SCENE, 1), 30_000);
+        assertEquals(DuplicateDetector.Action.LINK, later.getAction());
+        assertEquals("a.jpg", later.getOriginal());
+
+        assertEquals(DuplicateDetector.Action.LINK,
+                detector.check("d.jpg", flip(SCENE, 7), 31_000).getAction());
+        DuplicateDetector.Verdict other = detector.check("e.jpg", ~SCENE, 32_000);
+        assertEquals(DuplicateDetector.Action.KEEP, other.getAction());
+        assertNull(other.getOriginal());
+
+        assertEquals(2, detector.getKeptCount());
+        assertEquals(2, detector.getLinkedCount());
+        assertEquals(1, detector.getDroppedCount());
+        assertEquals(2, detector.size());
+    }
+
+    @Test
+    public void oldShotsAreForgotten() {
+        detector.check("a.jpg", SCENE, 0);
+        assertEquals(DuplicateDetector.Action.KEEP,
+                detector.check("b.jpg", SCENE, 200_000).getAction());
+        assertEquals(1, detector.size());
+
+        DuplicateDetector small = new DuplicateDetector(new DuplicateDetector.RadiusPolicy(), 2,
+                120_000);
+        small.check("a.jpg", SCENE, 0);
+        small.check("b.jpg", ~SCENE, 1);
+        small.check("c.jpg", SCENE ^ 0xFFFF_FFFFL, 2);
+        assertEquals(2, small.size());
+        assertEquals(DuplicateDetector.Action.KEEP, small.check("d.jpg", SCENE, 3).getAction());
+    }
+
+    @Test
+    public void forgottenShotsNoLongerMatch() {
+        detector.check("a.jpg", SCENE, 1_000);
+        assertTrue(detector.forget("a.jpg"));
+        assertFalse(detector.forget("a.jpg"));
+        assertEquals(DuplicateDetector.Action.KEEP,
+                detector.check("b.jpg", SCENE, 1_100).getAction());
+    }
+
+    @Test
+    public void theStrongestActionWins() {
+        // Out of the link radius of the first shot, but a copy of the second
+        detector.check("old.jpg", SCENE, 0);
+        detector.check("new.jpg", flip(SCENE, 12), 50_000);
+        DuplicateDetector.Verdict verdict = detector.check("next.jpg", flip(SCENE, 10), 52_000);
+        assertEquals(DuplicateDetector.Action.DROP, verdict.getAction());
+        assertEquals("new.jpg", verdict.getOriginal());
+    }
+
+    @Test
+    public void concurrentCopiesKeepOnlyOne() throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(4);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            Set<Future<DuplicateDetector.Verdict>> results = new HashSet<>();
+            for (int i = 0; i < 8; i++) {
+                String name = "burst" + i + ".jpg";
+                results.add(workers.submit(() -> {
+                    start.await();
+                    return detector.check(name, SCENE, 1_000);
+                }));
+            }
+            start.countDown();
+            int kept = 0;
+            for (Future<DuplicateDetector.Verdict> result : results) {
+                if (result.get(5, TimeUnit.SECONDS).getAction() == DuplicateDetector.Action.KEEP) {
+                    kept++;
+                }
+            }
+            assertEquals(1, kept);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void treeSearchFindsWhatALinearScanFinds() {
+        Random random = new Random(5);
+        long[] hashes = new long[2000];
+        BkTree<Integer> tree = new BkTree<>();
+        for (int i = 0; i < hashes.length; i++) {
+            // Clusters of near-identical hashes, as bursts make
+            hashes[i] = i % 10 == 0 ? random.nextLong() : hashes[i - i % 10] ^ (1L << random.nextInt(64));
+            tree.add(hashes[i], i);
+        }
+        for (int i = 0; i < hashes.length; i += 20) {
+            tree.remove(hashes[i + 1], i + 1);
+        }
+        for (int q = 0; q < 50; q++) {
+            long query = hashes[random.nextInt(hashes.length)] ^ (1L << random.nextInt(64));
+            Set<Integer> expected = new HashSet<>();
+            for (int i = 0; i < hashes.length; i++) {
+                if (i % 20 != 1 && PerceptualHash.distance(query, hashes[i]) <= 4) expected.add(i);
+            }
+            Set<Integer> found = new HashSet<>();
+            for (BkTree.Entry<Integer> entry : tree.search(query, 4)) found.add(entry.getValue());
+            assertEquals(expected, found);
+            assertTrue("visited " + tree.getLastVisited(), tree.getLastVisited() < hashes.length / 2);
+
+            BkTree.Entry<Integer> nearest = tree.nearest(query, 4);
+            assertNotNull(nearest);
+            int best = 64;
+            for (int i : expected) best = Math.min(best, PerceptualHash.distance(query, hashes[i]));
+            assertEquals(best, PerceptualHash.distance(query, nearest.getHash()));
+        }
+        assertEquals(hashes.length - 100, tree.size());
+    }
+}
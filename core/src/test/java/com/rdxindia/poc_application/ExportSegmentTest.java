@@ -0,0 +1,229 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+public class ExportSegmentTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void streamIsATarOfThePhotosAndTheManifest() throws IOException {
+        File library = temp.newFolder("library");
+        List<PhotoIndex.Photo> photos = new ArrayList<>();
+        photos.add(photo(library, "IMG_1.jpg", 1000, T0, 18.52043, 73.856744));
+        photos.add(photo(library, "IMG_2.jpg", 512, T0 + 1000, Double.NaN, Double.NaN));
+        photos.add(photo(library, "IMG_3.jpg", 70_000, T0 + 2000, -1.5, 2.5));
+        ExportPlan plan = ExportPlan.build("day", library, photos, 1 << 20);
+        assertEquals(1, plan.getSegments().size());
+
+        ExportSegment segment = new ExportSegment(plan.getSegments().get(0), library);
+        byte[] tar = stream(segment);
+        assertEquals(segment.length(), tar.length);
+        assertEquals(0, tar.length % 512);
+
+        Map<String, byte[]> entries = untar(tar);
+        assertEquals(Arrays.asList("IMG_1.jpg", "IMG_2.jpg", "IMG_3.jpg", ExportSegment.MANIFEST),
+                new ArrayList<>(entries.keySet()));
+        for (PhotoIndex.Photo photo : photos) {
+            assertArrayEquals(Files.readAllBytes(new File(library, photo.getName()).toPath()),
+                    entries.get(photo.getName()));
+        }
+
+        String[] lines = new String(entries.get(ExportSegment.MANIFEST), StandardCharsets.UTF_8)
+                .split("\n");
+        assertEquals(ExportSegment.MANIFEST_HEADER.trim(), lines[0]);
+        assertEquals(4, lines.length);
+        String[] first = lines[1].split("\t", -1);
+        assertEquals("IMG_1.jpg", first[0]);
+        assertEquals(Long.toString(T0), first[1]);
+        assertEquals("18.52043", first[2]);
+        assertEquals("73.85674", first[3]);
+        assertEquals("", first[4]);
+        assertEquals("1000", first[5]);
+        String[] second = lines[2].split("\t", -1);
+        assertEquals("", second[2]);
+        assertEquals("", second[3]);
+        for (int i = 0; i < photos.size(); i++) {
+            String[] f = lines[i + 1].split("\t", -1);
+            assertEquals(String.format("%08x", crc(entries.get(f[0]))), f[6]);
+        }
+    }
+
+    @Test
+    public void streamFromAnyOffsetMatchesTheWholeStream() throws IOException {
+        File library = temp.newFolder("library");
+        List<PhotoIndex.Photo> photos = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            photos.add(photo(library, "IMG_" + i + ".jpg", 3000 + i * 1777, T0 + i, 1, 2));
+        }
+        ExportPlan.Segment plan = ExportPlan.build("day", library, photos, 1 << 20)
+                .getSegments().get(0);
+        byte[] whole = stream(new ExportSegment(plan, library));
+
+        Random random = new Random(11);
+        for (int trial = 0; trial < 20; trial++) {
+            // Each chunk from a fresh segment, as after a restart, with no checksums known
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (long offset = 0; offset < whole.length; ) {
+                long count = 1 + random.nextInt(9000);
+                new ExportSegment(plan, library).transferTo(offset, count, Channels.newChannel(out));
+                offset += count;
+            }
+            assertArrayEquals(whole, out.toByteArray());
+        }
+
+        // Past the end nothing is written
+        assertEquals(0, new ExportSegment(plan, library)
+                .transferTo(whole.length, 100, Channels.newChannel(new ByteArrayOutputStream())));
+    }
+
+    @Test
+    public void seededChecksumsAreNotReadAgain() throws IOException {
+        File library = temp.newFolder("library");
+        List<PhotoIndex.Photo> photos = new ArrayList<>();
+        photos.add(photo(library, "IMG_1.jpg", 4000, T0, 1, 2));
+        photos.add(photo(library, "IMG_2.jpg", 4000, T0 + 1, 1, 2));
+        ExportPlan.Segment plan = ExportPlan.build("day", library, photos, 1 << 20)
+                .getSegments().get(0);
+        ExportSegment first = new ExportSegment(plan, library);
+        byte[] whole = stream(first);
+
+        // The first photo is gone, but the seeded checksum stands in for it in the manifest
+        ExportSegment resumed = new ExportSegment(plan, library);
+        resumed.setChecksum(0, first.getChecksum(0));
+        assertTrue(new File(library, "IMG_1.jpg").delete());
+        long from = 512 + 4096;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        resumed.transferTo(from, whole.length, Channels.newChannel(out));
+        assertArrayEquals(Arrays.copyOfRange(whole, (int) from, whole.length), out.toByteArray());
+    }
+
+    @Test
+    public void changedPhotoFailsTheStream() throws IOException {
+        File library = temp.newFolder("library");
+        List<PhotoIndex.Photo> photos = new ArrayList<>();
+        photos.add(photo(library, "IMG_1.jpg", 4000, T0, 1, 2));
+        ExportPlan.Segment plan = ExportPlan.build("day", library, photos, 1 << 20)
+                .getSegments().get(0);
+        Files.write(new File(library, "IMG_1.jpg").toPath(), new byte[10]);
+        try {
+            stream(new ExportSegment(plan, library));
+            fail("Streamed a photo that changed");
+        } catch (IOException expected) {
+            // The archive's lengths would no longer hold
+        }
+    }
+
+    @Test
+    public void planReadsFixAgeFromExifAndSurvivesARoundTrip() throws IOException {
+        File library = temp.newFolder("library");
+        File gps = new File(library, "IMG_gps.jpg");
+        Files.write(gps.toPath(), fixture("camera.jpg"));
+        JpegExifSplicer.splice(gps, new ExifWriter().setGpsLocation(18.5, 73.8)
+                .setGpsFix(T0 - 4250, 5f));
+        File plain = new File(library, "IMG_plain.jpg");
+        Files.write(plain.toPath(), fixture("plain.jpg"));
+        List<PhotoIndex.Photo> photos = Arrays.asList(
+                new PhotoIndex.Photo("IMG_gps.jpg", T0, 18.5, 73.8),
+                new PhotoIndex.Photo("IMG_missing.jpg", T0, 18.5, 73.8),
+                new PhotoIndex.Photo("IMG_plain.jpg", T0 + 1, Double.NaN, Double.NaN));
+        // Small enough that each photo gets its own segment
+        ExportPlan plan = ExportPlan.build("day", library, photos, 1);
+
+        assertEquals(2, plan.getSegments().size());
+        assertEquals("day-000.tar", plan.getSegments().get(0).getName());
+        assertEquals("day-001.tar", plan.getSegments().get(1).getName());
+        ExportPlan.Item located = plan.getSegments().get(0).getItems().get(0);
+        assertEquals(4250, located.getFixAgeMillis());
+        ExportPlan.Item unlocated = plan.getSegments().get(1).getItems().get(0);
+        assertEquals(-1, unlocated.getFixAgeMillis());
+        assertFalse(unlocated.hasLocation());
+
+        File saved = temp.newFile("plan.tsv");
+        plan.write(saved);
+        ExportPlan read = ExportPlan.read(saved);
+        assertEquals("day", read.getId());
+        assertEquals(plan.getItemCount(), read.getItemCount());
+        assertEquals(plan.getDataBytes(), read.getDataBytes());
+        // Same plan, same bytes
+        for (int i = 0; i < plan.getSegments().size(); i++) {
+            assertArrayEquals(stream(new ExportSegment(plan.getSegments().get(i), library)),
+                    stream(new ExportSegment(read.getSegments().get(i), library)));
+        }
+    }
+
+    static PhotoIndex.Photo photo(File library, String name, int bytes, long time,
+                                  double latitude, double longitude) throws IOException {
+        byte[] data = new byte[bytes];
+        new Random(name.hashCode()).nextBytes(data);
+        Files.write(new File(library, name).toPath(), data);
+        return new PhotoIndex.Photo(name, time, latitude, longitude);
+    }
+
+    static byte[] stream(ExportSegment segment) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        segment.transferTo(Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    // Just enough of a ustar reader to check the writer, header checksums included
+    static Map<String, byte[]> untar(byte[] tar) {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        int pos = 0;
+        while (pos + 512 <= tar.length && tar[pos] != 0) {
+            int sum = 0;
+            for (int i = 0; i < 512; i++) {
+                sum += i >= 148 && i < 156 ? ' ' : tar[pos + i] & 0xFF;
+            }
+            assertEquals(sum, Integer.parseInt(field(tar, pos + 148, 7), 8));
+            assertEquals("ustar", field(tar, pos + 257, 6));
+            String name = field(tar, pos, 100);
+            int size = Integer.parseInt(field(tar, pos + 124, 12), 8);
+            entries.put(name, Arrays.copyOfRange(tar, pos + 512, pos + 512 + size));
+            pos += 512 + (size + 511) / 512 * 512;
+        }
+        assertEquals("two zero blocks close the archive", tar.length, pos + 1024);
+        return entries;
+    }
+
+    private static String field(byte[] tar, int at, int width) {
+        int end = at;
+        while (end < at + width && tar[end] != 0) end++;
+        return new String(tar, at, end - at, StandardCharsets.US_ASCII).trim();
+    }
+
+    static long crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    private static byte[] fixture(String name) throws IOException {
+        try (InputStream in = ExportSegmentTest.class.getResourceAsStream("/jpeg/" + name)) {
+            assertNotNull("missing fixture " + name, in);
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FrameSchedulerTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private long now;
+    private final List<FrameScheduler.Completion> pending = new ArrayList<>();
+    private final List<byte[]> buffers = new ArrayList<>();
+    private final List<List<Detection>> delivered = new ArrayList<>();
+
+    // Holds on to each detection until the test completes it
+    private final FrameScheduler.Detector detector = (nv21, width, height, rotation, completion) -> {
+        buffers.add(nv21);
+        pending.add(completion);
+    };
+
+    private FrameScheduler newScheduler(double dutyCycle) {
+        return new FrameScheduler(detector, delivered::add, dutyCycle, () -> now);
+    }
+
+    private static FrameScheduler.Frame frame(int width, int height, byte fill) {
+        return new FrameScheduler.Frame() {
+            @Override
+            public int getWidth() {
+                return width;
+            }
+
+            @Override
+            public int getHeight() {
+                return height;
+            }
+
+            @Override
+            public int getRotationDegrees() {
+                return 90;
+            }
+
+            @Override
+            public void copyNv21(byte[] out) {
+                Arrays.fill(out, fill);
+            }
+        };
+    }
+
+    private void complete() {
+        pending.remove(0).onSuccess(Collections.singletonList(
+                new Detection("Food", 0.9f, 0.4f, 0.4f, 0.6f, 0.6f, 1)));
+    }
+
+    @Test
+    public void framesArrivingDuringADetectionAreDroppedWithoutCopying() {
+        FrameScheduler scheduler = newScheduler(1.0);
+        assertTrue(scheduler.offer(frame(4, 4, (byte) 1)));
+        assertFalse(scheduler.offer(frame(4, 4, (byte) 2)));
+        assertFalse(scheduler.offer(frame(4, 4, (byte) 3)));
+        assertEquals(1, pending.size());
+        assertEquals(1, buffers.get(0)[0]);
+        assertEquals(2, scheduler.getDroppedBusyCount());
+
+        complete();
+        assertEquals(1, delivered.size());
+        assertTrue(scheduler.offer(frame(4, 4, (byte) 4)));
+        assertEquals(1, scheduler.getDetectedCount());
+    }
+
+    @Test
+    public void throttleFollowsMeasuredLatency() {
+        FrameScheduler scheduler = newScheduler(0.5);
+        now = 0;
+        assertTrue(scheduler.offer(frame(4, 4, (byte) 0)));
+        now = 40 * MS;
+        complete();
+        assertEquals(40 * MS, scheduler.getAverageLatencyNanos());
+
+        // A 40ms detection at a 50% duty cycle holds the next one off until 80ms
+        now = 79 * MS;
+        assertFalse(scheduler.offer(frame(4, 4, (byte) 0)));
+        assertEquals(1, scheduler.getDroppedThrottledCount());
+        now = 80 * MS;
+        assertTrue(scheduler.offer(frame(4, 4, (byte) 0)));
+    }
+
+    @Test
+    public void buffersAreRecycledAndFailuresReleaseThem() {
+        FrameScheduler scheduler = newScheduler(1.0);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(scheduler.offer(frame(8, 6, (byte) i)));
+            if (i % 3 == 0) {
+                pending.remove(0).onFailure(new Exception("detector failed"));
+            } else {
+                complete();
+            }
+        }
+        assertEquals(1, scheduler.getBufferAllocations());
+        assertEquals(8 * 6 * 3 / 2, buffers.get(9).length);
+        assertSame(buffers.get(0), buffers.get(9));
+        assertEquals(4, scheduler.getFailedCount());
+        assertEquals(6, delivered.size());
+
+        // A new resolution gets a new buffer
+        assertTrue(scheduler.offer(frame(16, 12, (byte) 0)));
+        assertEquals(2, scheduler.getBufferAllocations());
+    }
+
+    @Test
+    public void disabledSchedulerTakesNothing() {
+        FrameScheduler scheduler = newScheduler(1.0);
+        scheduler.setEnabled(false);
+        assertFalse(scheduler.offer(frame(4, 4, (byte) 0)));
+        assertEquals(0, scheduler.getOfferedCount());
+        assertTrue(pending.isEmpty());
+    }
+}
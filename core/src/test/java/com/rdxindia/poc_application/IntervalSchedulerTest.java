@@ -0,0 +1,105 @@
+package com.rdxindia.poc_application;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class IntervalSchedulerTest {
+
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final IntervalScheduler scheduler =
+            new IntervalScheduler(executor, timer, System::nanoTime);
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    @Test
+    public void ticksStayOnTheirDueTimes() throws Exception {
+        List<Long> ticks = new ArrayList<>();
+        long start = System.nanoTime();
+        IntervalScheduler.Session session = scheduler.start(INTERVAL, 8, (index, late) -> {
+            ticks.add(System.nanoTime() - start);
+            return true;
+        }, s -> finished.countDown());
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+
+        assertEquals(8, session.getTakenCount());
+        assertFalse(session.isStopped());
+        for (int i = 0; i < ticks.size(); i++) {
+            // Never early, and lateness does not add up over the session
+            assertTrue("tick " + i + " at " + ticks.get(i), ticks.get(i) >= i * INTERVAL);
+            assertTrue("tick " + i + " at " + ticks.get(i), ticks.get(i) < i * INTERVAL + INTERVAL);
+        }
+        assertEquals(8, session.getLateness().getCount());
+    }
+
+    @Test
+    public void slowTicksCollapseAndBusyTicksAreSkipped() throws Exception {
+        IntervalScheduler.Session session = scheduler.start(INTERVAL, 10, (index, late) -> {
+            if (index == 2) {
+                try {
+                    // Runs over the due times of shots 3 and 4
+                    Thread.sleep(TimeUnit.NANOSECONDS.toMillis(INTERVAL * 7 / 2));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return index % 3 != 0;
+        }, s -> finished.countDown());
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+
+        assertTrue(session.toString(), session.getMissedCount() >= 2);
+        assertTrue(session.toString(), session.getBusyCount() >= 2);
+        assertEquals(10, session.getTakenCount() + session.getBusyCount()
+                + session.getMissedCount());
+        assertTrue(session.getLateness().getMaxNanos() >= INTERVAL / 2);
+    }
+
+    @Test
+    public void stopEndsTheSession() throws Exception {
+        CountDownLatch twoShots = new CountDownLatch(2);
+        IntervalScheduler.Session session = scheduler.start(INTERVAL, 100, (index, late) -> {
+            twoShots.countDown();
+            return true;
+        }, s -> finished.countDown());
+        assertTrue(twoShots.await(5, TimeUnit.SECONDS));
+        scheduler.stop();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        int taken = session.getTakenCount();
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(INTERVAL * 3));
+
+        assertTrue(session.isStopped());
+        assertEquals(taken, session.getTakenCount());
+        assertTrue(session.toString(), session.toString().contains("(stopped)"));
+    }
+
+    @Test
+    public void aNewSessionReplacesTheRunningOne() throws Exception {
+        IntervalScheduler.Session first = scheduler.start(INTERVAL, 100, (index, late) -> true,
+                s -> finished.countDown());
+        CountDownLatch secondDone = new CountDownLatch(1);
+        IntervalScheduler.Session second = scheduler.start(INTERVAL, 2, (index, late) -> true,
+                s -> secondDone.countDown());
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertTrue(secondDone.await(5, TimeUnit.SECONDS));
+        assertTrue(first.isStopped());
+        assertFalse(second.isStopped());
+        assertEquals(2, second.getTakenCount());
+    }
+}
@@ -0,0 +1,175 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Splices GPS tags into the fixtures under resources/jpeg and compares the
+ * output against the checked-in golden files.
+ */
+public class JpegExifSplicerTest {
+
+    private static final double LAT = 18.520430;
+    private static final double LON = 73.856744;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void insertsApp1AfterSoiWhenImageHasNoExif() throws IOException {
+        byte[] source = fixture("plain.jpg");
+        byte[] result = splice(source, new ExifWriter().setGpsLocation(LAT, LON));
+
+        assertArrayEquals(fixture("plain_gps.jpg"), result);
+        // Everything after SOI is the original file, untouched
+        int app1Length = 2 + (((result[4] & 0xFF) << 8) | (result[5] & 0xFF));
+        assertArrayEquals(Arrays.copyOfRange(source, 2, source.length),
+                Arrays.copyOfRange(result, 2 + app1Length, result.length));
+
+        Tags tags = Tags.read(result);
+        assertEquals(LAT, tags.latitude, 1e-9);
+        assertEquals(LON, tags.longitude, 1e-9);
+    }
+
+    @Test
+    public void mergesIntoExistingExifAndKeepsCameraTags() throws IOException {
+        byte[] source = fixture("camera.jpg");
+        byte[] result = splice(source, new ExifWriter().setGpsLocation(-LAT, -LON));
+
+        assertArrayEquals(fixture("camera_gps.jpg"), result);
+        Tags tags = Tags.read(result);
+        assertEquals("POCCam", tags.make);
+        assertEquals(ExifWriter.ORIENTATION_ROTATE_90, tags.orientation);
+        assertEquals(-LAT, tags.latitude, 1e-9);
+        assertEquals(-LON, tags.longitude, 1e-9);
+
+        // Compressed data following the old APP1 is carried over byte for byte
+        int oldEnd = 4 + (((source[4] & 0xFF) << 8) | (source[5] & 0xFF));
+        int newEnd = 4 + (((result[4] & 0xFF) << 8) | (result[5] & 0xFF));
+        assertArrayEquals(Arrays.copyOfRange(source, oldEnd, source.length),
+                Arrays.copyOfRange(result, newEnd, result.length));
+    }
+
+    @Test
+    public void splicingAgainReplacesGpsInsteadOfDuplicatingIt() throws IOException {
+        byte[] once = splice(fixture("camera.jpg"), new ExifWriter().setGpsLocation(LAT, LON));
+        byte[] twice = splice(once, new ExifWriter().setGpsLocation(1.5, 2.5));
+
+        Tags tags = Tags.read(twice);
+        assertEquals(1, tags.gpsPointers);
+        assertEquals(1.5, tags.latitude, 1e-9);
+        assertEquals(2.5, tags.longitude, 1e-9);
+        assertEquals("POCCam", tags.make);
+    }
+
+    @Test
+    public void dmsKeepsSubSecondPrecision() {
+        // 73.856744 deg = 73 deg 51' 24.2784"
+        long[] dms = ExifWriter.toDms(LON);
+        assertEquals(73, dms[0]);
+        assertEquals(51, dms[2]);
+        assertEquals(24_278_400, dms[4]);
+        assertEquals(ExifWriter.SECONDS_DENOMINATOR, dms[5]);
+
+        // Values that round up to a full minute carry instead of producing 60"
+        long[] carry = ExifWriter.toDms(10.999_999_999_99);
+        assertEquals(11, carry[0]);
+        assertEquals(0, carry[2]);
+        assertEquals(0, carry[4]);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNonJpegInput() throws IOException {
+        splice(new byte[] { 1, 2, 3, 4, 5, 6 }, new ExifWriter().setGpsLocation(LAT, LON));
+    }
+
+    private byte[] splice(byte[] jpeg, ExifWriter exif) throws IOException {
+        File file = temp.newFile();
+        Files.write(file.toPath(), jpeg);
+        JpegExifSplicer.splice(file, exif);
+        return Files.readAllBytes(file.toPath());
+    }
+
+    private static byte[] fixture(String name) throws IOException {
+        try (InputStream in = JpegExifSplicerTest.class.getResourceAsStream("/jpeg/" + name)) {
+            assertNotNull("missing fixture " + name, in);
+            return in.readAllBytes();
+        }
+    }
+
+    // Just enough of a TIFF reader to check what the splicer wrote
+    private static final class Tags {
+        String make;
+        int orientation;
+        int gpsPointers;
+        double latitude;
+        double longitude;
+
+        static Tags read(byte[] jpeg) {
+            assertEquals(0xFF, jpeg[2] & 0xFF);
+            assertEquals(0xE1, jpeg[3] & 0xFF);
+            int length = ((jpeg[4] & 0xFF) << 8) | (jpeg[5] & 0xFF);
+            ByteBuffer tiff = ByteBuffer.wrap(jpeg, 12, length - 8).slice();
+            tiff.order(tiff.get(0) == 'I' ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+
+            Tags tags = new Tags();
+            int ifd0 = tiff.getInt(4);
+            int gpsIfd = -1;
+            for (int i = 0, n = tiff.getShort(ifd0); i < n; i++) {
+                int entry = ifd0 + 2 + i * 12;
+                int tag = tiff.getShort(entry) & 0xFFFF;
+                if (tag == 0x010F) {
+                    int count = tiff.getInt(entry + 4);
+                    int offset = tiff.getInt(entry + 8);
+                    byte[] chars = new byte[count - 1];
+                    tiff.position(offset);
+                    tiff.get(chars);
+                    tags.make = new String(chars);
+                } else if (tag == ExifWriter.TAG_ORIENTATION) {
+                    tags.orientation = tiff.getShort(entry + 8);
+                } else if (tag == ExifWriter.TAG_GPS_IFD_POINTER) {
+                    tags.gpsPointers++;
+                    gpsIfd = tiff.getInt(entry + 8);
+                }
+            }
+            assertTrue("no GPS IFD", gpsIfd > 0);
+
+            char latRef = 0;
+            char lonRef = 0;
+            for (int i = 0, n = tiff.getShort(gpsIfd); i < n; i++) {
+                int entry = gpsIfd + 2 + i * 12;
+                int tag = tiff.getShort(entry);
+                if (tag == ExifWriter.TAG_GPS_LATITUDE_REF) latRef = (char) tiff.get(entry + 8);
+                if (tag == ExifWriter.TAG_GPS_LONGITUDE_REF) lonRef = (char) tiff.get(entry + 8);
+                if (tag == ExifWriter.TAG_GPS_LATITUDE) tags.latitude = dms(tiff, tiff.getInt(entry + 8));
+                if (tag == ExifWriter.TAG_GPS_LONGITUDE) tags.longitude = dms(tiff, tiff.getInt(entry + 8));
+            }
+            if (latRef == 'S') tags.latitude = -tags.latitude;
+            if (lonRef == 'W') tags.longitude = -tags.longitude;
+            return tags;
+        }
+
+        private static double dms(ByteBuffer tiff, int offset) {
+            double value = 0;
+            double scale = 1;
+            for (int i = 0; i < 3; i++) {
+                long num = tiff.getInt(offset + i * 8) & 0xFFFFFFFFL;
+                long den = tiff.getInt(offset + i * 8 + 4) & 0xFFFFFFFFL;
+                value += (double) num / den / scale;
+                scale *= 60;
+            }
+            return value;
+        }
+    }
+}
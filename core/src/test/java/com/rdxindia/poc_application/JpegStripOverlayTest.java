@@ -0,0 +1,266 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+
+import static org.junit.Assert.*;
+
+/**
+ * Rewrites JPEGs produced by ImageIO and checks that only the MCUs under the
+ * painted rectangle change at the coefficient level.
+ */
+public class JpegStripOverlayTest {
+
+    private static final int WIDTH = 203;
+    private static final int HEIGHT = 150;
+
+    @Test
+    public void onlyMcusUnderOverlayChangeForEveryRotation() throws IOException {
+        byte[] source = encode(testImage(BufferedImage.TYPE_INT_RGB), 0, false);
+        for (int rotation : new int[] { 0, 90, 180, 270 }) {
+            RectPainter painter = new RectPainter(10, 20, 70, 40);
+            byte[] result = rewrite(source, painter, rotation, null);
+            assertOnlyRegionChanged(source, result, painter.sensorRect);
+            assertPaintedWhite(result, painter.sensorRect);
+        }
+    }
+
+    @Test
+    public void bottomOverlayKeepsEntropyPrefixByteForByte() throws IOException {
+        byte[] source = encode(testImage(BufferedImage.TYPE_INT_RGB), 0, false);
+        byte[] result = rewrite(source, new RectPainter(10, 5, 70, 20), 0, null);
+
+        JpegHeader header = JpegHeader.read(ByteBuffer.wrap(source));
+        int common = 0;
+        while (source[common] == result[common]) common++;
+        // Overlay starts at row 7 of 10 MCU rows; the rows above are copied
+        assertTrue("only " + common + " bytes copied",
+                common > header.scanStart + (source.length - header.scanStart) / 2);
+    }
+
+    @Test
+    public void grayscaleImage() throws IOException {
+        byte[] source = encode(testImage(BufferedImage.TYPE_BYTE_GRAY), 0, false);
+        RectPainter painter = new RectPainter(5, 5, 40, 16);
+        byte[] result = rewrite(source, painter, 90, null);
+        assertOnlyRegionChanged(source, result, painter.sensorRect);
+        assertPaintedWhite(result, painter.sensorRect);
+    }
+
+    @Test
+    public void restartIntervalsAreRenumberedAndTailCopied() throws IOException {
+        byte[] source = encode(testImage(BufferedImage.TYPE_INT_RGB), 4, false);
+        assertEquals(4, JpegHeader.read(ByteBuffer.wrap(source)).restartInterval);
+        for (int rotation : new int[] { 0, 270 }) {
+            RectPainter painter = new RectPainter(10, 20, 70, 40);
+            byte[] result = rewrite(source, painter, rotation, null);
+            assertOnlyRegionChanged(source, result, painter.sensorRect);
+            assertPaintedWhite(result, painter.sensorRect);
+            // Both streams end with the same untouched restart intervals
+            int tail = 0;
+            while (source[source.length - 1 - tail] == result[result.length - 1 - tail]) tail++;
+            if (rotation == 270) {
+                assertTrue("tail " + tail, tail > source.length / 3);
+            }
+        }
+    }
+
+    @Test
+    public void painterThatDrawsNothingLeavesImageUnchanged() throws IOException {
+        byte[] source = encode(testImage(BufferedImage.TYPE_INT_RGB), 0, false);
+        OverlayPainter noop = new OverlayPainter() {
+            @Override
+            public void getBounds(int uprightWidth, int uprightHeight, int[] outBounds) {
+                outBounds[0] = 0;
+                outBounds[1] = 0;
+                outBounds[2] = 30;
+                outBounds[3] = 30;
+            }
+
+            @Override
+            public void paint(int[] argb, int width, int height, int left, int top,
+                              int imageWidth, int imageHeight, int rotationDegrees) {
+            }
+        };
+        assertArrayEquals(source, rewrite(source, noop, 0, null));
+    }
+
+    @Test
+    public void mergesExifAndUsesItsOrientation() throws IOException {
+        byte[] plain = encode(testImage(BufferedImage.TYPE_INT_RGB), 0, false);
+        ByteArrayOutputStream withExif = new ByteArrayOutputStream();
+        byte[] app1 = new ExifWriter().setOrientation(ExifWriter.ORIENTATION_ROTATE_90).buildApp1();
+        withExif.write(plain, 0, 2);
+        withExif.write(app1);
+        withExif.write(plain, 2, plain.length - 2);
+        byte[] source = withExif.toByteArray();
+
+        RectPainter painter = new RectPainter(10, 20, 70, 40);
+        byte[] result = rewrite(source, painter, JpegStripOverlay.ROTATION_FROM_EXIF,
+                new ExifWriter().setGpsLocation(18.5, 73.8));
+
+        JpegHeader header = JpegHeader.read(ByteBuffer.wrap(result));
+        assertEquals(ExifWriter.ORIENTATION_ROTATE_90, header.orientation);
+        assertTrue(header.app1End - header.app1Start > app1.length);
+        assertEquals(90, painter.rotation);
+        assertOnlyRegionChanged(source, result, painter.sensorRect);
+    }
+
+    @Test(expected = UnsupportedJpegException.class)
+    public void rejectsProgressiveJpeg() throws IOException {
+        byte[] source = encode(testImage(BufferedImage.TYPE_INT_RGB), 0, true);
+        rewrite(source, new RectPainter(0, 0, 10, 10), 0, null);
+    }
+
+    private static byte[] rewrite(byte[] source, OverlayPainter painter, int rotation,
+                                  ExifWriter exif) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new JpegStripOverlay().rewrite(ByteBuffer.wrap(source), Channels.newChannel(out),
+                exif, painter, rotation);
+        return out.toByteArray();
+    }
+
+    private static BufferedImage testImage(int type) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, type);
+        Random random = new Random(42);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int r = (x * 255 / WIDTH + random.nextInt(16)) & 0xFF;
+                int g = (y * 255 / HEIGHT + random.nextInt(16)) & 0xFF;
+                int b = ((x + y) & 0x3F) * 2;
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return image;
+    }
+
+    private static byte[] encode(BufferedImage image, int restartInterval, boolean progressive)
+            throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (progressive) {
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+        }
+        IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(image), param);
+        if (restartInterval > 0) {
+            String format = "javax_imageio_jpeg_image_1.0";
+            IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+            IIOMetadataNode markers = (IIOMetadataNode) root.getElementsByTagName("markerSequence").item(0);
+            IIOMetadataNode dri = new IIOMetadataNode("dri");
+            dri.setAttribute("interval", Integer.toString(restartInterval));
+            markers.insertBefore(dri, markers.getFirstChild());
+            metadata.setFromTree(format, root);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.setOutput(ImageIO.createImageOutputStream(out));
+        writer.write(null, new IIOImage(image, null, metadata), param);
+        writer.dispose();
+        return out.toByteArray();
+    }
+
+    // Decodes every MCU's coefficients and compares them outside the painted area
+    private static void assertOnlyRegionChanged(byte[] source, byte[] result, int[] rect)
+            throws IOException {
+        ByteBuffer a = ByteBuffer.wrap(source);
+        ByteBuffer b = ByteBuffer.wrap(result);
+        JpegHeader ha = JpegHeader.read(a);
+        JpegHeader hb = JpegHeader.read(b);
+        assertEquals(ha.width, hb.width);
+        assertEquals(ha.height, hb.height);
+
+        EntropyDecoder da = new EntropyDecoder(a);
+        EntropyDecoder db = new EntropyDecoder(b);
+        da.reset(ha.scanStart);
+        db.reset(hb.scanStart);
+        int[] pa = new int[3];
+        int[] pb = new int[3];
+        short[] ca = new short[64 * ha.blocksPerMcu];
+        short[] cb = new short[64 * hb.blocksPerMcu];
+        int changed = 0;
+        for (int mcu = 0; mcu < ha.mcusPerRow * ha.mcuRows; mcu++) {
+            if (ha.restartInterval > 0 && mcu > 0 && mcu % ha.restartInterval == 0) {
+                da.readRestartMarker();
+                db.readRestartMarker();
+                java.util.Arrays.fill(pa, 0);
+                java.util.Arrays.fill(pb, 0);
+            }
+            for (int blk = 0; blk < ha.blocksPerMcu; blk++) {
+                int c = ha.blockComponent[blk];
+                da.decodeBlock(ca, blk * 64, ha.dcTables[ha.dcTable[c]], ha.acTables[ha.acTable[c]], pa, c);
+                db.decodeBlock(cb, blk * 64, hb.dcTables[hb.dcTable[c]], hb.acTables[hb.acTable[c]], pb, c);
+            }
+            int x = (mcu % ha.mcusPerRow) * ha.mcuWidth;
+            int y = (mcu / ha.mcusPerRow) * ha.mcuHeight;
+            boolean inside = x < rect[2] && x + ha.mcuWidth > rect[0]
+                    && y < rect[3] && y + ha.mcuHeight > rect[1];
+            if (!inside) {
+                assertArrayEquals("MCU " + mcu + " outside overlay changed", ca, cb);
+            } else if (!java.util.Arrays.equals(ca, cb)) {
+                changed++;
+            }
+        }
+        assertTrue("no MCU changed", changed > 0);
+    }
+
+    private static void assertPaintedWhite(byte[] jpeg, int[] rect) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(jpeg));
+        assertEquals(WIDTH, image.getWidth());
+        assertEquals(HEIGHT, image.getHeight());
+        int rgb = image.getRGB((rect[0] + rect[2]) / 2, (rect[1] + rect[3]) / 2);
+        assertTrue(Integer.toHexString(rgb), (rgb & 0xFF) > 230 && ((rgb >> 8) & 0xFF) > 230);
+    }
+
+    // Fills a fixed upright rectangle anchored bottom-left with white
+    private static final class RectPainter implements OverlayPainter {
+        final int margin;
+        final int inset;
+        final int w;
+        final int h;
+        final int[] sensorRect = new int[4];
+        int rotation;
+
+        RectPainter(int margin, int inset, int w, int h) {
+            this.margin = margin;
+            this.inset = inset;
+            this.w = w;
+            this.h = h;
+        }
+
+        @Override
+        public void getBounds(int uprightWidth, int uprightHeight, int[] out) {
+            out[0] = margin;
+            out[1] = uprightHeight - inset - h;
+            out[2] = margin + w;
+            out[3] = uprightHeight - inset;
+        }
+
+        @Override
+        public void paint(int[] argb, int width, int height, int left, int top,
+                          int imageWidth, int imageHeight, int rotationDegrees) {
+            rotation = rotationDegrees;
+            getBounds(OverlayLayout.uprightWidth(imageWidth, imageHeight, rotationDegrees),
+                    OverlayLayout.uprightHeight(imageWidth, imageHeight, rotationDegrees), sensorRect);
+            OverlayLayout.toSensor(sensorRect, imageWidth, imageHeight, rotationDegrees);
+            for (int y = Math.max(sensorRect[1], top); y < Math.min(sensorRect[3], top + height); y++) {
+                for (int x = Math.max(sensorRect[0], left); x < Math.min(sensorRect[2], left + width); x++) {
+                    argb[(y - top) * width + (x - left)] = 0xFFFFFFFF;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class KeywordSpotterTest {
+
+    private static final int RATE = 16_000;
+    private static final int HOP = 160;
+
+    // Made-up words: vowel-like segments, each a pair of formants over a 120 Hz voice
+    private static final int[][] ALPHA = {{300, 2300}, {700, 1200}, {500, 1700}};
+    private static final int[][] BRAVO = {{700, 1100}, {300, 900}, {600, 2500}};
+    private static final int[][] CHARLIE = {{400, 2000}, {450, 1000}, {800, 1500}};
+
+    private final Random random = new Random(17);
+    private final MfccExtractor extractor = MfccExtractor.forSampleRate(RATE);
+    private final KeywordSpotter spotter = new KeywordSpotter(13, 0.1f);
+
+    private static short[] word(int[][] segments, double pace, double level) {
+        int perSegment = (int) (0.12 * pace * RATE);
+        short[] out = new short[segments.length * perSegment];
+        for (int i = 0; i < out.length; i++) {
+            int[] formants = segments[i / perSegment];
+            double t = i / (double) RATE;
+            double v = 0;
+            for (int k = 1; k * 120 < 4000; k++) {
+                double f = k * 120;
+                double w = 0.02;
+                for (int formant : formants) {
+                    w += Math.exp(-Math.pow((f - formant) / 120, 2) / 2);
+                }
+                v += w * Math.sin(2 * Math.PI * f * t);
+            }
+            double edge = Math.min(1, Math.min(i, out.length - i) / (0.01 * RATE));
+            out[i] = (short) Math.max(-32768, Math.min(32767, level * edge * v * 4000));
+        }
+        return out;
+    }
+
+    private short[] noise(double seconds) {
+        short[] out = new short[(int) (seconds * RATE)];
+        for (int i = 0; i < out.length; i++) out[i] = (short) (random.nextGaussian() * 30);
+        return out;
+    }
+
+    private static short[] concat(short[]... parts) {
+        int length = 0;
+        for (short[] part : parts) length += part.length;
+        short[] out = new short[length];
+        int at = 0;
+        for (short[] part : parts) {
+            System.arraycopy(part, 0, out, at, part.length);
+            at += part.length;
+        }
+        return out;
+    }
+
+    private float[][] enroll(short[] pcm) {
+        List<float[]> frames = new ArrayList<>();
+        MfccExtractor fresh = MfccExtractor.forSampleRate(RATE);
+        fresh.process(pcm, 0, pcm.length, mfcc -> frames.add(mfcc.clone()));
+        return frames.toArray(new float[0][]);
+    }
+
+    // Phrase and the frame it fired at, as "phrase@frame"
+    private List<String> spot(short[] pcm) {
+        List<String> spotted = new ArrayList<>();
+        extractor.process(pcm, 0, pcm.length, mfcc -> {
+            String phrase = spotter.onFrame(mfcc);
+            if (phrase != null) spotted.add(phrase + "@" + (extractor.getFrameCount() - 1));
+        });
+        return spotted;
+    }
+
+    private static int frameAt(String spotted) {
+        return Integer.parseInt(spotted.substring(spotted.indexOf('@') + 1));
+    }
+
+    @Test
+    public void spotsEachPhraseAtAnotherPaceAndLevel() {
+        spotter.addTemplate("take a photo", enroll(word(ALPHA, 1, 1)));
+        spotter.addTemplate("burst", enroll(word(BRAVO, 1, 1)));
+
+        short[] bravo = word(BRAVO, 1.3, 0.5);
+        short[] alpha = word(ALPHA, 0.8, 1.5);
+        short[] lead = noise(0.3);
+        short[] gap = noise(0.4);
+        List<String> spotted = spot(concat(lead, bravo, gap, alpha, noise(0.3)));
+
+        assertEquals(2, spotted.size());
+        assertTrue(spotted.get(0), spotted.get(0).startsWith("burst@"));
+        assertTrue(spotted.get(1), spotted.get(1).startsWith("take a photo@"));
+        // Each fires within 200 ms of the end of the word
+        int bravoEnd = (lead.length + bravo.length) / HOP;
+        int alphaEnd = (lead.length + bravo.length + gap.length + alpha.length) / HOP;
+        assertTrue(spotted.get(0), frameAt(spotted.get(0)) <= bravoEnd + 20);
+        assertTrue(spotted.get(1), frameAt(spotted.get(1)) <= alphaEnd + 20);
+        assertTrue(spotter.getLastCost() <= 0.1f);
+    }
+
+    @Test
+    public void wordsThatWereNotEnrolledPassUnnoticed() {
+        spotter.addTemplate("take a photo", enroll(word(ALPHA, 1, 1)));
+        spotter.addTemplate("burst", enroll(word(BRAVO, 1, 1)));
+        assertTrue(spot(concat(noise(0.3), word(CHARLIE, 1, 1), noise(0.5))).isEmpty());
+    }
+
+    @Test
+    public void shorterPhraseWaitsForTheLongerOne() {
+        spotter.addTemplate("zoom", enroll(word(ALPHA, 1, 1)));
+        spotter.addTemplate("zoom out", enroll(concat(word(ALPHA, 1, 1), word(BRAVO, 1, 1))));
+
+        List<String> spotted = spot(concat(noise(0.3), word(ALPHA, 1, 1), word(BRAVO, 1, 1),
+                noise(0.5)));
+        assertEquals(1, spotted.size());
+        assertTrue(spotted.get(0), spotted.get(0).startsWith("zoom out@"));
+
+        spotted = spot(concat(word(ALPHA, 1, 1), noise(0.5)));
+        assertEquals(1, spotted.size());
+        assertTrue(spotted.get(0), spotted.get(0).startsWith("zoom@"));
+    }
+}
@@ -0,0 +1,50 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class KeywordTemplatesTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static float[][] mfcc(int frames, float seed) {
+        float[][] out = new float[frames][13];
+        for (int f = 0; f < frames; f++) {
+            for (int c = 0; c < 13; c++) out[f][c] = seed + f * 0.5f - c;
+        }
+        return out;
+    }
+
+    @Test
+    public void recordingsSurviveReloadAndAreCappedPerPhrase() throws IOException {
+        File file = new File(folder.getRoot(), "keywords.bin");
+        KeywordTemplates templates = KeywordTemplates.load(file);
+        assertTrue(templates.isEmpty());
+        templates.add("burst", mfcc(30, 1), 2);
+        templates.add("zoom", mfcc(20, 2), 2);
+        templates.add("burst", mfcc(31, 3), 2);
+        templates.add("burst", mfcc(32, 4), 2);
+
+        KeywordTemplates loaded = KeywordTemplates.load(file);
+        assertEquals(3, loaded.getEntries().size());
+        // The oldest "burst" made way
+        assertEquals("zoom", loaded.getEntries().get(0).getPhrase());
+        assertEquals(31, loaded.getEntries().get(1).getMfcc().length);
+        assertArrayEquals(mfcc(32, 4)[7], loaded.getEntries().get(2).getMfcc()[7], 0f);
+    }
+
+    @Test
+    public void unreadableFileMeansNoTemplates() throws IOException {
+        File file = folder.newFile("keywords.bin");
+        Files.write(file.toPath(), new byte[]{1, 2, 3});
+        assertTrue(KeywordTemplates.load(file).isEmpty());
+    }
+}
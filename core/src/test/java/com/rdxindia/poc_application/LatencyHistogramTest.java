@@ -0,0 +1,84 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsSplitEachPowerOfTwoInSixteen() {
+        assertEquals(0, LatencyHistogram.bucket(0));
+        assertEquals(3, LatencyHistogram.bucket(3));
+        assertEquals(31, LatencyHistogram.bucket(31));
+        assertEquals(32, LatencyHistogram.bucket(32));
+        assertEquals(32, LatencyHistogram.bucket(33));
+        assertEquals(33, LatencyHistogram.bucket(34));
+        assertEquals(48, LatencyHistogram.bucket(64));
+        assertEquals(48, LatencyHistogram.bucket(67));
+        assertEquals(49, LatencyHistogram.bucket(68));
+        assertEquals(959, LatencyHistogram.bucket(Long.MAX_VALUE));
+        for (int b = 0; b < 959; b++) {
+            long lower = LatencyHistogram.lowerEdge(b);
+            assertEquals(b, LatencyHistogram.bucket(lower));
+            assertEquals(b, LatencyHistogram.bucket(lower + LatencyHistogram.width(b) - 1));
+            assertEquals(lower + LatencyHistogram.width(b), LatencyHistogram.lowerEdge(b + 1));
+        }
+    }
+
+    @Test
+    public void percentilesOfAKnownDistributionAreWithinAFewPercent() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        Random random = new Random(42);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // Exponential, mean 5 ms, plus a 1 ms floor
+            values[i] = 1_000_000 + (long) (-Math.log(1 - random.nextDouble()) * 5_000_000);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double quantile : new double[] {0.5, 0.9, 0.95, 0.99, 0.999}) {
+            long exact = values[(int) Math.ceil(quantile * values.length) - 1];
+            long estimate = histogram.getPercentileNanos(quantile);
+            assertEquals("p" + quantile * 100, exact, estimate, exact * 0.02);
+        }
+    }
+
+    @Test
+    public void percentilesOfEvenlySpreadValues() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        for (int i = 1; i <= 1000; i++) histogram.record(i * 1000L);
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMaxNanos());
+        assertEquals(500_500, histogram.getMeanNanos(), 0.001);
+
+        assertEquals(500_000, histogram.getPercentileNanos(0.5), 500_000 * 0.02);
+        assertEquals(990_000, histogram.getPercentileNanos(0.99), 990_000 * 0.02);
+        assertEquals(1_000_000, histogram.getPercentileNanos(1.0));
+
+        histogram.reset();
+        assertEquals(0, histogram.getPercentileNanos(0.5));
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            pool.execute(() -> {
+                for (int i = 0; i < 100_000; i++) histogram.record(thread * 100_000L + i);
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(400_000, histogram.getCount());
+        assertEquals(399_999, histogram.getMaxNanos());
+    }
+}
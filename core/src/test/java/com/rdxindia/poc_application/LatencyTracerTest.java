@@ -0,0 +1,69 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class LatencyTracerTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final LatencyTracer tracer = new LatencyTracer(4, now::get);
+
+    private void advance(long nanos) {
+        now.addAndGet(nanos);
+    }
+
+    @Test
+    public void recordsTimeFromThePreviousStampedStage() {
+        long trace = tracer.begin(300);
+        advance(10);
+        tracer.mark(trace, LatencyTracer.Stage.DELIVERED);
+        advance(100);
+        // No shutter stamp: captured is timed from delivery
+        tracer.mark(trace, LatencyTracer.Stage.CAPTURED);
+        advance(1000);
+        tracer.mark(trace, LatencyTracer.Stage.PROCESSED);
+        advance(5);
+        tracer.mark(trace, LatencyTracer.Stage.COMMITTED);
+
+        assertEquals(300, tracer.getHistogram(LatencyTracer.Stage.MATCHED).getMaxNanos());
+        assertEquals(10, tracer.getHistogram(LatencyTracer.Stage.DELIVERED).getMaxNanos());
+        assertEquals(0, tracer.getHistogram(LatencyTracer.Stage.SHUTTER).getCount());
+        assertEquals(100, tracer.getHistogram(LatencyTracer.Stage.CAPTURED).getMaxNanos());
+        assertEquals(1000, tracer.getHistogram(LatencyTracer.Stage.PROCESSED).getMaxNanos());
+        assertEquals(300 + 1115, tracer.getTotal().getMaxNanos());
+        assertTrue(tracer.dump().contains("committed"));
+    }
+
+    @Test
+    public void eachStageIsStampedOncePerTrace() {
+        long trace = tracer.begin(0);
+        advance(10);
+        tracer.mark(trace, LatencyTracer.Stage.CAPTURED);
+        advance(10);
+        tracer.mark(trace, LatencyTracer.Stage.CAPTURED);
+        assertEquals(1, tracer.getHistogram(LatencyTracer.Stage.CAPTURED).getCount());
+    }
+
+    @Test
+    public void lappedTracesAreDropped() {
+        long first = tracer.begin(0);
+        for (int i = 0; i < 4; i++) tracer.begin(0);
+        tracer.mark(first, LatencyTracer.Stage.DELIVERED);
+        assertEquals(0, tracer.getHistogram(LatencyTracer.Stage.DELIVERED).getCount());
+        assertEquals(1, tracer.getLappedCount());
+    }
+
+    @Test
+    public void disabledTracerRecordsNothing() {
+        tracer.setEnabled(false);
+        long trace = tracer.begin(100);
+        assertEquals(LatencyTracer.NO_TRACE, trace);
+        tracer.mark(trace, LatencyTracer.Stage.COMMITTED);
+        assertEquals(0, tracer.getHistogram(LatencyTracer.Stage.MATCHED).getCount());
+        assertEquals(0, tracer.getTotal().getCount());
+        assertEquals(0, tracer.getLappedCount());
+    }
+}
@@ -0,0 +1,156 @@
+package com.rdxindia.poc_application;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Loopback stand-in for the upload endpoint {@link SegmentUploader} talks
+ * to, keeping segments in memory. {@link #failAfter} makes the next PUT
+ * store only part of its chunk and drop the connection, the way a lost
+ * network would, and {@link #stall} makes it answer every PUT without
+ * storing anything.
+ */
+final class LocalUploadServer implements Closeable {
+
+    private static final Pattern RANGE = Pattern.compile("bytes (\\d+)-(\\d+)/(\\d+)");
+
+    private final HttpServer server;
+    private final Map<String, ByteArrayOutputStream> stored = new HashMap<>();
+    private int failAfter = -1;
+    private boolean stalled;
+    private int putCount;
+    private int conflictCount;
+
+    LocalUploadServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    String getEndpoint() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/upload";
+    }
+
+    /** The next PUT keeps {@code bytes} of its body and then drops the connection. */
+    synchronized void failAfter(int bytes) {
+        failAfter = bytes;
+    }
+
+    /** From now on PUTs are answered 204 at the old offset and their bodies thrown away. */
+    synchronized void stall() {
+        stalled = true;
+    }
+
+    synchronized byte[] get(String segment) {
+        ByteArrayOutputStream bytes = stored.get(segment);
+        return bytes == null ? null : bytes.toByteArray();
+    }
+
+    /** Stores the first {@code n} bytes as if an earlier run had sent them. */
+    synchronized void preload(String segment, byte[] bytes, int n) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(bytes, 0, n);
+        stored.put(segment, out);
+    }
+
+    synchronized int getPutCount() {
+        return putCount;
+    }
+
+    synchronized int getConflictCount() {
+        return conflictCount;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String segment = path.substring(path.lastIndexOf('/') + 1);
+        synchronized (this) {
+            ByteArrayOutputStream bytes = stored.get(segment);
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                // Unread, even an empty body makes the server drop the keep-alive connection
+                drain(exchange.getRequestBody(), null, -1);
+                if (bytes == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                } else {
+                    respond(exchange, 200, bytes.size());
+                }
+            } else if ("PUT".equals(exchange.getRequestMethod())) {
+                put(exchange, segment, bytes);
+            } else {
+                exchange.sendResponseHeaders(405, -1);
+            }
+        }
+        exchange.close();
+    }
+
+    private void put(HttpExchange exchange, String segment, ByteArrayOutputStream bytes)
+            throws IOException {
+        putCount++;
+        Matcher range = RANGE.matcher(String.valueOf(
+                exchange.getRequestHeaders().getFirst("Content-Range")));
+        if (!range.matches()) {
+            exchange.sendResponseHeaders(400, -1);
+            return;
+        }
+        long first = Long.parseLong(range.group(1));
+        long total = Long.parseLong(range.group(3));
+        if (bytes == null) {
+            bytes = new ByteArrayOutputStream();
+            stored.put(segment, bytes);
+        }
+        if (first != bytes.size()) {
+            conflictCount++;
+            drain(exchange.getRequestBody(), null, -1);
+            respond(exchange, 409, bytes.size());
+            return;
+        }
+        if (stalled) {
+            drain(exchange.getRequestBody(), null, -1);
+            respond(exchange, 204, bytes.size());
+            return;
+        }
+        if (failAfter >= 0) {
+            drain(exchange.getRequestBody(), bytes, failAfter);
+            failAfter = -1;
+            // No response: the server closes the connection under the client
+            throw new IOException("Dropped by test");
+        }
+        drain(exchange.getRequestBody(), bytes, -1);
+        respond(exchange, bytes.size() == total ? 201 : 204, bytes.size());
+    }
+
+    // Reads the body, keeping up to limit bytes of it (all if negative) in out
+    private static void drain(InputStream in, ByteArrayOutputStream out, int limit)
+            throws IOException {
+        byte[] buffer = new byte[8192];
+        int kept = 0;
+        for (int n; (n = in.read(buffer)) > 0; ) {
+            if (out == null) continue;
+            int keep = limit < 0 ? n : Math.min(n, limit - kept);
+            out.write(buffer, 0, keep);
+            kept += keep;
+            if (limit >= 0 && kept == limit) return;
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int code, long offset) throws IOException {
+        exchange.getResponseHeaders().set(SegmentUploader.OFFSET_HEADER, Long.toString(offset));
+        exchange.sendResponseHeaders(code, -1);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,100 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class LocationTrackerTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final FixPolicy policy = new FixPolicy(30 * SECOND, 50f, 2 * SECOND);
+
+    private static LocationFix fix(long elapsedNanos, float accuracy) {
+        return new LocationFix(18.5, 73.8, accuracy, elapsedNanos, 1_700_000_000_000L);
+    }
+
+    @Test
+    public void freshFixIsReturnedWithoutWaiting() throws InterruptedException {
+        LocationTracker tracker = new LocationTracker(() -> 10 * SECOND);
+        tracker.setUpdating(true);
+        LocationFix fresh = fix(5 * SECOND, 10f);
+        tracker.onFix(fresh);
+        assertSame(fresh, tracker.awaitFix(policy));
+        assertEquals(0, tracker.getWaitCount());
+    }
+
+    @Test
+    public void olderFixDoesNotReplaceNewerOne() {
+        LocationTracker tracker = new LocationTracker(() -> 0);
+        LocationFix newer = fix(20 * SECOND, 10f);
+        tracker.onFix(newer);
+        tracker.onFix(fix(10 * SECOND, 5f));
+        assertSame(newer, tracker.getLatest());
+        assertEquals(1, tracker.getFixCount());
+    }
+
+    @Test
+    public void staleFixIsReturnedAtOnceWhenNoUpdatesAreRunning() throws InterruptedException {
+        LocationTracker tracker = new LocationTracker(() -> 100 * SECOND);
+        LocationFix stale = fix(SECOND, 10f);
+        tracker.onFix(stale);
+        assertSame(stale, tracker.awaitFix(policy));
+        assertEquals(0, tracker.getWaitCount());
+    }
+
+    @Test
+    public void waitEndsWhenAnAcceptableFixArrives() throws Exception {
+        LocationTracker tracker = new LocationTracker(System::nanoTime);
+        tracker.setUpdating(true);
+        tracker.onFix(fix(System.nanoTime() - 60 * SECOND, 10f));
+        // Fresh but too coarse
+        tracker.onFix(fix(System.nanoTime(), 200f));
+
+        FixPolicy patient = new FixPolicy(30 * SECOND, 50f, 10 * SECOND);
+        AtomicReference<LocationFix> got = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        Thread capture = new Thread(() -> {
+            try {
+                got.set(tracker.awaitFix(patient));
+            } catch (InterruptedException ignored) {
+            }
+            done.countDown();
+        });
+        capture.start();
+        Thread.sleep(50);
+        LocationFix good = fix(System.nanoTime(), 8f);
+        tracker.onFix(good);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertSame(good, got.get());
+        assertEquals(1, tracker.getWaitCount());
+        assertEquals(0, tracker.getWaitTimeoutCount());
+    }
+
+    @Test
+    public void waitTimesOutWithTheLatestFix() throws InterruptedException {
+        LocationTracker tracker = new LocationTracker(System::nanoTime);
+        tracker.setUpdating(true);
+        LocationFix stale = fix(System.nanoTime() - 60 * SECOND, 10f);
+        tracker.onFix(stale);
+
+        FixPolicy brief = new FixPolicy(30 * SECOND, 50f, TimeUnit.MILLISECONDS.toNanos(30));
+        long start = System.nanoTime();
+        assertSame(stale, tracker.awaitFix(brief));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+        assertEquals(1, tracker.getWaitTimeoutCount());
+    }
+
+    @Test
+    public void policyAcceptsFixWithoutAccuracyOnAgeAlone() {
+        assertTrue(policy.isAcceptable(fix(0, Float.NaN), 10 * SECOND));
+        assertFalse(policy.isAcceptable(fix(0, 80f), 10 * SECOND));
+        assertFalse(policy.isAcceptable(fix(0, 10f), 40 * SECOND));
+        assertFalse(policy.isAcceptable(null, 0));
+    }
+}
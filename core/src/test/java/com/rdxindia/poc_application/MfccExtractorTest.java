@@ -0,0 +1,78 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MfccExtractorTest {
+
+    private static final int RATE = 16_000;
+
+    static short[] tone(double hz, double seconds, double amplitude) {
+        short[] out = new short[(int) (seconds * RATE)];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = (short) (amplitude * 32767 * Math.sin(2 * Math.PI * hz * i / RATE));
+        }
+        return out;
+    }
+
+    private static List<float[]> features(short[] pcm, int chunk) {
+        MfccExtractor extractor = MfccExtractor.forSampleRate(RATE);
+        List<float[]> frames = new ArrayList<>();
+        for (int at = 0; at < pcm.length; at += chunk) {
+            extractor.process(pcm, at, Math.min(chunk, pcm.length - at),
+                    mfcc -> frames.add(mfcc.clone()));
+        }
+        return frames;
+    }
+
+    @Test
+    public void chunkSizeDoesNotChangeTheFeatures() {
+        short[] pcm = tone(440, 0.5, 0.3);
+        List<float[]> whole = features(pcm, pcm.length);
+        // 25 ms frames every 10 ms
+        assertEquals((pcm.length - 400) / 160 + 1, whole.size());
+        for (int chunk : new int[]{1, 7, 333}) {
+            List<float[]> chunked = features(pcm, chunk);
+            assertEquals(whole.size(), chunked.size());
+            for (int i = 0; i < whole.size(); i++) {
+                assertArrayEquals(whole.get(i), chunked.get(i), 0f);
+            }
+        }
+    }
+
+    @Test
+    public void spectralTiltShowsInTheFirstCoefficient() {
+        float[] low = features(tone(300, 0.1, 0.3), 1600).get(3);
+        float[] high = features(tone(4000, 0.1, 0.3), 1600).get(3);
+        float[] quiet = features(tone(300, 0.1, 0.03), 1600).get(3);
+        assertTrue(low[1] > high[1]);
+        // Level goes into c0
+        assertTrue(low[0] > quiet[0]);
+    }
+
+    @Test
+    public void processDoesNotAllocate() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return;
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+        MfccExtractor extractor = MfccExtractor.forSampleRate(RATE);
+        short[] pcm = tone(440, 1, 0.3);
+        float[] sum = new float[1];
+        MfccExtractor.Sink sink = mfcc -> sum[0] += mfcc[1];
+        // Warm up so the JIT's own work is not counted
+        for (int i = 0; i < 50; i++) extractor.process(pcm, 0, pcm.length, sink);
+
+        long id = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(id);
+        for (int i = 0; i < 20; i++) extractor.process(pcm, 0, pcm.length, sink);
+        long allocated = bean.getThreadAllocatedBytes(id) - before;
+        // 2000 frames
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+}
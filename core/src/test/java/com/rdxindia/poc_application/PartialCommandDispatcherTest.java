@@ -0,0 +1,123 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PartialCommandDispatcherTest {
+
+    private static final long MS = 1_000_000L;
+
+    private final List<String> fired = new ArrayList<>();
+    private final PartialCommandDispatcher dispatcher = new PartialCommandDispatcher(
+            VoiceCommands.grammar(),
+            (match, early) -> fired.add((early ? "early:" : "final:") + match),
+            150 * MS, 400 * MS);
+
+    @Test
+    public void firesOnSecondIdenticalPartialAndSuppressesFinal() {
+        dispatcher.beginUtterance(0);
+        dispatcher.onPartial("take", 100 * MS);
+        dispatcher.onPartial("take a photo", 200 * MS);
+        assertTrue(fired.isEmpty());
+        dispatcher.onPartial("take a photo", 250 * MS);
+        assertEquals(Arrays.asList("early:take a photo"), fired);
+        assertEquals(250 * MS, dispatcher.getLastLatencyNanos());
+
+        dispatcher.onPartial("take a photo please", 300 * MS);
+        dispatcher.onFinal(Arrays.asList("take a photo please"), 900 * MS);
+        assertEquals(1, fired.size());
+        assertEquals(1, dispatcher.getSuppressedCount());
+        assertEquals(650 * MS, dispatcher.getLastLeadNanos());
+    }
+
+    @Test
+    public void firesAfterWindowWithoutFurtherPartials() {
+        dispatcher.beginUtterance(0);
+        dispatcher.onPartial("switch to front camera", 100 * MS);
+        dispatcher.onTick(200 * MS);
+        assertTrue(fired.isEmpty());
+        dispatcher.onTick(260 * MS);
+        assertEquals(Arrays.asList("early:front camera"), fired);
+    }
+
+    @Test
+    public void waitsLongerWhenALongerCommandCouldFollow() {
+        dispatcher.beginUtterance(0);
+        dispatcher.onPartial("auto capture", 100 * MS);
+        dispatcher.onPartial("auto capture", 200 * MS);
+        dispatcher.onTick(300 * MS);
+        assertTrue(fired.isEmpty());
+
+        dispatcher.onPartial("auto capture off", 350 * MS);
+        dispatcher.onPartial("auto capture off", 400 * MS);
+        assertEquals(Arrays.asList("early:auto capture off"), fired);
+    }
+
+    @Test
+    public void fuzzyMatchesOnlyFireFromTheFinalResult() {
+        dispatcher.beginUtterance(0);
+        dispatcher.onPartial("frunt camera", 100 * MS);
+        dispatcher.onPartial("frunt camera", 200 * MS);
+        dispatcher.onTick(1000 * MS);
+        assertTrue(fired.isEmpty());
+        dispatcher.onFinal(Arrays.asList("hello", "frunt camera"), 1100 * MS);
+        assertEquals(Arrays.asList("final:front camera ~1"), fired);
+        assertEquals(1, dispatcher.getFinalCount());
+    }
+
+    @Test
+    public void commandThatCouldStillTakeANumberWaitsForTheFinal() {
+        dispatcher.beginUtterance(0);
+        dispatcher.onPartial("zoom", 100 * MS);
+        dispatcher.onTick(600 * MS);
+        dispatcher.onPartial("zoom 3 x", 700 * MS);
+        dispatcher.onPartial("zoom 3 x", 750 * MS);
+        dispatcher.onTick(1300 * MS);
+        assertTrue(fired.isEmpty());
+        assertFalse(dispatcher.hasPendingCandidate());
+
+        dispatcher.onFinal(Arrays.asList("zoom 3x"), 1400 * MS);
+        assertEquals(Arrays.asList("final:zoom 3"), fired);
+        assertEquals(0, dispatcher.getEarlyCount());
+    }
+
+    @Test
+    public void oneCaptureWhenTheCountComesLast() {
+        dispatcher.beginUtterance(0);
+        dispatcher.onPartial("zoom 3 x", 100 * MS);
+        dispatcher.onTick(600 * MS);
+        dispatcher.onPartial("zoom 3 x and take 2 photos", 700 * MS);
+        dispatcher.onFinal(Arrays.asList("zoom 3 x and take 2 photos"), 1000 * MS);
+        assertEquals(Arrays.asList("final:" + VoiceCommands.ZOOM_AND_TAKE_PHOTOS + " 3,2"), fired);
+    }
+
+    @Test
+    public void sameCommandAndNumberIsNotFiredTwice() {
+        dispatcher.beginUtterance(0);
+        dispatcher.onPartial("take 3 photos", 100 * MS);
+        dispatcher.onPartial("take 3 photos", 150 * MS);
+        assertEquals(Arrays.asList("early:" + VoiceCommands.TAKE_PHOTOS + " 3"), fired);
+        dispatcher.onPartial("take 3 photos now", 700 * MS);
+        dispatcher.onTick(1200 * MS);
+        dispatcher.onFinal(Arrays.asList("take 3 photos"), 1300 * MS);
+        assertEquals(1, fired.size());
+        assertEquals(1, dispatcher.getSuppressedCount());
+    }
+
+    @Test
+    public void newUtteranceCanFireTheSameCommandAgain() {
+        dispatcher.beginUtterance(0);
+        dispatcher.onPartial("take photo", 100 * MS);
+        dispatcher.onPartial("take photo", 150 * MS);
+        dispatcher.onFinal(Arrays.asList("take photo"), 500 * MS);
+        dispatcher.beginUtterance(1000 * MS);
+        dispatcher.onPartial("take photo", 1100 * MS);
+        dispatcher.onPartial("take photo", 1150 * MS);
+        assertEquals(Arrays.asList("early:take a photo", "early:take a photo"), fired);
+    }
+}
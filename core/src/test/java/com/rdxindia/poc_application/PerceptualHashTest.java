@@ -0,0 +1,173 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Test;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+
+import static org.junit.Assert.*;
+
+public class PerceptualHashTest {
+
+    private static final int WIDTH = 640;
+    private static final int HEIGHT = 480;
+
+    private final PerceptualHash hasher = new PerceptualHash();
+
+    @Test
+    public void noisyCopiesOfASceneStayClose() throws IOException {
+        ByteBuffer first = encode(scene(1, 0, 7), 0.9f, 0, false);
+        ByteBuffer second = encode(scene(1, 0, 8), 0.75f, 0, false);
+        // The same scene moved a little, as between two shots of a burst
+        ByteBuffer moved = encode(scene(1, 6, 9), 0.9f, 0, false);
+        ByteBuffer other = encode(scene(2, 0, 7), 0.9f, 0, false);
+
+        long firstHash = hasher.pHashJpeg(first);
+        assertTrue(PerceptualHash.distance(firstHash, hasher.pHashJpeg(second)) <= 2);
+        assertTrue(PerceptualHash.distance(firstHash, hasher.pHashJpeg(moved)) <= 4);
+        assertTrue(PerceptualHash.distance(firstHash, hasher.pHashJpeg(other)) > 16);
+        // The difference hash flips bits on the flat gradient, but still tells scenes apart
+        long firstDiff = hasher.dHashJpeg(first);
+        int copy = PerceptualHash.distance(firstDiff, hasher.dHashJpeg(second));
+        int different = PerceptualHash.distance(firstDiff, hasher.dHashJpeg(other));
+        assertTrue(copy + " vs " + different, copy * 2 < different);
+    }
+
+    @Test
+    public void dcHashMatchesTheHashOfTheDecodedImage() throws IOException {
+        ByteBuffer jpeg = encode(scene(3, 0, 7), 0.9f, 0, false);
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(bytes(jpeg)));
+        int[] luma = new int[WIDTH * HEIGHT];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int rgb = decoded.getRGB(x, y);
+                luma[y * WIDTH + x] = (299 * (rgb >> 16 & 0xFF) + 587 * (rgb >> 8 & 0xFF)
+                        + 114 * (rgb & 0xFF)) / 1000;
+            }
+        }
+        assertTrue(PerceptualHash.distance(hasher.dHashJpeg(jpeg),
+                hasher.dHash(luma, WIDTH, HEIGHT)) <= 8);
+        assertTrue(PerceptualHash.distance(hasher.pHashJpeg(jpeg),
+                hasher.pHash(luma, WIDTH, HEIGHT)) <= 4);
+    }
+
+    @Test
+    public void restartIntervalsAndBufferPositionDoNotChangeTheHash() throws IOException {
+        BufferedImage image = scene(4, 0, 7);
+        long plain = hasher.dHashJpeg(encode(image, 0.9f, 0, false));
+        assertEquals(plain, hasher.dHashJpeg(encode(image, 0.9f, 5, false)));
+
+        ByteBuffer jpeg = encode(image, 0.9f, 0, false);
+        ByteBuffer offset = ByteBuffer.allocate(jpeg.remaining() + 10);
+        offset.position(10);
+        offset.put(jpeg.duplicate()).position(10);
+        assertEquals(plain, hasher.dHashJpeg(offset));
+        assertEquals(10, offset.position());
+    }
+
+    @Test
+    public void cameraJpegsHash() throws IOException {
+        ByteBuffer camera = fixture("camera.jpg");
+        ByteBuffer cameraGps = fixture("camera_gps.jpg");
+        // Same pixels, different EXIF
+        assertEquals(hasher.dHashJpeg(camera), hasher.dHashJpeg(cameraGps));
+    }
+
+    @Test(expected = UnsupportedJpegException.class)
+    public void progressiveJpegsAreRefused() throws IOException {
+        hasher.dHashJpeg(encode(scene(1, 0, 7), 0.9f, 0, true));
+    }
+
+    // A few shapes on a gradient, shifted right by dx, with sensor-like noise
+    private static BufferedImage scene(int layout, int dx, long noiseSeed) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        for (int y = 0; y < HEIGHT; y++) {
+            g.setColor(new Color(40 + y * 150 / HEIGHT, 60 + y * 100 / HEIGHT, 120));
+            g.drawLine(0, y, WIDTH, y);
+        }
+        Random shapes = new Random(layout);
+        for (int i = 0; i < 12; i++) {
+            g.setColor(new Color(shapes.nextInt(256), shapes.nextInt(256), shapes.nextInt(256)));
+            int x = shapes.nextInt(WIDTH - 120) + dx;
+            int y = shapes.nextInt(HEIGHT - 120);
+            if (shapes.nextBoolean()) {
+                g.fillOval(x, y, 40 + shapes.nextInt(80), 40 + shapes.nextInt(80));
+            } else {
+                g.fillRect(x, y, 40 + shapes.nextInt(80), 40 + shapes.nextInt(80));
+            }
+        }
+        g.dispose();
+        Random noise = new Random(noiseSeed);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int n = noise.nextInt(13) - 6;
+                int rgb = image.getRGB(x, y);
+                int r = clamp((rgb >> 16 & 0xFF) + n);
+                int gr = clamp((rgb >> 8 & 0xFF) + n);
+                int b = clamp((rgb & 0xFF) + n);
+                image.setRGB(x, y, r << 16 | gr << 8 | b);
+            }
+        }
+        return image;
+    }
+
+    private static int clamp(int v) {
+        return Math.max(0, Math.min(255, v));
+    }
+
+    private static ByteBuffer encode(BufferedImage image, float quality, int restartInterval,
+                                     boolean progressive) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (progressive) {
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+        } else {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+        }
+        IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(image), param);
+        if (restartInterval > 0) {
+            String format = "javax_imageio_jpeg_image_1.0";
+            IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+            IIOMetadataNode markers = (IIOMetadataNode) root.getElementsByTagName("markerSequence").item(0);
+            IIOMetadataNode dri = new IIOMetadataNode("dri");
+            dri.setAttribute("interval", Integer.toString(restartInterval));
+            markers.insertBefore(dri, markers.getFirstChild());
+            metadata.setFromTree(format, root);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.setOutput(ImageIO.createImageOutputStream(out));
+        writer.write(null, new IIOImage(image, null, metadata), param);
+        writer.dispose();
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    private static ByteBuffer fixture(String name) throws IOException {
+        try (InputStream in = PerceptualHashTest.class.getResourceAsStream("/jpeg/" + name)) {
+            assertNotNull("missing fixture " + name, in);
+            return ByteBuffer.wrap(in.readAllBytes());
+        }
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
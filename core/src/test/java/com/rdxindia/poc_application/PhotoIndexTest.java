@@ -0,0 +1,156 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PhotoIndexTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keysAreStandardGeohashes() {
+        assertEquals("ezs42", PhotoIndex.geohash(42.6, -5.6, 5));
+        assertEquals("u4pruydqqvj", PhotoIndex.geohash(57.64911, 10.40744, 11));
+    }
+
+    @Test
+    public void coverStaysWithinTheCellBudget() {
+        long[] ranges = PhotoIndex.cover(18.50, 73.80, 18.56, 73.90);
+        assertTrue(ranges.length / 2 <= PhotoIndex.MAX_CELLS);
+        long inside = PhotoIndex.key(18.52, 73.85);
+        boolean covered = false;
+        for (int i = 0; i < ranges.length; i += 2) {
+            covered |= inside >= ranges[i] && inside < ranges[i + 1];
+        }
+        assertTrue(covered);
+    }
+
+    @Test
+    public void queriesMatchABruteForceScanAcrossMergesAndReopen() throws IOException {
+        File dir = folder.newFolder("index");
+        Random random = new Random(11);
+        List<PhotoIndex.Photo> all = new ArrayList<>();
+        try (PhotoIndex index = PhotoIndex.open(dir)) {
+            // Enough to merge the tail at least once and leave a new one
+            for (int i = 0; i < PhotoIndex.MAX_TAIL * 2 + 300; i++) {
+                String name = "IMG_" + i + ".jpg";
+                long time = 1_700_000_000_000L + random.nextInt(30) * DAY;
+                LocationFix fix = i % 10 == 0 ? null : new LocationFix(
+                        18.4 + random.nextDouble() * 0.3, 73.7 + random.nextDouble() * 0.3,
+                        5f, 0, time);
+                index.add(name, time, fix);
+                all.add(new PhotoIndex.Photo(name, time,
+                        fix == null ? Double.NaN : fix.getLatitude(),
+                        fix == null ? Double.NaN : fix.getLongitude()));
+            }
+            check(index, all, random);
+        }
+        try (PhotoIndex index = PhotoIndex.open(dir)) {
+            assertEquals(all.size(), index.size());
+            check(index, all, random);
+        }
+    }
+
+    private static void check(PhotoIndex index, List<PhotoIndex.Photo> all, Random random)
+            throws IOException {
+        for (int q = 0; q < 20; q++) {
+            double lat = 18.45 + random.nextDouble() * 0.2;
+            double lon = 73.75 + random.nextDouble() * 0.2;
+            double radius = 200 + random.nextDouble() * 3000;
+            long from = 1_700_000_000_000L + random.nextInt(20) * DAY;
+            long to = from + 7 * DAY;
+
+            List<String> expected = new ArrayList<>();
+            for (PhotoIndex.Photo photo : all) {
+                if (photo.hasLocation() && photo.getTimeMillis() >= from && photo.getTimeMillis() <= to
+                        && PhotoIndex.distanceMeters(lat, lon, photo.getLatitude(),
+                        photo.getLongitude()) <= radius - 0.05) {
+                    expected.add(photo.getName());
+                }
+            }
+            List<String> actual = names(index.queryRadius(lat, lon, radius, from, to));
+            assertTrue(actual.containsAll(expected));
+            assertTrue(actual.size() - expected.size() <= 1);
+
+            int inTime = 0;
+            for (PhotoIndex.Photo photo : all) {
+                if (photo.getTimeMillis() >= from && photo.getTimeMillis() <= to) inTime++;
+            }
+            assertEquals(inTime, index.queryTime(from, to).size());
+        }
+        List<PhotoIndex.Photo> box = index.queryBox(-90, -180, 90, 180, Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(all.size() - (all.size() + 9) / 10, box.size());
+    }
+
+    private static List<String> names(List<PhotoIndex.Photo> photos) {
+        List<String> out = new ArrayList<>();
+        for (PhotoIndex.Photo photo : photos) out.add(photo.getName());
+        return out;
+    }
+
+    @Test
+    public void rebuildsFromTheLibraryDirectory() throws Exception {
+        File library = folder.newFolder("POC_App");
+        for (String name : new String[] {
+                "IMG_20240301_101500_18.52041_73.85671.jpg",
+                "IMG_20240301_101502_18.52041_73.85671_B2.jpg",
+                "IMG_20240302_090000.jpg",
+                "IMG_20240310_120000_-33.86880_151.20930.jpg",
+                "notes.txt" }) {
+            assertTrue(new File(library, name).createNewFile());
+        }
+
+        try (PhotoIndex index = PhotoIndex.rebuild(folder.newFolder("index"), library)) {
+            assertEquals(4, index.size());
+            SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd", Locale.US);
+            long start = format.parse("20240301").getTime();
+            List<PhotoIndex.Photo> near = index.queryRadius(18.5205, 73.8567, 200,
+                    start, start + 7 * DAY);
+            assertEquals(2, near.size());
+            assertEquals("IMG_20240301_101500_18.52041_73.85671.jpg", near.get(0).getName());
+            assertEquals(3, index.queryTime(start, start + 7 * DAY).size());
+            assertEquals(1, index.queryBox(-34, 151, -33, 152, 0, Long.MAX_VALUE).size());
+        }
+    }
+
+    @Test
+    public void linkedShotsListAndExportTheOriginalOnce() throws Exception {
+        File library = folder.newFolder("library");
+        long start = 1_700_000_000_000L;
+        PhotoIndex.Photo original = ExportSegmentTest.photo(library, "IMG_original.jpg", 4000,
+                start, 18.5, 73.8);
+        try (PhotoIndex index = PhotoIndex.open(folder.newFolder("index"))) {
+            index.add("IMG_other.jpg", start + 1000, null);
+            index.add(original.getName(), start, new LocationFix(18.5, 73.8, 5f, 0, start));
+            // Two later shots of the same scene, linked to the original
+            index.add(original.getName(), start + 2000, new LocationFix(18.5, 73.8, 5f, 0, start));
+            index.add(original.getName(), start + 3000, null);
+
+            List<PhotoIndex.Photo> day = index.queryTime(start, start + DAY);
+            assertEquals(2, day.size());
+            assertEquals(original.getName(), day.get(0).getName());
+            assertEquals(start, day.get(0).getTimeMillis());
+            assertEquals(1, index.queryRadius(18.5, 73.8, 100, start, start + DAY).size());
+            // A range holding only a link still finds the original
+            assertEquals(original.getName(),
+                    index.queryTime(start + 3000, start + 3000).get(0).getName());
+
+            ExportPlan plan = ExportPlan.build("day", library, day, 1 << 20);
+            assertEquals(1, plan.getItemCount());
+        }
+    }
+}
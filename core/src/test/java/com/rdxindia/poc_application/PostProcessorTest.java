@@ -0,0 +1,185 @@
+package com.rdxindia.poc_application;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class PostProcessorTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private PostProcessor processor;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        release.countDown();
+        if (processor != null) {
+            processor.shutdown();
+            assertTrue(processor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void dropOldestDiscardsQueuedJobsWhenFull() throws InterruptedException {
+        processor = new PostProcessor(1, 2, PostProcessor.Policy.DROP_OLDEST);
+        processor.submit(blocker());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        List<String> ran = new CopyOnWriteArrayList<>();
+        List<String> dropped = new CopyOnWriteArrayList<>();
+        for (String name : new String[] { "a", "b", "c", "d" }) {
+            assertTrue(processor.submit(new Recording(name, ran, dropped)));
+        }
+        assertEquals(2, processor.getQueueDepth());
+        assertEquals(2, processor.getDroppedCount());
+        assertEquals(List.of("a", "b"), dropped);
+
+        release.countDown();
+        processor.shutdown();
+        assertTrue(processor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(List.of("c", "d"), ran);
+        assertEquals(3, processor.getCompletedCount());
+        assertTrue(processor.getMaxLatencyNanos() >= processor.getAverageLatencyNanos());
+    }
+
+    @Test
+    public void degradeMarksJobsQueuedBehindABacklog() throws InterruptedException {
+        processor = new PostProcessor(1, 4, PostProcessor.Policy.DEGRADE);
+        processor.submit(blocker());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        List<String> ran = new CopyOnWriteArrayList<>();
+        for (String name : new String[] { "a", "b", "c", "d" }) {
+            processor.submit(new Recording(name, ran, null));
+        }
+        assertEquals(4, processor.getMaxQueueDepth());
+        assertEquals(2, processor.getDegradedCount());
+
+        release.countDown();
+        processor.shutdown();
+        assertTrue(processor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(List.of("a", "b", "c*", "d*"), ran);
+    }
+
+    @Test
+    public void fullDegradeQueueDropsTheOldestInsteadOfBlocking() throws InterruptedException {
+        processor = new PostProcessor(1, 2, PostProcessor.Policy.DEGRADE);
+        processor.submit(blocker());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        List<String> ran = new CopyOnWriteArrayList<>();
+        List<String> dropped = new CopyOnWriteArrayList<>();
+        // All on the test thread, which would hang here if a full queue blocked
+        for (String name : new String[] { "a", "b", "c" }) {
+            assertTrue(processor.submit(new Recording(name, ran, dropped)));
+        }
+        assertEquals(List.of("a"), dropped);
+
+        release.countDown();
+        processor.shutdown();
+        assertTrue(processor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(List.of("b*", "c*"), ran);
+    }
+
+    @Test
+    public void blockWaitsForSpace() throws InterruptedException {
+        processor = new PostProcessor(1, 1, PostProcessor.Policy.BLOCK);
+        processor.submit(blocker());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        processor.submit(new Recording("queued", new CopyOnWriteArrayList<>(), null));
+
+        AtomicBoolean submitted = new AtomicBoolean();
+        Thread shutter = new Thread(() -> submitted.set(processor.submit(
+                new Recording("waiting", new CopyOnWriteArrayList<>(), null))));
+        shutter.start();
+        shutter.join(200);
+        assertTrue("submit should block while the queue is full", shutter.isAlive());
+
+        release.countDown();
+        shutter.join(5000);
+        assertTrue(submitted.get());
+    }
+
+    @Test
+    public void failedJobsAreCountedAndDoNotStopWorkers() throws InterruptedException {
+        processor = new PostProcessor(2, 4, PostProcessor.Policy.BLOCK);
+        processor.submit(new Recording("boom", null, null) {
+            @Override
+            public void run(boolean degraded) {
+                throw new IllegalStateException("boom");
+            }
+        });
+        List<String> ran = new CopyOnWriteArrayList<>();
+        processor.submit(new Recording("after", ran, null));
+        processor.shutdown();
+        assertTrue(processor.awaitTermination(5, TimeUnit.SECONDS));
+        assertFalse(processor.submit(new Recording("late", ran, null)));
+        assertEquals(1, processor.getFailedCount());
+        assertEquals(List.of("after"), ran);
+    }
+
+    @Test
+    public void errorsAreReportedAndTheWorkerCarriesOn() throws InterruptedException {
+        List<Throwable> reported = new CopyOnWriteArrayList<>();
+        processor = new PostProcessor(1, 4, PostProcessor.Policy.BLOCK)
+                .setFailureListener((job, error) -> reported.add(error));
+        processor.submit(new Recording("oom", null, null) {
+            @Override
+            public void run(boolean degraded) {
+                throw new OutOfMemoryError("frame");
+            }
+        });
+        List<String> ran = new CopyOnWriteArrayList<>();
+        processor.submit(new Recording("after", ran, null));
+        processor.shutdown();
+        assertTrue(processor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(List.of("after"), ran);
+        assertEquals(1, reported.size());
+        assertTrue(reported.get(0) instanceof OutOfMemoryError);
+        assertSame(reported.get(0), processor.getLastFailure());
+    }
+
+    private PostProcessor.Job blocker() {
+        return new PostProcessor.Job() {
+            @Override
+            public void run(boolean degraded) throws InterruptedException {
+                started.countDown();
+                release.await();
+            }
+
+            @Override
+            public void onDropped() {
+            }
+        };
+    }
+
+    private static class Recording implements PostProcessor.Job {
+        private final String name;
+        private final List<String> ran;
+        private final List<String> dropped;
+
+        Recording(String name, List<String> ran, List<String> dropped) {
+            this.name = name;
+            this.ran = ran;
+            this.dropped = dropped;
+        }
+
+        @Override
+        public void run(boolean degraded) {
+            ran.add(degraded ? name + "*" : name);
+        }
+
+        @Override
+        public void onDropped() {
+            dropped.add(name);
+        }
+    }
+}
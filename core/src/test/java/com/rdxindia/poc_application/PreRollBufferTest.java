@@ -0,0 +1,52 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PreRollBufferTest {
+
+    private static short[] ramp(int from, int count) {
+        short[] out = new short[count];
+        for (int i = 0; i < count; i++) out[i] = (short) (from + i);
+        return out;
+    }
+
+    @Test
+    public void keepsTheNewestSamplesInOrderAcrossTheWrap() {
+        PreRollBuffer buffer = new PreRollBuffer(10);
+        buffer.write(ramp(0, 7), 0, 7);
+        buffer.write(ramp(7, 7), 0, 7);
+        assertEquals(10, buffer.size());
+
+        short[] out = new short[10];
+        assertEquals(10, buffer.drainTo(out));
+        assertArrayEquals(ramp(4, 10), out);
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void oversizedWriteKeepsItsTail() {
+        PreRollBuffer buffer = new PreRollBuffer(4);
+        buffer.write(ramp(0, 3), 0, 3);
+        buffer.write(ramp(100, 9), 2, 6);
+        buffer.write(ramp(200, 1), 0, 1);
+
+        short[] out = new short[4];
+        assertEquals(4, buffer.drainTo(out));
+        assertArrayEquals(new short[]{105, 106, 107, 200}, out);
+    }
+
+    @Test
+    public void shortDrainTakesTheNewest() {
+        PreRollBuffer buffer = new PreRollBuffer(8);
+        buffer.write(ramp(0, 5), 0, 5);
+        short[] out = new short[3];
+        assertEquals(3, buffer.drainTo(out));
+        assertArrayEquals(ramp(2, 3), out);
+
+        buffer.write(ramp(50, 2), 0, 2);
+        buffer.clear();
+        assertEquals(0, buffer.drainTo(out));
+    }
+}
@@ -0,0 +1,238 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RecognizerSessionTest {
+
+    private static final long MS = 1_000_000L;
+
+    private final FakeDriver driver = new FakeDriver();
+    private final ManualScheduler scheduler = new ManualScheduler();
+    private final RecognizerSession session =
+            new RecognizerSession(driver, scheduler, () -> scheduler.nowMillis * MS, new Random(7));
+
+    @Test
+    public void reusesOneRecognizerAcrossUtterances() {
+        session.start();
+        for (int i = 0; i < 5; i++) {
+            scheduler.advance(40);
+            session.onReadyForSpeech();
+            session.onBeginningOfSpeech();
+            session.onEndOfSpeech();
+            // End of speech alone never restarts
+            assertEquals(RecognizerSession.State.PROCESSING, session.getState());
+            assertEquals(0, scheduler.pendingCount());
+            scheduler.advance(300);
+            session.onResults();
+            scheduler.runDue();
+        }
+        assertEquals(1, driver.created);
+        assertEquals(0, driver.destroyed);
+        assertEquals(6, driver.listens);
+        assertEquals(5, session.getRestartCount());
+        assertEquals(40 * MS, session.getLastTimeToReadyNanos());
+        assertEquals(40 * MS, session.getLastDeadTimeNanos());
+    }
+
+    @Test
+    public void onlyOneRestartIsEverPending() {
+        session.start();
+        session.onReadyForSpeech();
+        session.onError(RecognizerSession.ErrorClass.BENIGN);
+        session.onResults();
+        session.onError(RecognizerSession.ErrorClass.FATAL);
+        assertEquals(1, scheduler.pendingCount());
+        scheduler.advance(1000);
+        scheduler.runDue();
+        // The late fatal error upgraded the pending restart to a recreate
+        assertEquals(2, driver.created);
+        assertEquals(1, driver.destroyed);
+        assertEquals(1, session.getRestartCount());
+        assertEquals(RecognizerSession.State.STARTING, session.getState());
+    }
+
+    @Test
+    public void fatalErrorsRecreateWithGrowingJitteredBackoff() {
+        session.start();
+        long previous = 0;
+        for (int attempt = 0; attempt < 4; attempt++) {
+            session.onReadyForSpeech();
+            session.onError(RecognizerSession.ErrorClass.FATAL);
+            long delay = scheduler.lastDelay;
+            long nominal = 500L << attempt;
+            assertTrue(delay + " for attempt " + attempt, delay >= nominal / 2 && delay <= nominal);
+            assertTrue(delay > previous / 2);
+            previous = delay;
+            scheduler.advance(delay);
+            scheduler.runDue();
+        }
+        assertEquals(5, driver.created);
+        assertEquals(4, session.getRecreateCount());
+        assertEquals(4, session.getErrorCount(RecognizerSession.ErrorClass.FATAL));
+    }
+
+    @Test
+    public void transientErrorsCancelAndReuse() {
+        session.start();
+        session.onReadyForSpeech();
+        session.onError(RecognizerSession.ErrorClass.TRANSIENT);
+        assertEquals(1, driver.cancels);
+        scheduler.advance(1000);
+        scheduler.runDue();
+        assertEquals(1, driver.created);
+        assertEquals(2, driver.listens);
+    }
+
+    @Test
+    public void recognizerThatNeverGetsReadyIsRecreated() {
+        session.start();
+        scheduler.advance(RecognizerSession.READY_TIMEOUT_MILLIS);
+        scheduler.runDue();
+        scheduler.runDue();
+        assertEquals(2, driver.created);
+        assertEquals(RecognizerSession.State.STARTING, session.getState());
+    }
+
+    @Test
+    public void stopCancelsPendingWork() {
+        session.start();
+        session.onReadyForSpeech();
+        session.onResults();
+        session.stop();
+        assertEquals(0, scheduler.pendingCount());
+        assertEquals(1, driver.destroyed);
+        session.onError(RecognizerSession.ErrorClass.FATAL);
+        assertEquals(RecognizerSession.State.STOPPED, session.getState());
+    }
+
+    @Test
+    public void gatedSessionIdlesUntilSpeechOnset() {
+        session.setGated(true);
+        session.start();
+        assertEquals(RecognizerSession.State.WAITING_FOR_SPEECH, session.getState());
+        assertEquals(1, driver.created);
+        assertEquals(0, driver.listens);
+        assertEquals(1, driver.waits);
+
+        scheduler.advance(10_000);
+        session.onSpeechOnset();
+        scheduler.advance(80);
+        session.onReadyForSpeech();
+        // Dead time runs from the onset, not from the end of the last window
+        assertEquals(80 * MS, session.getLastDeadTimeNanos());
+        session.onResults();
+        scheduler.runDue();
+        assertEquals(RecognizerSession.State.WAITING_FOR_SPEECH, session.getState());
+        assertEquals(1, driver.listens);
+        assertEquals(2, driver.waits);
+        assertTrue(session.getIdleRatio() > 0.95);
+
+        // A fatal error waits as well, and the recreate happens at the next onset
+        session.onSpeechOnset();
+        session.onError(RecognizerSession.ErrorClass.FATAL);
+        scheduler.advance(1000);
+        scheduler.runDue();
+        assertEquals(1, driver.created);
+        session.onSpeechOnset();
+        assertEquals(2, driver.created);
+        assertEquals(RecognizerSession.State.STARTING, session.getState());
+        assertEquals(3, session.getOnsetCount());
+    }
+
+    @Test
+    public void ungatingWhileWaitingListensAtOnce() {
+        session.setGated(true);
+        session.start();
+        session.onSpeechOnset();
+        session.onSpeechOnset();
+        assertEquals(1, driver.listens);
+        session.onReadyForSpeech();
+        session.onResults();
+        scheduler.runDue();
+        session.setGated(false);
+        assertEquals(2, driver.listens);
+        assertEquals(RecognizerSession.State.STARTING, session.getState());
+    }
+
+    private static final class FakeDriver implements RecognizerSession.Driver {
+        int created;
+        int destroyed;
+        int listens;
+        int cancels;
+        int waits;
+
+        @Override
+        public void create() {
+            created++;
+        }
+
+        @Override
+        public void destroy() {
+            destroyed++;
+        }
+
+        @Override
+        public void startListening() {
+            listens++;
+        }
+
+        @Override
+        public void cancel() {
+            cancels++;
+        }
+
+        @Override
+        public void awaitSpeech() {
+            waits++;
+        }
+    }
+
+    private static final class ManualScheduler implements RecognizerSession.Scheduler {
+        final List<Runnable> tasks = new ArrayList<>();
+        final List<Long> due = new ArrayList<>();
+        long nowMillis;
+        long lastDelay;
+
+        @Override
+        public void schedule(Runnable task, long delayMillis) {
+            tasks.add(task);
+            due.add(nowMillis + delayMillis);
+            lastDelay = delayMillis;
+        }
+
+        @Override
+        public void cancel(Runnable task) {
+            for (int i = tasks.size() - 1; i >= 0; i--) {
+                if (tasks.get(i) == task) {
+                    tasks.remove(i);
+                    due.remove(i);
+                }
+            }
+        }
+
+        void advance(long millis) {
+            nowMillis += millis;
+        }
+
+        void runDue() {
+            for (int i = 0; i < tasks.size(); i++) {
+                if (due.get(i) <= nowMillis) {
+                    Runnable task = tasks.remove(i);
+                    due.remove(i);
+                    task.run();
+                    return;
+                }
+            }
+        }
+
+        int pendingCount() {
+            return tasks.size();
+        }
+    }
+}
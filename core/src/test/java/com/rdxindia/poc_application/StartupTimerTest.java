@@ -0,0 +1,39 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StartupTimerTest {
+
+    private long now;
+
+    @Test
+    public void milestonesAreTimedFromTheOriginOnce() {
+        now = 1_000_000_000L;
+        StartupTimer timer = new StartupTimer(() -> now, 400_000_000L, true);
+        assertTrue(timer.mark(StartupTimer.Milestone.APPLICATION));
+        now += 250_000_000L;
+        assertTrue(timer.mark(StartupTimer.Milestone.FIRST_FRAME));
+        now += 100_000_000L;
+        // A second stream start does not move the milestone
+        assertFalse(timer.mark(StartupTimer.Milestone.FIRST_FRAME));
+
+        assertEquals(600_000_000L, timer.getNanos(StartupTimer.Milestone.APPLICATION));
+        assertEquals(850_000_000L, timer.getNanos(StartupTimer.Milestone.FIRST_FRAME));
+        assertEquals(-1, timer.getNanos(StartupTimer.Milestone.BOUND));
+        assertFalse(timer.isComplete());
+
+        timer.mark(StartupTimer.Milestone.CAPTURE_READY);
+        assertTrue(timer.isComplete());
+        assertEquals("cold application=600ms capture_ready=950ms first_frame=850ms",
+                timer.toString());
+    }
+
+    @Test
+    public void warmStartIsNamedAsSuch() {
+        StartupTimer timer = new StartupTimer(() -> now, 0, false);
+        assertFalse(timer.isCold());
+        assertEquals("warm", timer.toString());
+    }
+}
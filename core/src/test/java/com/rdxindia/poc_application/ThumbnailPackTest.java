@@ -0,0 +1,89 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class ThumbnailPackTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] data(int length, int seed) {
+        byte[] out = new byte[length];
+        for (int i = 0; i < length; i++) out[i] = (byte) (i * 31 + seed);
+        return out;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] out = new byte[buffer.remaining()];
+        buffer.duplicate().get(out);
+        return out;
+    }
+
+    @Test
+    public void entriesSurviveReopenAndLaterPutsReplaceEarlierOnes() throws IOException {
+        File dir = folder.newFolder("thumbs");
+        try (ThumbnailPack pack = ThumbnailPack.open(dir)) {
+            pack.put("IMG_1.jpg", data(500, 1), 0, 500);
+            pack.put("IMG_2.jpg", data(700, 2), 0, 700);
+            pack.put("IMG_1.jpg", data(300, 3), 0, 300);
+            assertArrayEquals(data(300, 3), bytes(pack.get("IMG_1.jpg")));
+        }
+        try (ThumbnailPack pack = ThumbnailPack.open(dir)) {
+            assertEquals(2, pack.size());
+            assertArrayEquals(data(300, 3), bytes(pack.get("IMG_1.jpg")));
+            assertArrayEquals(data(700, 2), bytes(pack.get("IMG_2.jpg")));
+            assertNull(pack.get("IMG_3.jpg"));
+            assertTrue(pack.getLiveBytes() < pack.getFileBytes());
+        }
+    }
+
+    @Test
+    public void tornAppendIsDropped() throws IOException {
+        File dir = folder.newFolder("thumbs");
+        try (ThumbnailPack pack = ThumbnailPack.open(dir)) {
+            pack.put("IMG_1.jpg", data(500, 1), 0, 500);
+            pack.put("IMG_2.jpg", data(500, 2), 0, 500);
+        }
+        // The last entry's data only partly reached the disk
+        try (RandomAccessFile file = new RandomAccessFile(new File(dir, "thumbs.pack"), "rw")) {
+            file.setLength(file.length() - 100);
+        }
+        try (ThumbnailPack pack = ThumbnailPack.open(dir)) {
+            assertEquals(1, pack.size());
+            assertNull(pack.get("IMG_2.jpg"));
+            pack.put("IMG_3.jpg", data(200, 3), 0, 200);
+            assertArrayEquals(data(500, 1), bytes(pack.get("IMG_1.jpg")));
+            assertArrayEquals(data(200, 3), bytes(pack.get("IMG_3.jpg")));
+        }
+    }
+
+    @Test
+    public void compactionKeepsOnlyLiveEntries() throws IOException {
+        File dir = folder.newFolder("thumbs");
+        try (ThumbnailPack pack = ThumbnailPack.open(dir)) {
+            for (int round = 0; round < 10; round++) {
+                for (int i = 0; i < 5; i++) {
+                    pack.put("IMG_" + i + ".jpg", data(4000, round * 10 + i), 0, 4000);
+                }
+            }
+            assertTrue(pack.compactIfWasteful());
+            assertEquals(pack.getLiveBytes(), pack.getFileBytes());
+            for (int i = 0; i < 5; i++) {
+                assertArrayEquals(data(4000, 90 + i), bytes(pack.get("IMG_" + i + ".jpg")));
+            }
+        }
+        try (ThumbnailPack pack = ThumbnailPack.open(dir)) {
+            assertEquals(5, pack.size());
+            assertArrayEquals(data(4000, 94), bytes(pack.get("IMG_4.jpg")));
+        }
+    }
+}
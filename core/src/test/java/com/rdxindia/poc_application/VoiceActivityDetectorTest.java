@@ -0,0 +1,101 @@
+package com.rdxindia.poc_application;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class VoiceActivityDetectorTest {
+
+    private static final int RATE = 16_000;
+    private static final int FRAME = 320;
+
+    private final VoiceActivityDetector detector = new VoiceActivityDetector(RATE, FRAME, 60, 600);
+
+    @Test
+    public void findsBothCommandsInAQuietRoom() throws IOException {
+        List<Double> onsets = new ArrayList<>();
+        List<Double> ends = new ArrayList<>();
+        run(wav("two_commands_quiet.wav"), onsets, ends);
+
+        // Spoken at 0.8 s and 2.0 s; each onset within 150 ms of the first syllable
+        assertEquals(2, onsets.size());
+        assertEquals(0.8, onsets.get(0), 0.15);
+        assertEquals(2.0, onsets.get(1), 0.15);
+        assertTrue(onsets.get(0) > 0.8 && onsets.get(1) > 2.0);
+        // ... and over within the hangover after they end
+        assertEquals(2, ends.size());
+        assertEquals(1.4 + 0.6, ends.get(0), 0.15);
+        assertEquals(2.5 + 0.6, ends.get(1), 0.15);
+        // Speech plus hangover; the recognizer would sleep through the rest of the clip
+        assertEquals((1.4 - 0.8 + 2.5 - 2.0 + 2 * 0.6) / 4, detector.getSpeechRatio(), 0.05);
+    }
+
+    @Test
+    public void absorbsHissThatSwitchesOnAndStillHearsTheCommand() throws IOException {
+        List<Double> onsets = new ArrayList<>();
+        short[] samples = wav("hiss_then_command.wav");
+        int before = (int) (2.9 * RATE) / FRAME * FRAME;
+        short[] head = new short[before];
+        System.arraycopy(samples, 0, head, 0, before);
+        run(head, onsets, new ArrayList<>());
+
+        // Hiss 15 dB over the room starts at 0.5 s; the floor follows it up
+        assertTrue(onsets.isEmpty());
+        assertEquals(-45, detector.getNoiseFloorDb(), 3);
+
+        short[] tail = new short[samples.length - before];
+        System.arraycopy(samples, before, tail, 0, tail.length);
+        run(tail, onsets, new ArrayList<>());
+        assertEquals(1, onsets.size());
+        assertEquals(3.0 - 2.9, onsets.get(0), 0.15);
+    }
+
+    @Test
+    public void digitalSilenceNeverTriggers() {
+        short[] silence = new short[RATE * 2];
+        silence[RATE] = 2000; // a lone click
+        run(silence, new ArrayList<>(), new ArrayList<>());
+        assertEquals(0, detector.getOnsetCount());
+        assertEquals(0, detector.getSpeechRatio(), 0);
+    }
+
+    // Feeds whole frames, collecting event times in seconds from the start of samples
+    private void run(short[] samples, List<Double> onsets, List<Double> ends) {
+        for (int at = 0; at + FRAME <= samples.length; at += FRAME) {
+            VoiceActivityDetector.Event event = detector.process(samples, at);
+            double seconds = (at + FRAME) / (double) RATE;
+            if (event == VoiceActivityDetector.Event.ONSET) onsets.add(seconds);
+            if (event == VoiceActivityDetector.Event.END) ends.add(seconds);
+        }
+    }
+
+    // 16-bit mono PCM WAV; skips any chunk other than "data"
+    private static short[] wav(String name) throws IOException {
+        byte[] bytes;
+        try (InputStream in = VoiceActivityDetectorTest.class.getResourceAsStream("/wav/" + name)) {
+            assertNotNull("missing fixture " + name, in);
+            bytes = in.readAllBytes();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(0x46464952, buffer.getInt(0)); // "RIFF"
+        assertEquals(1, buffer.getShort(22));
+        assertEquals(RATE, buffer.getInt(24));
+        assertEquals(16, buffer.getShort(34));
+        int at = 12;
+        while (buffer.getInt(at) != 0x61746164) { // "data"
+            at += 8 + buffer.getInt(at + 4);
+        }
+        int length = buffer.getInt(at + 4) / 2;
+        short[] samples = new short[length];
+        buffer.position(at + 8);
+        buffer.asShortBuffer().get(samples);
+        return samples;
+    }
+}